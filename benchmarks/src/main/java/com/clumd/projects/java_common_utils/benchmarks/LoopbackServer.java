@@ -0,0 +1,125 @@
+package com.clumd.projects.java_common_utils.benchmarks;
+
+import com.clumd.projects.java_common_utils.base_enhancements.BinaryPortableSocketCodec;
+import com.clumd.projects.java_common_utils.base_enhancements.InJvmSocketAddress;
+import com.clumd.projects.java_common_utils.base_enhancements.ObjectStreamResetPolicy;
+import com.clumd.projects.java_common_utils.base_enhancements.PortableServerSocket;
+import com.clumd.projects.java_common_utils.base_enhancements.PortableServerSocketConfiguration;
+import com.clumd.projects.java_common_utils.base_enhancements.PortableSocket;
+import com.clumd.projects.java_common_utils.base_enhancements.PortableSocketHandler;
+import com.clumd.projects.java_common_utils.base_enhancements.PortableSocketOptions;
+import com.clumd.projects.java_common_utils.base_enhancements.SocketTuning;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.net.InetAddress;
+import java.net.UnixDomainSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+
+/**
+ * A {@link PortableServerSocket} on this host, listening on whichever transport a benchmark is comparing, which both ends are configured the
+ * same way for.
+ */
+final class LoopbackServer implements AutoCloseable {
+
+    /**
+     * How the client reaches the server.
+     */
+    enum Transport {
+        TCP,
+        UNIX_DOMAIN_SOCKET,
+        IN_JVM
+    }
+
+    /**
+     * How values are turned into bytes.
+     */
+    enum Codec {
+        JAVA_SERIALISATION,
+        BINARY
+    }
+
+    /**
+     * What both ends exchange when the connection is created.
+     */
+    enum Header {
+        /**
+         * The Object stream headers alone, as when no header content is given.
+         */
+        DEFAULT(new Serializable[0]),
+        /**
+         * Nothing at all, not even the Object stream headers.
+         */
+        NONE(null),
+        /**
+         * The Object stream headers, followed by some custom content which both ends check.
+         */
+        CUSTOM(new Serializable[]{"benchmark", 1});
+
+        private final Serializable[] content;
+
+        Header(final Serializable[] content) {
+            this.content = content;
+        }
+    }
+
+    private final Transport transport;
+    private final PortableSocketOptions options;
+    private final Header header;
+    private final Path unixDomainSocketDirectory;
+    private final InJvmSocketAddress inJvmAddress;
+    private final PortableServerSocket server;
+
+    LoopbackServer(final Transport transport, final Codec codec, final Header header, final PortableSocketHandler handler) throws IOException {
+        this.transport = transport;
+        this.header = header;
+        this.options = PortableSocketOptions.builder()
+                .codec(codec == Codec.BINARY ? new BinaryPortableSocketCodec() : null)
+                // The benchmarks send the same payload every time, which must be written out in full rather than as a back-reference to the first.
+                .outputStreamResetPolicy(ObjectStreamResetPolicy.perMessage())
+                // Closes with a reset rather than leaving TIME_WAIT behind, which a fresh connection per request would soon run out of ports from.
+                .socketTuning(SocketTuning.builder().tcpNoDelay(true).lingerInSeconds(0).build())
+                .build();
+        this.unixDomainSocketDirectory = transport == Transport.UNIX_DOMAIN_SOCKET ? Files.createTempDirectory("portable-socket-benchmark") : null;
+        this.inJvmAddress = transport == Transport.IN_JVM ? InJvmSocketAddress.of("benchmark-" + UUID.randomUUID()) : null;
+        this.server = new PortableServerSocket(
+                PortableServerSocketConfiguration.builder()
+                        .name("benchmark")
+                        .bindAddress(InetAddress.getLoopbackAddress())
+                        .unixDomainSocketPath(unixDomainSocketDirectory == null ? null : unixDomainSocketDirectory.resolve("server.sock"))
+                        .inJvmAddress(inJvmAddress)
+                        .portableSocketOptions(options)
+                        .build(),
+                portableSocket -> {
+                    // Left waiting between iterations, which must not end the connection.
+                    portableSocket.setNoTimeout();
+                    handler.handle(portableSocket);
+                },
+                header.content
+        ).start();
+    }
+
+    /**
+     * @return A new connection to the server, over the transport being compared.
+     * @throws IOException Thrown if the connection could not be made.
+     */
+    PortableSocket connect() throws IOException {
+        return switch (transport) {
+            case TCP -> new PortableSocket(options, "127.0.0.1", server.getLocalPort(), header.content);
+            case UNIX_DOMAIN_SOCKET -> new PortableSocket(options, UnixDomainSocketAddress.of(unixDomainSocketDirectory.resolve("server.sock")),
+                    header.content);
+            case IN_JVM -> new PortableSocket(options, inJvmAddress, header.content);
+        };
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.close();
+        if (unixDomainSocketDirectory != null) {
+            Files.deleteIfExists(unixDomainSocketDirectory.resolve("server.sock"));
+            Files.deleteIfExists(unixDomainSocketDirectory);
+        }
+    }
+}
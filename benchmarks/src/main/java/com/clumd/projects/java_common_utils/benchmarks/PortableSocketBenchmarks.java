@@ -0,0 +1,32 @@
+package com.clumd.projects.java_common_utils.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the PortableSocket benchmarks with the {@link GCProfiler}, so every result also shows how many bytes were allocated per operation, which
+ * catches an allocation regression even where the machine is fast enough to hide it in the timings.
+ * <p>
+ * Any JMH command line arguments are applied on top, such as a regex of which benchmarks to run, or {@code -p transport=TCP} to narrow the
+ * parameters, so a comparison between two library versions can be run with the same arguments against each.
+ */
+public final class PortableSocketBenchmarks {
+
+    private PortableSocketBenchmarks() {
+    }
+
+    public static void main(final String[] args) throws CommandLineOptionException, RunnerException {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        OptionsBuilder options = new OptionsBuilder();
+        if (commandLine.getIncludes().isEmpty()) {
+            options.include(PortableSocketBenchmarks.class.getPackageName() + ".PortableSocket.*Benchmark");
+        }
+        options.parent(commandLine);
+        options.addProfiler(GCProfiler.class);
+        new Runner(options.build()).run();
+    }
+}
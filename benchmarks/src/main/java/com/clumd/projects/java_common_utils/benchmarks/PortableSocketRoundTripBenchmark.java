@@ -0,0 +1,109 @@
+package com.clumd.projects.java_common_utils.benchmarks;
+
+import com.clumd.projects.java_common_utils.base_enhancements.PortableSocket;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How long a single value takes to go to an echoing server and back, through a connection which is reused for every request, and through a new
+ * connection for each one, including creating it and its stream header handshake.
+ * <p>
+ * Sample time mode reports the percentiles as well as the mean, so the tail latency can be compared as well as the typical one.
+ */
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PortableSocketRoundTripBenchmark {
+
+    /**
+     * The client's read timeout, which changes nothing about a reply which arrives in time, but is included to show that it costs nothing.
+     */
+    public enum Timeout {
+        FAST,
+        MEDIUM,
+        NONE;
+
+        void applyTo(final PortableSocket portableSocket) throws IOException {
+            switch (this) {
+                case FAST -> portableSocket.setFastTimeout();
+                case MEDIUM -> portableSocket.setMediumTimeout();
+                case NONE -> portableSocket.setNoTimeout();
+            }
+        }
+    }
+
+    @Param({"16", "1024", "65536"})
+    private int payloadSizeInBytes;
+
+    @Param({"TCP", "UNIX_DOMAIN_SOCKET", "IN_JVM"})
+    private LoopbackServer.Transport transport;
+
+    @Param({"JAVA_SERIALISATION", "BINARY"})
+    private LoopbackServer.Codec codec;
+
+    @Param({"DEFAULT", "NONE", "CUSTOM"})
+    private LoopbackServer.Header header;
+
+    @Param({"MEDIUM", "NONE"})
+    private Timeout timeout;
+
+    private byte[] payload;
+    private LoopbackServer server;
+    private PortableSocket reused;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        payload = new byte[payloadSizeInBytes];
+        new Random(payloadSizeInBytes).nextBytes(payload);
+        server = new LoopbackServer(transport, codec, header, portableSocket -> {
+            while (true) {
+                portableSocket.send(portableSocket.receive());
+            }
+        });
+        reused = connect();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        reused.close();
+        server.close();
+    }
+
+    private PortableSocket connect() throws IOException {
+        PortableSocket connected = server.connect();
+        timeout.applyTo(connected);
+        return connected;
+    }
+
+    @Benchmark
+    public Object reusedSocket() throws IOException, ClassNotFoundException {
+        reused.send(payload);
+        return reused.receive();
+    }
+
+    @Benchmark
+    public Object freshSocketPerRequest() throws IOException, ClassNotFoundException {
+        try (PortableSocket fresh = connect()) {
+            fresh.send(payload);
+            return fresh.receive();
+        }
+    }
+}
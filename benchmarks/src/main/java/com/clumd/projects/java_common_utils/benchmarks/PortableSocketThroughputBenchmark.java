@@ -0,0 +1,83 @@
+package com.clumd.projects.java_common_utils.benchmarks;
+
+import com.clumd.projects.java_common_utils.base_enhancements.PortableSocket;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How many values a single connection can send per second, one way, with the server only acknowledging each batch of them. Sending in batches
+ * keeps the pipe full, as a stream of values would, while the acknowledgement stops a transport with no backpressure of its own (such as in the
+ * same JVM) from queueing up more than a batch.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PortableSocketThroughputBenchmark {
+
+    private static final int BATCH_SIZE = 64;
+
+    @Param({"16", "1024", "65536"})
+    private int payloadSizeInBytes;
+
+    @Param({"TCP", "UNIX_DOMAIN_SOCKET", "IN_JVM"})
+    private LoopbackServer.Transport transport;
+
+    @Param({"JAVA_SERIALISATION", "BINARY"})
+    private LoopbackServer.Codec codec;
+
+    @Param({"DEFAULT", "CUSTOM"})
+    private LoopbackServer.Header header;
+
+    private byte[] payload;
+    private LoopbackServer server;
+    private PortableSocket client;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        payload = new byte[payloadSizeInBytes];
+        new Random(payloadSizeInBytes).nextBytes(payload);
+        server = new LoopbackServer(transport, codec, header, portableSocket -> {
+            while (true) {
+                for (int i = 0; i < BATCH_SIZE; i++) {
+                    portableSocket.receive();
+                }
+                portableSocket.send(BATCH_SIZE);
+            }
+        });
+        client = server.connect();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        client.close();
+        server.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public Object sendBatch() throws IOException, ClassNotFoundException {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            client.send(payload);
+        }
+        return client.receive();
+    }
+}
@@ -0,0 +1,360 @@
+package com.clumd.projects.java_common_utils.base_enhancements;
+
+import com.clumd.projects.java_common_utils.models.ImmutablePair;
+import com.clumd.projects.java_common_utils.models.Pair;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The default {@link PortableSocketCodec}, which writes a single tag byte followed by a compact binary form for primitives (and their boxes),
+ * Strings, primitive arrays, String and Object arrays, and {@link Pair}s. Anything else falls back to regular Java serialisation, so any
+ * {@link Serializable} object can still be sent.
+ * <p>
+ * Arrays and Pairs are encoded element by element, so an Object array or Pair of otherwise unknown types only pays for Java serialisation on the
+ * elements which need it.
+ * <p>
+ * When decoding, Object arrays and Pairs may only be nested as deeply as the {@link DeserialisationLimits#getMaxDepth() limits} allow (or their
+ * default, when there are none), and anything Java serialised is read under the same limits, through the receiving socket's
+ * {@link ResolvedClassCache}.
+ */
+public class BinaryPortableSocketCodec implements PortableSocketCodec {
+
+    private static final String NAME = "portable-binary-v1";
+
+    private static final byte TAG_NULL = 0;
+    private static final byte TAG_TRUE = 1;
+    private static final byte TAG_FALSE = 2;
+    private static final byte TAG_BYTE = 3;
+    private static final byte TAG_SHORT = 4;
+    private static final byte TAG_CHAR = 5;
+    private static final byte TAG_INT = 6;
+    private static final byte TAG_LONG = 7;
+    private static final byte TAG_FLOAT = 8;
+    private static final byte TAG_DOUBLE = 9;
+    private static final byte TAG_STRING = 10;
+    private static final byte TAG_BOOLEAN_ARRAY = 11;
+    private static final byte TAG_BYTE_ARRAY = 12;
+    private static final byte TAG_SHORT_ARRAY = 13;
+    private static final byte TAG_CHAR_ARRAY = 14;
+    private static final byte TAG_INT_ARRAY = 15;
+    private static final byte TAG_LONG_ARRAY = 16;
+    private static final byte TAG_FLOAT_ARRAY = 17;
+    private static final byte TAG_DOUBLE_ARRAY = 18;
+    private static final byte TAG_STRING_ARRAY = 19;
+    private static final byte TAG_OBJECT_ARRAY = 20;
+    private static final byte TAG_PAIR = 21;
+    private static final byte TAG_IMMUTABLE_PAIR = 22;
+    private static final byte TAG_JAVA_SERIALISED = 127;
+
+    private static final long DEFAULT_MAX_DEPTH = DeserialisationLimits.defaults().getMaxDepth();
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public void encode(final Object value, final DataOutputStream out) throws IOException {
+        switch (value) {
+            case null -> out.writeByte(TAG_NULL);
+            case Boolean b -> out.writeByte(b ? TAG_TRUE : TAG_FALSE);
+            case Byte b -> {
+                out.writeByte(TAG_BYTE);
+                out.writeByte(b);
+            }
+            case Short s -> {
+                out.writeByte(TAG_SHORT);
+                out.writeShort(s);
+            }
+            case Character c -> {
+                out.writeByte(TAG_CHAR);
+                out.writeChar(c);
+            }
+            case Integer i -> {
+                out.writeByte(TAG_INT);
+                out.writeInt(i);
+            }
+            case Long l -> {
+                out.writeByte(TAG_LONG);
+                out.writeLong(l);
+            }
+            case Float f -> {
+                out.writeByte(TAG_FLOAT);
+                out.writeFloat(f);
+            }
+            case Double d -> {
+                out.writeByte(TAG_DOUBLE);
+                out.writeDouble(d);
+            }
+            case String s -> {
+                out.writeByte(TAG_STRING);
+                writeString(s, out);
+            }
+            case boolean[] array -> {
+                out.writeByte(TAG_BOOLEAN_ARRAY);
+                out.writeInt(array.length);
+                for (boolean element : array) {
+                    out.writeBoolean(element);
+                }
+            }
+            case byte[] array -> {
+                out.writeByte(TAG_BYTE_ARRAY);
+                out.writeInt(array.length);
+                out.write(array);
+            }
+            case short[] array -> {
+                out.writeByte(TAG_SHORT_ARRAY);
+                out.writeInt(array.length);
+                for (short element : array) {
+                    out.writeShort(element);
+                }
+            }
+            case char[] array -> {
+                out.writeByte(TAG_CHAR_ARRAY);
+                out.writeInt(array.length);
+                for (char element : array) {
+                    out.writeChar(element);
+                }
+            }
+            case int[] array -> {
+                out.writeByte(TAG_INT_ARRAY);
+                out.writeInt(array.length);
+                for (int element : array) {
+                    out.writeInt(element);
+                }
+            }
+            case long[] array -> {
+                out.writeByte(TAG_LONG_ARRAY);
+                out.writeInt(array.length);
+                for (long element : array) {
+                    out.writeLong(element);
+                }
+            }
+            case float[] array -> {
+                out.writeByte(TAG_FLOAT_ARRAY);
+                out.writeInt(array.length);
+                for (float element : array) {
+                    out.writeFloat(element);
+                }
+            }
+            case double[] array -> {
+                out.writeByte(TAG_DOUBLE_ARRAY);
+                out.writeInt(array.length);
+                for (double element : array) {
+                    out.writeDouble(element);
+                }
+            }
+            default -> encodeReference(value, out);
+        }
+    }
+
+    private void encodeReference(final Object value, final DataOutputStream out) throws IOException {
+        // Only the exact classes are handled here, as subclasses may carry extra state only Java serialisation knows how to send.
+        Class<?> type = value.getClass();
+        if (type == String[].class) {
+            String[] array = (String[]) value;
+            out.writeByte(TAG_STRING_ARRAY);
+            out.writeInt(array.length);
+            for (String element : array) {
+                out.writeBoolean(element != null);
+                if (element != null) {
+                    writeString(element, out);
+                }
+            }
+        } else if (type == Object[].class) {
+            Object[] array = (Object[]) value;
+            out.writeByte(TAG_OBJECT_ARRAY);
+            out.writeInt(array.length);
+            for (Object element : array) {
+                encode(element, out);
+            }
+        } else if (type == Pair.class || type == ImmutablePair.class) {
+            Pair<?, ?> pair = (Pair<?, ?>) value;
+            out.writeByte(type == Pair.class ? TAG_PAIR : TAG_IMMUTABLE_PAIR);
+            encode(pair.getLeft(), out);
+            encode(pair.getRight(), out);
+        } else if (value instanceof Serializable) {
+            out.writeByte(TAG_JAVA_SERIALISED);
+            ObjectOutputStream objectOutputStream = new ObjectOutputStream(new NonClosingOutputStream(out));
+            objectOutputStream.writeObject(value);
+            objectOutputStream.flush();
+        } else {
+            throw new NotSerializableException(type.getName());
+        }
+    }
+
+    @Override
+    public Object decode(final DataInputStream in, final URLClassLoader classLoader) throws IOException, ClassNotFoundException {
+        return decode(in, classLoader, ResolvedClassCache.shared(), null);
+    }
+
+    @Override
+    public Object decode(
+            final DataInputStream in,
+            final URLClassLoader classLoader,
+            final ResolvedClassCache resolvedClassCache,
+            final DeserialisationLimits deserialisationLimits
+    ) throws IOException, ClassNotFoundException {
+        return decode(in, new DecodingContext(classLoader, resolvedClassCache, deserialisationLimits), 1);
+    }
+
+    private Object decode(final DataInputStream in, final DecodingContext context, final long depth) throws IOException, ClassNotFoundException {
+        // Checked here rather than left to the stack, so that a frame of endlessly nested arrays is reported as corrupt rather than overflowing.
+        if (depth > context.maxDepth()) {
+            throw new StreamCorruptedException("Values nested deeper than {" + context.maxDepth() + "} in " + NAME + " frame.");
+        }
+        byte tag = in.readByte();
+        return switch (tag) {
+            case TAG_NULL -> null;
+            case TAG_TRUE -> true;
+            case TAG_FALSE -> false;
+            case TAG_BYTE -> in.readByte();
+            case TAG_SHORT -> in.readShort();
+            case TAG_CHAR -> in.readChar();
+            case TAG_INT -> in.readInt();
+            case TAG_LONG -> in.readLong();
+            case TAG_FLOAT -> in.readFloat();
+            case TAG_DOUBLE -> in.readDouble();
+            case TAG_STRING -> readString(in);
+            case TAG_BOOLEAN_ARRAY -> {
+                boolean[] array = new boolean[readLength(in, 1)];
+                for (int i = 0; i < array.length; i++) {
+                    array[i] = in.readBoolean();
+                }
+                yield array;
+            }
+            case TAG_BYTE_ARRAY -> {
+                byte[] array = new byte[readLength(in, 1)];
+                in.readFully(array);
+                yield array;
+            }
+            case TAG_SHORT_ARRAY -> {
+                short[] array = new short[readLength(in, Short.BYTES)];
+                for (int i = 0; i < array.length; i++) {
+                    array[i] = in.readShort();
+                }
+                yield array;
+            }
+            case TAG_CHAR_ARRAY -> {
+                char[] array = new char[readLength(in, Character.BYTES)];
+                for (int i = 0; i < array.length; i++) {
+                    array[i] = in.readChar();
+                }
+                yield array;
+            }
+            case TAG_INT_ARRAY -> {
+                int[] array = new int[readLength(in, Integer.BYTES)];
+                for (int i = 0; i < array.length; i++) {
+                    array[i] = in.readInt();
+                }
+                yield array;
+            }
+            case TAG_LONG_ARRAY -> {
+                long[] array = new long[readLength(in, Long.BYTES)];
+                for (int i = 0; i < array.length; i++) {
+                    array[i] = in.readLong();
+                }
+                yield array;
+            }
+            case TAG_FLOAT_ARRAY -> {
+                float[] array = new float[readLength(in, Float.BYTES)];
+                for (int i = 0; i < array.length; i++) {
+                    array[i] = in.readFloat();
+                }
+                yield array;
+            }
+            case TAG_DOUBLE_ARRAY -> {
+                double[] array = new double[readLength(in, Double.BYTES)];
+                for (int i = 0; i < array.length; i++) {
+                    array[i] = in.readDouble();
+                }
+                yield array;
+            }
+            case TAG_STRING_ARRAY -> {
+                String[] array = new String[readLength(in, 1)];
+                for (int i = 0; i < array.length; i++) {
+                    array[i] = in.readBoolean() ? readString(in) : null;
+                }
+                yield array;
+            }
+            case TAG_OBJECT_ARRAY -> {
+                Object[] array = new Object[readLength(in, 1)];
+                for (int i = 0; i < array.length; i++) {
+                    array[i] = decode(in, context, depth + 1);
+                }
+                yield array;
+            }
+            case TAG_PAIR -> new Pair<>((Serializable) decode(in, context, depth + 1), (Serializable) decode(in, context, depth + 1));
+            case TAG_IMMUTABLE_PAIR -> new ImmutablePair<>(
+                    (Serializable) decode(in, context, depth + 1), (Serializable) decode(in, context, depth + 1)
+            );
+            case TAG_JAVA_SERIALISED -> new ObjectInputStreamWithClassLoader(
+                    in, context.classLoader(), context.resolvedClassCache(), context.deserialisationLimits()
+            ).readObject();
+            default -> throw new StreamCorruptedException("Unknown type tag {" + tag + "} in " + NAME + " frame.");
+        };
+    }
+
+    private static void writeString(final String value, final DataOutputStream out) throws IOException {
+        byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(encoded.length);
+        out.write(encoded);
+    }
+
+    private static String readString(final DataInputStream in) throws IOException {
+        byte[] encoded = new byte[readLength(in, 1)];
+        in.readFully(encoded);
+        return new String(encoded, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads an array length, refusing any length which could not possibly fit in what remains of the frame, so that a corrupt frame can't make
+     * us allocate a huge array.
+     */
+    private static int readLength(final DataInputStream in, final int minimumBytesPerElement) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || (long) length * minimumBytesPerElement > in.available()) {
+            throw new StreamCorruptedException("Invalid length {" + length + "} in " + NAME + " frame.");
+        }
+        return length;
+    }
+
+    /**
+     * Everything a single decode needs to pass down to the values nested within it.
+     */
+    private record DecodingContext(URLClassLoader classLoader, ResolvedClassCache resolvedClassCache, DeserialisationLimits deserialisationLimits) {
+
+        private long maxDepth() {
+            return deserialisationLimits == null ? DEFAULT_MAX_DEPTH : deserialisationLimits.getMaxDepth();
+        }
+    }
+
+    /**
+     * Stops an ObjectOutputStream used for a single fallback value from closing the frame being written.
+     */
+    private static final class NonClosingOutputStream extends FilterOutputStream {
+
+        private NonClosingOutputStream(final DataOutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.clumd.projects.java_common_utils.base_enhancements;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * The outcome of a single {@link PortableSocketBroadcaster#broadcast(Object)}, once every subscriber has either been sent the value, or failed.
+ *
+ * @param delivered How many subscribers the value was sent to.
+ * @param failures  Every subscriber which could not be sent the value, and why, which have all been unsubscribed.
+ */
+public record BroadcastResult(int delivered, Map<PortableSocket, IOException> failures) {
+}
@@ -0,0 +1,98 @@
+package com.clumd.projects.java_common_utils.base_enhancements;
+
+import lombok.NonNull;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The classes which {@link DeserialisationLimits} allow to be deserialised, compiled up front into hash lookups, so that checking a class costs a
+ * few set lookups, rather than matching it against every pattern in turn.
+ * <p>
+ * Each entry is one of:
+ * <ul>
+ *     <li>A class name, such as {@code com.example.Message}, allowing just that class.</li>
+ *     <li>A package followed by {@code .*}, such as {@code com.example.*}, allowing every class directly in that package.</li>
+ *     <li>A package followed by {@code .**}, such as {@code com.example.**}, allowing every class in that package and any package below it.</li>
+ * </ul>
+ * Arrays are allowed when their component type is, and primitives are always allowed. Every class in a serialised object's hierarchy is checked,
+ * so superclasses such as {@code java.lang.Number} need allowing too.
+ */
+public final class ClassAllowlist {
+
+    private final Set<String> classNames = new HashSet<>();
+    private final Set<String> packages = new HashSet<>();
+    private final Set<String> packageTrees = new HashSet<>();
+
+    private ClassAllowlist(final Collection<String> entries) {
+        for (String entry : entries) {
+            if (entry == null || entry.isBlank()) {
+                throw new IllegalArgumentException("A class allowlist entry cannot be blank.");
+            }
+            if (entry.endsWith(".**")) {
+                packageTrees.add(entry.substring(0, entry.length() - 3));
+            } else if (entry.endsWith(".*")) {
+                packages.add(entry.substring(0, entry.length() - 2));
+            } else if (entry.contains("*")) {
+                throw new IllegalArgumentException("A class allowlist entry can only end in '.*' or '.**', but got {" + entry + "}.");
+            } else {
+                classNames.add(entry);
+            }
+        }
+    }
+
+    /**
+     * @param entries Each class or package to allow, as described on the class.
+     * @return The compiled allowlist.
+     */
+    public static ClassAllowlist of(@NonNull final String... entries) {
+        return of(List.of(entries));
+    }
+
+    /**
+     * @param entries Each class or package to allow, as described on the class.
+     * @return The compiled allowlist.
+     */
+    public static ClassAllowlist of(@NonNull final Collection<String> entries) {
+        return new ClassAllowlist(entries);
+    }
+
+    /**
+     * @param type The class to check.
+     * @return Whether this allows instances of the class to be deserialised.
+     */
+    public boolean allows(@NonNull final Class<?> type) {
+        Class<?> component = type;
+        while (component.isArray()) {
+            component = component.getComponentType();
+        }
+        if (component.isPrimitive()) {
+            return true;
+        }
+
+        String name = component.getName();
+        if (classNames.contains(name)) {
+            return true;
+        }
+        int lastDot = name.lastIndexOf('.');
+        if (lastDot < 0) {
+            return false;
+        }
+        String packageName = name.substring(0, lastDot);
+        if (packages.contains(packageName)) {
+            return true;
+        }
+        while (true) {
+            if (packageTrees.contains(packageName)) {
+                return true;
+            }
+            lastDot = packageName.lastIndexOf('.');
+            if (lastDot < 0) {
+                return false;
+            }
+            packageName = packageName.substring(0, lastDot);
+        }
+    }
+}
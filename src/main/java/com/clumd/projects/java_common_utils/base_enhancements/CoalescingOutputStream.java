@@ -0,0 +1,156 @@
+package com.clumd.projects.java_common_utils.base_enhancements;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A buffering {@link OutputStream} which applies a {@link FlushPolicy} to every flush, only writing the buffer through to the underlying stream
+ * once the policy is met, the buffer fills, or {@link #forceFlush()} is called.
+ */
+class CoalescingOutputStream extends OutputStream {
+
+    // Each time window is flushed from a virtual thread of its own, so a peer which is slow to read only ever holds up its own socket's flushes.
+    private static final NamedThreadFactory TIME_WINDOW_FLUSHERS = new NamedThreadFactory("portable-socket", "flusher", true);
+
+    private final OutputStream out;
+    private final FlushPolicy policy;
+    private final byte[] buffer;
+    private final ReentrantLock lock = new ReentrantLock();
+    private int count;
+    private int pendingFlushes;
+    private boolean flushScheduled;
+    private long timeWindowsOpened;
+    private IOException scheduledFlushFailure;
+
+    CoalescingOutputStream(final OutputStream out, final FlushPolicy policy) {
+        this.out = out;
+        this.policy = policy;
+        this.buffer = new byte[Math.max(1, policy.getBufferSizeInBytes())];
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        lock.lock();
+        try {
+            if (count == buffer.length) {
+                writeBuffer();
+            }
+            buffer[count++] = (byte) b;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) throws IOException {
+        lock.lock();
+        try {
+            if (len >= buffer.length) {
+                // Too large to be worth copying, so send what we have so far to keep the order, then this directly.
+                writeBuffer();
+                out.write(b, off, len);
+                return;
+            }
+            if (len > buffer.length - count) {
+                writeBuffer();
+            }
+            System.arraycopy(b, off, buffer, count, len);
+            count += len;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        lock.lock();
+        try {
+            throwAnyScheduledFlushFailure();
+            switch (policy.getMode()) {
+                case IMMEDIATE -> forceFlush();
+                case ON_BATCH_SIZE -> {
+                    if (++pendingFlushes >= policy.getBatchSize()) {
+                        forceFlush();
+                    }
+                }
+                case TIME_WINDOW -> {
+                    if (!flushScheduled && count > 0) {
+                        flushScheduled = true;
+                        final long timeWindow = ++timeWindowsOpened;
+                        TIME_WINDOW_FLUSHERS.newThread(() -> flushOnceWindowPasses(timeWindow)).start();
+                    }
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes everything buffered through to the underlying stream and flushes it, regardless of the policy.
+     *
+     * @throws IOException Thrown if the underlying stream could not be written to.
+     */
+    void forceFlush() throws IOException {
+        lock.lock();
+        try {
+            // Any time window still open has nothing left to flush, so is left to expire on its own.
+            flushScheduled = false;
+            pendingFlushes = 0;
+            writeBuffer();
+            out.flush();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void flushOnceWindowPasses(final long timeWindow) {
+        try {
+            Thread.sleep(policy.getTimeWindow());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        lock.lock();
+        try {
+            if (flushScheduled && timeWindow == timeWindowsOpened) {
+                forceFlush();
+            }
+        } catch (IOException e) {
+            // Nobody is waiting on this flush, so hand the failure to the next caller instead.
+            scheduledFlushFailure = e;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void throwAnyScheduledFlushFailure() throws IOException {
+        if (scheduledFlushFailure != null) {
+            IOException failure = scheduledFlushFailure;
+            scheduledFlushFailure = null;
+            throw failure;
+        }
+    }
+
+    private void writeBuffer() throws IOException {
+        if (count > 0) {
+            out.write(buffer, 0, count);
+            count = 0;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            forceFlush();
+        } finally {
+            try {
+                out.close();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
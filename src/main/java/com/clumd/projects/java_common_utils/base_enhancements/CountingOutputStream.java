@@ -0,0 +1,43 @@
+package com.clumd.projects.java_common_utils.base_enhancements;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * A pass-through {@link OutputStream} which keeps a running total of the bytes written through it.
+ */
+class CountingOutputStream extends FilterOutputStream {
+
+    private volatile long bytesWritten;
+
+    CountingOutputStream(final OutputStream out) {
+        super(out);
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        out.write(b);
+        bytesWritten++;
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) throws IOException {
+        out.write(b, off, len);
+        bytesWritten += len;
+    }
+
+    /**
+     * Passes everything written from now on through to a different stream, such as once the bytes written so far have been collected up to be
+     * sent in one go.
+     *
+     * @param target The stream to write through to instead.
+     */
+    void redirectTo(final OutputStream target) {
+        this.out = target;
+    }
+
+    long getBytesWritten() {
+        return bytesWritten;
+    }
+}
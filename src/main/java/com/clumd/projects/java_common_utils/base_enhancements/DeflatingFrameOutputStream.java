@@ -0,0 +1,161 @@
+package com.clumd.projects.java_common_utils.base_enhancements;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.Deflater;
+
+/**
+ * An {@link OutputStream} which, once {@link #startCompressing() started}, collects output until it is flushed or its buffer fills, then writes
+ * it on as a single frame of either raw or deflated bytes. Every frame is prefixed by its type and length, to be read back by an
+ * {@link InflatingFrameInputStream}.
+ * <p>
+ * Until started, everything is passed straight through, so that the stream header is readable by peers which don't agree to compression.
+ */
+class DeflatingFrameOutputStream extends OutputStream {
+
+    static final int RAW_FRAME = 0;
+    static final int DEFLATED_FRAME = 1;
+
+    private final DataOutputStream out;
+    private final StreamCompression compression;
+    private final StreamCompressionMetrics metrics;
+    private final Deflater deflater;
+    private final byte[] buffer;
+    private final byte[] deflateChunk = new byte[8 * 1024];
+    private final ByteArrayOutputStream deflated = new ByteArrayOutputStream();
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private int count;
+    private boolean compressing;
+    private boolean ended;
+
+    DeflatingFrameOutputStream(final OutputStream out, final StreamCompression compression, final StreamCompressionMetrics metrics) {
+        this.out = new DataOutputStream(out);
+        this.compression = compression;
+        this.metrics = metrics;
+        this.deflater = new Deflater(compression.getLevel());
+        this.buffer = new byte[Math.max(1, compression.getBufferSizeInBytes())];
+    }
+
+    /**
+     * Switches from passing output straight through to writing it in frames.
+     */
+    void startCompressing() {
+        writeLock.lock();
+        try {
+            compressing = true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        writeLock.lock();
+        try {
+            if (!compressing) {
+                out.write(b);
+                return;
+            }
+            if (count == buffer.length) {
+                writeFrame();
+            }
+            buffer[count++] = (byte) b;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void write(final byte[] b, int off, int len) throws IOException {
+        writeLock.lock();
+        try {
+            if (!compressing) {
+                out.write(b, off, len);
+                return;
+            }
+            while (len > 0) {
+                if (count == buffer.length) {
+                    writeFrame();
+                }
+                int chunk = Math.min(len, buffer.length - count);
+                System.arraycopy(b, off, buffer, count, chunk);
+                count += chunk;
+                off += chunk;
+                len -= chunk;
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writeLock.lock();
+        try {
+            writeFrame();
+            out.flush();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void writeFrame() throws IOException {
+        if (count == 0) {
+            return;
+        }
+        if (count < compression.getMinimumPayloadSizeInBytes()) {
+            // Never given to the deflater, so the remote inflater never expects it either.
+            out.writeByte(RAW_FRAME);
+            out.writeInt(count);
+            out.write(buffer, 0, count);
+            metrics.recordSkippedFrame(count);
+            count = 0;
+            return;
+        }
+
+        if (ended) {
+            throw new IOException("Cannot write to a compressed stream which has been closed.");
+        }
+        long cpuTimeAtStart = StreamCompressionMetrics.cpuTimeNow();
+        deflated.reset();
+        deflater.setInput(buffer, 0, count);
+        int deflatedLength;
+        while ((deflatedLength = deflater.deflate(deflateChunk, 0, deflateChunk.length, Deflater.SYNC_FLUSH)) > 0) {
+            deflated.write(deflateChunk, 0, deflatedLength);
+            if (deflatedLength < deflateChunk.length) {
+                break;
+            }
+        }
+        metrics.recordCompressedFrame(count, deflated.size(), cpuTimeAtStart);
+        out.writeByte(DEFLATED_FRAME);
+        out.writeInt(deflated.size());
+        deflated.writeTo(out);
+        count = 0;
+    }
+
+    /**
+     * Releases the native resources of the deflater, discarding anything not yet flushed.
+     */
+    void end() {
+        writeLock.lock();
+        try {
+            ended = true;
+            deflater.end();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            end();
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.clumd.projects.java_common_utils.base_enhancements;
+
+import lombok.Getter;
+
+import java.io.ObjectInputFilter;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Enforces a set of {@link DeserialisationLimits} on a single {@link ObjectInputStreamWithClassLoader}, counting everything it rejects.
+ * <p>
+ * Java serialisation only tracks how many references and bytes a stream has read in total, so this remembers where each top level object
+ * started, and measures from there. The start of each top level object is found from it being checked at a depth of one, which also happens for
+ * whatever is read after a read which failed part way.
+ * <p>
+ * A stream which has rejected an object is left part way through it, so should not be read from any further.
+ */
+public final class DeserialisationFilter implements ObjectInputFilter {
+
+    /**
+     * Why an object was rejected.
+     */
+    public enum Rejection {
+        CLASS_NOT_ALLOWED,
+        TOO_DEEP,
+        ARRAY_TOO_LONG,
+        TOO_MANY_REFERENCES,
+        TOO_MANY_BYTES
+    }
+
+    @Getter
+    private final DeserialisationLimits limits;
+
+    /**
+     * The library's own protocol types, which a PortableSocket may need to read whatever its owner allows, so that setting an allowlist never
+     * breaks the stream header, heartbeats, file transfers, class shipping or multiplexing. Enums and records also need their superclass.
+     */
+    private static final Set<String> PROTOCOL_TYPES = Set.of(
+            Enum.class.getName(),
+            Record.class.getName(),
+            PortableSocketFeatures.class.getName(),
+            PortableSocketHeartbeat.class.getName(),
+            FileTransferHeader.class.getName(),
+            RemoteClassShipper.ShippedObject.class.getName(),
+            RemoteClassShipper.ClassRequest.class.getName(),
+            RemoteClassShipper.ClassResponse.class.getName(),
+            "com.clumd.projects.java_common_utils.networking.MultiplexedMessage",
+            "com.clumd.projects.java_common_utils.networking.MultiplexedMessage$Kind"
+    );
+
+    private final AtomicLongArray rejectedCounts = new AtomicLongArray(Rejection.values().length);
+
+    // Only touched by the thread reading the stream.
+    private long referencesAtStart;
+    private long bytesAtStart;
+
+    DeserialisationFilter(final DeserialisationLimits limits) {
+        this.limits = limits;
+    }
+
+    @Override
+    public Status checkInput(final FilterInfo filterInfo) {
+        // Only a top level object, and its class descriptors, are checked at a depth of one, and always before anything nested within it.
+        if (filterInfo.depth() == 1) {
+            referencesAtStart = filterInfo.references();
+            bytesAtStart = filterInfo.streamBytes();
+        }
+
+        if (filterInfo.depth() > limits.getMaxDepth()) {
+            return reject(Rejection.TOO_DEEP);
+        }
+        if (filterInfo.arrayLength() > limits.getMaxArrayLength()) {
+            return reject(Rejection.ARRAY_TOO_LONG);
+        }
+        if (filterInfo.references() - referencesAtStart > limits.getMaxReferencesPerObject()) {
+            return reject(Rejection.TOO_MANY_REFERENCES);
+        }
+        if (filterInfo.streamBytes() - bytesAtStart > limits.getMaxBytesPerObject()) {
+            return reject(Rejection.TOO_MANY_BYTES);
+        }
+
+        Class<?> serialClass = filterInfo.serialClass();
+        if (serialClass == null || limits.getAllowlist() == null) {
+            return Status.UNDECIDED;
+        }
+        if (PROTOCOL_TYPES.contains(serialClass.getName())) {
+            return Status.ALLOWED;
+        }
+        return limits.getAllowlist().allows(serialClass) ? Status.ALLOWED : reject(Rejection.CLASS_NOT_ALLOWED);
+    }
+
+    /**
+     * @return How many objects have been rejected, for any reason.
+     */
+    public long getRejectedCount() {
+        long total = 0;
+        for (int i = 0; i < rejectedCounts.length(); i++) {
+            total += rejectedCounts.get(i);
+        }
+        return total;
+    }
+
+    /**
+     * @param reason Which kind of rejection to count.
+     * @return How many objects have been rejected for that reason.
+     */
+    public long getRejectedCount(final Rejection reason) {
+        return rejectedCounts.get(reason.ordinal());
+    }
+
+    private Status reject(final Rejection reason) {
+        rejectedCounts.incrementAndGet(reason.ordinal());
+        return Status.REJECTED;
+    }
+}
@@ -0,0 +1,63 @@
+package com.clumd.projects.java_common_utils.base_enhancements;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * The limits an {@link ObjectInputStreamWithClassLoader} enforces on everything it deserialises, so that a misbehaving remote end cannot make it
+ * allocate huge arrays or walk endlessly deep object graphs until it runs out of memory.
+ * <p>
+ * A PortableSocket's input stream lives as long as the connection, so the reference and byte limits apply to each top level object read from it,
+ * rather than to everything ever read. They are checked each time the stream reaches a new class, array, or reference, as that is when Java
+ * serialisation consults its filter, so a single long run of primitive data or a String can overshoot them before being caught.
+ * <pre>
+ * {@code
+ * DeserialisationLimits limits = DeserialisationLimits.builder()
+ *         .maxArrayLength(10_000)
+ *         .allowlist(ClassAllowlist.of("java.lang.*", "java.util.*", "com.example.messages.**"))
+ *         .build();
+ * }
+ * </pre>
+ */
+@Data
+@Builder
+public class DeserialisationLimits {
+
+    /**
+     * How deeply objects may be nested within each top level object.
+     */
+    @Builder.Default
+    private final long maxDepth = 100;
+
+    /**
+     * The most elements any single array may have.
+     */
+    @Builder.Default
+    private final long maxArrayLength = 1_000_000;
+
+    /**
+     * The most objects, and references back to objects, that may be read as part of each top level object.
+     */
+    @Builder.Default
+    private final long maxReferencesPerObject = 1_000_000;
+
+    /**
+     * The most bytes that may be read as part of each top level object.
+     */
+    @Builder.Default
+    private final long maxBytesPerObject = 64L * 1024 * 1024;
+
+    /**
+     * Which classes may be deserialised, besides the PortableSocket's own protocol types, which are always allowed. Leaving this as null allows
+     * any class, leaving the decision to any process wide {@link java.io.ObjectInputFilter}.
+     */
+    @Builder.Default
+    private final ClassAllowlist allowlist = null;
+
+    /**
+     * @return The limits used when none are provided, which do not restrict which classes can be read.
+     */
+    public static DeserialisationLimits defaults() {
+        return DeserialisationLimits.builder().build();
+    }
+}
@@ -0,0 +1,19 @@
+package com.clumd.projects.java_common_utils.base_enhancements;
+
+import java.io.Serial;
+import java.io.Serializable;
+
+/**
+ * Sent by {@link PortableSocket#sendFile(java.nio.file.Path, long)} ahead of the raw bytes of a file, so that the receiver knows how many bytes
+ * follow, where they belong, and what the finished file should check out as.
+ *
+ * @param fileName The name of the file being sent, without any of its path.
+ * @param fileSize The size of the whole file.
+ * @param offset   Where in the file the bytes which follow start, which is non-zero when resuming an earlier transfer.
+ * @param crc32c   The CRC32C checksum of the whole file, not just the bytes which follow.
+ */
+record FileTransferHeader(String fileName, long fileSize, long offset, long crc32c) implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+}
@@ -0,0 +1,15 @@
+package com.clumd.projects.java_common_utils.base_enhancements;
+
+import java.nio.file.Path;
+
+/**
+ * The outcome of a successful {@link PortableSocket#receiveFile(Path)}.
+ *
+ * @param fileName         The name the sender gave the file.
+ * @param target           Where the file was written.
+ * @param fileSize         The size of the whole file, which has been checked against the sender's checksum.
+ * @param offset           Where in the file this transfer started, which is non-zero when it resumed an earlier one.
+ * @param bytesTransferred How many bytes this transfer actually carried.
+ */
+public record FileTransferResult(String fileName, Path target, long fileSize, long offset, long bytesTransferred) {
+}
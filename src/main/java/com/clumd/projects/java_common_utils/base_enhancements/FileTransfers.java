@@ -0,0 +1,165 @@
+package com.clumd.projects.java_common_utils.base_enhancements;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * The {@link PortableSocket#sendFile(Path, long)} and {@link PortableSocket#receiveFile(Path)} paths, which send a {@link FileTransferHeader}
+ * as any other value, followed by the raw bytes of the file, going around the PortableSocket's streams wherever nothing needs to be done to them
+ * on the way.
+ */
+final class FileTransfers {
+
+    private final PortableSocket portableSocket;
+
+    FileTransfers(final PortableSocket portableSocket) {
+        this.portableSocket = portableSocket;
+    }
+
+    long send(final Path file, final long offset) throws IOException {
+        try (FileChannel fileChannel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final long fileSize = fileChannel.size();
+            if (offset < 0 || offset > fileSize) {
+                throw new IllegalArgumentException("Cannot send {" + file + "} from offset {" + offset + "}, as it is {" + fileSize + "} bytes long.");
+            }
+            final long count = fileSize - offset;
+            final FileTransferHeader header = new FileTransferHeader(
+                    file.getFileName().toString(), fileSize, offset, checksumOf(fileChannel, fileSize)
+            );
+
+            final Socket socket = portableSocket.getSocket();
+            portableSocket.getSendLock().lock();
+            try {
+                portableSocket.send(header);
+                final boolean aroundStreams = !portableSocket.isCoalescing() && !portableSocket.uses(PortableSocketHandshake.COMPRESSION);
+                if (aroundStreams && socket instanceof UnixDomainSocket unixDomainSocket) {
+                    unixDomainSocket.transferFromFile(fileChannel, offset, count);
+                    recordBytesSentAroundStreams(count);
+                } else if (aroundStreams && socket.getChannel() != null && socket.getChannel().isBlocking()) {
+                    // A non-blocking channel would take nothing whenever the remote end falls behind, so is left to the streams instead.
+                    transferFully(fileChannel, offset, count, socket.getChannel());
+                    recordBytesSentAroundStreams(count);
+                } else {
+                    transferFully(fileChannel, offset, count, Channels.newChannel(portableSocket.getRawOutputStream()));
+                    portableSocket.flushRawOutputStream();
+                }
+                portableSocket.markSent();
+            } finally {
+                portableSocket.getSendLock().unlock();
+            }
+            return count;
+        }
+    }
+
+    FileTransferResult receive(final Path target) throws IOException, ClassNotFoundException {
+        portableSocket.getReceiveLock().lock();
+        try {
+            Object received = portableSocket.receive();
+            if (!(received instanceof FileTransferHeader header)) {
+                throw new StreamCorruptedException("Expected to receive a file, but got {"
+                        + (received == null ? null : received.getClass().getName()) + "} instead.");
+            }
+            final long count = header.fileSize() - header.offset();
+
+            try (FileChannel fileChannel = FileChannel.open(
+                    target, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE
+            )) {
+                if (fileChannel.size() < header.offset()) {
+                    // The bytes are on their way regardless, and have to be read to keep the stream in step.
+                    portableSocket.getRawInputStream().skipNBytes(count);
+                    throw new IOException("Cannot resume receiving {" + header.fileName() + "} from offset {" + header.offset() + "}, as {"
+                            + target + "} only has {" + fileChannel.size() + "} bytes.");
+                }
+
+                final Socket socket = portableSocket.getSocket();
+                final boolean decompressing = portableSocket.uses(PortableSocketHandshake.COMPRESSION);
+                if (!decompressing && socket instanceof UnixDomainSocket unixDomainSocket) {
+                    unixDomainSocket.transferToFile(fileChannel, header.offset(), count);
+                    recordBytesReceivedAroundStreams(count);
+                } else if (!decompressing && socket.getChannel() != null) {
+                    try (TimeoutAwareChannelReader channel = new TimeoutAwareChannelReader(socket)) {
+                        transferFully(channel, fileChannel, header.offset(), count);
+                    }
+                    recordBytesReceivedAroundStreams(count);
+                } else {
+                    transferFully(Channels.newChannel(portableSocket.getRawInputStream()), fileChannel, header.offset(), count);
+                }
+                fileChannel.truncate(header.fileSize());
+                portableSocket.markReceived();
+
+                long checksum = checksumOf(fileChannel, header.fileSize());
+                if (checksum != header.crc32c()) {
+                    throw new IOException("The received file {" + header.fileName() + "} does not match the sender's checksum. Expected {"
+                            + header.crc32c() + "} but got {" + checksum + "}.");
+                }
+            }
+            return new FileTransferResult(header.fileName(), target, header.fileSize(), header.offset(), count);
+        } finally {
+            portableSocket.getReceiveLock().unlock();
+        }
+    }
+
+    private void recordBytesSentAroundStreams(final long bytes) {
+        if (portableSocket.getTransportMetrics() != null) {
+            portableSocket.getTransportMetrics().recordBytesSent(bytes, 0);
+        }
+    }
+
+    private void recordBytesReceivedAroundStreams(final long bytes) {
+        if (portableSocket.getTransportMetrics() != null) {
+            portableSocket.getTransportMetrics().recordBytesReceived(bytes);
+        }
+    }
+
+    private static void transferFully(
+            final FileChannel from, final long position, final long count, final WritableByteChannel to
+    ) throws IOException {
+        long sent = 0;
+        while (sent < count) {
+            long transferred = from.transferTo(position + sent, count - sent, to);
+            if (transferred == 0 && position + sent >= from.size()) {
+                throw new EOFException("The file being sent shrank part way through, after {" + sent + "} of {" + count + "} bytes.");
+            }
+            sent += transferred;
+        }
+    }
+
+    private static void transferFully(
+            final ReadableByteChannel from, final FileChannel to, final long position, final long count
+    ) throws IOException {
+        long received = 0;
+        while (received < count) {
+            long transferred = to.transferFrom(from, position + received, count - received);
+            if (transferred == 0) {
+                throw new EOFException("The Socket closed part way through a file, after {" + received + "} of {" + count + "} bytes.");
+            }
+            received += transferred;
+        }
+    }
+
+    private static long checksumOf(final FileChannel file, final long size) throws IOException {
+        CRC32C checksum = new CRC32C();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+        long position = 0;
+        while (position < size) {
+            buffer.clear().limit((int) Math.min(buffer.capacity(), size - position));
+            int read = file.read(buffer, position);
+            if (read < 0) {
+                throw new EOFException("The file ended after {" + position + "} of the expected {" + size + "} bytes.");
+            }
+            checksum.update(buffer.flip());
+            position += read;
+        }
+        return checksum.getValue();
+    }
+}
@@ -0,0 +1,86 @@
+package com.clumd.projects.java_common_utils.base_enhancements;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.Duration;
+
+/**
+ * Describes what a flush of a {@link PortableSocket}'s output actually does, allowing small messages to be coalesced into fewer, larger writes to
+ * the Socket at the cost of some latency.
+ * <p>
+ * With the default {@link Mode#IMMEDIATE} policy, output is written straight through to the Socket as it always has been. With any other mode,
+ * output is collected in a buffer, and each flush only counts towards the policy; the buffer is written to the Socket once the policy is met, once
+ * the buffer fills, or when {@link PortableSocket#forceFlush()} is called.
+ * <p>
+ * Be aware that with a coalescing policy, a peer waiting for a reply to a message which is still sitting in the buffer will keep waiting until
+ * the policy is met, so request/response style exchanges should either stay {@link Mode#IMMEDIATE}, use a short {@link Mode#TIME_WINDOW}, or
+ * call {@link PortableSocket#forceFlush()} before waiting.
+ */
+@Data
+@Builder
+public class FlushPolicy {
+
+    /**
+     * The ways output can be flushed to the Socket.
+     */
+    public enum Mode {
+        /**
+         * Every flush goes straight to the Socket, and no extra buffering is added.
+         */
+        IMMEDIATE,
+        /**
+         * Output is only written to the Socket once every {@link #batchSize} flushes.
+         */
+        ON_BATCH_SIZE,
+        /**
+         * Output is written to the Socket no later than {@link #timeWindow} after the first flush since the last write to the Socket.
+         */
+        TIME_WINDOW
+    }
+
+    @Builder.Default
+    private final Mode mode = Mode.IMMEDIATE;
+
+    /**
+     * How many flushes to collect before writing to the Socket, when using {@link Mode#ON_BATCH_SIZE}.
+     */
+    @Builder.Default
+    private final int batchSize = 1;
+
+    /**
+     * The longest a flush may be held back for, when using {@link Mode#TIME_WINDOW}.
+     */
+    @Builder.Default
+    private final Duration timeWindow = Duration.ZERO;
+
+    /**
+     * The size of the buffer output is collected in, when not using {@link Mode#IMMEDIATE}. Output is always written to the Socket when this
+     * buffer fills, regardless of the policy.
+     */
+    @Builder.Default
+    private final int bufferSizeInBytes = 64 * 1024;
+
+    /**
+     * @return A policy which writes every flush straight to the Socket, which is the default behaviour.
+     */
+    public static FlushPolicy immediate() {
+        return FlushPolicy.builder().build();
+    }
+
+    /**
+     * @param flushes How many flushes to collect before writing to the Socket.
+     * @return A policy which writes to the Socket once every given number of flushes.
+     */
+    public static FlushPolicy onBatchSize(final int flushes) {
+        return FlushPolicy.builder().mode(Mode.ON_BATCH_SIZE).batchSize(flushes).build();
+    }
+
+    /**
+     * @param window The longest a flush may be held back for.
+     * @return A policy which writes to the Socket no later than the given window after a flush.
+     */
+    public static FlushPolicy onTimeWindow(final Duration window) {
+        return FlushPolicy.builder().mode(Mode.TIME_WINDOW).timeWindow(window).build();
+    }
+}
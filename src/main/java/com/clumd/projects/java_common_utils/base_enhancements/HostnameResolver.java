@@ -0,0 +1,242 @@
+package com.clumd.projects.java_common_utils.base_enhancements;
+
+import lombok.NonNull;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.NetworkInterface;
+import java.net.SocketException;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An in-process cache in front of {@link InetAddress#getAllByName(String)}, with its own TTLs for successful and failed resolutions, for code
+ * which resolves the same hostnames on a hot path.
+ * <p>
+ * Resolutions happen on virtual threads, so that callers which can't afford to wait on DNS can use {@link #resolveAsync(String)}, and concurrent
+ * resolutions of the same hostname share a single lookup. The addresses of this machine's network interfaces are computed once, and refreshed on
+ * a schedule, so that deciding whether an address is local never touches the network stack at all.
+ * <p>
+ * {@link PortableSocket#isLocalHostname(String)} uses the {@link #getDefault() default} instance.
+ */
+public class HostnameResolver implements AutoCloseable {
+
+    private final HostnameResolverConfiguration configuration;
+    private final ExecutorService resolverExecutor;
+    private final ScheduledExecutorService localAddressRefresher;
+    private final Map<String, CachedResolution> cache = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<InetAddress[]>> inFlight = new ConcurrentHashMap<>();
+
+    private volatile Set<InetAddress> localAddresses = Collections.emptySet();
+
+    private record CachedResolution(InetAddress[] addresses, UnknownHostException failure, long expiresAt) {
+    }
+
+    private static final class DefaultInstanceHolder {
+        private static final HostnameResolver INSTANCE = new HostnameResolver(HostnameResolverConfiguration.builder().build());
+    }
+
+    /**
+     * Creates a resolver with an empty cache, computes this machine's local addresses, and starts refreshing them in the background.
+     *
+     * @param configuration The TTLs and refresh interval this resolver should use.
+     */
+    public HostnameResolver(@NonNull final HostnameResolverConfiguration configuration) {
+        this.configuration = configuration;
+        this.resolverExecutor = Executors.newThreadPerTaskExecutor(new NamedThreadFactory(configuration.getName(), "resolver", true));
+        this.localAddressRefresher = Executors.newSingleThreadScheduledExecutor(
+                new NamedThreadFactory(configuration.getName(), "refresher", true)
+        );
+        refreshLocalAddresses();
+        long refreshIntervalInMs = configuration.getLocalAddressRefreshInterval().toMillis();
+        this.localAddressRefresher.scheduleWithFixedDelay(
+                this::refreshLocalAddresses, refreshIntervalInMs, refreshIntervalInMs, TimeUnit.MILLISECONDS
+        );
+    }
+
+    /**
+     * @return The resolver shared by everything which does not need its own configuration, which is created on first use and never closed.
+     */
+    public static HostnameResolver getDefault() {
+        return DefaultInstanceHolder.INSTANCE;
+    }
+
+    /**
+     * Resolves a hostname to all of its addresses, from the cache if possible, otherwise on a background thread.
+     *
+     * @param hostname The hostname or IP literal to resolve.
+     * @return A future which completes with the addresses, in the order the system resolver returned them, or completes exceptionally with an
+     * {@link UnknownHostException} if the hostname could not be resolved.
+     */
+    public CompletableFuture<InetAddress[]> resolveAsync(@NonNull final String hostname) {
+        CachedResolution cached = cache.get(hostname);
+        if (cached != null && System.nanoTime() - cached.expiresAt() < 0) {
+            return cached.failure() == null
+                    ? CompletableFuture.completedFuture(cached.addresses().clone())
+                    : CompletableFuture.failedFuture(cached.failure());
+        }
+
+        final CompletableFuture<InetAddress[]> created = new CompletableFuture<>();
+        final CompletableFuture<InetAddress[]> existing = inFlight.putIfAbsent(hostname, created);
+        if (existing != null) {
+            return existing.thenApply(InetAddress[]::clone);
+        }
+        try {
+            resolverExecutor.execute(() -> {
+                try {
+                    InetAddress[] addresses = InetAddress.getAllByName(hostname);
+                    cache(hostname, new CachedResolution(addresses, null, expiryAfter(configuration.getPositiveTtl())));
+                    inFlight.remove(hostname, created);
+                    created.complete(addresses);
+                } catch (UnknownHostException e) {
+                    cache(hostname, new CachedResolution(null, e, expiryAfter(configuration.getNegativeTtl())));
+                    inFlight.remove(hostname, created);
+                    created.completeExceptionally(e);
+                } catch (RuntimeException e) {
+                    inFlight.remove(hostname, created);
+                    created.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(hostname, created);
+            created.completeExceptionally(new IllegalStateException("Cannot resolve with a HostnameResolver which has been closed.", e));
+        }
+        return created.thenApply(InetAddress[]::clone);
+    }
+
+    /**
+     * Blocking equivalent of {@link #resolveAsync(String)}.
+     *
+     * @param hostname The hostname or IP literal to resolve.
+     * @return The addresses, in the order the system resolver returned them.
+     * @throws UnknownHostException Thrown if the hostname could not be resolved, now or within the negative TTL.
+     */
+    public InetAddress[] resolve(@NonNull final String hostname) throws UnknownHostException {
+        try {
+            return resolveAsync(hostname).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UnknownHostException unknownHostException) {
+                throw copyOf(unknownHostException);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * @param address The address to check.
+     * @return True if the address is a wildcard or loopback address, or belongs to one of this machine's network interfaces.
+     */
+    public boolean isLocalAddress(@NonNull final InetAddress address) {
+        return address.isAnyLocalAddress() || address.isLoopbackAddress() || localAddresses.contains(address);
+    }
+
+    /**
+     * @param hostname The hostname or IP literal to check.
+     * @return True if the hostname's preferred address is local to this machine, as per {@link #isLocalAddress(InetAddress)}.
+     * @throws UnknownHostException Thrown if the hostname could not be resolved.
+     */
+    public boolean isLocalHostname(@NonNull final String hostname) throws UnknownHostException {
+        return isLocalAddress(resolve(hostname)[0]);
+    }
+
+    /**
+     * Non-blocking equivalent of {@link #isLocalHostname(String)}.
+     *
+     * @param hostname The hostname or IP literal to check.
+     * @return A future which completes with whether the hostname is local, or exceptionally if it could not be resolved.
+     */
+    public CompletableFuture<Boolean> isLocalHostnameAsync(@NonNull final String hostname) {
+        return resolveAsync(hostname).thenApply(addresses -> isLocalAddress(addresses[0]));
+    }
+
+    /**
+     * @return A snapshot of the addresses belonging to this machine's network interfaces, as of the last refresh.
+     */
+    public Set<InetAddress> getLocalAddresses() {
+        return localAddresses;
+    }
+
+    /**
+     * Recomputes the addresses belonging to this machine's network interfaces immediately, rather than waiting for the next scheduled refresh.
+     */
+    public void refreshLocalAddresses() {
+        Set<InetAddress> refreshed = new HashSet<>();
+        try {
+            for (NetworkInterface networkInterface : Collections.list(NetworkInterface.getNetworkInterfaces())) {
+                refreshed.addAll(Collections.list(networkInterface.getInetAddresses()));
+            }
+        } catch (SocketException e) {
+            // Keep whatever we managed to find, as an incomplete set is still better than none.
+        }
+        try {
+            refreshed.add(InetAddress.getLocalHost());
+        } catch (IOException e) {
+            // The machine's own hostname does not resolve, so only its interface addresses can be considered local.
+        }
+        localAddresses = Collections.unmodifiableSet(refreshed);
+    }
+
+    /**
+     * Forgets any cached resolution for the given hostname, so that the next lookup of it goes to the system resolver again.
+     *
+     * @param hostname The hostname to forget.
+     */
+    public void invalidate(@NonNull final String hostname) {
+        cache.remove(hostname);
+    }
+
+    /**
+     * Forgets every cached resolution.
+     */
+    public void clearCache() {
+        cache.clear();
+    }
+
+    /**
+     * Stops the background refreshing of local addresses, and fails any further lookups which are not already cached.
+     */
+    @Override
+    public void close() {
+        localAddressRefresher.shutdownNow();
+        resolverExecutor.shutdownNow();
+    }
+
+    private void cache(final String hostname, final CachedResolution resolution) {
+        if (System.nanoTime() - resolution.expiresAt() >= 0) {
+            return;
+        }
+        if (cache.size() >= configuration.getMaxCachedHostnames()) {
+            long now = System.nanoTime();
+            cache.values().removeIf(cached -> now - cached.expiresAt() >= 0);
+            if (cache.size() >= configuration.getMaxCachedHostnames()) {
+                cache.clear();
+            }
+        }
+        cache.put(hostname, resolution);
+    }
+
+    private static long expiryAfter(final Duration ttl) {
+        return System.nanoTime() + Math.max(0, ttl.toNanos());
+    }
+
+    /**
+     * A fresh exception for every caller, so that a cached failure gets a stack trace pointing at where it was actually thrown from.
+     */
+    private static UnknownHostException copyOf(final UnknownHostException cached) {
+        UnknownHostException copy = new UnknownHostException(cached.getMessage());
+        copy.initCause(cached);
+        return copy;
+    }
+}
@@ -0,0 +1,45 @@
+package com.clumd.projects.java_common_utils.base_enhancements;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.Duration;
+
+/**
+ * This Class represents all the configuration required to run a {@link HostnameResolver}.
+ */
+@Data
+@Builder
+public class HostnameResolverConfiguration {
+
+    /**
+     * Used as the pool name for the resolving and refreshing threads, so that log messages can be more contextual.
+     */
+    @Builder.Default
+    private final String name = "hostname-resolver";
+
+    /**
+     * How long a successful resolution is reused for before the hostname is resolved again.
+     */
+    @Builder.Default
+    private final Duration positiveTtl = Duration.ofSeconds(30);
+
+    /**
+     * How long a failed resolution is reused for before the hostname is resolved again, so that repeatedly looking up a bad hostname does not
+     * repeatedly wait on DNS.
+     */
+    @Builder.Default
+    private final Duration negativeTtl = Duration.ofSeconds(10);
+
+    /**
+     * How often the addresses of this machine's network interfaces are recomputed, to notice interfaces coming and going.
+     */
+    @Builder.Default
+    private final Duration localAddressRefreshInterval = Duration.ofMinutes(1);
+
+    /**
+     * The most hostnames to hold resolutions for. Expired resolutions are purged first, then the whole cache if it is still too large.
+     */
+    @Builder.Default
+    private final int maxCachedHostnames = 10_000;
+}
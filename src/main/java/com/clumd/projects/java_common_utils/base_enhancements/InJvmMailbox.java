@@ -0,0 +1,193 @@
+package com.clumd.projects.java_common_utils.base_enhancements;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * One direction of an in-JVM connection, passing values from any number of producers to a single consumer through a lock-free queue. The
+ * consumer parks while there is nothing to take, and is unparked by the next value offered, so a value is handed over in about the time it takes
+ * to wake a thread.
+ * <p>
+ * Like a Socket's buffers, the mailbox only holds so many values before a producer has to wait for the consumer to catch up. Until then, offering
+ * only ever costs a compare and set on the count of values held, as well as the queue's own. Once full, producers park until the consumer takes
+ * something, or the mailbox is closed.
+ *
+ * @param <T> The type of values passed through.
+ */
+final class InJvmMailbox<T> {
+
+    // The queue cannot hold nulls itself.
+    private static final Object NULL = new Object();
+
+    private final int capacity;
+    private final ConcurrentLinkedQueue<Object> queue = new ConcurrentLinkedQueue<>();
+    // Counted separately from the queue, as its own size() walks every value in it.
+    private final AtomicInteger held = new AtomicInteger();
+    private final ConcurrentLinkedQueue<Thread> blockedProducers = new ConcurrentLinkedQueue<>();
+    private volatile Thread waiter;
+    private volatile boolean closed;
+
+    /**
+     * Creates a mailbox which never holds a producer back.
+     */
+    InJvmMailbox() {
+        this(Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param capacity How many values can be waiting to be taken before offering another waits for the consumer.
+     */
+    InJvmMailbox(final int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("An in-JVM mailbox must be able to hold at least one value, but was given a capacity of {"
+                    + capacity + "}.");
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * @param value The value to pass on, which may be null.
+     * @throws SocketException         Thrown if the mailbox has been closed, including while waiting for room.
+     * @throws InterruptedIOException Thrown if the producer was interrupted while waiting for room.
+     */
+    void offer(final T value) throws IOException {
+        if (closed) {
+            throw new SocketException("Broken pipe");
+        }
+        if (!tryReserve()) {
+            awaitRoom();
+        }
+        queue.offer(value == null ? NULL : value);
+        LockSupport.unpark(waiter);
+    }
+
+    private boolean tryReserve() {
+        int current;
+        do {
+            current = held.get();
+            if (current >= capacity) {
+                return false;
+            }
+        } while (!held.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    private void awaitRoom() throws IOException {
+        final Thread producer = Thread.currentThread();
+        blockedProducers.add(producer);
+        try {
+            // Checked again now that the consumer will unpark us, as room may have been made just before.
+            while (!tryReserve()) {
+                if (closed) {
+                    throw new SocketException("Broken pipe");
+                }
+                if (Thread.interrupted()) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for room on an in-JVM connection.");
+                }
+                LockSupport.park(this);
+            }
+        } finally {
+            blockedProducers.remove(producer);
+        }
+    }
+
+    private Object released(final Object taken) {
+        if (taken != null) {
+            held.decrementAndGet();
+            // Every blocked producer rather than just the first, as the first may already be leaving with room it made for itself.
+            for (Thread producer : blockedProducers) {
+                LockSupport.unpark(producer);
+            }
+        }
+        return taken;
+    }
+
+    /**
+     * @param timeoutInMs How long to wait for a value, where 0 waits forever, as per {@link java.net.Socket#setSoTimeout(int)}.
+     * @return The next value.
+     * @throws EOFException            Thrown if the mailbox has been closed, and every value offered before then has been taken.
+     * @throws SocketTimeoutException  Thrown if nothing arrived in time.
+     * @throws InterruptedIOException Thrown if the consumer was interrupted while waiting.
+     */
+    T take(final int timeoutInMs) throws IOException {
+        Object taken = released(queue.poll());
+        if (taken == null) {
+            taken = await(timeoutInMs);
+        }
+        return unwrap(taken);
+    }
+
+    /**
+     * @return The next value without waiting, or null if there is nothing to take yet.
+     */
+    T poll() {
+        return unwrap(released(queue.poll()));
+    }
+
+    /**
+     * @return The next value without taking it, or null if there is nothing to take yet.
+     */
+    T peek() {
+        return unwrap(queue.peek());
+    }
+
+    private Object await(final int timeoutInMs) throws IOException {
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutInMs);
+        waiter = Thread.currentThread();
+        try {
+            while (true) {
+                // Checked again now that any producer will unpark us, as a value may have arrived just before.
+                Object taken = released(queue.poll());
+                if (taken != null) {
+                    return taken;
+                }
+                if (closed) {
+                    throw new EOFException("The other end of the in-JVM connection has closed.");
+                }
+                if (Thread.interrupted()) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting on an in-JVM connection.");
+                }
+                long remainingNanos = deadline - System.nanoTime();
+                if (timeoutInMs == 0) {
+                    LockSupport.park(this);
+                } else if (remainingNanos > 0) {
+                    LockSupport.parkNanos(this, remainingNanos);
+                } else {
+                    throw new SocketTimeoutException("Read timed out");
+                }
+            }
+        } finally {
+            waiter = null;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private T unwrap(final Object value) {
+        return value == NULL ? null : (T) value;
+    }
+
+    /**
+     * Stops anything further being offered, and wakes the consumer, which can still take whatever was offered before, and any producers waiting
+     * for room.
+     */
+    void close() {
+        closed = true;
+        LockSupport.unpark(waiter);
+        for (Thread producer : blockedProducers) {
+            LockSupport.unpark(producer);
+        }
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+}
@@ -0,0 +1,446 @@
+package com.clumd.projects.java_common_utils.base_enhancements;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.SocketException;
+import java.net.SocketImpl;
+import java.net.SocketOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Presents one end of a connection between two PortableSockets in the same JVM as a {@link Socket}, so that a {@link PortableSocket} can be built
+ * on top of one exactly as it would be on top of a TCP connection, stream header handshake and all.
+ * <p>
+ * On top of the byte streams, each direction has a second {@link InJvmMailbox} which {@link PortableSocket#send(Object)} and
+ * {@link PortableSocket#receive()} pass objects through as they are, without serialising them at all. Options which only mean something for a
+ * network are accepted, but ignored.
+ */
+final class InJvmSocket extends Socket {
+
+    /**
+     * How many writes, and separately how many sent values, each direction holds for the remote end unless told otherwise.
+     */
+    static final int DEFAULT_MAILBOX_CAPACITY = 1024;
+
+    private static final Map<InJvmSocketAddress, Listener> LISTENERS = new ConcurrentHashMap<>();
+    private static final AtomicLong CONNECTION_IDS = new AtomicLong();
+
+    /**
+     * Stands in for a value sent by copy rather than by reference, which the receiving end reads back with its own class loader.
+     *
+     * @param serialised The bytes of the value, which are never changed once sent, so may be shared between any number of copies.
+     * @param offset     Where in those bytes the value starts.
+     */
+    record SerialisedCopy(byte[] serialised, int offset) {
+    }
+
+    private final SocketAddress localAddress;
+    private final SocketAddress remoteAddress;
+    private final InJvmMailbox<byte[]> incomingBytes;
+    private final InJvmMailbox<byte[]> outgoingBytes;
+    private final InJvmMailbox<Object> incomingObjects;
+    private final InJvmMailbox<Object> outgoingObjects;
+    private final MailboxInputStream inputStream = new MailboxInputStream();
+    private final MailboxOutputStream outputStream = new MailboxOutputStream();
+    private volatile int soTimeoutInMs;
+    private volatile boolean closed;
+    private volatile long receiveBlockedNanos;
+
+    private InJvmSocket(
+            final SocketAddress localAddress,
+            final SocketAddress remoteAddress,
+            final InJvmMailbox<byte[]> incomingBytes,
+            final InJvmMailbox<byte[]> outgoingBytes,
+            final InJvmMailbox<Object> incomingObjects,
+            final InJvmMailbox<Object> outgoingObjects
+    ) throws SocketException {
+        super((SocketImpl) null);
+        this.localAddress = localAddress;
+        this.remoteAddress = remoteAddress;
+        this.incomingBytes = incomingBytes;
+        this.outgoingBytes = outgoingBytes;
+        this.incomingObjects = incomingObjects;
+        this.outgoingObjects = outgoingObjects;
+    }
+
+    /**
+     * Connects to whatever is listening at the given address in this JVM, with the {@link #DEFAULT_MAILBOX_CAPACITY}.
+     *
+     * @param address The name to connect to.
+     * @return The connected socket.
+     * @throws SocketException Thrown if nothing in this JVM is listening at that address.
+     */
+    static InJvmSocket connect(final InJvmSocketAddress address) throws SocketException {
+        return connect(address, DEFAULT_MAILBOX_CAPACITY);
+    }
+
+    /**
+     * Connects to whatever is listening at the given address in this JVM.
+     *
+     * @param address         The name to connect to.
+     * @param mailboxCapacity How many writes, and separately how many sent values, each direction holds before the next waits for the remote end
+     *                        to take one, in place of a Socket's buffer sizes.
+     * @return The connected socket.
+     * @throws SocketException Thrown if nothing in this JVM is listening at that address.
+     */
+    static InJvmSocket connect(final InJvmSocketAddress address, final int mailboxCapacity) throws SocketException {
+        Listener listener = LISTENERS.get(address);
+        if (listener == null) {
+            throw new ConnectException("Nothing in this JVM is listening at {" + address + "}.");
+        }
+        InJvmSocketAddress clientAddress = InJvmSocketAddress.of(address.getName() + "#" + CONNECTION_IDS.incrementAndGet());
+        InJvmMailbox<byte[]> toServerBytes = new InJvmMailbox<>(mailboxCapacity);
+        InJvmMailbox<byte[]> toClientBytes = new InJvmMailbox<>(mailboxCapacity);
+        InJvmMailbox<Object> toServerObjects = new InJvmMailbox<>(mailboxCapacity);
+        InJvmMailbox<Object> toClientObjects = new InJvmMailbox<>(mailboxCapacity);
+
+        InJvmSocket serverEnd = new InJvmSocket(address, clientAddress, toServerBytes, toClientBytes, toServerObjects, toClientObjects);
+        try {
+            listener.pending.offer(serverEnd);
+        } catch (IOException e) {
+            throw new ConnectException("Nothing in this JVM is listening at {" + address + "} anymore.");
+        }
+        return new InJvmSocket(clientAddress, address, toClientBytes, toServerBytes, toClientObjects, toServerObjects);
+    }
+
+    /**
+     * @param address The name to check.
+     * @return Whether anything in this JVM is currently listening at that address.
+     */
+    static boolean isListening(final InJvmSocketAddress address) {
+        return LISTENERS.containsKey(address);
+    }
+
+    /**
+     * Passes a value to the remote end, to be returned from its {@link #receiveObject()}, first waiting for the remote end to take one if it is
+     * already holding as many as it can.
+     *
+     * @param value The value, which may be null.
+     * @throws SocketException         Thrown if either end has closed.
+     * @throws InterruptedIOException Thrown if interrupted while waiting for the remote end to take something.
+     */
+    void sendObject(final Object value) throws IOException {
+        throwIfClosed();
+        outgoingObjects.offer(value);
+    }
+
+    /**
+     * @return The next value passed by the remote end's {@link #sendObject(Object)}, waiting up to the read timeout for one to arrive.
+     * @throws IOException Thrown if this end has closed, the remote end closed before sending anything further, or the timeout passed first.
+     */
+    Object receiveObject() throws IOException {
+        throwIfClosed();
+        long start = System.nanoTime();
+        try {
+            return incomingObjects.take(soTimeoutInMs);
+        } finally {
+            // Only ever received from under the PortableSocket's receive lock.
+            receiveBlockedNanos += System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * @return How long {@link #receiveObject()} has spent waiting in total, in nanoseconds.
+     */
+    long getReceiveBlockedNanos() {
+        return receiveBlockedNanos;
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        throwIfClosed();
+        return inputStream;
+    }
+
+    @Override
+    public OutputStream getOutputStream() throws IOException {
+        throwIfClosed();
+        return outputStream;
+    }
+
+    @Override
+    public SocketAddress getRemoteSocketAddress() {
+        return remoteAddress;
+    }
+
+    @Override
+    public SocketAddress getLocalSocketAddress() {
+        return localAddress;
+    }
+
+    @Override
+    public boolean isConnected() {
+        return true;
+    }
+
+    @Override
+    public boolean isBound() {
+        return true;
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public boolean isInputShutdown() {
+        return closed || incomingBytes.isClosed();
+    }
+
+    @Override
+    public boolean isOutputShutdown() {
+        return closed || outgoingBytes.isClosed();
+    }
+
+    @Override
+    public void connect(final SocketAddress endpoint, final int timeout) throws IOException {
+        throw new SocketException("An InJvmSocket is always created already connected.");
+    }
+
+    @Override
+    public void bind(final SocketAddress bindpoint) throws IOException {
+        throw new SocketException("An InJvmSocket is always created already connected.");
+    }
+
+    @Override
+    public void shutdownInput() {
+        incomingBytes.close();
+        incomingObjects.close();
+    }
+
+    @Override
+    public void shutdownOutput() {
+        outgoingBytes.close();
+        outgoingObjects.close();
+    }
+
+    @Override
+    public void setSoTimeout(final int timeout) throws SocketException {
+        if (timeout < 0) {
+            throw new IllegalArgumentException("timeout < 0");
+        }
+        soTimeoutInMs = timeout;
+    }
+
+    @Override
+    public int getSoTimeout() {
+        return soTimeoutInMs;
+    }
+
+    @Override
+    public void setTcpNoDelay(final boolean on) {
+        // Nothing to delay, as there is no TCP.
+    }
+
+    @Override
+    public boolean getTcpNoDelay() {
+        return false;
+    }
+
+    @Override
+    public void setKeepAlive(final boolean on) {
+        // The other end is in the same JVM, so closing it is seen straight away.
+    }
+
+    @Override
+    public boolean getKeepAlive() {
+        return false;
+    }
+
+    @Override
+    public void setSoLinger(final boolean on, final int linger) {
+        // Nothing is ever left in flight on a network to linger for.
+    }
+
+    @Override
+    public int getSoLinger() {
+        return -1;
+    }
+
+    @Override
+    public void setSendBufferSize(final int size) {
+        // There is no buffer between the two ends to size.
+    }
+
+    @Override
+    public int getSendBufferSize() {
+        return 0;
+    }
+
+    @Override
+    public void setReceiveBufferSize(final int size) {
+        // There is no buffer between the two ends to size.
+    }
+
+    @Override
+    public int getReceiveBufferSize() {
+        return 0;
+    }
+
+    @Override
+    public <T> Socket setOption(final SocketOption<T> name, final T value) {
+        throw new UnsupportedOperationException("An InJvmSocket supports no socket options.");
+    }
+
+    @Override
+    public <T> T getOption(final SocketOption<T> name) {
+        throw new UnsupportedOperationException("An InJvmSocket supports no socket options.");
+    }
+
+    @Override
+    public Set<SocketOption<?>> supportedOptions() {
+        return Set.of();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        // The remote end can still read anything already sent to it, before seeing the end of the stream.
+        shutdownInput();
+        shutdownOutput();
+    }
+
+    @Override
+    public String toString() {
+        return "InJvmSocket[local=" + localAddress + ", remote=" + remoteAddress + "]";
+    }
+
+    private void throwIfClosed() throws SocketException {
+        if (closed) {
+            throw new SocketException("Socket is closed");
+        }
+    }
+
+    /**
+     * Listens for connections from within the same JVM at a single address, until closed.
+     */
+    static final class Listener implements AutoCloseable {
+
+        private final InJvmSocketAddress address;
+        private final InJvmMailbox<InJvmSocket> pending = new InJvmMailbox<>();
+
+        private Listener(final InJvmSocketAddress address) {
+            this.address = address;
+        }
+
+        /**
+         * @param address The name to listen on.
+         * @return The listener, which must be closed to free the name up again.
+         * @throws SocketException Thrown if something else in this JVM is already listening at that address.
+         */
+        static Listener bind(final InJvmSocketAddress address) throws SocketException {
+            Listener listener = new Listener(address);
+            if (LISTENERS.putIfAbsent(address, listener) != null) {
+                throw new SocketException("Something in this JVM is already listening at {" + address + "}.");
+            }
+            return listener;
+        }
+
+        /**
+         * @return The next connection, waiting for as long as it takes one to arrive.
+         * @throws IOException Thrown if the listener is closed.
+         */
+        InJvmSocket accept() throws IOException {
+            try {
+                return pending.take(0);
+            } catch (EOFException e) {
+                throw new SocketException("Socket is closed");
+            }
+        }
+
+        @Override
+        public void close() {
+            LISTENERS.remove(address, this);
+            pending.close();
+            // Anything which connected but was never accepted would otherwise wait on its handshake forever.
+            InJvmSocket unaccepted;
+            while ((unaccepted = pending.poll()) != null) {
+                unaccepted.close();
+            }
+        }
+    }
+
+    private final class MailboxInputStream extends InputStream {
+        private byte[] chunk = new byte[0];
+        private int position;
+
+        @Override
+        public int read() throws IOException {
+            if (!awaitChunk()) {
+                return -1;
+            }
+            return chunk[position++] & 0xFF;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!awaitChunk()) {
+                return -1;
+            }
+            int read = Math.min(len, chunk.length - position);
+            System.arraycopy(chunk, position, b, off, read);
+            position += read;
+            return read;
+        }
+
+        private boolean awaitChunk() throws IOException {
+            throwIfClosed();
+            while (position == chunk.length) {
+                try {
+                    chunk = incomingBytes.take(soTimeoutInMs);
+                } catch (EOFException e) {
+                    return false;
+                }
+                position = 0;
+            }
+            return true;
+        }
+
+        @Override
+        public int available() {
+            byte[] next = incomingBytes.peek();
+            return chunk.length - position + (next == null ? 0 : next.length);
+        }
+
+        @Override
+        public void close() {
+            InJvmSocket.this.close();
+        }
+    }
+
+    private final class MailboxOutputStream extends OutputStream {
+
+        @Override
+        public void write(final int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            throwIfClosed();
+            if (len > 0) {
+                // Copied, as the caller is free to reuse its buffer as soon as this returns.
+                outgoingBytes.offer(Arrays.copyOfRange(b, off, off + len));
+            }
+        }
+
+        @Override
+        public void close() {
+            InJvmSocket.this.close();
+        }
+    }
+}
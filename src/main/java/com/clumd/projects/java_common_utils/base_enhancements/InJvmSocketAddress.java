@@ -0,0 +1,63 @@
+package com.clumd.projects.java_common_utils.base_enhancements;
+
+import lombok.NonNull;
+
+import java.io.Serial;
+import java.net.SocketAddress;
+
+/**
+ * The name a {@link PortableServerSocket} listens on for connections from within the same JVM, which a {@link PortableSocket} can connect to
+ * without going through any network stack at all.
+ */
+public final class InJvmSocketAddress extends SocketAddress {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    private final String name;
+
+    private InJvmSocketAddress(final String name) {
+        this.name = name;
+    }
+
+    /**
+     * @param name Any name, unique within the JVM, to listen on or connect to.
+     * @return The address of that name.
+     */
+    public static InJvmSocketAddress of(@NonNull final String name) {
+        return new InJvmSocketAddress(name);
+    }
+
+    /**
+     * The conventional address for a peer listening on the given TCP port to also listen on for connections from the same JVM, for use as a
+     * {@link PortableServerSocketConfiguration#getInJvmAddress()}, which {@link PortableSocketOptions#isInJvmForLocalPorts()} looks for.
+     *
+     * @param port The TCP port the peer listens on.
+     * @return An address unique to the port.
+     */
+    public static InJvmSocketAddress forPort(final int port) {
+        return new InJvmSocketAddress("port-" + port);
+    }
+
+    /**
+     * @return The name of this address.
+     */
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        return other instanceof InJvmSocketAddress address && name.equals(address.name);
+    }
+
+    @Override
+    public int hashCode() {
+        return name.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "in-jvm:" + name;
+    }
+}
@@ -0,0 +1,82 @@
+package com.clumd.projects.java_common_utils.base_enhancements;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+/**
+ * The {@link PortableSocket#send(Object)} and {@link PortableSocket#receive()} paths for a peer in the same JVM, which hand each value straight to
+ * the remote end through the {@link InJvmSocket}, by reference, or as a serialised copy when {@link PortableSocketOptions#isCopyInJvmObjects()}.
+ * Nothing passed this way goes through the streams, so there is never anything to compress, coalesce, or ship classes for.
+ */
+final class InJvmTransport {
+
+    private final PortableSocket portableSocket;
+    private final InJvmSocket socket;
+
+    InJvmTransport(final PortableSocket portableSocket, final InJvmSocket socket) {
+        this.portableSocket = portableSocket;
+        this.socket = socket;
+    }
+
+    void send(final Object value) throws IOException {
+        socket.sendObject(portableSocket.getOptions().isCopyInJvmObjects() ? serialisedCopyOf(value) : value);
+    }
+
+    /**
+     * @param value The value to pass on by reference.
+     * @param frame The length-prefixed frame the value was already encoded into, which any copy shares rather than encoding the value again.
+     */
+    void sendEncoded(final Object value, final byte[] frame) throws IOException {
+        socket.sendObject(portableSocket.getOptions().isCopyInJvmObjects() ? new InJvmSocket.SerialisedCopy(frame, Integer.BYTES) : value);
+    }
+
+    Object receive() throws IOException, ClassNotFoundException {
+        Object value = socket.receiveObject();
+        return value instanceof InJvmSocket.SerialisedCopy copy ? readSerialisedCopy(copy) : value;
+    }
+
+    long getReceiveBlockedNanos() {
+        return socket.getReceiveBlockedNanos();
+    }
+
+    private InJvmSocket.SerialisedCopy serialisedCopyOf(final Object value) throws IOException {
+        ByteArrayOutputStream serialised = new ByteArrayOutputStream();
+        PortableSocketCodec codec = portableSocket.codec();
+        if (codec == null) {
+            try (ObjectOutputStream copyStream = new ObjectOutputStream(serialised)) {
+                copyStream.writeObject(value);
+            }
+        } else {
+            DataOutputStream copyStream = new DataOutputStream(serialised);
+            codec.encode(value, copyStream);
+            copyStream.flush();
+        }
+        return new InJvmSocket.SerialisedCopy(serialised.toByteArray(), 0);
+    }
+
+    private Object readSerialisedCopy(final InJvmSocket.SerialisedCopy copy) throws IOException, ClassNotFoundException {
+        PortableSocketOptions options = portableSocket.getOptions();
+        ByteArrayInputStream serialised = new ByteArrayInputStream(
+                copy.serialised(), copy.offset(), copy.serialised().length - copy.offset()
+        );
+        PortableSocketCodec codec = portableSocket.codec();
+        if (codec != null) {
+            return codec.decode(
+                    new DataInputStream(serialised),
+                    portableSocket.getComponentLoader(),
+                    options.getResolvedClassCache(),
+                    options.getDeserialisationLimits()
+            );
+        }
+        try (ObjectInputStream copyStream = new ObjectInputStreamWithClassLoader(
+                serialised, portableSocket.getComponentLoader(), options.getResolvedClassCache(), options.getDeserialisationLimits()
+        )) {
+            return copyStream.readObject();
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.clumd.projects.java_common_utils.base_enhancements;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StreamCorruptedException;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * The counterpart to a {@link DeflatingFrameOutputStream}, which, once {@link #startDecompressing() started}, reads back each frame and serves its
+ * raw or inflated bytes.
+ * <p>
+ * Until started, everything is passed straight through, so that the remote stream header can be read and checked first.
+ */
+class InflatingFrameInputStream extends InputStream {
+
+    private final DataInputStream in;
+    private final StreamCompressionMetrics metrics;
+    private final int maxFrameLengthInBytes;
+    private final Inflater inflater = new Inflater();
+    private final ReentrantLock readLock = new ReentrantLock();
+    // Guarded by the read lock. Reused by every single byte read, which an ObjectInputStream makes for every object.
+    private final byte[] singleByte = new byte[1];
+    private byte[] compressedFrame = new byte[0];
+    private byte[] frame = new byte[8 * 1024];
+    private int frameLength;
+    private int framePosition;
+    private int rawBytesRemaining;
+    private volatile boolean decompressing;
+    private boolean ended;
+
+    InflatingFrameInputStream(final InputStream in, final StreamCompressionMetrics metrics, final int maxFrameLengthInBytes) {
+        this.in = new DataInputStream(in);
+        this.metrics = metrics;
+        this.maxFrameLengthInBytes = maxFrameLengthInBytes;
+    }
+
+    /**
+     * Switches from passing input straight through to reading it as frames.
+     */
+    void startDecompressing() {
+        decompressing = true;
+    }
+
+    @Override
+    public int read() throws IOException {
+        readLock.lock();
+        try {
+            return readLocked(singleByte, 0, 1) == -1 ? -1 : singleByte[0] & 0xFF;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+        readLock.lock();
+        try {
+            return readLocked(b, off, len);
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    private int readLocked(final byte[] b, final int off, final int len) throws IOException {
+        if (!decompressing) {
+            return in.read(b, off, len);
+        }
+        if (len == 0) {
+            return 0;
+        }
+        while (framePosition == frameLength && rawBytesRemaining == 0) {
+            if (!readNextFrame()) {
+                return -1;
+            }
+        }
+        if (rawBytesRemaining > 0) {
+            int read = in.read(b, off, Math.min(len, rawBytesRemaining));
+            if (read == -1) {
+                throw new EOFException("The Socket closed part way through a frame.");
+            }
+            rawBytesRemaining -= read;
+            return read;
+        }
+        int read = Math.min(len, frameLength - framePosition);
+        System.arraycopy(frame, framePosition, b, off, read);
+        framePosition += read;
+        return read;
+    }
+
+    @Override
+    public int available() throws IOException {
+        readLock.lock();
+        try {
+            if (!decompressing) {
+                return in.available();
+            }
+            if (rawBytesRemaining > 0) {
+                return Math.min(rawBytesRemaining, in.available());
+            }
+            return frameLength - framePosition;
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    private boolean readNextFrame() throws IOException {
+        int type = in.read();
+        if (type == -1) {
+            return false;
+        }
+        int length = in.readInt();
+        if (length < 0 || length > maxFrameLengthInBytes) {
+            throw new StreamCorruptedException("Received a compression frame of invalid length {" + length + "}, the maximum accepted is {"
+                    + maxFrameLengthInBytes + "}.");
+        }
+
+        if (type == DeflatingFrameOutputStream.RAW_FRAME) {
+            // Served straight from the Socket, rather than copying it through the frame buffer.
+            rawBytesRemaining = length;
+            metrics.recordReadFrame(length, length, 0);
+            return true;
+        }
+        if (type != DeflatingFrameOutputStream.DEFLATED_FRAME) {
+            throw new StreamCorruptedException("Received a compression frame of unknown type {" + type + "}.");
+        }
+
+        if (compressedFrame.length < length) {
+            compressedFrame = new byte[length];
+        }
+        in.readFully(compressedFrame, 0, length);
+        if (ended) {
+            throw new IOException("Cannot read from a compressed stream which has been closed.");
+        }
+        long cpuTimeAtStart = StreamCompressionMetrics.cpuTimeNow();
+        inflater.setInput(compressedFrame, 0, length);
+        frameLength = 0;
+        framePosition = 0;
+        try {
+            while (true) {
+                if (frameLength == frame.length) {
+                    if (frame.length >= maxFrameLengthInBytes) {
+                        throw new StreamCorruptedException("Received a compression frame which inflates beyond the maximum accepted length {"
+                                + maxFrameLengthInBytes + "}.");
+                    }
+                    byte[] larger = new byte[(int) Math.min((long) frame.length * 2, maxFrameLengthInBytes)];
+                    System.arraycopy(frame, 0, larger, 0, frameLength);
+                    frame = larger;
+                }
+                int inflated = inflater.inflate(frame, frameLength, frame.length - frameLength);
+                frameLength += inflated;
+                if (inflater.finished() || inflater.needsDictionary()) {
+                    throw new StreamCorruptedException("Received a compression frame which ended the compressed stream.");
+                }
+                if (inflated == 0) {
+                    // There was room to inflate into, so the inflater has nothing left to give from this frame.
+                    if (!inflater.needsInput()) {
+                        throw new StreamCorruptedException("Received a compression frame which could not be fully inflated.");
+                    }
+                    break;
+                }
+            }
+        } catch (DataFormatException e) {
+            throw new StreamCorruptedException("Received a compression frame which could not be inflated. " + e.getMessage());
+        }
+        metrics.recordReadFrame(length, frameLength, cpuTimeAtStart);
+        return true;
+    }
+
+    /**
+     * Releases the native resources of the inflater.
+     */
+    void end() {
+        readLock.lock();
+        try {
+            ended = true;
+            inflater.end();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            end();
+        } finally {
+            in.close();
+        }
+    }
+}
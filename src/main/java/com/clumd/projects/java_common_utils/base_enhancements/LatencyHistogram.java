@@ -0,0 +1,93 @@
+package com.clumd.projects.java_common_utils.base_enhancements;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed size histogram of durations in nanoseconds, which can be recorded into concurrently without allocating.
+ * <p>
+ * Each duration is counted in a bucket by its power of two, so percentiles are only accurate to within a factor of two, which is plenty to tell a
+ * healthy connection from one which is struggling, for 64 counters in total however many durations are recorded.
+ * <p>
+ * Reading while durations are still being recorded is not a consistent snapshot, as each figure is read separately, but is never out by more than
+ * the durations recorded during the read.
+ */
+public final class LatencyHistogram {
+
+    private static final int BUCKETS = Long.SIZE;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    // Adders rather than atomics, as every recording thread would otherwise contend on the same two counters, which are only summed when read.
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    void record(final long nanos) {
+        long duration = Math.max(0, nanos);
+        buckets.incrementAndGet(bucketOf(duration));
+        count.increment();
+        totalNanos.add(duration);
+        // Only written when a new longest duration is seen, which soon becomes rare, so recording is usually just a read here.
+        if (duration > maxNanos.get()) {
+            maxNanos.accumulateAndGet(duration, Math::max);
+        }
+    }
+
+    private static int bucketOf(final long nanos) {
+        return Long.SIZE - Long.numberOfLeadingZeros(nanos);
+    }
+
+    private static long upperBoundOf(final int bucket) {
+        return bucket == BUCKETS - 1 ? Long.MAX_VALUE : (1L << bucket) - 1;
+    }
+
+    /**
+     * @return How many durations have been recorded.
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * @return The sum of every duration recorded, in nanoseconds.
+     */
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    /**
+     * @return The longest duration recorded, in nanoseconds, or 0 if nothing has been recorded.
+     */
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    /**
+     * @return The mean duration recorded, in nanoseconds, or 0 if nothing has been recorded.
+     */
+    public double getMeanNanos() {
+        long recorded = getCount();
+        return recorded == 0 ? 0 : (double) getTotalNanos() / recorded;
+    }
+
+    /**
+     * @param percentile The percentile to find, greater than 0 and at most 100.
+     * @return A duration in nanoseconds which at least that percentage of the recorded durations were no longer than, being the upper bound of the
+     * bucket it fell in, capped at the longest duration recorded, or 0 if nothing has been recorded.
+     */
+    public long getPercentileNanos(final double percentile) {
+        if (!(percentile > 0 && percentile <= 100)) {
+            throw new IllegalArgumentException("The percentile must be greater than 0 and at most 100, but was {" + percentile + "}.");
+        }
+        long target = (long) Math.ceil(getCount() * percentile / 100);
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS && target > 0; bucket++) {
+            seen += buckets.get(bucket);
+            if (seen >= target) {
+                return Math.min(upperBoundOf(bucket), getMaxNanos());
+            }
+        }
+        return getMaxNanos();
+    }
+}
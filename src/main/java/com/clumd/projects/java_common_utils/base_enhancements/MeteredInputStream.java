@@ -0,0 +1,59 @@
+package com.clumd.projects.java_common_utils.base_enhancements;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A pass-through {@link InputStream} directly over a Socket, which records the bytes read through it into {@link TransportMetrics}, and keeps a
+ * running total of how long reads were blocked for.
+ */
+class MeteredInputStream extends FilterInputStream {
+
+    private final TransportMetrics metrics;
+    private volatile long blockedNanos;
+
+    MeteredInputStream(final InputStream in, final TransportMetrics metrics) {
+        super(in);
+        this.metrics = metrics;
+    }
+
+    @Override
+    public int read() throws IOException {
+        long start = System.nanoTime();
+        int read = in.read();
+        recordRead(read < 0 ? 0 : 1, System.nanoTime() - start);
+        return read;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+        long start = System.nanoTime();
+        int read = in.read(b, off, len);
+        recordRead(Math.max(0, read), System.nanoTime() - start);
+        return read;
+    }
+
+    @Override
+    public long skip(final long n) throws IOException {
+        long start = System.nanoTime();
+        long skipped = in.skip(n);
+        recordRead(skipped, System.nanoTime() - start);
+        return skipped;
+    }
+
+    private void recordRead(final long bytes, final long nanos) {
+        // Only ever read under the PortableSocket's receive lock, or while initialising its input stream.
+        blockedNanos += nanos;
+        if (bytes > 0) {
+            metrics.recordBytesReceived(bytes);
+        }
+    }
+
+    /**
+     * @return How long reads have been blocked for in total, in nanoseconds.
+     */
+    long getBlockedNanos() {
+        return blockedNanos;
+    }
+}
@@ -0,0 +1,47 @@
+package com.clumd.projects.java_common_utils.base_enhancements;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A pass-through {@link OutputStream} directly over a Socket, which records the bytes written through it, and how long each write was blocked for,
+ * into {@link TransportMetrics}.
+ */
+class MeteredOutputStream extends FilterOutputStream {
+
+    private final TransportMetrics metrics;
+    private final AtomicLong blockedNanos = new AtomicLong();
+
+    MeteredOutputStream(final OutputStream out, final TransportMetrics metrics) {
+        super(out);
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        long start = System.nanoTime();
+        out.write(b);
+        recordWrite(1, System.nanoTime() - start);
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) throws IOException {
+        long start = System.nanoTime();
+        out.write(b, off, len);
+        recordWrite(len, System.nanoTime() - start);
+    }
+
+    private void recordWrite(final int bytes, final long nanos) {
+        blockedNanos.addAndGet(nanos);
+        metrics.recordBytesSent(bytes, nanos);
+    }
+
+    /**
+     * @return How long writes have been blocked for in total, in nanoseconds.
+     */
+    long getBlockedNanos() {
+        return blockedNanos.get();
+    }
+}
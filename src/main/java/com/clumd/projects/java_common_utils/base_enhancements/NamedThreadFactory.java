@@ -8,12 +8,15 @@ import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * This is used in order to re-name the pool and workers who are spawned into it.
+ * The factory can either produce regular platform threads, or virtual threads, for pools which expect to run a large number of mostly-blocked
+ * tasks (such as one handler per network connection).
  */
 public class NamedThreadFactory implements ThreadFactory {
 
     private static final NamedThreadFactory instanceForFactory = new NamedThreadFactory("pool");
     private final String namePrefix;
     private final AtomicInteger threadNumber = new AtomicInteger(1);
+    private final boolean createVirtualThreads;
     private String nextThreadOverriddenName = null;
 
     /**
@@ -33,7 +36,20 @@ public class NamedThreadFactory implements ThreadFactory {
      * @param prefix   An additional prefix onto the thread to be used for further context clarification.
      */
     public NamedThreadFactory(String poolName, String prefix) {
+        this(poolName, prefix, false);
+    }
+
+    /**
+     * Used to give the pool a name so that log messages make more sense - using a prefix for further context, and optionally creating virtual
+     * threads rather than platform threads.
+     *
+     * @param poolName             What to name the pool.
+     * @param prefix               An additional prefix onto the thread to be used for further context clarification.
+     * @param createVirtualThreads True if every thread created by this factory should be a virtual thread, False for regular platform threads.
+     */
+    public NamedThreadFactory(String poolName, String prefix, boolean createVirtualThreads) {
         this.namePrefix = poolName + ":" + prefix + "-";
+        this.createVirtualThreads = createVirtualThreads;
     }
 
     /**
@@ -63,15 +79,19 @@ public class NamedThreadFactory implements ThreadFactory {
     @Override
     public Thread newThread(@NonNull final Runnable runnable) {
         // Give our own pattern for the name - but otherwise behave exactly like the super()
-        Thread thread = new Thread(
-                runnable,
-                Objects.requireNonNullElseGet(
-                        nextThreadOverriddenName,
-                        () -> this.namePrefix + this.threadNumber.getAndIncrement()
-                )
+        String threadName = Objects.requireNonNullElseGet(
+                nextThreadOverriddenName,
+                () -> this.namePrefix + this.threadNumber.getAndIncrement()
         );
         nextThreadOverriddenName = null;
 
+        // Virtual threads are always daemon threads of normal priority, so there is none of super's logic to replicate.
+        if (createVirtualThreads) {
+            return Thread.ofVirtual().name(threadName).unstarted(runnable);
+        }
+
+        Thread thread = new Thread(runnable, threadName);
+
         // replication of super's logic.
         if (thread.isDaemon()) {
             thread.setDaemon(false);
@@ -101,6 +121,15 @@ public class NamedThreadFactory implements ThreadFactory {
         }
     }
 
+    /**
+     * Used to determine whether this factory produces virtual threads rather than platform threads.
+     *
+     * @return True if threads created by this factory are virtual, False otherwise.
+     */
+    public boolean isCreatingVirtualThreads() {
+        return createVirtualThreads;
+    }
+
     /**
      * Used in the event that you want to cancel a thread name overriding.
      */
@@ -4,6 +4,7 @@ import lombok.NonNull;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.ObjectInputFilter;
 import java.io.ObjectInputStream;
 import java.io.ObjectStreamClass;
 import java.net.URLClassLoader;
@@ -16,28 +17,99 @@ import java.net.URLClassLoader;
 public class ObjectInputStreamWithClassLoader extends ObjectInputStream {
 
     private final URLClassLoader customLoader;
+    private final ResolvedClassCache.LoaderCache resolvedClasses;
+    // Not final, nor initialised here, as subclasses reading a custom stream header install it from within the super constructor.
+    private DeserialisationFilter deserialisationFilter;
 
     /**
-     * Custom constructor to include the classloader for the stream.
+     * Custom constructor to include the classloader for the stream, resolving classes through the {@link ResolvedClassCache#shared() shared}
+     * cache.
      *
      * @param in                          The inputStream as normal
      * @param customLoader                The Custom Class loader to try first for all objects received over this stream.
      * @throws IOException Thrown as per super's specification
      */
     public ObjectInputStreamWithClassLoader(@NonNull InputStream in, @NonNull URLClassLoader customLoader) throws IOException {
+        this(in, customLoader, ResolvedClassCache.shared());
+    }
+
+    /**
+     * Custom constructor to include the classloader for the stream, and the cache of what class names it has already resolved.
+     *
+     * @param in                          The inputStream as normal
+     * @param customLoader                The Custom Class loader to try first for all objects received over this stream.
+     * @param resolvedClassCache          Where to remember the classes resolved by the custom class loader, which may be shared with other
+     *                                    streams.
+     * @throws IOException Thrown as per super's specification
+     */
+    public ObjectInputStreamWithClassLoader(
+            @NonNull InputStream in,
+            @NonNull URLClassLoader customLoader,
+            @NonNull ResolvedClassCache resolvedClassCache
+    ) throws IOException {
+        this(in, customLoader, resolvedClassCache, null);
+    }
+
+    /**
+     * Custom constructor to include the classloader for the stream, the cache of what class names it has already resolved, and the limits on what
+     * it will deserialise.
+     *
+     * @param in                          The inputStream as normal
+     * @param customLoader                The Custom Class loader to try first for all objects received over this stream.
+     * @param resolvedClassCache          Where to remember the classes resolved by the custom class loader, which may be shared with other
+     *                                    streams.
+     * @param deserialisationLimits       The limits to enforce on every object read from this stream, or null to enforce none beyond any process
+     *                                    wide filter.
+     * @throws IOException Thrown as per super's specification
+     */
+    public ObjectInputStreamWithClassLoader(
+            @NonNull InputStream in,
+            @NonNull URLClassLoader customLoader,
+            @NonNull ResolvedClassCache resolvedClassCache,
+            DeserialisationLimits deserialisationLimits
+    ) throws IOException {
         super(in);
         this.customLoader = customLoader;
+        this.resolvedClasses = resolvedClassCache.cacheFor(customLoader);
+        if (deserialisationLimits != null) {
+            installDeserialisationLimits(deserialisationLimits);
+        }
+    }
+
+    /**
+     * Starts enforcing limits on everything read from this stream, alongside any process wide filter. This is for subclasses which read a custom
+     * stream header, to call from {@link #readStreamHeader()} before reading any objects, after which it would be too late.
+     *
+     * @param deserialisationLimits The limits to enforce.
+     * @throws IllegalStateException Thrown if any objects have already been read, or limits are already being enforced.
+     */
+    protected final void installDeserialisationLimits(@NonNull DeserialisationLimits deserialisationLimits) {
+        DeserialisationFilter filter = new DeserialisationFilter(deserialisationLimits);
+        ObjectInputFilter processWideFilter = getObjectInputFilter();
+        setObjectInputFilter(processWideFilter == null ? filter : ObjectInputFilter.merge(filter, processWideFilter));
+        deserialisationFilter = filter;
+    }
+
+    /**
+     * @return The filter enforcing this stream's limits, and counting what it has rejected, or null if there are no limits.
+     */
+    public DeserialisationFilter getDeserialisationFilter() {
+        return deserialisationFilter;
     }
 
     /**
-     * Overridden to point to the custom classloader first.
+     * Overridden to point to the custom classloader first, only asking it the first time each class is seen.
      *
      * @param deserializedClassDescription As normal
      * @return As normal
      * @throws ClassNotFoundException as normal.
      */
     @Override
-    protected Class<?> resolveClass(ObjectStreamClass deserializedClassDescription) throws ClassNotFoundException {
-        return Class.forName(deserializedClassDescription.getName(), true, customLoader);
+    protected Class<?> resolveClass(ObjectStreamClass deserializedClassDescription) throws ClassNotFoundException, IOException {
+        // Any objects read as part of a custom stream header are read by the super constructor, before our loader has been assigned.
+        if (customLoader == null) {
+            return super.resolveClass(deserializedClassDescription);
+        }
+        return resolvedClasses.resolve(deserializedClassDescription.getName(), customLoader);
     }
 }
@@ -0,0 +1,84 @@
+package com.clumd.projects.java_common_utils.base_enhancements;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * Describes when a {@link PortableSocket}'s {@link java.io.ObjectOutputStream} should be automatically {@link java.io.ObjectOutputStream#reset()}.
+ * <p>
+ * Java serialisation keeps a handle to every object written down a stream (and the receiving end keeps a matching handle to every object read),
+ * so that repeated references can be sent as back-references instead. On a long-lived connection this means both ends slowly accumulate every
+ * object ever sent, and re-sending an object which has since been mutated will silently send the stale back-reference instead of its new state.
+ * Resetting the stream clears those handles on both ends.
+ * <p>
+ * Resets are only ever applied as the stream is flushed, as that is the point each message should be complete at - resetting part way through
+ * writing an object graph is not possible. Any combination of thresholds may be set, and a reset happens as soon as any of them is met.
+ */
+@Data
+@Builder
+public class ObjectStreamResetPolicy {
+
+    /**
+     * Reset once at least this many objects have been tracked by the stream since the last reset. Zero or less disables this threshold.
+     */
+    @Builder.Default
+    private final long afterObjects = 0;
+
+    /**
+     * Reset once at least this many bytes have been written by the stream since the last reset. Zero or less disables this threshold.
+     */
+    @Builder.Default
+    private final long afterBytes = 0;
+
+    /**
+     * Reset on every flush, so that no handles are ever shared between messages.
+     */
+    @Builder.Default
+    private final boolean perMessage = false;
+
+    /**
+     * @return A policy which never automatically resets the stream, which is the default Java serialisation behaviour.
+     */
+    public static ObjectStreamResetPolicy never() {
+        return ObjectStreamResetPolicy.builder().build();
+    }
+
+    /**
+     * @return A policy which resets the stream on every flush.
+     */
+    public static ObjectStreamResetPolicy perMessage() {
+        return ObjectStreamResetPolicy.builder().perMessage(true).build();
+    }
+
+    /**
+     * @param objects How many objects may be tracked by the stream before it is reset.
+     * @return A policy which resets the stream on the first flush after the given number of objects have been written.
+     */
+    public static ObjectStreamResetPolicy everyObjects(final long objects) {
+        return ObjectStreamResetPolicy.builder().afterObjects(objects).build();
+    }
+
+    /**
+     * @param bytes How many bytes may be written by the stream before it is reset.
+     * @return A policy which resets the stream on the first flush after the given number of bytes have been written.
+     */
+    public static ObjectStreamResetPolicy everyBytes(final long bytes) {
+        return ObjectStreamResetPolicy.builder().afterBytes(bytes).build();
+    }
+
+    /**
+     * Used to determine whether a stream should be reset at the current flush.
+     *
+     * @param objectsSinceReset How many objects the stream has tracked since it was last reset.
+     * @param bytesSinceReset   How many bytes the stream has written since it was last reset.
+     * @return True if the stream should be reset now, False otherwise.
+     */
+    public boolean isResetDue(final long objectsSinceReset, final long bytesSinceReset) {
+        if (objectsSinceReset == 0 && bytesSinceReset == 0) {
+            return false;
+        }
+        return perMessage
+                || (afterObjects > 0 && objectsSinceReset >= afterObjects)
+                || (afterBytes > 0 && bytesSinceReset >= afterBytes);
+    }
+}
@@ -0,0 +1,392 @@
+package com.clumd.projects.java_common_utils.base_enhancements;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.net.BindException;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The server side counterpart to {@link PortableSocket}. This accepts new connections, wraps each of them in a {@link PortableSocket} with the
+ * configured stream header content, and then serves each of them with the provided {@link PortableSocketHandler} on its own virtual thread.
+ * <p>
+ * As handlers run on virtual threads, they are free to block on reads and writes without tying up a platform thread per connection. The number of
+ * connections served at once can still be capped, in which case further peers will wait in the listening socket's backlog until a handler
+ * completes.
+ * <p>
+ * Peers on the same host can optionally connect through a Unix domain socket instead of TCP, which the handler cannot tell apart, other than
+ * through {@link PortableSocket#isUnixDomainSocket()}. Likewise, peers in the same JVM can connect without any network stack at all, as told by
+ * {@link PortableSocket#isInJvm()}.
+ * <p>
+ * Closing the server will stop accepting new connections straight away, then give the running handlers a chance to complete before forcibly
+ * closing any connections which remain.
+ */
+public class PortableServerSocket implements AutoCloseable {
+
+    // Waited between consecutive failures to accept, such as from running out of file descriptors, rather than spinning on them.
+    private static final long MIN_ACCEPT_BACKOFF_IN_MS = 10;
+    private static final long MAX_ACCEPT_BACKOFF_IN_MS = 1000;
+
+    private final PortableServerSocketConfiguration configuration;
+    private final PortableSocketHandler handler;
+    private final Serializable[] requiredSocketStreamHeaderContent;
+
+    private final List<ServerSocket> serverSockets;
+    private final ServerSocketChannel unixDomainServerChannel;
+    private final InJvmSocket.Listener inJvmListener;
+    private final List<Thread> acceptorThreads = new ArrayList<>();
+    private final Set<PortableSocket> activeConnections = ConcurrentHashMap.newKeySet();
+    // Every connection from the moment it is accepted, including while its PortableSocket is still being created, such as during a TLS handshake.
+    private final Set<Socket> acceptedSockets = ConcurrentHashMap.newKeySet();
+    private final Semaphore connectionPermits;
+    private final NamedThreadFactory acceptorThreadFactory;
+    private final NamedThreadFactory connectionThreadFactory;
+
+    @Getter
+    private volatile boolean running;
+    private volatile boolean closed;
+
+    /**
+     * This constructor binds the listening socket(s) described by the configuration, but will NOT start accepting connections until
+     * {@link #start()} is called.
+     *
+     * @param configuration                     How this server should listen for, and limit, connections.
+     * @param handler                           The work to carry out for every accepted connection.
+     * @param requiredSocketStreamHeaderContent Variadic args for the stream header content every accepted {@link PortableSocket} should be
+     *                                          created with. This behaves exactly as the same parameter to
+     *                                          {@link PortableSocket#PortableSocket(Socket, Serializable...)}.
+     * @throws IOException Thrown if any of the listening sockets could not be bound.
+     */
+    public PortableServerSocket(
+            @NonNull final PortableServerSocketConfiguration configuration,
+            @NonNull final PortableSocketHandler handler,
+            final Serializable... requiredSocketStreamHeaderContent
+    ) throws IOException {
+        if (configuration.getAcceptorThreads() < 1) {
+            throw new IllegalArgumentException("A PortableServerSocket requires at least one acceptor thread.");
+        }
+        if (configuration.getMaxConcurrentConnections() < 1) {
+            throw new IllegalArgumentException("A PortableServerSocket must allow at least one concurrent connection.");
+        }
+        this.configuration = configuration;
+        this.handler = handler;
+        this.requiredSocketStreamHeaderContent = requiredSocketStreamHeaderContent;
+        this.connectionPermits = new Semaphore(configuration.getMaxConcurrentConnections(), true);
+        this.acceptorThreadFactory = new NamedThreadFactory(configuration.getName(), "acceptor");
+        this.connectionThreadFactory = new NamedThreadFactory(configuration.getName(), "connection", true);
+        this.serverSockets = bindServerSockets();
+        try {
+            this.unixDomainServerChannel = bindUnixDomainServerChannel();
+        } catch (IOException e) {
+            for (ServerSocket serverSocket : serverSockets) {
+                closeQuietly(serverSocket);
+            }
+            throw e;
+        }
+        try {
+            this.inJvmListener = configuration.getInJvmAddress() == null ? null : InJvmSocket.Listener.bind(configuration.getInJvmAddress());
+        } catch (IOException e) {
+            for (ServerSocket serverSocket : serverSockets) {
+                closeQuietly(serverSocket);
+            }
+            if (unixDomainServerChannel != null) {
+                closeQuietly(unixDomainServerChannel);
+            }
+            throw e;
+        }
+    }
+
+    private ServerSocketChannel bindUnixDomainServerChannel() throws IOException {
+        Path path = configuration.getUnixDomainSocketPath();
+        if (path == null) {
+            return null;
+        }
+        UnixDomainSocketAddress address = UnixDomainSocketAddress.of(path);
+        if (Files.exists(path, LinkOption.NOFOLLOW_LINKS)) {
+            removeStaleSocketFile(address);
+        }
+        ServerSocketChannel channel = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        try {
+            channel.bind(address, configuration.getBacklog());
+        } catch (IOException e) {
+            closeQuietly(channel);
+            throw new IOException("Failed to bind a PortableServerSocket on Unix domain socket {" + path + "}", e);
+        }
+        return channel;
+    }
+
+    /**
+     * Deletes a socket file left behind by a previous server which did not shut down cleanly, as nothing could bind to it otherwise. A file which
+     * is still being listened on is left alone, as deleting it would leave that server accepting on a path no client can reach any more.
+     */
+    private static void removeStaleSocketFile(final UnixDomainSocketAddress address) throws IOException {
+        try (SocketChannel probe = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+            probe.connect(address);
+        } catch (ConnectException e) {
+            Files.deleteIfExists(address.getPath());
+            return;
+        }
+        throw new BindException("Failed to bind a PortableServerSocket on Unix domain socket {" + address.getPath() + "}, as another server is "
+                + "still listening on it.");
+    }
+
+    private List<ServerSocket> bindServerSockets() throws IOException {
+        List<ServerSocket> bound = new ArrayList<>();
+        try {
+            ServerSocket first = new ServerSocket();
+            bound.add(first);
+            boolean useReusePort = configuration.isReusePort()
+                    && configuration.getAcceptorThreads() > 1
+                    && first.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT);
+            if (useReusePort) {
+                first.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+            }
+            first.bind(new InetSocketAddress(configuration.getBindAddress(), configuration.getPort()), configuration.getBacklog());
+
+            // Every further listening socket must bind to the port the first one actually landed on, in case we were asked for any free port.
+            for (int i = 1; useReusePort && i < configuration.getAcceptorThreads(); i++) {
+                ServerSocket additional = new ServerSocket();
+                bound.add(additional);
+                additional.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+                additional.bind(new InetSocketAddress(configuration.getBindAddress(), first.getLocalPort()), configuration.getBacklog());
+            }
+        } catch (IOException e) {
+            for (ServerSocket serverSocket : bound) {
+                closeQuietly(serverSocket);
+            }
+            throw new IOException("Failed to bind a PortableServerSocket on port {" + configuration.getPort() + "}", e);
+        }
+        return Collections.unmodifiableList(bound);
+    }
+
+    /**
+     * Starts the acceptor thread(s), after which new connections will be handed to the handler.
+     *
+     * @return This server, for chaining with the constructor.
+     */
+    public synchronized PortableServerSocket start() {
+        if (closed) {
+            throw new IllegalStateException("Cannot start a PortableServerSocket which has already been closed.");
+        }
+        if (running) {
+            return this;
+        }
+        running = true;
+        for (int i = 0; i < configuration.getAcceptorThreads(); i++) {
+            // When there are fewer listening sockets than acceptors, the acceptors simply share the listening socket.
+            ServerSocket serverSocket = serverSockets.get(i % serverSockets.size());
+            Thread acceptor = acceptorThreadFactory.newThread(() -> acceptLoop(() -> secureIfTls(serverSocket.accept())));
+            acceptorThreads.add(acceptor);
+            acceptor.start();
+        }
+        if (unixDomainServerChannel != null) {
+            Thread acceptor = acceptorThreadFactory.newThread(() -> acceptLoop(() -> new UnixDomainSocket(unixDomainServerChannel.accept())));
+            acceptorThreads.add(acceptor);
+            acceptor.start();
+        }
+        if (inJvmListener != null) {
+            Thread acceptor = acceptorThreadFactory.newThread(() -> acceptLoop(inJvmListener::accept));
+            acceptorThreads.add(acceptor);
+            acceptor.start();
+        }
+        return this;
+    }
+
+    /**
+     * Accepts a single connection from whichever kind of listening socket an acceptor thread is serving.
+     */
+    @FunctionalInterface
+    private interface Acceptor {
+        Socket accept() throws IOException;
+    }
+
+    private Socket secureIfTls(final Socket accepted) throws IOException {
+        PortableSocketTls tls = configuration.getPortableSocketOptions().getTls();
+        if (tls == null) {
+            return accepted;
+        }
+        try {
+            // Only wraps the socket, as the handshake is left for the connection's own thread, so a slow peer never holds up accepting.
+            return tls.accepting(accepted);
+        } catch (IOException e) {
+            closeQuietly(accepted);
+            throw e;
+        }
+    }
+
+    private void acceptLoop(final Acceptor acceptor) {
+        long backoffInMs = 0;
+        while (running) {
+            try {
+                connectionPermits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            Socket accepted;
+            try {
+                accepted = acceptor.accept();
+            } catch (IOException e) {
+                connectionPermits.release();
+                if (!running) {
+                    return;
+                }
+                configuration.getConnectionErrorHandler().accept(e);
+                backoffInMs = Math.clamp(backoffInMs * 2, MIN_ACCEPT_BACKOFF_IN_MS, MAX_ACCEPT_BACKOFF_IN_MS);
+                try {
+                    Thread.sleep(backoffInMs);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                continue;
+            }
+            backoffInMs = 0;
+            acceptedSockets.add(accepted);
+
+            try {
+                connectionThreadFactory.newThread(() -> serve(accepted)).start();
+            } catch (RuntimeException e) {
+                acceptedSockets.remove(accepted);
+                closeQuietly(accepted);
+                connectionPermits.release();
+                configuration.getConnectionErrorHandler().accept(e);
+            }
+        }
+    }
+
+    private void serve(final Socket accepted) {
+        PortableSocket portableSocket = null;
+        try {
+            portableSocket = new PortableSocket(configuration.getPortableSocketOptions(), accepted, requiredSocketStreamHeaderContent);
+            activeConnections.add(portableSocket);
+            handler.handle(portableSocket);
+        } catch (Exception e) {
+            configuration.getConnectionErrorHandler().accept(e);
+        } finally {
+            if (portableSocket == null) {
+                closeQuietly(accepted);
+            } else {
+                activeConnections.remove(portableSocket);
+                portableSocket.close();
+            }
+            acceptedSockets.remove(accepted);
+            connectionPermits.release();
+        }
+    }
+
+    /**
+     * Used to find the port this server is listening on, which is particularly useful if it was configured to bind to any free port.
+     *
+     * @return The local port of the listening socket(s).
+     */
+    public int getLocalPort() {
+        return serverSockets.get(0).getLocalPort();
+    }
+
+    /**
+     * Used to find how many connections are currently being served.
+     *
+     * @return The number of handlers which are currently running.
+     */
+    public int getActiveConnectionCount() {
+        return activeConnections.size();
+    }
+
+    /**
+     * Stops accepting new connections, then waits up to the given amount of time for the running handlers to complete. Any connection which is
+     * still being handled once the time runs out will be forcibly closed.
+     *
+     * @param drainTimeoutInMs How long to wait for running handlers to complete on their own.
+     * @return True if every handler completed within the time allowed, False if some connections had to be forcibly closed.
+     * @throws InterruptedException Thrown if the calling thread was interrupted while waiting for the handlers.
+     */
+    public boolean shutdown(final long drainTimeoutInMs) throws InterruptedException {
+        synchronized (this) {
+            if (closed) {
+                return activeConnections.isEmpty();
+            }
+            closed = true;
+            running = false;
+        }
+
+        for (ServerSocket serverSocket : serverSockets) {
+            closeQuietly(serverSocket);
+        }
+        if (unixDomainServerChannel != null) {
+            closeQuietly(unixDomainServerChannel);
+            closeQuietly(() -> Files.deleteIfExists(configuration.getUnixDomainSocketPath()));
+        }
+        if (inJvmListener != null) {
+            inJvmListener.close();
+        }
+        for (Thread acceptor : acceptorThreads) {
+            acceptor.interrupt();
+        }
+        for (Thread acceptor : acceptorThreads) {
+            acceptor.join();
+        }
+
+        // Every running handler holds a permit, so being able to take all of them back means every handler has completed.
+        int allPermits = configuration.getMaxConcurrentConnections();
+        if (connectionPermits.tryAcquire(allPermits, drainTimeoutInMs, TimeUnit.MILLISECONDS)) {
+            connectionPermits.release(allPermits);
+            return true;
+        }
+
+        closeRemainingConnections();
+        return false;
+    }
+
+    /**
+     * Calls through to {@link #shutdown(long)} with the configured drain timeout.
+     */
+    @Override
+    public void close() {
+        try {
+            shutdown(configuration.getDrainTimeout().toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            closeRemainingConnections();
+        }
+    }
+
+    private void closeRemainingConnections() {
+        for (PortableSocket remaining : activeConnections) {
+            remaining.close();
+        }
+        // Including those whose PortableSocket is still being created, which would otherwise be left blocked on a slow or silent peer.
+        for (Socket remaining : acceptedSockets) {
+            closeQuietly(remaining);
+        }
+    }
+
+    private static void closeQuietly(final AutoCloseable closeable) {
+        try {
+            closeable.close();
+        } catch (Exception e) {
+            // Ignore as going to terminate anyway.
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.clumd.projects.java_common_utils.base_enhancements;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.net.InetAddress;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.function.Consumer;
+
+/**
+ * This Class represents all the configuration required to run a {@link PortableServerSocket}.
+ * <p></p>
+ * Every value has a sensible default, so typically only the port needs to be provided:
+ * <pre>
+ * {@code
+ * PortableServerSocketConfiguration configuration = PortableServerSocketConfiguration.builder()
+ *         .port(8080)
+ *         .maxConcurrentConnections(500)
+ *         .build();
+ * }
+ * </pre>
+ */
+@Data
+@Builder
+public class PortableServerSocketConfiguration {
+
+    /**
+     * Used as the pool name for all threads started by the server, so that log messages can be more contextual.
+     */
+    @Builder.Default
+    private final String name = "portable-server";
+
+    /**
+     * The local address to listen on. Leaving this as null will listen on all local addresses.
+     */
+    @Builder.Default
+    private final InetAddress bindAddress = null;
+
+    /**
+     * The local port to listen on. Leaving this as 0 will bind to any free port, which can be found afterwards through
+     * {@link PortableServerSocket#getLocalPort()}.
+     */
+    @Builder.Default
+    private final int port = 0;
+
+    /**
+     * The maximum queue length of incoming connections which have not yet been accepted, per listening socket.
+     */
+    @Builder.Default
+    private final int backlog = 50;
+
+    /**
+     * The most connections which may be handled at any one time. Once reached, no further connections will be accepted until one of the running
+     * handlers completes, leaving new peers waiting in the backlog.
+     */
+    @Builder.Default
+    private final int maxConcurrentConnections = Integer.MAX_VALUE;
+
+    /**
+     * How many threads should be accepting new connections.
+     */
+    @Builder.Default
+    private final int acceptorThreads = 1;
+
+    /**
+     * If true, and there is more than one acceptor thread, each acceptor will get its own listening socket bound with
+     * {@link java.net.StandardSocketOptions#SO_REUSEPORT}, so that the operating system balances new connections between them.
+     * Where the platform does not support this option, acceptors will instead share a single listening socket.
+     */
+    @Builder.Default
+    private final boolean reusePort = false;
+
+    /**
+     * Where to also listen for connections from peers on the same host, through a Unix domain socket, on top of the TCP port. A socket file left
+     * at this path by a server which is no longer listening is replaced, but starting fails if one still is. The file is deleted again when the
+     * server shuts down. Leaving this as null will only listen on TCP.
+     * <p>
+     * Peers can find this automatically when it is set to {@link PortableSocket#unixDomainSocketPath(Path, int)} for the server's port, and they
+     * are created with the same directory for their {@link PortableSocketOptions#getUnixDomainSocketPathForLocalPort()}.
+     */
+    @Builder.Default
+    private final Path unixDomainSocketPath = null;
+
+    /**
+     * Where to also listen for connections from peers in the same JVM, which skip every network stack, on top of the TCP port. Leaving this as
+     * null will not listen for them.
+     * <p>
+     * Peers can find this automatically when it is set to {@link InJvmSocketAddress#forPort(int)} for the server's port, and they are created with
+     * {@link PortableSocketOptions#isInJvmForLocalPorts()}.
+     */
+    @Builder.Default
+    private final InJvmSocketAddress inJvmAddress = null;
+
+    /**
+     * How long {@link PortableServerSocket#close()} will wait for running handlers to complete before forcibly closing their connections.
+     */
+    @Builder.Default
+    private final Duration drainTimeout = Duration.ofSeconds(10);
+
+    /**
+     * The optional behaviour every accepted {@link PortableSocket} should be created with.
+     */
+    @Builder.Default
+    private final PortableSocketOptions portableSocketOptions = PortableSocketOptions.defaults();
+
+    /**
+     * Called with any exception thrown while accepting a connection, wrapping it in a {@link PortableSocket}, or from the handler itself.
+     */
+    @Builder.Default
+    private final Consumer<Exception> connectionErrorHandler = e -> {
+    };
+}
@@ -3,18 +3,37 @@ package com.clumd.projects.java_common_utils.base_enhancements;
 import lombok.Getter;
 import lombok.NonNull;
 
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSocket;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.ObjectStreamException;
+import java.io.OutputStream;
 import java.io.Serializable;
 import java.io.StreamCorruptedException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.net.SocketException;
+import java.net.SocketTimeoutException;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.UserPrincipal;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * This {@link java.net.Socket} wrapper serves to accumulate some convenience methods for dealing with sockets, such as setting up ObjectStreams,
@@ -39,6 +58,7 @@ public class PortableSocket implements AutoCloseable {
     private static final int FIVE_SECONDS_IN_MS = 5000;
     private static final int TEN_SECONDS_IN_MS = 10000;
     private static final int NO_TIMEOUT = 0;
+    private static final NamedThreadFactory LINGERERS = new NamedThreadFactory("portable-socket", "linger", true);
     private static final Set<String> LOCALHOST_NAMES = Set.of(
             "localhost",
             "LOCALHOST",
@@ -53,8 +73,76 @@ public class PortableSocket implements AutoCloseable {
 
     private final Object[] requiredSocketStreamHeaderContent;
 
-    private ObjectOutputStream outputStream;
+    @Getter
+    private final PortableSocketOptions options;
+
+    private final PortableSocketFeatures streamFeatures;
+    private final PortableSocketHandshake handshake;
+    private final ShippedClassExchange shippedClassExchange;
+    private final InJvmTransport inJvmTransport;
+    private final FileTransfers fileTransfers = new FileTransfers(this);
+
+    /**
+     * How effective compression has been on this PortableSocket, which stays empty unless created with a
+     * {@link PortableSocketOptions#getCompression()}.
+     */
+    @Getter
+    private final StreamCompressionMetrics compressionMetrics = new StreamCompressionMetrics();
+
+    /**
+     * How this PortableSocket's connection is behaving, or null if created without
+     * {@link PortableSocketOptions#isCollectTransportMetrics()}.
+     */
+    @Getter
+    private final TransportMetrics transportMetrics;
+
+    /**
+     * The protocol version both ends agreed to speak through the {@link PortableSocketOptions#isBinaryHandshake() binary handshake}, which is the
+     * lower of their two versions, once the input stream has been initialised, or 0 when using the Object based stream header.
+     */
+    @Getter
+    private volatile int agreedProtocolVersion;
+
+    // The PortableSocketHandshake features in use. With the binary handshake, these start as this end's own, and are narrowed to what both ends
+    // asked for once the remote end's handshake has been read, before which nothing more is written. Otherwise, both ends must match exactly.
+    private volatile int agreedFeatures;
+    private volatile boolean awaitingAgreement;
+
+    /**
+     * Whether heartbeats are being sent on this PortableSocket from another thread, such as by a {@code HeartbeatScheduler}, during which
+     * {@link #getOutputStream()} is not handed out.
+     */
+    @Getter
+    private volatile boolean heartbeatsActive;
+
+    private MeteredOutputStream meteredOutputStream;
+    private MeteredInputStream meteredInputStream;
+
+    private CoalescingOutputStream coalescingStream;
+    private DeflatingFrameOutputStream deflatingStream;
+    private InflatingFrameInputStream inflatingStream;
+    private PortableObjectOutputStream outputStream;
     private ObjectInputStream inputStream;
+    private URLClassLoader componentLoader;
+    private SharedClassLoaderRegistry.Lease sharedComponentLoader;
+
+    // Locks rather than monitors, as blocking on a Socket while holding a monitor would pin a virtual thread to its carrier.
+    private final ReentrantLock sendLock = new ReentrantLock();
+    private final ReentrantLock receiveLock = new ReentrantLock();
+    private final ReentrantLock inputStreamInitialisationLock = new ReentrantLock();
+    private final FrameBuffer sendBuffer = new FrameBuffer();
+    private final DataOutputStream sendBufferWriter = new DataOutputStream(sendBuffer);
+    private DataInputStream frameInputStream;
+    private byte[] receiveBuffer = new byte[0];
+
+    // Set by the reading thread if the remote end's stream header could not be accepted, so that closing can leave the remote end time to see why.
+    private volatile boolean remoteStreamHeaderRejected;
+    // Set once close() has handed the Socket over to be closed in the background, after lingering for the remote end.
+    private volatile boolean lingering;
+
+    private volatile long lastSendTimeNanos = System.nanoTime();
+    private volatile long lastReceiveTimeNanos = System.nanoTime();
+    private final AtomicLong pongsReceived = new AtomicLong();
 
 
     /**
@@ -79,6 +167,23 @@ public class PortableSocket implements AutoCloseable {
      * @throws IOException This can be thrown if there was an issue creating the output streams, or defaulting the socket operation timeouts.
      */
     public PortableSocket(@NonNull final Socket socket, final Serializable... requiredSocketStreamHeaderContent) throws IOException {
+        this(PortableSocketOptions.defaults(), socket, requiredSocketStreamHeaderContent);
+    }
+
+    /**
+     * This constructor behaves exactly as {@link #PortableSocket(Socket, Serializable...)}, but with additional optional behaviour for the streams.
+     *
+     * @param options                           The optional behaviour this PortableSocket should have.
+     * @param socket                            The already connected low level Socket.
+     * @param requiredSocketStreamHeaderContent Variadic args for what to write down the socket on connection, and expect to read from the socket
+     *                                          on connection, as per {@link #PortableSocket(Socket, Serializable...)}.
+     * @throws IOException This can be thrown if there was an issue creating the output streams, or defaulting the socket operation timeouts.
+     */
+    public PortableSocket(
+            @NonNull final PortableSocketOptions options,
+            @NonNull final Socket socket,
+            final Serializable... requiredSocketStreamHeaderContent
+    ) throws IOException {
         if (socket.isClosed() || socket.getRemoteSocketAddress() == null) {
             throw new UnsupportedOperationException(
                     "Invalid way to create a PortableSocket wrapper.",
@@ -88,9 +193,21 @@ public class PortableSocket implements AutoCloseable {
             );
         }
         this.socket = socket;
+        this.options = options;
+        this.streamFeatures = PortableSocketFeatures.from(options);
+        this.handshake = options.isBinaryHandshake() ? PortableSocketHandshake.from(options) : null;
+        this.agreedFeatures = PortableSocketHandshake.featuresOf(options);
+        this.awaitingAgreement = handshake != null;
+        this.shippedClassExchange = options.getRemoteClassShipping() == null
+                ? null
+                : new ShippedClassExchange(this, options.getRemoteClassShipping());
+        this.inJvmTransport = this.socket instanceof InJvmSocket inJvmSocket ? new InJvmTransport(this, inJvmSocket) : null;
+        this.transportMetrics = options.isCollectTransportMetrics() ? TransportMetrics.forSocket() : null;
         this.requiredSocketStreamHeaderContent = requiredSocketStreamHeaderContent;
+        options.getSocketTuning().applyTo(socket);
         setMediumTimeout();
-        this.outputStream = getOutputStream();
+        handshakeIfTls();
+        initialiseOutputStream();
     }
 
     /**
@@ -115,11 +232,200 @@ public class PortableSocket implements AutoCloseable {
      * @throws IOException This can be thrown if there was an issue creating the output streams, or defaulting the socket operation timeouts.
      */
     public PortableSocket(@NonNull final String hostname, final int port, final Serializable... requiredSocketStreamHeaderContent) throws IOException {
-        socket = new Socket();
-        socket.connect(new InetSocketAddress(hostname, port), THREE_SECONDS_IN_MS);
+        this(PortableSocketOptions.defaults(), hostname, port, requiredSocketStreamHeaderContent);
+    }
+
+    /**
+     * This constructor behaves exactly as {@link #PortableSocket(String, int, Serializable...)}, but with additional optional behaviour for the
+     * streams.
+     *
+     * @param options                           The optional behaviour this PortableSocket should have.
+     * @param hostname                          The network hostname or IP of the peer we would like to connect to.
+     * @param port                              The port number we would like to initialise a connection on.
+     * @param requiredSocketStreamHeaderContent Variadic args for what to write down the socket on connection, and expect to read from the socket
+     *                                          on connection, as per {@link #PortableSocket(String, int, Serializable...)}.
+     * @throws IOException This can be thrown if there was an issue creating the output streams, or defaulting the socket operation timeouts.
+     */
+    public PortableSocket(
+            @NonNull final PortableSocketOptions options,
+            @NonNull final String hostname,
+            final int port,
+            final Serializable... requiredSocketStreamHeaderContent
+    ) throws IOException {
+        socket = connect(options, hostname, port);
+        this.options = options;
+        this.streamFeatures = PortableSocketFeatures.from(options);
+        this.handshake = options.isBinaryHandshake() ? PortableSocketHandshake.from(options) : null;
+        this.agreedFeatures = PortableSocketHandshake.featuresOf(options);
+        this.awaitingAgreement = handshake != null;
+        this.shippedClassExchange = options.getRemoteClassShipping() == null
+                ? null
+                : new ShippedClassExchange(this, options.getRemoteClassShipping());
+        this.inJvmTransport = this.socket instanceof InJvmSocket inJvmSocket ? new InJvmTransport(this, inJvmSocket) : null;
+        this.transportMetrics = options.isCollectTransportMetrics() ? TransportMetrics.forSocket() : null;
         this.requiredSocketStreamHeaderContent = requiredSocketStreamHeaderContent;
         setMediumTimeout();
-        this.outputStream = getOutputStream();
+        handshakeIfTls();
+        initialiseOutputStream();
+    }
+
+    /**
+     * This constructor behaves exactly as {@link #PortableSocket(PortableSocketOptions, String, int, Serializable...)}, but connects to a peer on
+     * the same host through a Unix domain socket, rather than through the TCP stack. The stream header handshake, and everything sent over the
+     * streams, behaves exactly the same either way.
+     *
+     * @param options                           The optional behaviour this PortableSocket should have. The TCP specific parts of its
+     *                                          {@link PortableSocketOptions#getSocketTuning()} are ignored.
+     * @param address                           The path of the socket file the peer is listening on, such as from a {@link PortableServerSocket}
+     *                                          configured with a {@link PortableServerSocketConfiguration#getUnixDomainSocketPath()}.
+     * @param requiredSocketStreamHeaderContent Variadic args for what to write down the socket on connection, and expect to read from the socket
+     *                                          on connection, as per {@link #PortableSocket(String, int, Serializable...)}.
+     * @throws IOException Thrown if nothing is listening at the address, or there was an issue creating the output streams.
+     */
+    public PortableSocket(
+            @NonNull final PortableSocketOptions options,
+            @NonNull final UnixDomainSocketAddress address,
+            final Serializable... requiredSocketStreamHeaderContent
+    ) throws IOException {
+        this(options, UnixDomainSocket.connect(address), requiredSocketStreamHeaderContent);
+    }
+
+    /**
+     * This constructor behaves exactly as {@link #PortableSocket(PortableSocketOptions, String, int, Serializable...)}, but connects to a peer in
+     * the same JVM, without going through any network stack at all. The stream header handshake, and everything written to the streams, behaves
+     * exactly the same, but {@link #send(Object)} and {@link #receive()} pass each value straight to the remote end, by reference unless
+     * {@link PortableSocketOptions#isCopyInJvmObjects()}.
+     *
+     * @param options                           The optional behaviour this PortableSocket should have. Its
+     *                                          {@link PortableSocketOptions#getSocketTuning()} is ignored.
+     * @param address                           The name the peer is listening on, such as from a {@link PortableServerSocket} configured with a
+     *                                          {@link PortableServerSocketConfiguration#getInJvmAddress()}.
+     * @param requiredSocketStreamHeaderContent Variadic args for what to write down the socket on connection, and expect to read from the socket
+     *                                          on connection, as per {@link #PortableSocket(String, int, Serializable...)}.
+     * @throws IOException Thrown if nothing in this JVM is listening at the address, or there was an issue creating the output streams.
+     */
+    public PortableSocket(
+            @NonNull final PortableSocketOptions options,
+            @NonNull final InJvmSocketAddress address,
+            final Serializable... requiredSocketStreamHeaderContent
+    ) throws IOException {
+        this(options, InJvmSocket.connect(address, options.getInJvmMailboxCapacity()), requiredSocketStreamHeaderContent);
+    }
+
+    private static Socket connect(final PortableSocketOptions options, final String hostname, final int port) throws IOException {
+        if (options.isInJvmForLocalPorts() && InJvmSocket.isListening(InJvmSocketAddress.forPort(port)) && isLocalHostnameQuietly(hostname)) {
+            try {
+                return InJvmSocket.connect(InJvmSocketAddress.forPort(port), options.getInJvmMailboxCapacity());
+            } catch (IOException e) {
+                // Stopped listening since being checked, so fall back to the next best transport.
+            }
+        }
+        if (options.getUnixDomainSocketPathForLocalPort() != null && isLocalHostnameQuietly(hostname)) {
+            Path path = options.getUnixDomainSocketPathForLocalPort().apply(port);
+            if (path != null && Files.exists(path) && isOwnedByCurrentUser(path)) {
+                try {
+                    Socket local = UnixDomainSocket.connect(UnixDomainSocketAddress.of(path));
+                    options.getSocketTuning().applyTo(local);
+                    return local;
+                } catch (IOException e) {
+                    // A stale socket file, left behind by a peer which is no longer listening on it, so fall back to TCP.
+                }
+            }
+        }
+
+        Socket tcp = new Socket();
+        options.getSocketTuning().applyTo(tcp);
+        tcp.connect(new InetSocketAddress(hostname, port), THREE_SECONDS_IN_MS);
+        if (options.getTls() != null) {
+            try {
+                return options.getTls().connecting(tcp, hostname, port);
+            } catch (IOException e) {
+                tcp.close();
+                throw e;
+            }
+        }
+        return tcp;
+    }
+
+    private static boolean isLocalHostnameQuietly(final String hostname) {
+        try {
+            return isLocalHostname(hostname);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static boolean isOwnedByCurrentUser(final Path path) {
+        try {
+            UserPrincipal currentUser = path.getFileSystem().getUserPrincipalLookupService().lookupPrincipalByName(System.getProperty("user.name"));
+            return currentUser.equals(Files.getOwner(path, LinkOption.NOFOLLOW_LINKS));
+        } catch (IOException | UnsupportedOperationException e) {
+            return false;
+        }
+    }
+
+    /**
+     * The conventional place for a peer listening on the given TCP port to also listen for Unix domain socket connections from the same host, for
+     * use as a {@link PortableSocketOptions#getUnixDomainSocketPathForLocalPort()} ({@code port -> unixDomainSocketPath(directory, port)}), and
+     * a {@link PortableServerSocketConfiguration#getUnixDomainSocketPath()}.
+     *
+     * @param directory A directory only the application's own user can write to, as whoever can create the socket file there receives the
+     *                  connections meant for the TCP port.
+     * @param port      The TCP port the peer listens on.
+     * @return A socket file path within the given directory, unique to the port.
+     */
+    public static Path unixDomainSocketPath(@NonNull final Path directory, final int port) {
+        return directory.resolve("portable-socket-" + port + ".sock");
+    }
+
+    /**
+     * @return Whether this PortableSocket is connected through a Unix domain socket, rather than TCP.
+     */
+    public boolean isUnixDomainSocket() {
+        return socket instanceof UnixDomainSocket;
+    }
+
+    /**
+     * @return Whether this PortableSocket is connected to a peer in the same JVM, rather than through a network stack.
+     */
+    public boolean isInJvm() {
+        return socket instanceof InJvmSocket;
+    }
+
+    /**
+     * @return Whether this PortableSocket's connection is secured with TLS.
+     */
+    public boolean isTls() {
+        return socket instanceof SSLSocket;
+    }
+
+    /**
+     * @return The TLS session securing this PortableSocket's connection, such as to check who the peer is, or null if it is not secured.
+     */
+    public SSLSession getTlsSession() {
+        return socket instanceof SSLSocket sslSocket ? sslSocket.getSession() : null;
+    }
+
+    private void handshakeIfTls() throws IOException {
+        if (!(socket instanceof SSLSocket sslSocket)) {
+            return;
+        }
+        final long startMillis = System.currentTimeMillis();
+        final long startNanos = System.nanoTime();
+        try {
+            sslSocket.startHandshake();
+        } catch (IOException e) {
+            try {
+                socket.close();
+            } catch (IOException closing) {
+                e.addSuppressed(closing);
+            }
+            throw e;
+        }
+        if (transportMetrics != null) {
+            // A resumed session carries on from the one it resumes, so was created before this handshake began.
+            transportMetrics.recordHandshake(System.nanoTime() - startNanos, sslSocket.getSession().getCreationTime() < startMillis);
+        }
     }
 
     /**
@@ -134,6 +440,10 @@ public class PortableSocket implements AutoCloseable {
      * to create the connection - which follows a different workflow in the JVM network stack regarding the permissions it asks for, (I.e. NOT
      * asking the system to perform ICMP control operations).
      * This method of checking can validate both address resolution, as well as actual route traversal to the remote host.
+     * <p></p>
+     * As the checks are run one after another, an unreachable host can block the caller for the sum of both timeouts. When checking many hosts,
+     * or the same hosts repeatedly, use a {@link com.clumd.projects.java_common_utils.networking.ReachabilityProber} instead, which races the
+     * checks concurrently and caches the results.
      *
      * @param hostname The hostname of the host we would like to check connectivity to.
      * @param port     The port on that hostname which we would like to check connectivity to.
@@ -148,7 +458,7 @@ public class PortableSocket implements AutoCloseable {
 
         try (Socket connectivityTestSocket = new Socket()) {
 
-            InetAddress inetAddress = InetAddress.getByName(hostname);
+            InetAddress inetAddress = HostnameResolver.getDefault().resolve(hostname)[0];
             if (inetAddress.isReachable(THREE_SECONDS_IN_MS)) {
                 return true;
             }
@@ -166,6 +476,9 @@ public class PortableSocket implements AutoCloseable {
 
     /**
      * Used to determine whether a given hostname is local to the system which is currently running this code.
+     * <p></p>
+     * Lookups go through the {@link HostnameResolver#getDefault() default HostnameResolver}, so both the hostname's resolution and this machine's
+     * own network interface addresses are cached. Use {@link HostnameResolver#isLocalHostnameAsync(String)} to avoid blocking on DNS entirely.
      *
      * @param hostname The String to check whether it is a locally addressable hostname
      * @return True if the String provided is a local hostname, False otherwise.
@@ -179,8 +492,8 @@ public class PortableSocket implements AutoCloseable {
             return true;
         }
 
-        InetAddress inetAddress = InetAddress.getByName(hostname);
-        return (inetAddress.isAnyLocalAddress() || inetAddress.isLoopbackAddress() || InetAddress.getLocalHost().equals(inetAddress));
+        // Resolutions and this machine's own addresses are cached, so that repeated calls don't keep waiting on DNS either.
+        return HostnameResolver.getDefault().isLocalHostname(hostname);
     }
 
     /**
@@ -199,32 +512,80 @@ public class PortableSocket implements AutoCloseable {
      *                     as expected.
      */
     public ObjectInputStream initialiseInputStreamWithComponentLoader(@NonNull final URLClassLoader componentLoaderForInputStream) throws IOException {
+        // Also taken by anything sending, which may need to read the remote end's binary handshake first.
+        inputStreamInitialisationLock.lock();
+        try {
+            return initialiseInputStreamLocked(componentLoaderForInputStream);
+        } finally {
+            inputStreamInitialisationLock.unlock();
+        }
+    }
+
+    private ObjectInputStream initialiseInputStreamLocked(final URLClassLoader componentLoaderForInputStream) throws IOException {
         if (inputStream != null) {
             throw new SocketException("Input Stream already initialised, cannot be re-initialised.");
         }
 
         try {
+            componentLoader = componentLoaderForInputStream;
+            InputStream socketInputStream = this.socket.getInputStream();
+            if (transportMetrics != null) {
+                meteredInputStream = new MeteredInputStream(socketInputStream, transportMetrics);
+                socketInputStream = meteredInputStream;
+            }
+            if (options.getCompression() != null) {
+                inflatingStream = new InflatingFrameInputStream(socketInputStream, compressionMetrics, options.getMaxFrameLengthInBytes());
+                socketInputStream = inflatingStream;
+            }
+            frameInputStream = new DataInputStream(socketInputStream);
             inputStream = new ObjectInputStreamWithClassLoader(
-                    this.socket.getInputStream(),
-                    componentLoaderForInputStream
+                    socketInputStream,
+                    componentLoaderForInputStream,
+                    options.getResolvedClassCache()
             ) {
                 @Override
                 protected void readStreamHeader() throws IOException {
-                    if (requiredSocketStreamHeaderContent == null) {
-                        return;
+                    if (options.getDeserialisationLimits() != null) {
+                        installDeserialisationLimits(options.getDeserialisationLimits());
+                    }
+                    if (handshake != null) {
+                        PortableSocketHandshake.Agreement agreement = handshake.read(this, requiredSocketStreamHeaderContent);
+                        agreedProtocolVersion = agreement.protocolVersion();
+                        agreedFeatures = agreement.features();
+                        if (deflatingStream != null && uses(PortableSocketHandshake.COMPRESSION)) {
+                            deflatingStream.startCompressing();
+                        }
+                        awaitingAgreement = false;
+                    } else {
+                        readObjectStreamHeader();
+                    }
+                    if (inflatingStream != null && uses(PortableSocketHandshake.COMPRESSION)) {
+                        // The header is never compressed, so that a disagreement on compression can be reported, or negotiated, as such.
+                        inflatingStream.startDecompressing();
                     }
+                }
+
+                private void readObjectStreamHeader() throws IOException {
+                    if (requiredSocketStreamHeaderContent != null) {
+                        readRequiredStreamHeaderContent();
+                    }
+                    if (streamFeatures != null) {
+                        Object remoteFeatures = readHeaderObject();
+                        if (!streamFeatures.equals(remoteFeatures)) {
+                            throw new StreamCorruptedException("The remote end of this PortableSocket does not agree on the stream features. " +
+                                    "Expected {" + streamFeatures + "} but got {" + remoteFeatures + "} instead.");
+                        }
+                    }
+                }
+
+                private void readRequiredStreamHeaderContent() throws IOException {
                     if (requiredSocketStreamHeaderContent.length == 0) {
                         super.readStreamHeader();
                         return;
                     }
                     Object readObject;
                     for (Object o : requiredSocketStreamHeaderContent) {
-                        try {
-                            readObject = super.readObject();
-                        } catch (ClassNotFoundException e) {
-                            throw new StreamCorruptedException("Failed to initialise ObjectInputStream with custom header requirements. " +
-                                    "Unknown class received. " + e.getMessage());
-                        }
+                        readObject = readHeaderObject();
                         if (o == null) {
                             if (readObject != null) {
                                 throw new StreamCorruptedException("Expected to read a null in the stream header, but got something else instead: " +
@@ -239,8 +600,18 @@ public class PortableSocket implements AutoCloseable {
                         }
                     }
                 }
+
+                private Object readHeaderObject() throws IOException {
+                    try {
+                        return super.readObject();
+                    } catch (ClassNotFoundException e) {
+                        throw new StreamCorruptedException("Failed to initialise ObjectInputStream with custom header requirements. " +
+                                "Unknown class received. " + e.getMessage());
+                    }
+                }
             };
         } catch (final IOException e) {
+            remoteStreamHeaderRejected = e instanceof ObjectStreamException;
             throw new IOException("Failed to properly initialise a PortableSocket's input stream", e);
         }
 
@@ -249,38 +620,144 @@ public class PortableSocket implements AutoCloseable {
 
     /**
      * Used to acquire the reference to this Portable Socket's OUTPUT stream. Only one output stream is created per PortableSocket.
+     * <p>
+     * With the {@link PortableSocketOptions#isBinaryHandshake() binary handshake}, this first waits for the remote end's handshake, as nothing
+     * more can be written until both ends have agreed on what to use.
+     * <p>
+     * Anything written to the stream directly is not kept apart from what {@link #send(Object)}, {@link #sendPing()}, and the pongs and class
+     * files answered from within {@link #receive()}, write from other threads, so it must never be written to while any of those may be running.
+     * In particular, it is not handed out at all while {@link #isHeartbeatsActive() heartbeats are active}.
      *
      * @return The OutputStream associated with this PortableSocket.
+     * @throws IllegalStateException Thrown if heartbeats are being sent on this PortableSocket from another thread.
      * @throws IOException Thrown if this was the first time this method was called since constructing the Portable Socket, and there was an error
      *                     setting up the OutputStream - such as the Socket being immediately closed, or being unable to write an uninterrupted Stream Header to the
      *                     remote end of the Socket.
      */
     public ObjectOutputStream getOutputStream() throws IOException {
+        if (heartbeatsActive) {
+            throw new IllegalStateException("Cannot write directly to the OutputStream of a PortableSocket while heartbeats are being sent on it, "
+                    + "as they could be interleaved with what is written. Send through send(Object) instead.");
+        }
+        awaitAgreedFeatures();
+        return initialiseOutputStream();
+    }
+
+    private PortableObjectOutputStream initialiseOutputStream() throws IOException {
         if (outputStream == null) {
-            outputStream = new ObjectOutputStream(
-                    socket.getOutputStream()
-            ) {
-                @Override
-                protected void writeStreamHeader() throws IOException {
-                    if (requiredSocketStreamHeaderContent == null) {
-                        return;
-                    }
-                    if (requiredSocketStreamHeaderContent.length == 0) {
-                        super.writeStreamHeader();
-                        return;
-                    }
-                    for (Object o : requiredSocketStreamHeaderContent) {
-                        super.writeObject(o);
-                    }
-                }
-            };
+            OutputStream socketOutputStream = socket.getOutputStream();
+            if (transportMetrics != null) {
+                meteredOutputStream = new MeteredOutputStream(socketOutputStream, transportMetrics);
+                socketOutputStream = meteredOutputStream;
+            }
+            if (options.getFlushPolicy().getMode() != FlushPolicy.Mode.IMMEDIATE) {
+                coalescingStream = new CoalescingOutputStream(socketOutputStream, options.getFlushPolicy());
+                socketOutputStream = coalescingStream;
+            }
+            if (options.getCompression() != null) {
+                deflatingStream = new DeflatingFrameOutputStream(socketOutputStream, options.getCompression(), compressionMetrics);
+                socketOutputStream = deflatingStream;
+            }
+            // The Object stream drains its header in several pieces as it goes, so collect it up and send it in one write instead, as a remote end
+            // which rejects the start of it would otherwise be able to hang up part way through.
+            ByteArrayOutputStream streamHeader = new ByteArrayOutputStream();
+            CountingOutputStream countingStream = new CountingOutputStream(streamHeader);
+            outputStream = new PortableObjectOutputStream(countingStream);
+            countingStream.redirectTo(socketOutputStream);
+            streamHeader.writeTo(socketOutputStream);
+            if (deflatingStream != null && handshake == null) {
+                // Otherwise only once the binary handshake has agreed on compression.
+                deflatingStream.startCompressing();
+            }
+            if (coalescingStream != null) {
+                // The remote end can't finish creating its input stream until it has our stream header, so that can never be held back.
+                coalescingStream.forceFlush();
+            }
         }
 
         return outputStream;
     }
 
+    /**
+     * Reads the remote end's binary handshake, if it has not been already, initialising the input stream as {@link #getInputStream()} would.
+     */
+    private void awaitAgreedFeatures() throws IOException {
+        if (!awaitingAgreement) {
+            return;
+        }
+        if (remoteStreamHeaderRejected) {
+            throw new StreamCorruptedException("Cannot write to a PortableSocket whose remote end's stream header was rejected.");
+        }
+        getInputStream();
+    }
+
+    boolean uses(final int feature) {
+        return (agreedFeatures & feature) != 0;
+    }
+
+    /**
+     * @return The codec both ends agreed on, or null if values go through the Object stream.
+     */
+    PortableSocketCodec codec() {
+        return uses(PortableSocketHandshake.CODEC) ? options.getCodec() : null;
+    }
+
+    /**
+     * @return The exchange of shipped values and class files, if both ends agreed on shipping classes, otherwise null.
+     */
+    private ShippedClassExchange classShipping() {
+        return uses(PortableSocketHandshake.REMOTE_CLASS_SHIPPING) ? shippedClassExchange : null;
+    }
+
+    /**
+     * Writes everything this PortableSocket's OutputStream has buffered through to the Socket, regardless of the configured
+     * {@link FlushPolicy}. With the default {@link FlushPolicy#immediate()} policy, this is the same as flushing the OutputStream.
+     *
+     * @throws IOException Thrown if the Socket could not be written to.
+     */
+    public void forceFlush() throws IOException {
+        initialiseOutputStream().flush();
+        if (coalescingStream != null) {
+            coalescingStream.forceFlush();
+        }
+    }
+
+    /**
+     * Used to find roughly how many objects this PortableSocket's OutputStream has written since it was last reset, each of which it (and the
+     * remote end of the Socket) is holding a handle to. This is an approximation of the stream's handle table rather than its exact size, as the
+     * class descriptors written alongside those objects take handles too, without being counted.
+     *
+     * @return The approximate number of objects written since the OutputStream was last reset.
+     */
+    public long getOutputStreamObjectsSinceReset() {
+        return outputStream == null ? 0 : outputStream.objectsSinceReset;
+    }
+
+    /**
+     * Used to find how many bytes this PortableSocket's OutputStream has written since it was last reset.
+     *
+     * @return The number of bytes written since the OutputStream was last reset.
+     */
+    public long getOutputStreamBytesSinceReset() {
+        return outputStream == null ? 0 : outputStream.bytesSinceReset();
+    }
+
+    /**
+     * Used to find how many times this PortableSocket's OutputStream has been automatically reset, as per the configured
+     * {@link ObjectStreamResetPolicy}.
+     *
+     * @return The number of automatic resets applied to the OutputStream.
+     */
+    public long getOutputStreamResetCount() {
+        return outputStream == null ? 0 : outputStream.resetCount;
+    }
+
     /**
      * Used to acquire the reference to this Portable Socket's INPUT stream. Only one input stream is created per PortableSocket.
+     * <p>
+     * Unless already initialised with {@link #initialiseInputStreamWithComponentLoader(URLClassLoader)}, the stream uses a URLClassLoader shared
+     * through the {@link SharedClassLoaderRegistry#getDefault() default registry} with every other PortableSocket doing the same, which this gives
+     * back when closed.
      *
      * @return The InputStream associated with this PortableSocket.
      * @throws IOException Thrown if this was the first time this method was called since constructing the Portable Socket, and there was an error
@@ -288,27 +765,496 @@ public class PortableSocket implements AutoCloseable {
      */
     public ObjectInputStream getInputStream() throws IOException {
         if (inputStream == null) {
-            return initialiseInputStreamWithComponentLoader(new URLClassLoader(new URL[]{}));
+            inputStreamInitialisationLock.lock();
+            try {
+                if (inputStream == null) {
+                    sharedComponentLoader = SharedClassLoaderRegistry.getDefault().acquire(new URL[]{}, ClassLoader.getSystemClassLoader());
+                    try {
+                        return initialiseInputStreamLocked(sharedComponentLoader.getClassLoader());
+                    } catch (IOException | RuntimeException e) {
+                        // Given back straight away, as calling this again would otherwise take out a second lease, and only close the last.
+                        sharedComponentLoader.close();
+                        sharedComponentLoader = null;
+                        throw e;
+                    }
+                }
+            } finally {
+                inputStreamInitialisationLock.unlock();
+            }
         }
 
         return inputStream;
     }
 
+    /**
+     * @return The filter enforcing {@link PortableSocketOptions#getDeserialisationLimits()} on the InputStream, which counts the objects it has
+     * rejected, or null if there are no limits, or the InputStream has not been initialised yet.
+     */
+    public DeserialisationFilter getDeserialisationFilter() {
+        return inputStream instanceof ObjectInputStreamWithClassLoader withClassLoader ? withClassLoader.getDeserialisationFilter() : null;
+    }
+
+    /**
+     * Sends a single value to the remote end of this PortableSocket, and flushes it.
+     * <p>
+     * If this PortableSocket was created with a {@link PortableSocketOptions#getCodec()}, the value is encoded with that codec and sent as a
+     * length-prefixed frame, bypassing Java serialisation (unless the codec itself falls back to it). Otherwise, this is the same as writing the
+     * value to {@link #getOutputStream()} and flushing it.
+     * <p>
+     * When using a codec, values should only be sent through this method, and never written directly to {@link #getOutputStream()}, as the remote
+     * end would have no way to tell the two apart.
+     * <p>
+     * When {@link #isInJvm()}, the value is handed straight to the remote end instead, without going through the streams at all, so its order
+     * relative to anything written directly to {@link #getOutputStream()} is not kept.
+     *
+     * @param value The value to send, which may be null.
+     * @throws IOException Thrown if the value could not be encoded, or the Socket could not be written to.
+     */
+    public void send(final Object value) throws IOException {
+        sendLock.lock();
+        try {
+            final long startNanos = System.nanoTime();
+            final long blockedNanosAtStart = sendBlockedNanos();
+            lastSendTimeNanos = startNanos;
+            awaitAgreedFeatures();
+            if (inJvmTransport != null) {
+                inJvmTransport.send(value);
+            } else {
+                ShippedClassExchange shipping = classShipping();
+                sendThroughStreams(shipping == null ? value : shipping.wrap(value));
+            }
+            if (transportMetrics != null) {
+                transportMetrics.recordObjectSent(System.nanoTime() - startNanos - (sendBlockedNanos() - blockedNanosAtStart));
+            }
+        } finally {
+            sendLock.unlock();
+        }
+    }
+
+    /**
+     * Sends a value which has already been encoded, and framed, by the given codec, so that it only needs encoding once for any number of
+     * PortableSockets, as by a {@link PortableSocketBroadcaster}. Where this PortableSocket cannot send those bytes as they are, for not using a
+     * codec of the same name, or for shipping classes, this is the same as {@link #send(Object)}.
+     *
+     * @param value The value which was encoded, which is passed on as it is to a peer in the same JVM.
+     * @param codec The codec the value was encoded with.
+     * @param frame The length-prefixed frame {@link #send(Object)} would have written, which is never changed.
+     * @throws IOException Thrown if the Socket could not be written to.
+     */
+    void sendEncoded(final Object value, final PortableSocketCodec codec, final byte[] frame) throws IOException {
+        if (!canSendEncodedBy(codec)) {
+            send(value);
+            return;
+        }
+        sendLock.lock();
+        try {
+            final long startNanos = System.nanoTime();
+            final long blockedNanosAtStart = sendBlockedNanos();
+            lastSendTimeNanos = startNanos;
+            if (inJvmTransport != null) {
+                inJvmTransport.sendEncoded(value, frame);
+            } else {
+                initialiseOutputStream().drainPendingBytes();
+                outputStream.countingStream.write(frame);
+                outputStream.countingStream.flush();
+            }
+            if (transportMetrics != null) {
+                transportMetrics.recordObjectSent(System.nanoTime() - startNanos - (sendBlockedNanos() - blockedNanosAtStart));
+            }
+        } finally {
+            sendLock.unlock();
+        }
+    }
+
+    /**
+     * @param codec The codec a value was encoded with.
+     * @return Whether {@link #sendEncoded(Object, PortableSocketCodec, byte[])} can send the bytes that codec encoded as they are, which is never
+     * the case until the binary handshake has agreed on the codec.
+     */
+    boolean canSendEncodedBy(final PortableSocketCodec codec) {
+        PortableSocketCodec agreedCodec = codec();
+        return !awaitingAgreement && agreedCodec != null && agreedCodec.getName().equals(codec.getName()) && classShipping() == null;
+    }
+
+    /**
+     * Encodes a value into the length-prefixed frame {@link #send(Object)} would write with the given codec, for
+     * {@link #sendEncoded(Object, PortableSocketCodec, byte[])}.
+     *
+     * @param codec The codec to encode with.
+     * @param value The value to encode, which may be null.
+     * @return The frame, which is never changed once returned.
+     * @throws IOException Thrown if the value could not be encoded.
+     */
+    static byte[] encodeFrame(final PortableSocketCodec codec, final Object value) throws IOException {
+        ByteArrayOutputStream frame = new ByteArrayOutputStream();
+        DataOutputStream frameWriter = new DataOutputStream(frame);
+        // Room for the length prefix, which is only known once the value is encoded.
+        frameWriter.writeInt(0);
+        codec.encode(value, frameWriter);
+        frameWriter.flush();
+
+        byte[] bytes = frame.toByteArray();
+        int frameLength = bytes.length - Integer.BYTES;
+        bytes[0] = (byte) (frameLength >>> 24);
+        bytes[1] = (byte) (frameLength >>> 16);
+        bytes[2] = (byte) (frameLength >>> 8);
+        bytes[3] = (byte) frameLength;
+        return bytes;
+    }
+
+    private void sendThroughStreams(final Object toSend) throws IOException {
+        PortableSocketCodec codec = codec();
+        if (codec == null) {
+            initialiseOutputStream().writeObject(toSend);
+            outputStream.flush();
+            return;
+        }
+
+        sendBuffer.startFrame();
+        codec.encode(toSend, sendBufferWriter);
+        sendBufferWriter.flush();
+
+        // Anything still buffered in the Object stream (such as the stream header) has to go first.
+        initialiseOutputStream().drainPendingBytes();
+        sendBuffer.writeFrameTo(outputStream.countingStream);
+        outputStream.countingStream.flush();
+    }
+
+    /**
+     * Receives a single value from the remote end of this PortableSocket, as sent by {@link #send(Object)}.
+     * <p>
+     * If this PortableSocket was created with a {@link PortableSocketOptions#getCodec()}, a single length-prefixed frame is read and decoded with
+     * that codec. Otherwise, this is the same as reading an object from {@link #getInputStream()}.
+     * <p>
+     * Any heartbeat pings from the remote end are answered from within this method, and are never returned, so the remote end can only see this
+     * end as alive while something is calling this method.
+     *
+     * @return The value received, which may be null.
+     * @throws IOException            Thrown if the Socket could not be read from, or the frame was not valid for the codec.
+     * @throws ClassNotFoundException Thrown if the value referenced a class which could not be found.
+     */
+    public Object receive() throws IOException, ClassNotFoundException {
+        receiveLock.lock();
+        try {
+            while (true) {
+                ShippedClassExchange shipping = classShipping();
+                Object value = shipping != null && shipping.hasHeldBack() ? shipping.nextHeldBack() : receiveOne();
+                markReceived();
+                if (value instanceof RemoteClassShipper.ShippedObject shipped && shipping != null) {
+                    return shipping.receive(shipped);
+                }
+                if (!handledAsProtocolMessage(value)) {
+                    return value;
+                }
+            }
+        } finally {
+            receiveLock.unlock();
+        }
+    }
+
+    /**
+     * Answers any of the messages PortableSockets send each other on top of what they are asked to send, which are never returned from
+     * {@link #receive()}.
+     *
+     * @param value What was received.
+     * @return Whether it was one of those messages, and so has been dealt with.
+     */
+    boolean handledAsProtocolMessage(final Object value) throws IOException, ClassNotFoundException {
+        if (value instanceof PortableSocketHeartbeat heartbeat) {
+            if (heartbeat == PortableSocketHeartbeat.PING) {
+                sendImmediately(PortableSocketHeartbeat.PONG);
+            } else {
+                pongsReceived.incrementAndGet();
+            }
+            return true;
+        }
+        ShippedClassExchange shipping = classShipping();
+        return shipping != null && shipping.handledAsProtocolMessage(value);
+    }
+
+    /**
+     * Sends a whole file to the remote end, which should be receiving it with {@link #receiveFile(Path)}.
+     *
+     * @param file The file to send.
+     * @return How many bytes of the file were sent.
+     * @throws IOException Thrown if the file could not be read, or the Socket could not be written to.
+     * @see #sendFile(Path, long)
+     */
+    public long sendFile(@NonNull final Path file) throws IOException {
+        return sendFile(file, 0);
+    }
+
+    /**
+     * Sends a file to the remote end, starting part way through, such as to resume an earlier transfer which was cut short. The remote end should
+     * be receiving it with {@link #receiveFile(Path)}, and can find where to resume from with {@link #resumeOffsetFor(Path)}.
+     * <p>
+     * A small header is sent first, through {@link #send(Object)}, followed by the raw bytes of the file. Where this PortableSocket is built on a
+     * blocking channel, with no compression or coalescing {@link FlushPolicy}, those bytes go straight from the file to the Socket with
+     * {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}, without being copied into the JVM at all. That is always
+     * the case for a Unix domain socket, but only for TCP when this was created from a Socket which came from a
+     * {@link java.nio.channels.SocketChannel}, as the TCP connections PortableSocket opens itself have no channel. Otherwise, the bytes are
+     * streamed through the configured output in small chunks. Either way, the file is never held in memory, or serialised as an array.
+     * <p>
+     * The header carries a checksum of the whole file, which costs one read through the file before it is sent.
+     *
+     * @param file   The file to send.
+     * @param offset How many bytes at the start of the file the remote end already has.
+     * @return How many bytes of the file were sent.
+     * @throws IOException Thrown if the file could not be read, or the Socket could not be written to.
+     */
+    public long sendFile(@NonNull final Path file, final long offset) throws IOException {
+        return fileTransfers.send(file, offset);
+    }
+
+    /**
+     * Receives a file sent by {@link #sendFile(Path, long)}, writing it straight to disk as it arrives, and then checking it against the sender's
+     * checksum.
+     * <p>
+     * When the sender is resuming from an offset, the bytes before that offset are kept from whatever is already at the target, and the whole
+     * file is checked once complete.
+     *
+     * @param target Where to write the file, which is created if it does not already exist.
+     * @return What was received.
+     * @throws IOException            Thrown if the Socket could not be read from, the next thing sent was not a file, the target could not be
+     *                                written, the target did not already have enough of the file to resume from, or the finished file did not
+     *                                match the sender's checksum.
+     * @throws ClassNotFoundException Thrown if the file's header could not be read.
+     */
+    public FileTransferResult receiveFile(@NonNull final Path target) throws IOException, ClassNotFoundException {
+        return fileTransfers.receive(target);
+    }
+
+    /**
+     * Used by the receiving end of a file transfer, to find how much of the file it already has, which can then be passed to the sender's
+     * {@link #sendFile(Path, long)} to resume from.
+     *
+     * @param target Where the file is being received to.
+     * @return How many bytes are already at the target, or 0 if there is nothing there yet.
+     * @throws IOException Thrown if the target exists, but its size could not be read.
+     */
+    public static long resumeOffsetFor(@NonNull final Path target) throws IOException {
+        return Files.exists(target) ? Files.size(target) : 0;
+    }
+
+    /**
+     * Sends a heartbeat ping to the remote end, which answers it with a pong from within its own {@link #receive()}, and then forces it out
+     * regardless of the {@link FlushPolicy}.
+     *
+     * @throws IOException Thrown if the Socket could not be written to.
+     */
+    public void sendPing() throws IOException {
+        sendImmediately(PortableSocketHeartbeat.PING);
+    }
+
+    /**
+     * Marks whether heartbeats are being sent on this PortableSocket from another thread, as by a {@code HeartbeatScheduler} from when it is
+     * registered until it is unregistered.
+     *
+     * @param heartbeatsActive Whether to refuse to hand out {@link #getOutputStream()}, as nothing written to it directly could be kept apart
+     *                         from the pings.
+     */
+    public void setHeartbeatsActive(final boolean heartbeatsActive) {
+        this.heartbeatsActive = heartbeatsActive;
+    }
+
+    /**
+     * @return How many class files have been fetched from the remote end, through {@link PortableSocketOptions#getRemoteClassShipping()}.
+     */
+    public long getShippedClassesFetched() {
+        return shippedClassExchange == null ? 0 : shippedClassExchange.getClassShipper().getClassesFetched();
+    }
+
+    /**
+     * @return How many class files the remote end sent objects of were found in the local disk cache, rather than having to be fetched, through
+     * {@link PortableSocketOptions#getRemoteClassShipping()}.
+     */
+    public long getShippedClassesLoadedFromDiskCache() {
+        return shippedClassExchange == null ? 0 : shippedClassExchange.getClassShipper().getClassesLoadedFromDiskCache();
+    }
+
+    /**
+     * @return How many heartbeat pongs the remote end has sent back, that have been read by {@link #receive()}.
+     */
+    public long getPongsReceived() {
+        return pongsReceived.get();
+    }
+
+    /**
+     * @return The {@link System#nanoTime()} at which something was last sent by {@link #send(Object)}, or when this was created if nothing has.
+     */
+    public long getLastSendTimeNanos() {
+        return lastSendTimeNanos;
+    }
+
+    /**
+     * @return The {@link System#nanoTime()} at which something (including a heartbeat) was last read by {@link #receive()}, or when this was
+     * created if nothing has.
+     */
+    public long getLastReceiveTimeNanos() {
+        return lastReceiveTimeNanos;
+    }
+
+    /**
+     * Used to check whether the remote end has sent anything which has not yet been read, without blocking.
+     *
+     * @return How many bytes are waiting to be read from the underlying Socket, or 0 if that could not be found.
+     */
+    public int getUnreadByteCount() {
+        try {
+            return socket.getInputStream().available();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    // What the InJvmTransport, FileTransfers and ShippedClassExchange need of this PortableSocket, to do their part of sending and receiving.
+
+    URLClassLoader getComponentLoader() {
+        return componentLoader;
+    }
+
+    ReentrantLock getSendLock() {
+        return sendLock;
+    }
+
+    ReentrantLock getReceiveLock() {
+        return receiveLock;
+    }
+
+    boolean isCoalescing() {
+        return coalescingStream != null;
+    }
+
+    /**
+     * @return The stream beneath the Object stream and any codec, for bytes sent around them, such as the contents of a file.
+     */
+    OutputStream getRawOutputStream() throws IOException {
+        return initialiseOutputStream().countingStream;
+    }
+
+    /**
+     * Writes everything sent through {@link #getRawOutputStream()} through to the Socket, regardless of the configured {@link FlushPolicy}.
+     */
+    void flushRawOutputStream() throws IOException {
+        initialiseOutputStream().countingStream.flush();
+        if (coalescingStream != null) {
+            coalescingStream.forceFlush();
+        }
+    }
+
+    /**
+     * @return The stream beneath the Object stream and any codec, for bytes received around them, such as the contents of a file.
+     */
+    DataInputStream getRawInputStream() throws IOException {
+        getInputStream();
+        return frameInputStream;
+    }
+
+    void markSent() {
+        lastSendTimeNanos = System.nanoTime();
+    }
+
+    void markReceived() {
+        lastReceiveTimeNanos = System.nanoTime();
+    }
+
+    void sendImmediately(final Object value) throws IOException {
+        sendLock.lock();
+        try {
+            send(value);
+            if (coalescingStream != null) {
+                coalescingStream.forceFlush();
+            }
+        } finally {
+            sendLock.unlock();
+        }
+    }
+
+    Object receiveOne() throws IOException, ClassNotFoundException {
+        ObjectInputStream objectInputStream = getInputStream();
+        if (transportMetrics == null) {
+            return readOne(objectInputStream);
+        }
+
+        final long startNanos = System.nanoTime();
+        final long blockedNanosAtStart = receiveBlockedNanos();
+        try {
+            Object value = readOne(objectInputStream);
+            transportMetrics.recordObjectReceived(System.nanoTime() - startNanos - (receiveBlockedNanos() - blockedNanosAtStart));
+            return value;
+        } catch (SocketTimeoutException e) {
+            transportMetrics.recordTimeout();
+            throw e;
+        } catch (StreamCorruptedException e) {
+            transportMetrics.recordCorruption();
+            throw e;
+        }
+    }
+
+    private long sendBlockedNanos() {
+        // Not metered until the output stream is first used, which a peer in the same JVM may never do.
+        return meteredOutputStream == null ? 0 : meteredOutputStream.getBlockedNanos();
+    }
+
+    private long receiveBlockedNanos() {
+        return (meteredInputStream == null ? 0 : meteredInputStream.getBlockedNanos())
+                + (inJvmTransport == null ? 0 : inJvmTransport.getReceiveBlockedNanos());
+    }
+
+    private Object readOne(final ObjectInputStream objectInputStream) throws IOException, ClassNotFoundException {
+        if (inJvmTransport != null) {
+            return inJvmTransport.receive();
+        }
+        PortableSocketCodec codec = codec();
+        if (codec == null) {
+            return objectInputStream.readObject();
+        }
+
+        int frameLength = frameInputStream.readInt();
+        if (frameLength < 0 || frameLength > options.getMaxFrameLengthInBytes()) {
+            throw new StreamCorruptedException("Received a frame of invalid length {" + frameLength + "}, the maximum accepted is {"
+                    + options.getMaxFrameLengthInBytes() + "}.");
+        }
+        if (receiveBuffer.length < frameLength) {
+            receiveBuffer = new byte[frameLength];
+        }
+        frameInputStream.readFully(receiveBuffer, 0, frameLength);
+        return codec.decode(
+                new DataInputStream(new ByteArrayInputStream(receiveBuffer, 0, frameLength)),
+                componentLoader,
+                options.getResolvedClassCache(),
+                options.getDeserialisationLimits()
+        );
+    }
+
     /**
      * Simple pass-through method to the underlying {@link Socket#isClosed()}.
      *
-     * @return Whether the socket this PortableSocket is built on, reports itself as closed.
+     * @return Whether the socket this PortableSocket is built on, reports itself as closed, or is only left open while it lingers for the
+     * remote end after {@link #close()}.
      */
     public boolean isClosed() {
         if (this.socket == null) {
             return true;
         }
-        return this.socket.isClosed();
+        return lingering || this.socket.isClosed();
     }
 
     @Override
     public void close() {
         try {
+            if (coalescingStream != null && !socket.isClosed()) {
+                try {
+                    // Anything held back by the flush policy has already been sent as far as the caller is concerned.
+                    forceFlush();
+                } catch (IOException os) {
+                    // Ignore as going to terminate anyway
+                }
+            }
+            if (remoteStreamHeaderRejected && inJvmTransport == null && !socket.isClosed()) {
+                lingerUntilRemoteEndCloses();
+                return;
+            }
             try {
                 socket.getInputStream().close();
             } catch (IOException os) {
@@ -325,7 +1271,55 @@ public class PortableSocket implements AutoCloseable {
             }
         } catch (IOException e) {
             // ignore as going to terminate anyway.
+        } finally {
+            // Only once the Socket is closed, so that anyone blocked reading or writing has already been woken, and let go of the streams.
+            if (deflatingStream != null) {
+                deflatingStream.end();
+            }
+            if (inflatingStream != null) {
+                inflatingStream.end();
+            }
+            if (sharedComponentLoader != null) {
+                sharedComponentLoader.close();
+            }
+        }
+    }
+
+    /**
+     * After rejecting the remote end's stream header, stops writing and then waits a short while for the remote end to hang up first, discarding
+     * anything more it sends in the meantime. Closing a Socket with unread bytes waiting resets the connection rather than closing it, which would
+     * fail the remote end's next write, and could lose our own stream header before it has been read, which the remote end needs to report the
+     * mismatch for itself.
+     * <p>
+     * The waiting, and the final close of the Socket, happen on a virtual thread, so that {@link #close()} returns straight away. Otherwise, for
+     * example, a server closing many rejected connections at once would take a second for each of them.
+     */
+    private void lingerUntilRemoteEndCloses() {
+        lingering = true;
+        try {
+            socket.shutdownOutput();
+        } catch (IOException | UnsupportedOperationException e) {
+            // Ignore as going to terminate anyway
         }
+        LINGERERS.newThread(() -> {
+            final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ONE_SECOND_IN_MS);
+            try {
+                socket.setSoTimeout(ONE_SECOND_IN_MS);
+                InputStream unread = socket.getInputStream();
+                byte[] discarded = new byte[1024];
+                while (unread.read(discarded) != -1 && System.nanoTime() < deadline) {
+                    // Keep reading until the remote end hangs up, or we give up waiting on it.
+                }
+            } catch (IOException | UnsupportedOperationException e) {
+                // Ignore as going to terminate anyway
+            } finally {
+                try {
+                    socket.close();
+                } catch (IOException e) {
+                    // Ignore as going to terminate anyway
+                }
+            }
+        }).start();
     }
 
     /**
@@ -455,4 +1449,196 @@ public class PortableSocket implements AutoCloseable {
         socket.setSoTimeout(timeoutInMilliseconds);
         return previousTimeout;
     }
+
+    /**
+     * Calls through to {@link Socket#setTcpNoDelay(boolean)}, where true favours latency by sending every write immediately, and false favours
+     * throughput by allowing small writes to be combined.
+     *
+     * @param tcpNoDelay Whether to disable Nagle's algorithm.
+     * @return The previous value which would have been returned by {@link Socket#getTcpNoDelay()} before calling this method.
+     * @throws SocketException Can be thrown for example if the Socket you are trying to set options on, is closed.
+     */
+    public boolean setTcpNoDelay(final boolean tcpNoDelay) throws SocketException {
+        boolean previousValue = socket.getTcpNoDelay();
+        socket.setTcpNoDelay(tcpNoDelay);
+        return previousValue;
+    }
+
+    /**
+     * Calls through to {@link Socket#setSendBufferSize(int)} with a custom provided value.
+     *
+     * @param sizeInBytes The size hint for the Socket's send buffer.
+     * @return The previous value which would have been returned by {@link Socket#getSendBufferSize()} before calling this method.
+     * @throws SocketException Can be thrown for example if the Socket you are trying to set options on, is closed.
+     */
+    public int setSendBufferSize(final int sizeInBytes) throws SocketException {
+        int previousValue = socket.getSendBufferSize();
+        socket.setSendBufferSize(sizeInBytes);
+        return previousValue;
+    }
+
+    /**
+     * Calls through to {@link Socket#setReceiveBufferSize(int)} with a custom provided value. Note that buffers larger than 64KiB should be set
+     * through {@link SocketTuning} instead, as they need to be known about before the connection is established.
+     *
+     * @param sizeInBytes The size hint for the Socket's receive buffer.
+     * @return The previous value which would have been returned by {@link Socket#getReceiveBufferSize()} before calling this method.
+     * @throws SocketException Can be thrown for example if the Socket you are trying to set options on, is closed.
+     */
+    public int setReceiveBufferSize(final int sizeInBytes) throws SocketException {
+        int previousValue = socket.getReceiveBufferSize();
+        socket.setReceiveBufferSize(sizeInBytes);
+        return previousValue;
+    }
+
+    /**
+     * Calls through to {@link Socket#setKeepAlive(boolean)}.
+     *
+     * @param keepAlive Whether to enable TCP keepalive probes.
+     * @return The previous value which would have been returned by {@link Socket#getKeepAlive()} before calling this method.
+     * @throws SocketException Can be thrown for example if the Socket you are trying to set options on, is closed.
+     */
+    public boolean setKeepAlive(final boolean keepAlive) throws SocketException {
+        boolean previousValue = socket.getKeepAlive();
+        socket.setKeepAlive(keepAlive);
+        return previousValue;
+    }
+
+    /**
+     * Calls through to {@link Socket#setSoLinger(boolean, int)}, where any negative value disables lingering.
+     *
+     * @param lingerInSeconds How many seconds a close may linger for while unsent data is delivered.
+     * @return The previous value which would have been returned by {@link Socket#getSoLinger()} before calling this method.
+     * @throws SocketException Can be thrown for example if the Socket you are trying to set options on, is closed.
+     */
+    public int setLingerInSeconds(final int lingerInSeconds) throws SocketException {
+        int previousValue = socket.getSoLinger();
+        socket.setSoLinger(lingerInSeconds >= 0, Math.max(0, lingerInSeconds));
+        return previousValue;
+    }
+
+    /**
+     * Applies every non-null option of the given tuning to the Socket, such as {@link SocketTuning#lowLatency()} or
+     * {@link SocketTuning#highThroughput()}, to switch an existing connection between favouring latency or throughput.
+     *
+     * @param tuning The options to apply.
+     * @throws SocketException Can be thrown for example if the Socket you are trying to set options on, is closed.
+     */
+    public void applySocketTuning(@NonNull final SocketTuning tuning) throws SocketException {
+        tuning.applyTo(socket);
+    }
+
+    /**
+     * The ObjectOutputStream handed out by {@link #getOutputStream()}. This is an inner class so that the stream header content is available
+     * while the super constructor writes the stream header, before any of this class's own fields have been initialised.
+     */
+    private final class PortableObjectOutputStream extends ObjectOutputStream {
+
+        private final CountingOutputStream countingStream;
+        private final ObjectStreamResetPolicy resetPolicy;
+        private long objectsSinceReset;
+        private long bytesAtLastReset;
+        private long resetCount;
+
+        private PortableObjectOutputStream(final CountingOutputStream countingStream) throws IOException {
+            super(countingStream);
+            this.countingStream = countingStream;
+            this.resetPolicy = options.getOutputStreamResetPolicy();
+            // Both counts start after the stream header, so approximate what has been written since, which is what a reset would let go of.
+            // The header's own objects take handles until the first reset like any other, but are too few for leaving them out to matter.
+            this.bytesAtLastReset = countingStream.getBytesWritten();
+            enableReplaceObject(true);
+        }
+
+        @Override
+        protected void writeStreamHeader() throws IOException {
+            if (handshake != null) {
+                handshake.write(this, requiredSocketStreamHeaderContent);
+                return;
+            }
+            if (requiredSocketStreamHeaderContent != null) {
+                if (requiredSocketStreamHeaderContent.length == 0) {
+                    super.writeStreamHeader();
+                } else {
+                    for (Object o : requiredSocketStreamHeaderContent) {
+                        super.writeObject(o);
+                    }
+                }
+            }
+            if (streamFeatures != null) {
+                super.writeObject(streamFeatures);
+            }
+        }
+
+        /**
+         * Not used to replace anything, but this is called once for every object the stream writes which it does not already hold a handle to,
+         * which makes it the cheapest way of approximating how many handles the stream is holding. Classes and class descriptors never pass
+         * through here, so those handles are not counted.
+         */
+        @Override
+        protected Object replaceObject(final Object obj) {
+            objectsSinceReset++;
+            return obj;
+        }
+
+        /**
+         * Pushes anything buffered inside this Object stream down to the underlying stream, without flushing the Socket.
+         */
+        private void drainPendingBytes() throws IOException {
+            drain();
+        }
+
+        private long bytesSinceReset() {
+            return countingStream.getBytesWritten() - bytesAtLastReset;
+        }
+
+        @Override
+        public void reset() throws IOException {
+            super.reset();
+            // Push the reset marker through, so that it counts against the old period rather than the new one.
+            drain();
+            objectsSinceReset = 0;
+            bytesAtLastReset = countingStream.getBytesWritten();
+        }
+
+        @Override
+        public void flush() throws IOException {
+            drain();
+            if (resetPolicy.isResetDue(objectsSinceReset, bytesSinceReset())) {
+                try {
+                    reset();
+                    resetCount++;
+                } catch (IOException e) {
+                    // The stream is part way through writing an object (e.g. a custom writeObject which flushes), so leave it for the next flush.
+                }
+            }
+            super.flush();
+        }
+    }
+
+    /**
+     * A reusable buffer for encoding frames, which reserves space for the length prefix at the front so that each frame can be written out in
+     * one go, without first copying its contents.
+     */
+    private static final class FrameBuffer extends ByteArrayOutputStream {
+
+        private static final int LENGTH_PREFIX_BYTES = Integer.BYTES;
+
+        private void startFrame() {
+            reset();
+            write(0);
+            write(0);
+            write(0);
+            write(0);
+        }
+
+        private void writeFrameTo(final OutputStream out) throws IOException {
+            int frameLength = count - LENGTH_PREFIX_BYTES;
+            buf[0] = (byte) (frameLength >>> 24);
+            buf[1] = (byte) (frameLength >>> 16);
+            buf[2] = (byte) (frameLength >>> 8);
+            buf[3] = (byte) frameLength;
+            out.write(buf, 0, count);
+        }
+    }
 }
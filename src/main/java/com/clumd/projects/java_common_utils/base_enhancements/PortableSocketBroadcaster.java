@@ -0,0 +1,221 @@
+package com.clumd.projects.java_common_utils.base_enhancements;
+
+import lombok.NonNull;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends the same values to any number of subscribed {@link PortableSocket}s, encoding each value only once, however many subscribers there are.
+ * <p>
+ * Each value is encoded with the broadcaster's {@link PortableSocketCodec} into a single immutable frame, and those same bytes are written to
+ * every subscriber using a codec of the same name, exactly as their own {@link PortableSocket#send(Object)} would have written them, so the
+ * remote ends just {@link PortableSocket#receive()} as normal. Subscribers which cannot use those bytes, such as those using Java serialisation
+ * rather than a codec, since an {@link java.io.ObjectOutputStream} can only ever write its own bytes, fall back to being sent the value through
+ * their own {@link PortableSocket#send(Object)}.
+ * <p>
+ * Every subscriber is written to on its own virtual thread, from its own queue of values in the order they were broadcast, so a slow subscriber
+ * never holds up the others. A subscriber which falls too far behind is unsubscribed, rather than being left to hold every value broadcast since.
+ * <pre>
+ * {@code
+ * PortableSocketBroadcaster broadcaster = new PortableSocketBroadcaster(new BinaryPortableSocketCodec());
+ * broadcaster.subscribe(socket);
+ * broadcaster.broadcast(update).thenAccept(result -> log(result.failures()));
+ * }
+ * </pre>
+ */
+public final class PortableSocketBroadcaster implements AutoCloseable {
+
+    /**
+     * How many values may be waiting to be written to a single subscriber by default, before it is unsubscribed for being too slow.
+     */
+    public static final int DEFAULT_MAX_QUEUED_PER_SUBSCRIBER = 1024;
+
+    private final PortableSocketCodec codec;
+    private final int maxQueuedPerSubscriber;
+    private final NamedThreadFactory writerThreadFactory = new NamedThreadFactory("portable-socket", "broadcast", true);
+    private final Map<PortableSocket, Subscriber> subscribers = new ConcurrentHashMap<>();
+
+    /**
+     * @param codec The codec to encode every value with, which subscribers must also be using to share the encoded bytes.
+     */
+    public PortableSocketBroadcaster(@NonNull final PortableSocketCodec codec) {
+        this(codec, DEFAULT_MAX_QUEUED_PER_SUBSCRIBER);
+    }
+
+    /**
+     * @param codec                  The codec to encode every value with, which subscribers must also be using to share the encoded bytes.
+     * @param maxQueuedPerSubscriber How many values may be waiting to be written to a single subscriber, before it is unsubscribed for being too
+     *                               slow.
+     */
+    public PortableSocketBroadcaster(@NonNull final PortableSocketCodec codec, final int maxQueuedPerSubscriber) {
+        if (maxQueuedPerSubscriber < 1) {
+            throw new IllegalArgumentException("A PortableSocketBroadcaster must allow at least one value to be queued per subscriber.");
+        }
+        this.codec = codec;
+        this.maxQueuedPerSubscriber = maxQueuedPerSubscriber;
+    }
+
+    /**
+     * Sends every value broadcast from now on to the given PortableSocket too. Subscribing the same PortableSocket more than once has no further
+     * effect.
+     *
+     * @param target The PortableSocket to send to.
+     */
+    public void subscribe(@NonNull final PortableSocket target) {
+        subscribers.computeIfAbsent(target, Subscriber::new);
+    }
+
+    /**
+     * Stops sending further values to the given PortableSocket, though any already queued for it are still sent.
+     *
+     * @param target The PortableSocket to stop sending to.
+     * @return Whether it was subscribed.
+     */
+    public boolean unsubscribe(@NonNull final PortableSocket target) {
+        return subscribers.remove(target) != null;
+    }
+
+    /**
+     * @return How many PortableSockets are currently subscribed.
+     */
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    /**
+     * Encodes the value once, then queues it to be sent to every current subscriber, without waiting for any of them.
+     *
+     * @param value The value to send, which may be null, and should not be changed until the returned future completes, as it is passed as it
+     *              is to any subscribers which cannot share the encoded bytes.
+     * @return A future which completes once every subscriber has either been sent the value, or failed.
+     * @throws IOException Thrown if the value could not be encoded.
+     */
+    public CompletableFuture<BroadcastResult> broadcast(final Object value) throws IOException {
+        List<Subscriber> targets = List.copyOf(subscribers.values());
+        Broadcast broadcast = new Broadcast(value, PortableSocket.encodeFrame(codec, value), targets.size());
+        for (Subscriber subscriber : targets) {
+            subscriber.enqueue(broadcast);
+        }
+        return broadcast.result;
+    }
+
+    /**
+     * Unsubscribes every PortableSocket, without closing any of them. Anything already queued is still sent.
+     */
+    @Override
+    public void close() {
+        subscribers.clear();
+    }
+
+    /**
+     * A single value on its way to every subscriber, which keeps count of how many are still to be written to.
+     */
+    private static final class Broadcast {
+        private final Object value;
+        private final byte[] frame;
+        private final AtomicInteger remaining;
+        private final AtomicInteger delivered = new AtomicInteger();
+        private final Map<PortableSocket, IOException> failures = new ConcurrentHashMap<>();
+        private final CompletableFuture<BroadcastResult> result = new CompletableFuture<>();
+
+        private Broadcast(final Object value, final byte[] frame, final int subscriberCount) {
+            this.value = value;
+            this.frame = frame;
+            this.remaining = new AtomicInteger(subscriberCount);
+            if (subscriberCount == 0) {
+                complete();
+            }
+        }
+
+        private void delivered() {
+            delivered.incrementAndGet();
+            if (remaining.decrementAndGet() == 0) {
+                complete();
+            }
+        }
+
+        private void failed(final PortableSocket target, final IOException cause) {
+            failures.put(target, cause);
+            if (remaining.decrementAndGet() == 0) {
+                complete();
+            }
+        }
+
+        private void complete() {
+            result.complete(new BroadcastResult(delivered.get(), Map.copyOf(failures)));
+        }
+    }
+
+    /**
+     * The queue of values waiting to be written to a single PortableSocket, which is drained on a virtual thread whenever it is not empty.
+     */
+    private final class Subscriber {
+        private final PortableSocket target;
+        private final ConcurrentLinkedQueue<Broadcast> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger queued = new AtomicInteger();
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private volatile IOException failure;
+
+        private Subscriber(final PortableSocket target) {
+            this.target = target;
+        }
+
+        private void enqueue(final Broadcast broadcast) {
+            if (queued.incrementAndGet() > maxQueuedPerSubscriber) {
+                queued.decrementAndGet();
+                fail(new IOException("Unsubscribed for falling more than {" + maxQueuedPerSubscriber + "} values behind."));
+                broadcast.failed(target, failure);
+                return;
+            }
+            queue.offer(broadcast);
+            if (draining.compareAndSet(false, true)) {
+                writerThreadFactory.newThread(this::drain).start();
+            }
+        }
+
+        private void drain() {
+            do {
+                Broadcast broadcast;
+                while ((broadcast = queue.poll()) != null) {
+                    queued.decrementAndGet();
+                    write(broadcast);
+                }
+                draining.set(false);
+                // Anything queued after the last poll, but before giving up draining, would otherwise be left until the next broadcast.
+            } while (!queue.isEmpty() && draining.compareAndSet(false, true));
+        }
+
+        private void write(final Broadcast broadcast) {
+            if (failure != null) {
+                broadcast.failed(target, failure);
+                return;
+            }
+            try {
+                target.sendEncoded(broadcast.value, codec, broadcast.frame);
+                broadcast.delivered();
+            } catch (IOException e) {
+                fail(e);
+                broadcast.failed(target, e);
+            } catch (RuntimeException e) {
+                // Such as from a subscriber's own codec, which must still not stop the queue from draining.
+                IOException wrapped = new IOException("Failed to send a broadcast value.", e);
+                fail(wrapped);
+                broadcast.failed(target, wrapped);
+            }
+        }
+
+        private void fail(final IOException cause) {
+            if (failure == null) {
+                failure = cause;
+            }
+            subscribers.remove(target, this);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.clumd.projects.java_common_utils.base_enhancements;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.URLClassLoader;
+
+/**
+ * A way of turning objects into bytes and back again, which a {@link PortableSocket} can use through {@link PortableSocket#send(Object)} and
+ * {@link PortableSocket#receive()} instead of Java serialisation through its Object streams.
+ * <p>
+ * Every value is sent as its own length-prefixed frame, so implementations only ever see the bytes of a single value, and do not need to worry
+ * about where one value ends and the next begins.
+ * <p>
+ * Both ends of a connection must use a codec with the same {@link #getName()}, which is checked as part of the stream header handshake.
+ */
+public interface PortableSocketCodec {
+
+    /**
+     * @return A name unique to this codec and its wire format, which is compared with the remote end's codec during the stream header handshake.
+     * Any incompatible change to the wire format should also change the name.
+     */
+    String getName();
+
+    /**
+     * Writes the given value into the frame being prepared.
+     *
+     * @param value The value to encode, which may be null.
+     * @param out   Where to write the encoded bytes.
+     * @throws IOException Thrown if the value could not be encoded.
+     */
+    void encode(Object value, DataOutputStream out) throws IOException;
+
+    /**
+     * Reads a single value back out of a received frame.
+     *
+     * @param in          The bytes of exactly one frame, as written by {@link #encode(Object, DataOutputStream)} on the remote end.
+     * @param classLoader The ClassLoader of the receiving {@link PortableSocket}, for any classes the codec needs to resolve by name.
+     * @return The decoded value, which may be null.
+     * @throws IOException            Thrown if the frame was not in the format this codec expects.
+     * @throws ClassNotFoundException Thrown if the frame referenced a class which could not be found.
+     */
+    Object decode(DataInputStream in, URLClassLoader classLoader) throws IOException, ClassNotFoundException;
+
+    /**
+     * Reads a single value back out of a received frame, as {@link #decode(DataInputStream, URLClassLoader)}, but honouring the receiving
+     * {@link PortableSocket}'s {@link PortableSocketOptions#getDeserialisationLimits() limits} and
+     * {@link PortableSocketOptions#getResolvedClassCache() resolved class cache}. This is what a PortableSocket calls, so codecs which fall back to
+     * Java serialisation, or which nest values within values, should override it to enforce the limits there too. By default, the limits and cache
+     * are ignored.
+     *
+     * @param in                    The bytes of exactly one frame, as written by {@link #encode(Object, DataOutputStream)} on the remote end.
+     * @param classLoader           The ClassLoader of the receiving {@link PortableSocket}, for any classes the codec needs to resolve by name.
+     * @param resolvedClassCache    Where the receiving PortableSocket remembers the classes it has resolved.
+     * @param deserialisationLimits The limits to enforce on the decoded value, or null if there are none.
+     * @return The decoded value, which may be null.
+     * @throws IOException            Thrown if the frame was not in the format this codec expects, or broke the limits.
+     * @throws ClassNotFoundException Thrown if the frame referenced a class which could not be found.
+     */
+    default Object decode(
+            DataInputStream in,
+            URLClassLoader classLoader,
+            ResolvedClassCache resolvedClassCache,
+            DeserialisationLimits deserialisationLimits
+    ) throws IOException, ClassNotFoundException {
+        return decode(in, classLoader);
+    }
+}
@@ -0,0 +1,40 @@
+package com.clumd.projects.java_common_utils.base_enhancements;
+
+import lombok.Data;
+
+import java.io.Serial;
+import java.io.Serializable;
+
+/**
+ * The stream features a {@link PortableSocket} has been configured with which the remote end must also agree to. This is written as the final
+ * entry of the stream header, and the remote end's is read and compared during input stream initialisation, so that a mismatch is reported as a
+ * failed handshake rather than as garbled data later on.
+ */
+@Data
+final class PortableSocketFeatures implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    private final String codecName;
+    private final boolean compressed;
+    private final boolean remoteClassShipping;
+    private final boolean multiplexed;
+
+    /**
+     * @param options The options a {@link PortableSocket} was created with.
+     * @return The features which need agreeing with the remote end, or null if there are none, in which case nothing extra is written to the
+     * stream header, so that the socket stays compatible with peers which know nothing of these features.
+     */
+    static PortableSocketFeatures from(final PortableSocketOptions options) {
+        if (options.getCodec() == null && options.getCompression() == null && options.getRemoteClassShipping() == null && !options.isMultiplexed()) {
+            return null;
+        }
+        return new PortableSocketFeatures(
+                options.getCodec() == null ? null : options.getCodec().getName(),
+                options.getCompression() != null,
+                options.getRemoteClassShipping() != null,
+                options.isMultiplexed()
+        );
+    }
+}
@@ -0,0 +1,18 @@
+package com.clumd.projects.java_common_utils.base_enhancements;
+
+/**
+ * The work to carry out for a single connection accepted by a {@link PortableServerSocket}.
+ * <p>
+ * Implementations do not need to close the provided socket, as it will always be closed once this handler returns or throws.
+ */
+@FunctionalInterface
+public interface PortableSocketHandler {
+
+    /**
+     * Serves a single accepted connection, which may throw an unchecked or checked exception.
+     *
+     * @param portableSocket The freshly accepted connection, already wrapped with the server's configured stream header content.
+     * @throws Exception Any problem which occurred while serving this connection.
+     */
+    void handle(PortableSocket portableSocket) throws Exception;
+}
@@ -0,0 +1,231 @@
+package com.clumd.projects.java_common_utils.base_enhancements;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.StreamCorruptedException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The compact binary stream header a {@link PortableSocket} exchanges instead of its Object based one, when created with
+ * {@link PortableSocketOptions#isBinaryHandshake()}. Rather than serialising a features object, and every piece of stream header content, each end
+ * writes:
+ * <ol>
+ *     <li>4 magic bytes, so that a peer which is not speaking this handshake is reported as such, rather than as garbled data.</li>
+ *     <li>1 byte of protocol version.</li>
+ *     <li>A 4 byte bitmap of the features which change what goes over the streams, followed by the codec's name if there is one.</li>
+ *     <li>The stream header content, as a 2 byte count, then each entry tagged with its type, with Strings, Integers, Longs, Booleans and nulls
+ *     written directly, and anything else serialised as before.</li>
+ * </ol>
+ * Both ends write theirs as soon as they are created, and then write nothing more until they have read the other's, so everything is negotiated
+ * in a single round trip. Each end then speaks the lower of the two protocol versions, and uses compression, remote class shipping and the codec
+ * only if both ends asked for them, and for the codec, named the same one. Multiplexing is the exception, which both ends must agree on, as a
+ * {@code MultiplexedPortableSocket} has nothing to fall back to. The layout never changes, so that ends of different versions can always read
+ * each other's, and a feature this end has never heard of is simply not used.
+ */
+final class PortableSocketHandshake {
+
+    static final int MAGIC = 0x50534B54;
+    static final int PROTOCOL_VERSION = 1;
+
+    static final int COMPRESSION = 1;
+    static final int CODEC = 1 << 1;
+    static final int REMOTE_CLASS_SHIPPING = 1 << 2;
+    static final int MULTIPLEXED = 1 << 3;
+
+    private static final int TAG_NULL = 0;
+    private static final int TAG_STRING = 1;
+    private static final int TAG_INTEGER = 2;
+    private static final int TAG_LONG = 3;
+    private static final int TAG_BOOLEAN = 4;
+    private static final int TAG_SERIALISED = 5;
+
+    // writeUTF can only write up to this many bytes, which a String of this many chars can never exceed.
+    private static final int MAX_DIRECT_STRING_LENGTH = 65535 / 3;
+
+    /**
+     * What both ends agreed on through the handshake.
+     *
+     * @param protocolVersion The lower of the two ends' protocol versions.
+     * @param features        The features both ends asked for.
+     */
+    record Agreement(int protocolVersion, int features) {
+    }
+
+    private final int features;
+    private final String codecName;
+
+    private PortableSocketHandshake(final int features, final String codecName) {
+        this.features = features;
+        this.codecName = codecName;
+    }
+
+    /**
+     * @param options The options a {@link PortableSocket} was created with.
+     * @return The handshake to exchange with the remote end.
+     */
+    static PortableSocketHandshake from(final PortableSocketOptions options) {
+        return new PortableSocketHandshake(featuresOf(options), options.getCodec() == null ? null : options.getCodec().getName());
+    }
+
+    /**
+     * @param options The options a {@link PortableSocket} was created with.
+     * @return The bitmap of the features which change what goes over the streams, which this end asks for.
+     */
+    static int featuresOf(final PortableSocketOptions options) {
+        int features = 0;
+        if (options.getCompression() != null) {
+            features |= COMPRESSION;
+        }
+        if (options.getCodec() != null) {
+            features |= CODEC;
+        }
+        if (options.getRemoteClassShipping() != null) {
+            features |= REMOTE_CLASS_SHIPPING;
+        }
+        if (options.isMultiplexed()) {
+            features |= MULTIPLEXED;
+        }
+        return features;
+    }
+
+    /**
+     * Writes this end's half of the handshake, which must be called while the stream is still writing its header, as that is the only time it
+     * writes raw bytes rather than block data.
+     *
+     * @param out           The stream to write to.
+     * @param headerContent The stream header content to write, where null is the same as none.
+     * @throws IOException Thrown if the stream could not be written to.
+     */
+    void write(final ObjectOutputStream out, final Object[] headerContent) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeByte(PROTOCOL_VERSION);
+        out.writeInt(features);
+        if (codecName != null) {
+            out.writeUTF(codecName);
+        }
+
+        int entries = headerContent == null ? 0 : headerContent.length;
+        if (entries > 0xFFFF) {
+            throw new IOException("A PortableSocket's stream header cannot hold more than {" + 0xFFFF + "} entries.");
+        }
+        out.writeShort(entries);
+        for (int i = 0; i < entries; i++) {
+            writeEntry(out, headerContent[i]);
+        }
+    }
+
+    private static void writeEntry(final ObjectOutputStream out, final Object entry) throws IOException {
+        if (entry == null) {
+            out.writeByte(TAG_NULL);
+        } else if (entry instanceof String string && string.length() <= MAX_DIRECT_STRING_LENGTH) {
+            out.writeByte(TAG_STRING);
+            out.writeUTF(string);
+        } else if (entry instanceof Integer integer) {
+            out.writeByte(TAG_INTEGER);
+            out.writeInt(integer);
+        } else if (entry instanceof Long longValue) {
+            out.writeByte(TAG_LONG);
+            out.writeLong(longValue);
+        } else if (entry instanceof Boolean bool) {
+            out.writeByte(TAG_BOOLEAN);
+            out.writeBoolean(bool);
+        } else {
+            out.writeByte(TAG_SERIALISED);
+            out.writeObject(entry);
+        }
+    }
+
+    /**
+     * Reads the remote end's half of the handshake, and negotiates what both ends will use from it and this end's, which must be called while the
+     * stream is still reading its header.
+     *
+     * @param in                    The stream to read from.
+     * @param expectedHeaderContent The stream header content the remote end must have sent, where null is the same as none.
+     * @return What both ends will use from now on.
+     * @throws StreamCorruptedException Thrown if the remote end is not speaking this handshake, does not agree on multiplexing, or did not send
+     *                                  the expected stream header content.
+     * @throws IOException              Thrown if the stream could not be read from.
+     */
+    Agreement read(final ObjectInputStream in, final Object[] expectedHeaderContent) throws IOException {
+        int magic = in.readInt();
+        if (magic != MAGIC) {
+            throw new StreamCorruptedException("The remote end of this PortableSocket is not using the binary handshake. " +
+                    "Expected magic {" + Integer.toHexString(MAGIC) + "} but got {" + Integer.toHexString(magic) + "} instead.");
+        }
+        int remoteVersion = in.readUnsignedByte();
+        if (remoteVersion < 1) {
+            throw new StreamCorruptedException("The remote end of this PortableSocket sent an invalid protocol version {" + remoteVersion + "}.");
+        }
+        int remoteFeatures = in.readInt();
+        String remoteCodecName = (remoteFeatures & CODEC) == 0 ? null : in.readUTF();
+        if ((remoteFeatures & MULTIPLEXED) != (features & MULTIPLEXED)) {
+            throw new StreamCorruptedException("The remote end of this PortableSocket does not agree on the stream features. " +
+                    "Expected {" + describe(features, codecName) + "} but got {" + describe(remoteFeatures, remoteCodecName) + "} instead.");
+        }
+        int agreedFeatures = features & remoteFeatures;
+        if (!Objects.equals(remoteCodecName, codecName)) {
+            agreedFeatures &= ~CODEC;
+        }
+
+        int expectedEntries = expectedHeaderContent == null ? 0 : expectedHeaderContent.length;
+        int remoteEntries = in.readUnsignedShort();
+        if (remoteEntries != expectedEntries) {
+            throw new StreamCorruptedException("Expected {" + expectedEntries + "} entries in the stream header, but the remote end sent {" +
+                    remoteEntries + "} instead.");
+        }
+        for (int i = 0; i < expectedEntries; i++) {
+            Object expected = expectedHeaderContent[i];
+            Object received = readEntry(in);
+            if (!Objects.equals(expected, received)) {
+                throw new StreamCorruptedException("Expected to read a " +
+                        "{" + (expected == null ? "null" : expected.getClass().getCanonicalName()) + "} from the stream header, but got a " +
+                        "non-matching {" + (received == null ? "null" : received.getClass().getCanonicalName()) + "} instead.");
+            }
+        }
+        return new Agreement(Math.min(PROTOCOL_VERSION, remoteVersion), agreedFeatures);
+    }
+
+    private static Object readEntry(final ObjectInputStream in) throws IOException {
+        int tag = in.readUnsignedByte();
+        return switch (tag) {
+            case TAG_NULL -> null;
+            case TAG_STRING -> in.readUTF();
+            case TAG_INTEGER -> in.readInt();
+            case TAG_LONG -> in.readLong();
+            case TAG_BOOLEAN -> in.readBoolean();
+            case TAG_SERIALISED -> {
+                try {
+                    yield in.readObject();
+                } catch (ClassNotFoundException e) {
+                    throw new StreamCorruptedException("Failed to initialise ObjectInputStream with custom header requirements. " +
+                            "Unknown class received. " + e.getMessage());
+                }
+            }
+            default -> throw new StreamCorruptedException("Unknown stream header entry type {" + tag + "}.");
+        };
+    }
+
+    private static String describe(final int features, final String codecName) {
+        List<String> names = new ArrayList<>();
+        if ((features & COMPRESSION) != 0) {
+            names.add("compression");
+        }
+        if ((features & CODEC) != 0) {
+            names.add("codec " + codecName);
+        }
+        if ((features & REMOTE_CLASS_SHIPPING) != 0) {
+            names.add("remote class shipping");
+        }
+        if ((features & MULTIPLEXED) != 0) {
+            names.add("multiplexed");
+        }
+        int unknown = features & ~(COMPRESSION | CODEC | REMOTE_CLASS_SHIPPING | MULTIPLEXED);
+        if (unknown != 0) {
+            names.add("unknown features " + Integer.toBinaryString(unknown));
+        }
+        return names.isEmpty() ? "none" : String.join(", ", names);
+    }
+}
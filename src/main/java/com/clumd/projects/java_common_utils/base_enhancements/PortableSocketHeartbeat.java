@@ -0,0 +1,10 @@
+package com.clumd.projects.java_common_utils.base_enhancements;
+
+/**
+ * The messages PortableSockets exchange between themselves to check the remote end is still there, which {@link PortableSocket#receive()}
+ * handles itself, rather than returning them to the caller.
+ */
+enum PortableSocketHeartbeat {
+    PING,
+    PONG
+}
@@ -0,0 +1,173 @@
+package com.clumd.projects.java_common_utils.base_enhancements;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.nio.file.Path;
+import java.util.function.IntFunction;
+
+/**
+ * This Class represents the optional behaviour a {@link PortableSocket} can be created with, on top of its stream header content.
+ * <p></p>
+ * Every value defaults to the plain behaviour of a {@link PortableSocket} created without any options, so only the behaviour being changed needs to
+ * be provided:
+ * <pre>
+ * {@code
+ * PortableSocketOptions options = PortableSocketOptions.builder()
+ *         .outputStreamResetPolicy(ObjectStreamResetPolicy.perMessage())
+ *         .build();
+ * }
+ * </pre>
+ */
+@Data
+@Builder
+public class PortableSocketOptions {
+
+    /**
+     * When the socket's {@link java.io.ObjectOutputStream} should be automatically reset, to stop both ends of a long-lived connection from
+     * accumulating every object ever sent.
+     */
+    @Builder.Default
+    private final ObjectStreamResetPolicy outputStreamResetPolicy = ObjectStreamResetPolicy.never();
+
+    /**
+     * The codec used by {@link PortableSocket#send(Object)} and {@link PortableSocket#receive()}, in place of Java serialisation through the
+     * socket's Object streams. Leaving this as null will keep using the Object streams.
+     * <p>
+     * When a codec is set, the remote end must be using a codec of the same name, which is checked as part of the stream header handshake,
+     * unless negotiated through the {@link #binaryHandshake}.
+     */
+    @Builder.Default
+    private final PortableSocketCodec codec = null;
+
+    /**
+     * The largest frame which {@link PortableSocket#receive()} will accept when using a {@link #codec}, and the largest a single flush may
+     * inflate to when using {@link #compression}, so that a misbehaving peer cannot make us allocate an unbounded buffer.
+     */
+    @Builder.Default
+    private final int maxFrameLengthInBytes = 64 * 1024 * 1024;
+
+    /**
+     * How everything written after the stream header should be compressed. Leaving this as null will not compress anything.
+     * <p>
+     * When set, the remote end must also be using compression, which is checked as part of the stream header handshake, unless negotiated
+     * through the {@link #binaryHandshake}.
+     */
+    @Builder.Default
+    private final StreamCompression compression = null;
+
+    /**
+     * What a flush of the socket's output actually does, allowing small messages to be coalesced into fewer writes to the Socket.
+     */
+    @Builder.Default
+    private final FlushPolicy flushPolicy = FlushPolicy.immediate();
+
+    /**
+     * The low level options to apply to the Socket when the PortableSocket is created.
+     */
+    @Builder.Default
+    private final SocketTuning socketTuning = SocketTuning.systemDefaults();
+
+    /**
+     * Secures connections made over TCP with TLS. Leaving this as null will send everything in the clear.
+     * <p>
+     * When set, a {@link PortableServerSocket} created with these options secures every TCP connection it accepts in the same way.
+     */
+    @Builder.Default
+    private final PortableSocketTls tls = null;
+
+    /**
+     * Where a peer listening on a given TCP port also listens for Unix domain socket connections, such as
+     * {@link PortableSocket#unixDomainSocketPath(Path, int)}. When set, connecting by hostname to a {@link PortableSocket#isLocalHostname(String)
+     * local} peer whose socket file exists goes through that instead, skipping the TCP stack, and falling back to TCP if it cannot connect.
+     * Leaving this as null will always use TCP.
+     * <p>
+     * Whoever can create a file at these paths receives the connections meant for the TCP port, so they must be within a directory only the
+     * application's own user can write to, never a shared one such as the system temporary directory. As a last line of defence, a socket file
+     * which is not owned by the current user is never connected to, and TCP is used instead.
+     */
+    @Builder.Default
+    private final IntFunction<Path> unixDomainSocketPathForLocalPort = null;
+
+    /**
+     * Whether connecting by hostname to a {@link PortableSocket#isLocalHostname(String) local} peer, which is listening in this same JVM on
+     * {@link InJvmSocketAddress#forPort(int)}, should connect to it directly, skipping the network stack entirely. This is tried before
+     * {@link #unixDomainSocketPathForLocalPort}, and falls back to it, or TCP, if the peer is not listening in this JVM.
+     */
+    @Builder.Default
+    private final boolean inJvmForLocalPorts = false;
+
+    /**
+     * Whether values sent to a peer in the same JVM should be copied, by serialising them (with the {@link #codec} if there is one), rather than
+     * passed by reference, so that neither end sees what the other does to them afterwards.
+     */
+    @Builder.Default
+    private final boolean copyInJvmObjects = false;
+
+    /**
+     * How many writes, and separately how many values sent, each direction of a connection to a peer in the same JVM holds for the end reading it,
+     * before the next waits for that end to catch up, as it would once a Socket's buffers are full. This is decided by the connecting end, for both
+     * directions.
+     */
+    @Builder.Default
+    private final int inJvmMailboxCapacity = InJvmSocket.DEFAULT_MAILBOX_CAPACITY;
+
+    /**
+     * Where the socket's {@link ObjectInputStreamWithClassLoader} remembers the classes it has resolved, which can be shared between any number of
+     * PortableSockets, whether or not they use the same class loader.
+     */
+    @Builder.Default
+    private final ResolvedClassCache resolvedClassCache = ResolvedClassCache.shared();
+
+    /**
+     * The limits to enforce on every object read through the socket's {@link ObjectInputStreamWithClassLoader}, so that a misbehaving remote end
+     * cannot exhaust this end's memory. Leaving this as null will enforce none beyond any process wide {@link java.io.ObjectInputFilter}.
+     */
+    @Builder.Default
+    private final DeserialisationLimits deserialisationLimits = null;
+
+    /**
+     * Lets the remote end send objects whose classes this end does not have, by fetching their class files from it. Leaving this as null will
+     * only ever use the classes this end already has.
+     * <p>
+     * When set, the remote end must also be shipping classes, which is checked as part of the stream header handshake, unless
+     * negotiated through the {@link #binaryHandshake}.
+     */
+    @Builder.Default
+    private final RemoteClassShipping remoteClassShipping = null;
+
+    /**
+     * Whether the socket should exchange the compact binary {@link PortableSocketHandshake} instead of its Object based stream header, which
+     * writes the stream features as a bitmap, and simple stream header content (Strings, Integers, Longs, Booleans and nulls) without serialising
+     * it. Both ends must agree on this, and with it on, the handshake is always exchanged, even when the stream header content is
+     * {@code (Object[]) null}.
+     * <p>
+     * Rather than having to match exactly, the {@link #compression}, {@link #codec} and {@link #remoteClassShipping} are then negotiated, each
+     * being used only if both ends asked for it, so that either end can turn them on or off without redeploying the other. As nothing can be
+     * written until that is known, the first thing sent waits for the remote end's handshake, initialising the input stream as
+     * {@link PortableSocket#getInputStream()} does, unless a component loader has already been given.
+     */
+    @Builder.Default
+    private final boolean binaryHandshake = false;
+
+    /**
+     * Whether the socket is going to be wrapped in a {@code MultiplexedPortableSocket}, which the remote end must agree on in the stream header,
+     * so that a peer expecting plain messages is reported at connection time, rather than as unexpected messages later on.
+     */
+    @Builder.Default
+    private final boolean multiplexed = false;
+
+    /**
+     * Whether the socket should keep {@link TransportMetrics}, counting what crosses it and timing how long that takes. This is off by default, so
+     * that a socket which is never asked for its metrics does not pay for measuring every read and write.
+     */
+    @Builder.Default
+    private final boolean collectTransportMetrics = false;
+
+    /**
+     * @return The options a {@link PortableSocket} uses when none are provided.
+     */
+    public static PortableSocketOptions defaults() {
+        return PortableSocketOptions.builder().build();
+    }
+}
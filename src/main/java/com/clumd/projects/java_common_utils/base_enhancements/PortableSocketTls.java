@@ -0,0 +1,139 @@
+package com.clumd.projects.java_common_utils.base_enhancements;
+
+import lombok.Builder;
+import lombok.Data;
+import lombok.NonNull;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.SSLSocket;
+import java.io.IOException;
+import java.net.Socket;
+import java.time.Duration;
+
+/**
+ * Secures a {@link PortableSocket}'s TCP connection with TLS, so that it can be used across networks which are not trusted, with the keys and
+ * trust decided by the given {@link SSLContext}.
+ * <p>
+ * A full TLS handshake costs several round trips and some expensive public key operations, so the SSLContext's session caches are tuned to keep
+ * sessions for long enough that reconnecting to the same peer resumes one instead, as TLS 1.3 does with pre-shared keys, skipping the certificate
+ * exchange entirely. How long every handshake took, and how many were resumed, are kept in the socket's {@link TransportMetrics}. The tuning is
+ * applied to the SSLContext itself, so is shared with anything else using the same one.
+ * <p>
+ * Only connections made over TCP are secured, as connections through a Unix domain socket, or to a peer in the same JVM, never leave the host.
+ * <pre>
+ * {@code
+ * PortableSocketOptions options = PortableSocketOptions.builder()
+ *         .tls(PortableSocketTls.using(sslContext))
+ *         .build();
+ * }
+ * </pre>
+ */
+@Data
+@Builder
+public class PortableSocketTls {
+
+    /**
+     * The keys this end presents, and the peers it trusts.
+     */
+    @NonNull
+    private final SSLContext sslContext;
+
+    /**
+     * Which TLS versions may be negotiated, as per {@link SSLParameters#setProtocols(String[])}. Leaving this as null allows whatever the
+     * SSLContext allows by default.
+     */
+    @Builder.Default
+    private final String[] enabledProtocols = new String[]{"TLSv1.3"};
+
+    /**
+     * How many sessions the SSLContext keeps for resumption, for each of connecting and accepting, as per
+     * {@link SSLSessionContext#setSessionCacheSize(int)}, where 0 has no limit.
+     */
+    @Builder.Default
+    private final int sessionCacheSize = 1024;
+
+    /**
+     * How long a session may be resumed for after it was first established, as per {@link SSLSessionContext#setSessionTimeout(int)}.
+     */
+    @Builder.Default
+    private final Duration sessionTimeout = Duration.ofHours(4);
+
+    /**
+     * Whether connecting should check the peer's certificate matches the hostname connected to, as a browser would. This should only be turned
+     * off when the peer's identity is checked some other way, such as by trusting only its own certificate.
+     */
+    @Builder.Default
+    private final boolean verifyHostname = true;
+
+    /**
+     * Whether accepting should require the connecting peer to present a certificate this end trusts, rather than only the other way around.
+     */
+    @Builder.Default
+    private final boolean needClientAuth = false;
+
+    /**
+     * @param sslContext The keys this end presents, and the peers it trusts.
+     * @return TLS 1.3 with the default session caching, checking the peer's hostname.
+     */
+    public static PortableSocketTls using(@NonNull final SSLContext sslContext) {
+        return PortableSocketTls.builder().sslContext(sslContext).build();
+    }
+
+    /**
+     * Layers TLS over a connected TCP socket, as the end which connected. The handshake is left for the first read or write, or
+     * {@link SSLSocket#startHandshake()}.
+     *
+     * @param connected The TCP socket, which is closed along with the returned one.
+     * @param hostname  The hostname connected to, which sessions are resumed by, and the peer's certificate is checked against.
+     * @param port      The port connected to.
+     * @return The socket to use instead.
+     * @throws IOException Thrown if the TLS socket could not be created.
+     */
+    SSLSocket connecting(final Socket connected, final String hostname, final int port) throws IOException {
+        tuneSessionContext(sslContext.getClientSessionContext());
+        SSLSocket secured = (SSLSocket) sslContext.getSocketFactory().createSocket(connected, hostname, port, true);
+        SSLParameters parameters = secured.getSSLParameters();
+        if (enabledProtocols != null) {
+            parameters.setProtocols(enabledProtocols);
+        }
+        if (verifyHostname) {
+            parameters.setEndpointIdentificationAlgorithm("HTTPS");
+        }
+        secured.setSSLParameters(parameters);
+        return secured;
+    }
+
+    /**
+     * Layers TLS over an accepted TCP socket, as the end which accepted. The handshake is left for the first read or write, or
+     * {@link SSLSocket#startHandshake()}.
+     *
+     * @param accepted The TCP socket, which is closed along with the returned one.
+     * @return The socket to use instead.
+     * @throws IOException Thrown if the TLS socket could not be created.
+     */
+    SSLSocket accepting(final Socket accepted) throws IOException {
+        tuneSessionContext(sslContext.getServerSessionContext());
+        SSLSocket secured = (SSLSocket) sslContext.getSocketFactory().createSocket(accepted, null, true);
+        secured.setUseClientMode(false);
+        SSLParameters parameters = secured.getSSLParameters();
+        if (enabledProtocols != null) {
+            parameters.setProtocols(enabledProtocols);
+        }
+        parameters.setNeedClientAuth(needClientAuth);
+        secured.setSSLParameters(parameters);
+        return secured;
+    }
+
+    private void tuneSessionContext(final SSLSessionContext sessionContext) {
+        // Set on every connection, as something else sharing the SSLContext may have changed them since.
+        if (sessionContext.getSessionCacheSize() != sessionCacheSize) {
+            sessionContext.setSessionCacheSize(sessionCacheSize);
+        }
+        int timeoutInSeconds = (int) Math.min(Integer.MAX_VALUE, sessionTimeout.toSeconds());
+        if (sessionContext.getSessionTimeout() != timeoutInSeconds) {
+            sessionContext.setSessionTimeout(timeoutInSeconds);
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.clumd.projects.java_common_utils.base_enhancements;
+
+import lombok.NonNull;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Remembers the encoded form of values which are sent over and over again without changing, such as configuration snapshots or reference tables,
+ * so that sending them through any {@link PortableSocket} using the same {@link PortableSocketCodec} writes the remembered bytes, rather than
+ * encoding the value again every time.
+ * <p>
+ * Values can be remembered by identity, for objects which are never changed once built, or under a key and version, for values which are
+ * replaced from time to time. A versioned value is only ever sent from the cache for exactly the version it was cached under, so sending a new
+ * version always encodes it afresh, and the old bytes are dropped. A value must not be changed without also changing its version (or for values
+ * remembered by identity, at all), as nothing else would tell the cache that its bytes are now out of date.
+ * <p>
+ * The cache holds at most a given number of bytes, evicting whatever was least recently sent to make room, and values too large to ever fit are
+ * just encoded every time. Anything remembered by identity is held on to until it is evicted or {@link #invalidateAll() invalidated}.
+ * PortableSockets which cannot use the cached bytes, such as those using Java serialisation rather than a codec, are sent the value through their
+ * own {@link PortableSocket#send(Object)} as normal.
+ * <pre>
+ * {@code
+ * PreSerialisedMessageCache cache = new PreSerialisedMessageCache(new BinaryPortableSocketCodec());
+ * cache.send(socket, "routing-table", routingTable.getVersion(), routingTable);
+ * }
+ * </pre>
+ */
+public final class PreSerialisedMessageCache {
+
+    /**
+     * How many bytes of encoded values are remembered by default.
+     */
+    public static final long DEFAULT_MAX_CACHED_BYTES = 16 * 1024 * 1024;
+
+    private final PortableSocketCodec codec;
+    private final long maxCachedBytes;
+    private final ReentrantLock lock = new ReentrantLock();
+    // In order of when each was last sent, least recent first, so only touched while holding the lock.
+    private final LinkedHashMap<Object, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedBytes;
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+
+    /**
+     * @param codec The codec to encode values with, which PortableSockets must also be using to be sent the cached bytes.
+     */
+    public PreSerialisedMessageCache(@NonNull final PortableSocketCodec codec) {
+        this(codec, DEFAULT_MAX_CACHED_BYTES);
+    }
+
+    /**
+     * @param codec          The codec to encode values with, which PortableSockets must also be using to be sent the cached bytes.
+     * @param maxCachedBytes How many bytes of encoded values to remember at most.
+     */
+    public PreSerialisedMessageCache(@NonNull final PortableSocketCodec codec, final long maxCachedBytes) {
+        if (maxCachedBytes < 1) {
+            throw new IllegalArgumentException("A PreSerialisedMessageCache must be able to hold at least one byte.");
+        }
+        this.codec = codec;
+        this.maxCachedBytes = maxCachedBytes;
+    }
+
+    /**
+     * Sends a value which is never changed, remembering its encoded form by identity, so that sending the same object again writes the same
+     * bytes without encoding it. An equal but different object is encoded and remembered separately.
+     *
+     * @param target The PortableSocket to send through.
+     * @param value  The value to send.
+     * @throws IOException Thrown if the value could not be encoded, or the Socket could not be written to.
+     */
+    public void send(@NonNull final PortableSocket target, @NonNull final Object value) throws IOException {
+        if (!target.canSendEncodedBy(codec)) {
+            target.send(value);
+            return;
+        }
+        target.sendEncoded(value, codec, frameFor(new IdentityKey(value), 0, value));
+    }
+
+    /**
+     * Sends a value which is replaced from time to time, remembering its encoded form under the given key, for as long as the version stays the
+     * same. Sending under a different version encodes the new value, and replaces whatever was remembered for the old one.
+     *
+     * @param target  The PortableSocket to send through.
+     * @param key     What the value is remembered under, compared by {@link Object#equals(Object)}.
+     * @param version The version of the value, which must change whenever the value does.
+     * @param value   The value to send, which may be null.
+     * @throws IOException Thrown if the value could not be encoded, or the Socket could not be written to.
+     */
+    public void send(@NonNull final PortableSocket target, @NonNull final Object key, final long version, final Object value) throws IOException {
+        if (!target.canSendEncodedBy(codec)) {
+            target.send(value);
+            return;
+        }
+        target.sendEncoded(value, codec, frameFor(key, version, value));
+    }
+
+    private byte[] frameFor(final Object key, final long version, final Object value) throws IOException {
+        lock.lock();
+        try {
+            Entry cached = entries.get(key);
+            if (cached != null && cached.version() == version) {
+                hitCount.increment();
+                return cached.frame();
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        // Encoded without holding the lock, so a large value does not hold up everything else being sent from the cache meanwhile.
+        missCount.increment();
+        byte[] frame = PortableSocket.encodeFrame(codec, value);
+
+        lock.lock();
+        try {
+            Entry replaced = frame.length > maxCachedBytes ? entries.remove(key) : entries.put(key, new Entry(version, frame));
+            if (replaced != null) {
+                cachedBytes -= replaced.frame().length;
+            }
+            if (frame.length <= maxCachedBytes) {
+                cachedBytes += frame.length;
+                evictUntilWithinLimit();
+            }
+        } finally {
+            lock.unlock();
+        }
+        return frame;
+    }
+
+    private void evictUntilWithinLimit() {
+        Iterator<Map.Entry<Object, Entry>> leastRecentlySent = entries.entrySet().iterator();
+        while (cachedBytes > maxCachedBytes && leastRecentlySent.hasNext()) {
+            cachedBytes -= leastRecentlySent.next().getValue().frame().length;
+            leastRecentlySent.remove();
+            evictionCount.increment();
+        }
+    }
+
+    /**
+     * Forgets whatever is remembered under a key, whatever its version.
+     *
+     * @param key The key a value was sent under.
+     */
+    public void invalidate(@NonNull final Object key) {
+        lock.lock();
+        try {
+            Entry removed = entries.remove(key);
+            if (removed != null) {
+                cachedBytes -= removed.frame().length;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Forgets everything remembered, including everything remembered by identity.
+     */
+    public void invalidateAll() {
+        lock.lock();
+        try {
+            entries.clear();
+            cachedBytes = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return How many values are currently remembered.
+     */
+    public int getCachedCount() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return How many bytes the remembered values take up, which never exceeds the maximum given.
+     */
+    public long getCachedBytes() {
+        lock.lock();
+        try {
+            return cachedBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return How many sends wrote remembered bytes, without encoding anything.
+     */
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    /**
+     * @return How many sends had to encode their value.
+     */
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    /**
+     * @return How many values have been forgotten to make room for others.
+     */
+    public long getEvictionCount() {
+        return evictionCount.sum();
+    }
+
+    private record Entry(long version, byte[] frame) {
+    }
+
+    /**
+     * Compares the value it wraps by identity rather than equality, so values remembered by identity never clash with each other, or with keys.
+     */
+    private record IdentityKey(Object value) {
+        @Override
+        public boolean equals(final Object other) {
+            return other instanceof IdentityKey identityKey && identityKey.value == value;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(value);
+        }
+    }
+}
@@ -0,0 +1,442 @@
+package com.clumd.projects.java_common_utils.base_enhancements;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serial;
+import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.lang.ref.WeakReference;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Carries out {@link RemoteClassShipping} for a single {@link PortableSocket}, which handles the messages this defines from within its
+ * {@link PortableSocket#receive()}, as it does heartbeats.
+ */
+final class RemoteClassShipper {
+
+    /**
+     * A value serialised on its own, with each class tagged with its hash.
+     */
+    record ShippedObject(byte[] serialised) implements Serializable {
+        @Serial
+        private static final long serialVersionUID = 1L;
+    }
+
+    /**
+     * Asks the remote end for the class file with the given hash.
+     */
+    record ClassRequest(String className, String sha256) implements Serializable {
+        @Serial
+        private static final long serialVersionUID = 1L;
+    }
+
+    /**
+     * Answers a {@link ClassRequest}, with null class bytes if the remote end could not find the class file.
+     */
+    record ClassResponse(String className, String sha256, byte[] classBytes) implements Serializable {
+        @Serial
+        private static final long serialVersionUID = 1L;
+    }
+
+    /**
+     * A class which could not be loaded by this end, nor found in the disk cache, so needs fetching.
+     */
+    record MissingClass(String className, String sha256) {
+    }
+
+    /**
+     * Thrown when a {@link ShippedObject} could not be read until the given classes have been fetched from the remote end.
+     */
+    static final class MissingClassesException extends ClassNotFoundException {
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private final transient Set<MissingClass> missingClasses;
+
+        private MissingClassesException(final Set<MissingClass> missingClasses, final ClassNotFoundException cause) {
+            super("Classes need fetching from the remote end: " + missingClasses, cause);
+            this.missingClasses = missingClasses;
+        }
+
+        Set<MissingClass> getMissingClasses() {
+            return missingClasses;
+        }
+    }
+
+    // Holding a class back until another is defined can cascade through a class hierarchy, but never indefinitely.
+    private static final int MAX_READ_ATTEMPTS = 16;
+    private static final HexFormat HEX = HexFormat.of();
+
+    // Hashed once per class, rather than per connection, which does not stop the class from being unloaded.
+    private static final ClassValue<String> CLASS_HASHES = new ClassValue<>() {
+        @Override
+        protected String computeValue(final Class<?> type) {
+            byte[] classBytes = classBytesOf(type);
+            return classBytes == null ? "" : sha256Of(classBytes);
+        }
+    };
+
+    // Guarded by itself. Keyed weakly by parent, and holding each loader weakly, so that a loader is shared for as long as any PortableSocket, or
+    // any instance of one of its classes, is still using it, and can be unloaded once nothing is.
+    private static final Map<ClassLoader, Map<Path, WeakReference<ShippedClassLoader>>> SHIPPED_CLASS_LOADERS = new WeakHashMap<>();
+
+    private final RemoteClassShipping configuration;
+    // Everything this end has tagged in what it has sent, which are the only classes it will hand out.
+    private final Map<String, Class<?>> shippableClasses = new ConcurrentHashMap<>();
+    private final AtomicLong classesFetched = new AtomicLong();
+    private final AtomicLong classesLoadedFromDiskCache = new AtomicLong();
+    private ShippedClassLoader shippedClassLoader;
+
+    RemoteClassShipper(final RemoteClassShipping configuration) {
+        this.configuration = configuration;
+    }
+
+    /**
+     * @param value The value about to be sent.
+     * @return Whether the value should be wrapped in a {@link ShippedObject}, which is anything but the PortableSocket's own protocol messages.
+     */
+    static boolean ships(final Object value) {
+        return value != null
+                && !(value instanceof PortableSocketHeartbeat)
+                && !(value instanceof FileTransferHeader)
+                && !(value instanceof ClassRequest)
+                && !(value instanceof ClassResponse);
+    }
+
+    /**
+     * @param value The value to send.
+     * @return The value serialised on its own, with each class tagged with its hash.
+     * @throws IOException Thrown if the value could not be serialised.
+     */
+    ShippedObject wrap(final Object value) throws IOException {
+        ByteArrayOutputStream serialised = new ByteArrayOutputStream();
+        try (ObjectOutputStream outputStream = new TaggingObjectOutputStream(serialised)) {
+            outputStream.writeObject(value);
+        }
+        return new ShippedObject(serialised.toByteArray());
+    }
+
+    /**
+     * Reads the value from a {@link ShippedObject}, using the class files already fetched or cached where this end does not have the classes
+     * itself.
+     *
+     * @param shipped         What was received.
+     * @param componentLoader The PortableSocket's own class loader, which is tried first.
+     * @param options         The PortableSocket's options, for the limits and cache to read with.
+     * @return The value.
+     * @throws MissingClassesException Thrown if class files need fetching from the remote end before the value can be read.
+     * @throws ClassNotFoundException  Thrown if a class is missing, and was not sent with a hash, so cannot be fetched.
+     * @throws IOException             Thrown if the value could not be read.
+     */
+    Object unwrap(
+            final ShippedObject shipped, final URLClassLoader componentLoader, final PortableSocketOptions options
+    ) throws IOException, ClassNotFoundException {
+        if (shippedClassLoader == null) {
+            shippedClassLoader = shippedClassLoaderFor(configuration.getCacheDirectory(), componentLoader);
+        }
+        for (int attempt = 1; ; attempt++) {
+            try (ResolvingObjectInputStream inputStream = new ResolvingObjectInputStream(shipped.serialised(), componentLoader, options)) {
+                try {
+                    return inputStream.readObject();
+                } catch (ClassNotFoundException e) {
+                    if (!inputStream.missingClasses.isEmpty()) {
+                        throw new MissingClassesException(Collections.unmodifiableSet(inputStream.missingClasses), e);
+                    }
+                    if (!inputStream.heldBack || attempt == MAX_READ_ATTEMPTS) {
+                        throw e;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @param request What the remote end asked for.
+     * @return The class file, if this end sent a class with that hash, and can still read its class file.
+     */
+    ClassResponse answer(final ClassRequest request) {
+        Class<?> shippable = shippableClasses.get(request.sha256());
+        byte[] classBytes = shippable == null ? null : classBytesOf(shippable);
+        if (classBytes != null && !request.sha256().equals(sha256Of(classBytes))) {
+            // The class file has changed on disk since it was first hashed.
+            classBytes = null;
+        }
+        return new ClassResponse(request.className(), request.sha256(), classBytes);
+    }
+
+    /**
+     * Checks a fetched class file against its hash, before storing it in the disk cache, and making it available to be defined.
+     *
+     * @param response What the remote end answered with.
+     * @throws ClassNotFoundException Thrown if the remote end could not provide the class file.
+     * @throws IOException            Thrown if the class file is too large, or does not match its hash.
+     */
+    void accept(final ClassResponse response) throws IOException, ClassNotFoundException {
+        if (shippedClassLoader == null) {
+            throw new StreamCorruptedException("Received the class file for {" + response.className() + "} without having asked for it.");
+        }
+        if (response.classBytes() == null) {
+            throw new ClassNotFoundException("The remote end could not provide the class file for {" + response.className() + "}.");
+        }
+        if (response.classBytes().length > configuration.getMaxClassSizeInBytes()) {
+            throw new StreamCorruptedException("Received a class file for {" + response.className() + "} of {" + response.classBytes().length
+                    + "} bytes, the maximum accepted is {" + configuration.getMaxClassSizeInBytes() + "}.");
+        }
+        if (!response.sha256().equals(sha256Of(response.classBytes()))) {
+            throw new InvalidClassException(response.className(), "The received class file does not match the hash it was requested by.");
+        }
+        writeToDiskCache(response.sha256(), response.classBytes());
+        shippedClassLoader.makeAvailable(response.className(), response.sha256(), response.classBytes());
+        classesFetched.incrementAndGet();
+    }
+
+    /**
+     * @param missingClass A class which was requested from the remote end.
+     * @return Whether it has since arrived.
+     */
+    boolean hasArrived(final MissingClass missingClass) {
+        return shippedClassLoader.isAvailable(missingClass.className());
+    }
+
+    long getClassesFetched() {
+        return classesFetched.get();
+    }
+
+    long getClassesLoadedFromDiskCache() {
+        return classesLoadedFromDiskCache.get();
+    }
+
+    /**
+     * Shares one {@link ShippedClassLoader} between every PortableSocket with the same cache directory and class loader, rather than each
+     * defining its own copy of the classes it fetches, so that a class fetched again after reconnecting is the same class as before, rather than
+     * one which cannot be cast to it.
+     */
+    private static ShippedClassLoader shippedClassLoaderFor(final Path cacheDirectory, final URLClassLoader componentLoader) {
+        // A loader with no URLs of its own can load nothing more than its parent can, and the default one shared through the
+        // SharedClassLoaderRegistry is replaced once every PortableSocket using it has closed, whereas its parent is not.
+        ClassLoader parent = componentLoader.getURLs().length == 0 && componentLoader.getParent() != null
+                ? componentLoader.getParent()
+                : componentLoader;
+        Path directory = cacheDirectory.toAbsolutePath().normalize();
+
+        synchronized (SHIPPED_CLASS_LOADERS) {
+            Map<Path, WeakReference<ShippedClassLoader>> byDirectory = SHIPPED_CLASS_LOADERS.computeIfAbsent(parent, ignored -> new HashMap<>());
+            WeakReference<ShippedClassLoader> existing = byDirectory.get(directory);
+            ShippedClassLoader shared = existing == null ? null : existing.get();
+            if (shared == null) {
+                shared = new ShippedClassLoader(parent);
+                byDirectory.put(directory, new WeakReference<>(shared));
+            }
+            return shared;
+        }
+    }
+
+    private Path diskCachePathFor(final String sha256) {
+        return configuration.getCacheDirectory().resolve(sha256.substring(0, 2)).resolve(sha256 + ".class");
+    }
+
+    private byte[] readFromDiskCache(final String sha256) {
+        Path cached = diskCachePathFor(sha256);
+        try {
+            if (!Files.isRegularFile(cached) || Files.size(cached) > configuration.getMaxClassSizeInBytes()) {
+                return null;
+            }
+            byte[] classBytes = Files.readAllBytes(cached);
+            if (sha256.equals(sha256Of(classBytes))) {
+                return classBytes;
+            }
+            // Corrupted on disk, so fetched again, and replaced.
+            Files.deleteIfExists(cached);
+        } catch (IOException e) {
+            // Fetched from the remote end instead.
+        }
+        return null;
+    }
+
+    private void writeToDiskCache(final String sha256, final byte[] classBytes) {
+        Path cached = diskCachePathFor(sha256);
+        try {
+            Files.createDirectories(cached.getParent());
+            // Written to the side first, so that other processes sharing the cache never see part of a class file.
+            Path partial = Files.createTempFile(cached.getParent(), sha256, ".partial");
+            try {
+                Files.write(partial, classBytes);
+                Files.move(partial, cached, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(partial);
+            }
+        } catch (IOException e) {
+            // Only costs fetching it again after a restart.
+        }
+    }
+
+    private static String shippableHashOf(final Class<?> type) {
+        Class<?> component = type;
+        while (component.isArray()) {
+            component = component.getComponentType();
+        }
+        ClassLoader loader = component.getClassLoader();
+        if (component.isPrimitive() || loader == null || loader == ClassLoader.getPlatformClassLoader()) {
+            // Part of the JDK, which the remote end will already have.
+            return null;
+        }
+        String sha256 = CLASS_HASHES.get(component);
+        return sha256.isEmpty() ? null : sha256;
+    }
+
+    private static byte[] classBytesOf(final Class<?> type) {
+        ClassLoader loader = type.getClassLoader();
+        if (loader == null) {
+            return null;
+        }
+        try (InputStream classFile = loader.getResourceAsStream(type.getName().replace('.', '/') + ".class")) {
+            return classFile == null ? null : classFile.readAllBytes();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static String sha256Of(final byte[] bytes) {
+        try {
+            return HEX.formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is required to be supported by every Java platform.", e);
+        }
+    }
+
+    private static String componentNameOf(final String className) {
+        // Array classes are tagged with the hash of their component class, which is what has to be fetched.
+        if (!className.startsWith("[")) {
+            return className;
+        }
+        int start = className.lastIndexOf('[') + 1;
+        return className.charAt(start) == 'L' ? className.substring(start + 1, className.length() - 1) : null;
+    }
+
+    private final class TaggingObjectOutputStream extends ObjectOutputStream {
+
+        private TaggingObjectOutputStream(final ByteArrayOutputStream out) throws IOException {
+            super(out);
+        }
+
+        @Override
+        protected void annotateClass(final Class<?> type) throws IOException {
+            String sha256 = shippableHashOf(type);
+            if (sha256 == null) {
+                writeUTF("");
+                return;
+            }
+            Class<?> component = type;
+            while (component.isArray()) {
+                component = component.getComponentType();
+            }
+            shippableClasses.putIfAbsent(sha256, component);
+            writeUTF(sha256);
+        }
+    }
+
+    private final class ResolvingObjectInputStream extends ObjectInputStreamWithClassLoader {
+
+        private final Set<MissingClass> missingClasses = new LinkedHashSet<>();
+        private boolean heldBack;
+
+        private ResolvingObjectInputStream(
+                final byte[] serialised, final URLClassLoader componentLoader, final PortableSocketOptions options
+        ) throws IOException {
+            super(new ByteArrayInputStream(serialised), componentLoader, options.getResolvedClassCache(), options.getDeserialisationLimits());
+        }
+
+        @Override
+        protected Class<?> resolveClass(final ObjectStreamClass description) throws ClassNotFoundException, IOException {
+            // Always read, to keep the stream in step, whether or not it is needed.
+            String sha256 = readUTF();
+            try {
+                return super.resolveClass(description);
+            } catch (ClassNotFoundException notFoundHere) {
+                String componentName = componentNameOf(description.getName());
+                if (sha256.isEmpty() || componentName == null) {
+                    throw notFoundHere;
+                }
+                if (!shippedClassLoader.isAvailable(componentName)) {
+                    byte[] cached = readFromDiskCache(sha256);
+                    if (cached == null) {
+                        missingClasses.add(new MissingClass(componentName, sha256));
+                        throw notFoundHere;
+                    }
+                    shippedClassLoader.makeAvailable(componentName, sha256, cached);
+                    classesLoadedFromDiskCache.incrementAndGet();
+                }
+                shippedClassLoader.checkMatches(componentName, sha256);
+                try {
+                    return Class.forName(description.getName(), false, shippedClassLoader);
+                } catch (ClassNotFoundException | LinkageError dependencyNotYetAvailable) {
+                    // Such as its superclass, whose description comes after its own, so is only made available later in this same read.
+                    heldBack = true;
+                    throw new ClassNotFoundException(description.getName(), dependencyNotYetAvailable);
+                }
+            }
+        }
+    }
+
+    /**
+     * Defines the classes fetched by every PortableSocket sharing a cache directory and class loader, after first trying that class loader.
+     */
+    private static final class ShippedClassLoader extends ClassLoader {
+
+        static {
+            registerAsParallelCapable();
+        }
+
+        private record ClassFile(String sha256, byte[] classBytes) {
+        }
+
+        private final Map<String, ClassFile> available = new ConcurrentHashMap<>();
+
+        private ShippedClassLoader(final ClassLoader parent) {
+            super(parent);
+        }
+
+        private boolean isAvailable(final String className) {
+            return available.containsKey(className);
+        }
+
+        private void makeAvailable(final String className, final String sha256, final byte[] classBytes) {
+            available.putIfAbsent(className, new ClassFile(sha256, classBytes));
+        }
+
+        private void checkMatches(final String className, final String sha256) throws InvalidClassException {
+            if (!available.get(className).sha256().equals(sha256)) {
+                throw new InvalidClassException(className, "A different version of this class has already been received by a PortableSocket sharing "
+                        + "this cache directory and class loader.");
+            }
+        }
+
+        @Override
+        protected Class<?> findClass(final String className) throws ClassNotFoundException {
+            ClassFile classFile = available.get(className);
+            if (classFile == null) {
+                throw new ClassNotFoundException(className);
+            }
+            return defineClass(className, classFile.classBytes(), 0, classFile.classBytes().length);
+        }
+    }
+}
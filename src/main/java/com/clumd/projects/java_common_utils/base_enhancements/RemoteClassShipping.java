@@ -0,0 +1,68 @@
+package com.clumd.projects.java_common_utils.base_enhancements;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Lets a {@link PortableSocket} receive objects whose classes it does not have, by fetching the class files from the remote end which sent them,
+ * so that both ends do not have to be deployed in lockstep.
+ * <p>
+ * Every value sent is serialised on its own, with each of its classes (other than those of the JDK) tagged with the SHA-256 hash of its class
+ * file. When the receiving end cannot load one of those classes itself, it looks for the hash in a local, content addressed, disk cache, and only
+ * if it is not there asks the sender for the class file, which is checked against the hash, stored in the cache, and defined in a class loader
+ * shared by every PortableSocket with the same cache directory and class loader, so that reconnecting gives back the very same classes. As the
+ * cache is keyed by content, restarting never fetches the same class file twice either. A class which has changed is fetched afresh, but can only
+ * be defined once nothing is using the class loader holding its old version.
+ * <p>
+ * Both ends must enable this, which is checked as part of the stream header handshake, and the sending end must be in
+ * {@link PortableSocket#receive()} to answer requests for class files, as it is for heartbeats.
+ * <p>
+ * Receiving a class file means running code chosen by the remote end, so this should only be enabled between trusted peers, ideally alongside a
+ * {@link DeserialisationLimits#getAllowlist()}, which applies to shipped classes as to any other.
+ * <pre>
+ * {@code
+ * PortableSocketOptions options = PortableSocketOptions.builder()
+ *         .remoteClassShipping(RemoteClassShipping.builder().cacheDirectory(Path.of("/var/cache/my-app/classes")).build())
+ *         .build();
+ * }
+ * </pre>
+ */
+@Data
+@Builder
+public class RemoteClassShipping {
+
+    /**
+     * Where fetched class files are kept, named by their hash, which can be shared by any number of PortableSockets and processes.
+     */
+    @Builder.Default
+    private final Path cacheDirectory = Path.of(System.getProperty("java.io.tmpdir"), "portable-socket-classes");
+
+    /**
+     * The largest class file which will be accepted from the remote end.
+     */
+    @Builder.Default
+    private final int maxClassSizeInBytes = 1024 * 1024;
+
+    /**
+     * How long to wait for the remote end to answer with the class files a received value needs, before giving up on reading it.
+     */
+    @Builder.Default
+    private final Duration fetchTimeout = Duration.ofSeconds(10);
+
+    /**
+     * How many other messages may arrive, and be held back to be returned in order, while waiting for class files, before giving up on reading
+     * the value which needed them.
+     */
+    @Builder.Default
+    private final int maxHeldBackMessages = 1024;
+
+    /**
+     * @return Class shipping, caching class files in the temporary directory.
+     */
+    public static RemoteClassShipping defaults() {
+        return RemoteClassShipping.builder().build();
+    }
+}
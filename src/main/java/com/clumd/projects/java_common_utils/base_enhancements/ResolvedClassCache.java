@@ -0,0 +1,161 @@
+package com.clumd.projects.java_common_utils.base_enhancements;
+
+import lombok.NonNull;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Remembers what class names resolve to for each class loader, so that an {@link ObjectInputStreamWithClassLoader} reading a lot of objects does
+ * not go through {@link Class#forName(String, boolean, ClassLoader)}, and contend on the class loader's locks, for every class description it reads.
+ * <p>
+ * Class names which could not be found are remembered too, up to a limit per class loader, so that a remote end repeatedly sending a class which
+ * this end does not have is turned away quickly. Should a class loader later become able to load one of those, such as by having a URL added,
+ * {@link #invalidate(ClassLoader) invalidate} it.
+ * <p>
+ * Class loaders, and the classes remembered for them, are only held weakly, so that being cached never stops a class loader from being unloaded.
+ * One cache can be shared by any number of streams, including ones using the same class loader; {@link #shared()} is used when no other is given.
+ */
+public final class ResolvedClassCache {
+
+    /**
+     * How many missing class names are remembered per class loader by default, as a remote end can send as many made up names as it likes.
+     */
+    public static final int DEFAULT_MAX_MISSING_CLASS_NAMES_PER_LOADER = 1024;
+
+    private static final ResolvedClassCache SHARED = new ResolvedClassCache(DEFAULT_MAX_MISSING_CLASS_NAMES_PER_LOADER);
+
+    private final int maxMissingClassNamesPerLoader;
+    // Only touched while synchronised on, but just to find a loader's own cache, which is then used without any locking.
+    private final Map<ClassLoader, LoaderCache> loaderCaches = new WeakHashMap<>();
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+
+    /**
+     * @param maxMissingClassNamesPerLoader How many class names which could not be found to remember per class loader, after which any more are
+     *                                      looked up every time. Zero turns off remembering them at all.
+     */
+    public ResolvedClassCache(final int maxMissingClassNamesPerLoader) {
+        if (maxMissingClassNamesPerLoader < 0) {
+            throw new IllegalArgumentException("The number of missing class names to remember cannot be negative.");
+        }
+        this.maxMissingClassNamesPerLoader = maxMissingClassNamesPerLoader;
+    }
+
+    /**
+     * @return The cache shared by every stream which is not given one of its own.
+     */
+    public static ResolvedClassCache shared() {
+        return SHARED;
+    }
+
+    /**
+     * Resolves a class name as {@link Class#forName(String, boolean, ClassLoader)} would, initialising the class, but only asking the class loader
+     * the first time.
+     *
+     * @param className The binary name of the class, as found in a serialised class description.
+     * @param loader    The class loader to resolve it with.
+     * @return The resolved class.
+     * @throws ClassNotFoundException Thrown if the class loader could not find the class, now or the last time it was asked.
+     */
+    public Class<?> resolve(@NonNull final String className, @NonNull final ClassLoader loader) throws ClassNotFoundException {
+        return cacheFor(loader).resolve(className, loader);
+    }
+
+    /**
+     * Forgets everything remembered for a class loader, such as after it has been given more places to load classes from.
+     *
+     * @param loader The class loader to forget about.
+     */
+    public void invalidate(@NonNull final ClassLoader loader) {
+        LoaderCache removed;
+        synchronized (loaderCaches) {
+            removed = loaderCaches.remove(loader);
+        }
+        if (removed != null) {
+            // Streams already using it hold on to it directly, so it has to be emptied as well as removed.
+            removed.clear();
+        }
+    }
+
+    /**
+     * @return How many class loaders have something remembered for them, which drops as they are unloaded.
+     */
+    public int getCachedLoaderCount() {
+        synchronized (loaderCaches) {
+            return loaderCaches.size();
+        }
+    }
+
+    /**
+     * @return How many resolutions were answered from the cache, whether found or missing.
+     */
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    /**
+     * @return How many resolutions had to ask the class loader.
+     */
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    /**
+     * Finds what is remembered for a single class loader, so that a stream which only ever uses one can keep hold of it, and skip finding it
+     * again for every class.
+     *
+     * @param loader The class loader to find the cache for.
+     * @return The cache for just that class loader, which does not itself hold on to the class loader.
+     */
+    LoaderCache cacheFor(final ClassLoader loader) {
+        synchronized (loaderCaches) {
+            return loaderCaches.computeIfAbsent(loader, ignored -> new LoaderCache());
+        }
+    }
+
+    /**
+     * What is remembered for a single class loader.
+     * <p>
+     * Found classes are held weakly as well, as every class holds its own class loader, which would otherwise never be unloaded. A class cannot be
+     * collected while the class loader which can resolve it is still reachable, so these are only ever cleared once that class loader has gone.
+     */
+    final class LoaderCache {
+        private final Map<String, WeakReference<Class<?>>> found = new ConcurrentHashMap<>();
+        private final Set<String> missing = ConcurrentHashMap.newKeySet();
+
+        Class<?> resolve(final String className, final ClassLoader loader) throws ClassNotFoundException {
+            WeakReference<Class<?>> cached = found.get(className);
+            Class<?> resolved = cached == null ? null : cached.get();
+            if (resolved != null) {
+                hitCount.increment();
+                return resolved;
+            }
+            if (missing.contains(className)) {
+                hitCount.increment();
+                throw new ClassNotFoundException(className);
+            }
+
+            missCount.increment();
+            try {
+                resolved = Class.forName(className, true, loader);
+            } catch (ClassNotFoundException e) {
+                if (missing.size() < maxMissingClassNamesPerLoader) {
+                    missing.add(className);
+                }
+                throw e;
+            }
+            found.put(className, new WeakReference<>(resolved));
+            return resolved;
+        }
+
+        private void clear() {
+            found.clear();
+            missing.clear();
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.clumd.projects.java_common_utils.base_enhancements;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Shares one {@link URLClassLoader} between everything which asks for the same URLs and parent, rather than each creating its own, so that
+ * thousands of connections wanting the same loader hold one between them, and the classes it resolves (and any {@link ResolvedClassCache} entries
+ * for it) are shared too.
+ * <p>
+ * Each loader is reference counted through the {@link Lease} handed out for it, and closed once the last lease on it is closed.
+ * <pre>
+ * {@code
+ * try (SharedClassLoaderRegistry.Lease lease = SharedClassLoaderRegistry.getDefault().acquire(urls, parent)) {
+ *     URLClassLoader loader = lease.getClassLoader();
+ * }
+ * }
+ * </pre>
+ */
+public final class SharedClassLoaderRegistry {
+
+    private static final SharedClassLoaderRegistry DEFAULT = new SharedClassLoaderRegistry();
+
+    /**
+     * The URLs are compared as Strings, as {@link URL#equals(Object)} can resolve hostnames. Their order is part of the key, as it is the order
+     * the loader searches them in.
+     */
+    private record Key(List<String> urls, ClassLoader parent) {
+    }
+
+    private static final class Shared {
+        private final URLClassLoader loader;
+        private int references;
+
+        private Shared(final URLClassLoader loader) {
+            this.loader = loader;
+        }
+    }
+
+    // Guarded by itself.
+    private final Map<Key, Shared> loaders = new HashMap<>();
+
+    /**
+     * @return The registry used by every {@link PortableSocket} which is not given a class loader of its own.
+     */
+    public static SharedClassLoaderRegistry getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Takes a reference to the loader for the given URLs and parent, creating it if nobody else currently holds one.
+     *
+     * @param urls   The URLs for the loader to load classes from, in the order to search them.
+     * @param parent The parent of the loader, which may be null for the bootstrap class loader.
+     * @return A lease on the shared loader, which must be closed once it is no longer needed.
+     */
+    public Lease acquire(@NonNull final URL[] urls, final ClassLoader parent) {
+        List<String> urlStrings = new ArrayList<>(urls.length);
+        for (URL url : urls) {
+            urlStrings.add(url.toExternalForm());
+        }
+        Key key = new Key(List.copyOf(urlStrings), parent);
+
+        synchronized (loaders) {
+            Shared shared = loaders.computeIfAbsent(key, ignored -> new Shared(new URLClassLoader(urls.clone(), parent)));
+            shared.references++;
+            return new Lease(key, shared.loader);
+        }
+    }
+
+    /**
+     * @return How many distinct loaders are currently held.
+     */
+    public int getLoaderCount() {
+        synchronized (loaders) {
+            return loaders.size();
+        }
+    }
+
+    private void release(final Key key) {
+        URLClassLoader toClose = null;
+        synchronized (loaders) {
+            Shared shared = loaders.get(key);
+            if (shared != null && --shared.references == 0) {
+                loaders.remove(key);
+                toClose = shared.loader;
+            }
+        }
+        if (toClose != null) {
+            // Closed outside the lock, as it may have jar files of its own to close.
+            try {
+                toClose.close();
+            } catch (IOException e) {
+                // Ignore as nobody is using it anymore anyway.
+            }
+        }
+    }
+
+    /**
+     * A single reference to a shared loader, which gives that reference back when closed. Closing a lease more than once has no further effect.
+     */
+    public final class Lease implements AutoCloseable {
+
+        private final Key key;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        @Getter
+        private final URLClassLoader classLoader;
+
+        private Lease(final Key key, final URLClassLoader classLoader) {
+            this.key = key;
+            this.classLoader = classLoader;
+        }
+
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true)) {
+                release(key);
+            }
+        }
+    }
+}
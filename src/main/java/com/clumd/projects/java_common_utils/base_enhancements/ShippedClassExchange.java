@@ -0,0 +1,151 @@
+package com.clumd.projects.java_common_utils.base_enhancements;
+
+import lombok.Getter;
+
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@link PortableSocket#send(Object)} and {@link PortableSocket#receive()} paths for {@link PortableSocketOptions#getRemoteClassShipping()},
+ * which wrap values whose classes the remote end may not have, and on receiving one, fetch whichever class files are missing from the remote end
+ * before it is returned.
+ */
+final class ShippedClassExchange {
+
+    private final PortableSocket portableSocket;
+    private final RemoteClassShipping shipping;
+
+    @Getter
+    private final RemoteClassShipper classShipper;
+
+    // Guarded by the receive lock. Messages which arrived while waiting on class files from the remote end, to be returned next.
+    private final Deque<Object> heldBackMessages = new ArrayDeque<>();
+
+    ShippedClassExchange(final PortableSocket portableSocket, final RemoteClassShipping shipping) {
+        this.portableSocket = portableSocket;
+        this.shipping = shipping;
+        this.classShipper = new RemoteClassShipper(shipping);
+    }
+
+    /**
+     * @return The value to send in place of the given one, which is only different if its classes are ones the remote end may need to fetch.
+     */
+    Object wrap(final Object value) throws IOException {
+        return RemoteClassShipper.ships(value) ? classShipper.wrap(value) : value;
+    }
+
+    /**
+     * @return Whether any messages arrived while waiting on class files, which are to be returned before anything else is read.
+     */
+    boolean hasHeldBack() {
+        return !heldBackMessages.isEmpty();
+    }
+
+    Object nextHeldBack() {
+        return heldBackMessages.removeFirst();
+    }
+
+    /**
+     * Answers the remote end's requests for class files, and accepts the class files it sends in answer to ours.
+     *
+     * @param value What was received.
+     * @return Whether it was one of those messages, and so has been dealt with.
+     */
+    boolean handledAsProtocolMessage(final Object value) throws IOException, ClassNotFoundException {
+        if (value instanceof RemoteClassShipper.ClassRequest request) {
+            portableSocket.sendImmediately(classShipper.answer(request));
+            return true;
+        }
+        if (value instanceof RemoteClassShipper.ClassResponse response) {
+            classShipper.accept(response);
+            return true;
+        }
+        return false;
+    }
+
+    Object receive(final RemoteClassShipper.ShippedObject shipped) throws IOException, ClassNotFoundException {
+        final long deadlineNanos = System.nanoTime() + shipping.getFetchTimeout().toNanos();
+        Set<RemoteClassShipper.MissingClass> requested = new HashSet<>();
+        while (true) {
+            Set<RemoteClassShipper.MissingClass> missingClasses;
+            try {
+                return classShipper.unwrap(shipped, portableSocket.getComponentLoader(), portableSocket.getOptions());
+            } catch (RemoteClassShipper.MissingClassesException e) {
+                missingClasses = e.getMissingClasses();
+                if (requested.containsAll(missingClasses)) {
+                    throw new ClassNotFoundException("Could not read a value even with the class files fetched from the remote end.", e);
+                }
+            }
+
+            for (RemoteClassShipper.MissingClass missingClass : missingClasses) {
+                if (requested.add(missingClass)) {
+                    portableSocket.sendImmediately(new RemoteClassShipper.ClassRequest(missingClass.className(), missingClass.sha256()));
+                }
+            }
+            awaitClassFiles(missingClasses, deadlineNanos);
+        }
+    }
+
+    /**
+     * Reads until the given class files have arrived, holding back anything else arriving in the meantime, to be returned in order once the value
+     * which needed them has been.
+     */
+    private void awaitClassFiles(
+            final Set<RemoteClassShipper.MissingClass> missingClasses, final long deadlineNanos
+    ) throws IOException, ClassNotFoundException {
+        final Socket socket = portableSocket.getSocket();
+        final int previousTimeout = socket.getSoTimeout();
+        try {
+            while (!missingClasses.stream().allMatch(classShipper::hasArrived)) {
+                long remainingMs = TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime());
+                if (remainingMs <= 0) {
+                    throw fetchTimedOut(missingClasses, null);
+                }
+                // Any shorter timeout already set still applies, as it would to any other read.
+                final boolean limitedByFetchTimeout = previousTimeout == 0 || remainingMs < previousTimeout;
+                socket.setSoTimeout(limitedByFetchTimeout ? (int) Math.min(remainingMs, Integer.MAX_VALUE) : previousTimeout);
+
+                Object value;
+                try {
+                    value = portableSocket.receiveOne();
+                } catch (SocketTimeoutException e) {
+                    throw limitedByFetchTimeout ? fetchTimedOut(missingClasses, e) : e;
+                }
+                portableSocket.markReceived();
+                if (portableSocket.handledAsProtocolMessage(value)) {
+                    continue;
+                }
+                if (value instanceof FileTransferHeader) {
+                    // Its raw contents follow it, which reading on for the class files would take to be messages.
+                    throw new StreamCorruptedException("A file transfer arrived while waiting for the class files " + missingClasses
+                            + " from the remote end, so the value needing them cannot be read.");
+                }
+                if (heldBackMessages.size() >= shipping.getMaxHeldBackMessages()) {
+                    throw new IOException("Over {" + shipping.getMaxHeldBackMessages() + "} messages arrived while waiting for the class files "
+                            + missingClasses + " from the remote end, so the value needing them cannot be read.");
+                }
+                heldBackMessages.addLast(value);
+            }
+        } finally {
+            if (!socket.isClosed()) {
+                socket.setSoTimeout(previousTimeout);
+            }
+        }
+    }
+
+    private SocketTimeoutException fetchTimedOut(
+            final Set<RemoteClassShipper.MissingClass> missingClasses, final SocketTimeoutException cause
+    ) {
+        SocketTimeoutException timedOut = new SocketTimeoutException("Timed out after {" + shipping.getFetchTimeout()
+                + "} waiting for the class files " + missingClasses + " from the remote end.");
+        timedOut.initCause(cause);
+        return timedOut;
+    }
+}
@@ -0,0 +1,101 @@
+package com.clumd.projects.java_common_utils.base_enhancements;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.net.Socket;
+import java.net.SocketException;
+
+/**
+ * The low level {@link Socket} options a {@link PortableSocket} should apply to its Socket when it is created, allowing each connection to be
+ * tuned for either latency or throughput.
+ * <p>
+ * Every value is nullable, where null leaves the operating system's default in place.
+ */
+@Data
+@Builder
+public class SocketTuning {
+
+    private static final int HIGH_THROUGHPUT_BUFFER_SIZE_IN_BYTES = 1024 * 1024;
+
+    /**
+     * Whether to disable Nagle's algorithm, as per {@link Socket#setTcpNoDelay(boolean)}.
+     */
+    @Builder.Default
+    private final Boolean tcpNoDelay = null;
+
+    /**
+     * The size hint for the Socket's send buffer, as per {@link Socket#setSendBufferSize(int)}.
+     */
+    @Builder.Default
+    private final Integer sendBufferSizeInBytes = null;
+
+    /**
+     * The size hint for the Socket's receive buffer, as per {@link Socket#setReceiveBufferSize(int)}. This is applied before connecting where
+     * possible, as buffers larger than 64KiB need to be known about while the connection is being established.
+     */
+    @Builder.Default
+    private final Integer receiveBufferSizeInBytes = null;
+
+    /**
+     * Whether to enable TCP keepalive probes, as per {@link Socket#setKeepAlive(boolean)}.
+     */
+    @Builder.Default
+    private final Boolean keepAlive = null;
+
+    /**
+     * How many seconds a close may linger for while unsent data is delivered, as per {@link Socket#setSoLinger(boolean, int)}. Any negative
+     * value disables lingering.
+     */
+    @Builder.Default
+    private final Integer lingerInSeconds = null;
+
+    /**
+     * @return Tuning which leaves every option at the operating system's default.
+     */
+    public static SocketTuning systemDefaults() {
+        return SocketTuning.builder().build();
+    }
+
+    /**
+     * @return Tuning for small, latency sensitive messages, which sends every write immediately rather than waiting to combine it with others.
+     */
+    public static SocketTuning lowLatency() {
+        return SocketTuning.builder().tcpNoDelay(true).build();
+    }
+
+    /**
+     * @return Tuning for bulk transfers, which lets writes be combined and gives the Socket large buffers to keep the connection saturated.
+     */
+    public static SocketTuning highThroughput() {
+        return SocketTuning.builder()
+                .tcpNoDelay(false)
+                .sendBufferSizeInBytes(HIGH_THROUGHPUT_BUFFER_SIZE_IN_BYTES)
+                .receiveBufferSizeInBytes(HIGH_THROUGHPUT_BUFFER_SIZE_IN_BYTES)
+                .build();
+    }
+
+    /**
+     * Applies every non-null option to the given Socket.
+     *
+     * @param socket The Socket to tune.
+     * @throws SocketException Thrown if any option could not be applied, for example if the Socket is closed.
+     */
+    void applyTo(final Socket socket) throws SocketException {
+        if (tcpNoDelay != null) {
+            socket.setTcpNoDelay(tcpNoDelay);
+        }
+        if (sendBufferSizeInBytes != null) {
+            socket.setSendBufferSize(sendBufferSizeInBytes);
+        }
+        if (receiveBufferSizeInBytes != null) {
+            socket.setReceiveBufferSize(receiveBufferSizeInBytes);
+        }
+        if (keepAlive != null) {
+            socket.setKeepAlive(keepAlive);
+        }
+        if (lingerInSeconds != null) {
+            socket.setSoLinger(lingerInSeconds >= 0, Math.max(0, lingerInSeconds));
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.clumd.projects.java_common_utils.base_enhancements;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.zip.Deflater;
+
+/**
+ * Describes how a {@link PortableSocket} should compress everything it writes after its stream header, trading CPU time for bandwidth on links
+ * where bandwidth is the bottleneck.
+ * <p>
+ * Output is deflated as one continuous stream, sync flushed at every flush of the socket, so that repetitive content benefits from everything
+ * previously sent on the same connection. Flushes which carry fewer than {@link #minimumPayloadSizeInBytes} are sent uncompressed, as they would
+ * cost more CPU than they could possibly save.
+ * <p>
+ * Both ends of the connection must agree to use compression, which is checked as part of the stream header handshake.
+ */
+@Data
+@Builder
+public class StreamCompression {
+
+    /**
+     * The {@link Deflater} compression level, from {@link Deflater#BEST_SPEED} to {@link Deflater#BEST_COMPRESSION}.
+     */
+    @Builder.Default
+    private final int level = Deflater.DEFAULT_COMPRESSION;
+
+    /**
+     * The smallest flush which is worth compressing. Anything smaller is sent as it is.
+     */
+    @Builder.Default
+    private final int minimumPayloadSizeInBytes = 256;
+
+    /**
+     * The most uncompressed output collected before it is compressed and written on, even if the socket has not been flushed yet.
+     */
+    @Builder.Default
+    private final int bufferSizeInBytes = 64 * 1024;
+
+    /**
+     * @return Compression using the default settings.
+     */
+    public static StreamCompression defaults() {
+        return StreamCompression.builder().build();
+    }
+}
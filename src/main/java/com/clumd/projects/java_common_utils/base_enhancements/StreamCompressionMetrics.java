@@ -0,0 +1,127 @@
+package com.clumd.projects.java_common_utils.base_enhancements;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live counters describing how effective a {@link PortableSocket}'s {@link StreamCompression} is. All values are cumulative since the socket was
+ * created, and only cover what was written or read after the stream header.
+ */
+public class StreamCompressionMetrics {
+
+    private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+    private static final boolean CPU_TIME_SUPPORTED = THREAD_MX_BEAN.isCurrentThreadCpuTimeSupported();
+
+    private final LongAdder uncompressedBytesWritten = new LongAdder();
+    private final LongAdder compressedBytesWritten = new LongAdder();
+    private final LongAdder framesCompressed = new LongAdder();
+    private final LongAdder framesSkipped = new LongAdder();
+    private final LongAdder compressionCpuNanos = new LongAdder();
+    private final LongAdder compressedBytesRead = new LongAdder();
+    private final LongAdder decompressedBytesRead = new LongAdder();
+    private final LongAdder decompressionCpuNanos = new LongAdder();
+
+    /**
+     * @return The CPU time the current thread has used, or the wall clock if the JVM cannot measure CPU time, to be passed back into one of the
+     * record methods once the work has been done.
+     */
+    static long cpuTimeNow() {
+        return CPU_TIME_SUPPORTED ? THREAD_MX_BEAN.getCurrentThreadCpuTime() : System.nanoTime();
+    }
+
+    void recordCompressedFrame(final int uncompressedLength, final int compressedLength, final long cpuTimeAtStart) {
+        compressionCpuNanos.add(cpuTimeNow() - cpuTimeAtStart);
+        framesCompressed.increment();
+        uncompressedBytesWritten.add(uncompressedLength);
+        compressedBytesWritten.add(compressedLength);
+    }
+
+    void recordSkippedFrame(final int length) {
+        framesSkipped.increment();
+        uncompressedBytesWritten.add(length);
+        compressedBytesWritten.add(length);
+    }
+
+    void recordReadFrame(final int compressedLength, final int decompressedLength, final long cpuTimeAtStart) {
+        if (cpuTimeAtStart != 0) {
+            decompressionCpuNanos.add(cpuTimeNow() - cpuTimeAtStart);
+        }
+        compressedBytesRead.add(compressedLength);
+        decompressedBytesRead.add(decompressedLength);
+    }
+
+    /**
+     * @return How many bytes were written before compression.
+     */
+    public long getUncompressedBytesWritten() {
+        return uncompressedBytesWritten.sum();
+    }
+
+    /**
+     * @return How many bytes were actually written to the Socket, excluding the few bytes of framing per flush.
+     */
+    public long getCompressedBytesWritten() {
+        return compressedBytesWritten.sum();
+    }
+
+    /**
+     * @return How many flushes were compressed.
+     */
+    public long getFramesCompressed() {
+        return framesCompressed.sum();
+    }
+
+    /**
+     * @return How many flushes were sent uncompressed for being below the minimum payload size.
+     */
+    public long getFramesSkipped() {
+        return framesSkipped.sum();
+    }
+
+    /**
+     * @return How much CPU time has been spent compressing, in nanoseconds.
+     */
+    public long getCompressionCpuTimeInNanos() {
+        return compressionCpuNanos.sum();
+    }
+
+    /**
+     * @return How many bytes were read from the Socket, excluding framing.
+     */
+    public long getCompressedBytesRead() {
+        return compressedBytesRead.sum();
+    }
+
+    /**
+     * @return How many bytes were read after decompression.
+     */
+    public long getDecompressedBytesRead() {
+        return decompressedBytesRead.sum();
+    }
+
+    /**
+     * @return How much CPU time has been spent decompressing, in nanoseconds.
+     */
+    public long getDecompressionCpuTimeInNanos() {
+        return decompressionCpuNanos.sum();
+    }
+
+    /**
+     * @return How many bytes were written for every byte sent over the Socket, so that larger is better, or 1 if nothing has been written.
+     */
+    public double getCompressionRatio() {
+        return ratio(getUncompressedBytesWritten(), getCompressedBytesWritten());
+    }
+
+    /**
+     * @return How many bytes were read for every byte received over the Socket, so that larger is better, or 1 if nothing has been read.
+     */
+    public double getDecompressionRatio() {
+        return ratio(getDecompressedBytesRead(), getCompressedBytesRead());
+    }
+
+    private static double ratio(final long uncompressed, final long compressed) {
+        return compressed == 0 ? 1 : (double) uncompressed / compressed;
+    }
+}
@@ -0,0 +1,81 @@
+package com.clumd.projects.java_common_utils.base_enhancements;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Reads from the channel a Socket was created from, as the Socket's own InputStream would. Reading the channel directly ignores the Socket's
+ * {@link Socket#getSoTimeout() read timeout}, and while it is non-blocking, finds nothing at all rather than waiting for more to arrive, which
+ * {@link java.nio.channels.FileChannel#transferFrom(ReadableByteChannel, long, long)} would take as the end of the stream.
+ * <p>
+ * Closing this only lets go of what it waits with, leaving the Socket and its channel open.
+ */
+final class TimeoutAwareChannelReader implements ReadableByteChannel {
+
+    private final Socket socket;
+    private final SocketChannel channel;
+    private final ReadableByteChannel blockingReads;
+    private Selector selector;
+
+    /**
+     * @param socket A Socket created from a {@link SocketChannel}, as per {@link Socket#getChannel()}.
+     */
+    TimeoutAwareChannelReader(final Socket socket) throws IOException {
+        this.socket = socket;
+        this.channel = socket.getChannel();
+        // Only the Socket's own InputStream honours the read timeout while the channel is blocking, so reads go through that instead.
+        this.blockingReads = channel.isBlocking() ? Channels.newChannel(socket.getInputStream()) : null;
+    }
+
+    @Override
+    public int read(final ByteBuffer destination) throws IOException {
+        if (blockingReads != null) {
+            return blockingReads.read(destination);
+        }
+        while (true) {
+            int read = channel.read(destination);
+            if (read != 0 || !destination.hasRemaining()) {
+                return read;
+            }
+            if (!awaitReadable()) {
+                throw new SocketTimeoutException("Read timed out");
+            }
+        }
+    }
+
+    private boolean awaitReadable() throws IOException {
+        try {
+            if (selector == null) {
+                selector = Selector.open();
+                channel.register(selector, SelectionKey.OP_READ);
+            }
+            int timeoutInMs = socket.getSoTimeout();
+            int selected = timeoutInMs == 0 ? selector.select() : selector.select(timeoutInMs);
+            selector.selectedKeys().clear();
+            return selected > 0;
+        } catch (ClosedChannelException e) {
+            throw new SocketException("Socket is closed");
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return channel.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (selector != null) {
+            selector.close();
+        }
+    }
+}
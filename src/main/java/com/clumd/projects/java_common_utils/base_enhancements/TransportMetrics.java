@@ -0,0 +1,183 @@
+package com.clumd.projects.java_common_utils.base_enhancements;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live counters describing how a {@link PortableSocket}'s connection is behaving, kept for each socket and in aggregate across every socket in
+ * the process. All values are cumulative since the socket (or process) started.
+ * <p>
+ * Objects and bytes include the messages PortableSockets send each other, such as heartbeats, and bytes are counted as they cross the Socket, so
+ * after any compression and including any framing. Objects passed straight to a peer in the same JVM count no bytes at all.
+ * <p>
+ * Recording never allocates, so costs a few clock reads and counter updates per message, and can be switched off entirely with
+ * {@link PortableSocketOptions#isCollectTransportMetrics()}.
+ */
+public final class TransportMetrics {
+
+    private static final TransportMetrics AGGREGATE = new TransportMetrics(null);
+
+    private final TransportMetrics aggregate;
+
+    private final LongAdder objectsSent = new LongAdder();
+    private final LongAdder bytesSent = new LongAdder();
+    private final LongAdder objectsReceived = new LongAdder();
+    private final LongAdder bytesReceived = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder corruptions = new LongAdder();
+    private final LongAdder resumedHandshakes = new LongAdder();
+    private final LatencyHistogram serialisationTime = new LatencyHistogram();
+    private final LatencyHistogram deserialisationTime = new LatencyHistogram();
+    private final LatencyHistogram writeBlockedTime = new LatencyHistogram();
+    private final LatencyHistogram handshakeTime = new LatencyHistogram();
+
+    TransportMetrics(final TransportMetrics aggregate) {
+        this.aggregate = aggregate;
+    }
+
+    /**
+     * @return The metrics of every PortableSocket in the process which collects them, added together.
+     */
+    public static TransportMetrics aggregate() {
+        return AGGREGATE;
+    }
+
+    /**
+     * @return New metrics for a single PortableSocket, which also count towards the {@link #aggregate()}.
+     */
+    static TransportMetrics forSocket() {
+        return new TransportMetrics(AGGREGATE);
+    }
+
+    void recordObjectSent(final long serialisationNanos) {
+        objectsSent.increment();
+        serialisationTime.record(serialisationNanos);
+        if (aggregate != null) {
+            aggregate.recordObjectSent(serialisationNanos);
+        }
+    }
+
+    void recordObjectReceived(final long deserialisationNanos) {
+        objectsReceived.increment();
+        deserialisationTime.record(deserialisationNanos);
+        if (aggregate != null) {
+            aggregate.recordObjectReceived(deserialisationNanos);
+        }
+    }
+
+    void recordBytesSent(final long bytes, final long blockedNanos) {
+        bytesSent.add(bytes);
+        writeBlockedTime.record(blockedNanos);
+        if (aggregate != null) {
+            aggregate.recordBytesSent(bytes, blockedNanos);
+        }
+    }
+
+    void recordBytesReceived(final long bytes) {
+        bytesReceived.add(bytes);
+        if (aggregate != null) {
+            aggregate.recordBytesReceived(bytes);
+        }
+    }
+
+    void recordTimeout() {
+        timeouts.increment();
+        if (aggregate != null) {
+            aggregate.recordTimeout();
+        }
+    }
+
+    void recordCorruption() {
+        corruptions.increment();
+        if (aggregate != null) {
+            aggregate.recordCorruption();
+        }
+    }
+
+    void recordHandshake(final long handshakeNanos, final boolean resumed) {
+        handshakeTime.record(handshakeNanos);
+        if (resumed) {
+            resumedHandshakes.increment();
+        }
+        if (aggregate != null) {
+            aggregate.recordHandshake(handshakeNanos, resumed);
+        }
+    }
+
+    /**
+     * @return How many objects have been sent.
+     */
+    public long getObjectsSent() {
+        return objectsSent.sum();
+    }
+
+    /**
+     * @return How many bytes have been written to the Socket.
+     */
+    public long getBytesSent() {
+        return bytesSent.sum();
+    }
+
+    /**
+     * @return How many objects have been received.
+     */
+    public long getObjectsReceived() {
+        return objectsReceived.sum();
+    }
+
+    /**
+     * @return How many bytes have been read from the Socket.
+     */
+    public long getBytesReceived() {
+        return bytesReceived.sum();
+    }
+
+    /**
+     * @return How many times receiving has timed out waiting for the remote end.
+     */
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    /**
+     * @return How many times what was received could not be read, for not being what the stream should have held.
+     */
+    public long getCorruptions() {
+        return corruptions.sum();
+    }
+
+    /**
+     * @return How many TLS handshakes resumed an earlier session, rather than starting a new one, out of the
+     * {@link #getHandshakeTime() handshakes} made.
+     */
+    public long getResumedHandshakes() {
+        return resumedHandshakes.sum();
+    }
+
+    /**
+     * @return How long each object took to send, not counting time spent blocked writing to the Socket.
+     */
+    public LatencyHistogram getSerialisationTime() {
+        return serialisationTime;
+    }
+
+    /**
+     * @return How long each object took to receive, not counting time spent waiting for its bytes to arrive.
+     */
+    public LatencyHistogram getDeserialisationTime() {
+        return deserialisationTime;
+    }
+
+    /**
+     * @return How long each write to the Socket was blocked for, such as while the remote end was not reading fast enough.
+     */
+    public LatencyHistogram getWriteBlockedTime() {
+        return writeBlockedTime;
+    }
+
+    /**
+     * @return How long each TLS handshake took, including waiting on the remote end, whose count is how many handshakes were made.
+     */
+    public LatencyHistogram getHandshakeTime() {
+        return handshakeTime;
+    }
+}
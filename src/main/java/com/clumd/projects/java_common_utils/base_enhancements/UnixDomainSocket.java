@@ -0,0 +1,528 @@
+package com.clumd.projects.java_common_utils.base_enhancements;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.SocketException;
+import java.net.SocketImpl;
+import java.net.SocketOption;
+import java.net.SocketTimeoutException;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Presents a connected Unix domain {@link SocketChannel} as a {@link Socket}, so that a {@link PortableSocket} can be built on top of one
+ * exactly as it would be on top of a TCP connection, as the JDK does not provide a Socket adaptor for these channels itself.
+ * <p>
+ * The channel is used in non-blocking mode, waiting on a {@link Selector} when there is nothing to read or no room to write, which is what lets
+ * the read timeout behave as {@link Socket#setSoTimeout(int)} does. Options which only mean something for TCP are accepted, but ignored.
+ */
+final class UnixDomainSocket extends Socket {
+
+    private final SocketChannel channel;
+    private final ChannelInputStream inputStream = new ChannelInputStream();
+    private final ChannelOutputStream outputStream = new ChannelOutputStream();
+    private volatile int soTimeoutInMs;
+    private volatile boolean closed;
+
+    /**
+     * @param channel An already connected Unix domain channel, which this now owns.
+     * @throws IOException Thrown if the channel could not be switched to non-blocking mode.
+     */
+    UnixDomainSocket(final SocketChannel channel) throws IOException {
+        super((SocketImpl) null);
+        this.channel = channel;
+        channel.configureBlocking(false);
+    }
+
+    /**
+     * Connects to a Unix domain socket at the given address.
+     *
+     * @param address The path of the socket file to connect to.
+     * @return The connected socket.
+     * @throws IOException Thrown if nothing is listening at that path.
+     */
+    static UnixDomainSocket connect(final UnixDomainSocketAddress address) throws IOException {
+        SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX);
+        try {
+            channel.connect(address);
+            return new UnixDomainSocket(channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        throwIfClosed();
+        return inputStream;
+    }
+
+    @Override
+    public OutputStream getOutputStream() throws IOException {
+        throwIfClosed();
+        return outputStream;
+    }
+
+    @Override
+    public SocketChannel getChannel() {
+        return channel;
+    }
+
+    @Override
+    public SocketAddress getRemoteSocketAddress() {
+        try {
+            return channel.getRemoteAddress();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public SocketAddress getLocalSocketAddress() {
+        try {
+            return channel.getLocalAddress();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public boolean isConnected() {
+        return channel.isConnected();
+    }
+
+    @Override
+    public boolean isBound() {
+        return true;
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public boolean isInputShutdown() {
+        return closed;
+    }
+
+    @Override
+    public boolean isOutputShutdown() {
+        return closed;
+    }
+
+    @Override
+    public void connect(final SocketAddress endpoint, final int timeout) throws IOException {
+        throw new SocketException("A UnixDomainSocket is always created already connected.");
+    }
+
+    @Override
+    public void bind(final SocketAddress bindpoint) throws IOException {
+        throw new SocketException("A UnixDomainSocket is always created already connected.");
+    }
+
+    @Override
+    public void shutdownInput() throws IOException {
+        channel.shutdownInput();
+    }
+
+    @Override
+    public void shutdownOutput() throws IOException {
+        channel.shutdownOutput();
+    }
+
+    @Override
+    public void setSoTimeout(final int timeout) throws SocketException {
+        if (timeout < 0) {
+            throw new IllegalArgumentException("timeout < 0");
+        }
+        soTimeoutInMs = timeout;
+    }
+
+    @Override
+    public int getSoTimeout() {
+        return soTimeoutInMs;
+    }
+
+    @Override
+    public void setTcpNoDelay(final boolean on) {
+        // Nothing to delay, as there is no TCP.
+    }
+
+    @Override
+    public boolean getTcpNoDelay() {
+        return false;
+    }
+
+    @Override
+    public void setKeepAlive(final boolean on) {
+        // The kernel knows straight away when the other end of a local socket goes away.
+    }
+
+    @Override
+    public boolean getKeepAlive() {
+        return false;
+    }
+
+    @Override
+    public void setSoLinger(final boolean on, final int linger) {
+        // Nothing is ever left in flight on a network to linger for.
+    }
+
+    @Override
+    public int getSoLinger() {
+        return -1;
+    }
+
+    @Override
+    public void setSendBufferSize(final int size) throws SocketException {
+        setChannelOption(StandardSocketOptions.SO_SNDBUF, size);
+    }
+
+    @Override
+    public int getSendBufferSize() throws SocketException {
+        return getChannelOption(StandardSocketOptions.SO_SNDBUF);
+    }
+
+    @Override
+    public void setReceiveBufferSize(final int size) throws SocketException {
+        setChannelOption(StandardSocketOptions.SO_RCVBUF, size);
+    }
+
+    @Override
+    public int getReceiveBufferSize() throws SocketException {
+        return getChannelOption(StandardSocketOptions.SO_RCVBUF);
+    }
+
+    @Override
+    public <T> Socket setOption(final SocketOption<T> name, final T value) throws IOException {
+        channel.setOption(name, value);
+        return this;
+    }
+
+    @Override
+    public <T> T getOption(final SocketOption<T> name) throws IOException {
+        return channel.getOption(name);
+    }
+
+    @Override
+    public Set<SocketOption<?>> supportedOptions() {
+        return channel.supportedOptions();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            channel.close();
+        } finally {
+            // Anything waiting on the channel has to be woken, as closing it does not do so itself.
+            inputStream.closeSelector();
+            outputStream.closeSelector();
+        }
+    }
+
+    /**
+     * Sends part of a file straight from the file to the channel, letting the kernel do the copying.
+     *
+     * @param file     The file to send from.
+     * @param position Where in the file to start.
+     * @param count    How many bytes to send.
+     * @throws IOException Thrown if the channel could not be written to.
+     */
+    void transferFromFile(final FileChannel file, final long position, final long count) throws IOException {
+        outputStream.transferFromFile(file, position, count);
+    }
+
+    /**
+     * Receives part of a file straight from the channel into the file, honouring the read timeout while waiting for more to arrive.
+     *
+     * @param file     The file to write into.
+     * @param position Where in the file to start.
+     * @param count    How many bytes to receive.
+     * @throws IOException Thrown if the channel could not be read from, timed out, or ended before all the bytes arrived.
+     */
+    void transferToFile(final FileChannel file, final long position, final long count) throws IOException {
+        inputStream.transferToFile(file, position, count);
+    }
+
+    @Override
+    public String toString() {
+        return "UnixDomainSocket[remote=" + getRemoteSocketAddress() + "]";
+    }
+
+    private <T> void setChannelOption(final SocketOption<T> name, final T value) throws SocketException {
+        try {
+            channel.setOption(name, value);
+        } catch (IOException e) {
+            throw asSocketException(e);
+        }
+    }
+
+    private <T> T getChannelOption(final SocketOption<T> name) throws SocketException {
+        try {
+            return channel.getOption(name);
+        } catch (IOException e) {
+            throw asSocketException(e);
+        }
+    }
+
+    private void throwIfClosed() throws SocketException {
+        if (closed) {
+            throw new SocketException("Socket is closed");
+        }
+    }
+
+    private static SocketException asSocketException(final IOException e) {
+        if (e instanceof SocketException socketException) {
+            return socketException;
+        }
+        SocketException socketException = new SocketException(e instanceof ClosedChannelException ? "Socket is closed" : e.getMessage());
+        socketException.initCause(e);
+        return socketException;
+    }
+
+    /**
+     * The shared behaviour of both directions, which each wait on their own Selector, so that a reader and writer never get in each other's way.
+     */
+    private abstract class SelectingStream {
+        private final ReentrantLock selectorLock = new ReentrantLock();
+        private Selector selector;
+
+        /**
+         * @return True if the channel became ready, or false if the timeout passed first.
+         */
+        boolean awaitReady(final int interestOps, final long timeoutInMs) throws IOException {
+            Selector ready = selector(interestOps);
+            try {
+                int selected = timeoutInMs == 0 ? ready.select() : ready.select(timeoutInMs);
+                ready.selectedKeys().clear();
+                throwIfClosed();
+                return selected > 0;
+            } catch (ClosedSelectorException e) {
+                throw new SocketException("Socket is closed");
+            }
+        }
+
+        private Selector selector(final int interestOps) throws IOException {
+            selectorLock.lock();
+            try {
+                throwIfClosed();
+                if (selector == null) {
+                    selector = Selector.open();
+                    channel.register(selector, interestOps);
+                }
+                return selector;
+            } catch (ClosedChannelException e) {
+                throw new SocketException("Socket is closed");
+            } finally {
+                selectorLock.unlock();
+            }
+        }
+
+        void closeSelector() {
+            selectorLock.lock();
+            try {
+                if (selector != null) {
+                    selector.wakeup();
+                    selector.close();
+                }
+            } catch (IOException e) {
+                // Ignore as going to terminate anyway.
+            } finally {
+                selectorLock.unlock();
+            }
+        }
+    }
+
+    private final class ChannelInputStream extends InputStream {
+        private final SelectingStream waiter = new SelectingStream() {
+        };
+        private final ReentrantLock readLock = new ReentrantLock();
+        // Filled by available(), as there is no way to ask a channel how much it has waiting without reading it.
+        private final ByteBuffer readAhead = ByteBuffer.allocate(8 * 1024).flip();
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            readLock.lock();
+            try {
+                if (readAhead.hasRemaining()) {
+                    int read = Math.min(len, readAhead.remaining());
+                    readAhead.get(b, off, read);
+                    return read;
+                }
+                ByteBuffer target = ByteBuffer.wrap(b, off, len);
+                long timeoutInMs = soTimeoutInMs;
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutInMs);
+                while (true) {
+                    int read = channel.read(target);
+                    if (read != 0) {
+                        return read;
+                    }
+                    long remainingInMs = timeoutInMs == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                    if (timeoutInMs != 0 && remainingInMs <= 0) {
+                        throw new SocketTimeoutException("Read timed out");
+                    }
+                    waiter.awaitReady(SelectionKey.OP_READ, remainingInMs);
+                }
+            } catch (ClosedChannelException e) {
+                throw new SocketException("Socket is closed");
+            } finally {
+                readLock.unlock();
+            }
+        }
+
+        private void transferToFile(final FileChannel file, final long position, final long count) throws IOException {
+            readLock.lock();
+            try {
+                long received = 0;
+                while (readAhead.hasRemaining() && received < count) {
+                    ByteBuffer slice = readAhead.slice(readAhead.position(), (int) Math.min(readAhead.remaining(), count - received));
+                    int written = file.write(slice, position + received);
+                    readAhead.position(readAhead.position() + written);
+                    received += written;
+                }
+                long timeoutInMs = soTimeoutInMs;
+                boolean reportedReadable = false;
+                while (received < count) {
+                    long transferred = file.transferFrom(channel, position + received, count - received);
+                    if (transferred > 0) {
+                        received += transferred;
+                        reportedReadable = false;
+                        continue;
+                    }
+                    // Nothing transferred from a channel which was reported readable means it has reached the end of the stream.
+                    if (reportedReadable) {
+                        throw new EOFException("The Socket closed part way through a file, after {" + received + "} of {" + count + "} bytes.");
+                    }
+                    if (!waiter.awaitReady(SelectionKey.OP_READ, timeoutInMs)) {
+                        throw new SocketTimeoutException("Read timed out");
+                    }
+                    reportedReadable = true;
+                }
+            } catch (ClosedChannelException e) {
+                throw new SocketException("Socket is closed");
+            } finally {
+                readLock.unlock();
+            }
+        }
+
+        @Override
+        public int available() throws IOException {
+            // A reader waiting on the channel means there is nothing more to be had right now anyway.
+            if (!readLock.tryLock()) {
+                return 0;
+            }
+            try {
+                if (!readAhead.hasRemaining()) {
+                    readAhead.clear();
+                    try {
+                        channel.read(readAhead);
+                    } finally {
+                        readAhead.flip();
+                    }
+                }
+                return readAhead.remaining();
+            } catch (ClosedChannelException e) {
+                throw new SocketException("Socket is closed");
+            } finally {
+                readLock.unlock();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            UnixDomainSocket.this.close();
+        }
+
+        private void closeSelector() {
+            waiter.closeSelector();
+        }
+    }
+
+    private final class ChannelOutputStream extends OutputStream {
+        private final SelectingStream waiter = new SelectingStream() {
+        };
+        private final ReentrantLock writeLock = new ReentrantLock();
+
+        @Override
+        public void write(final int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(final byte[] b, final int off, final int len) throws IOException {
+            writeLock.lock();
+            try {
+                ByteBuffer source = ByteBuffer.wrap(b, off, len);
+                while (source.hasRemaining()) {
+                    if (channel.write(source) == 0) {
+                        waiter.awaitReady(SelectionKey.OP_WRITE, 0);
+                    }
+                }
+            } catch (ClosedChannelException e) {
+                throw new SocketException("Socket is closed");
+            } finally {
+                writeLock.unlock();
+            }
+        }
+
+        private void transferFromFile(final FileChannel file, final long position, final long count) throws IOException {
+            writeLock.lock();
+            try {
+                long sent = 0;
+                while (sent < count) {
+                    long transferred = file.transferTo(position + sent, count - sent, channel);
+                    if (transferred == 0) {
+                        if (position + sent >= file.size()) {
+                            throw new EOFException("The file being sent shrank part way through, after {" + sent + "} of {" + count + "} bytes.");
+                        }
+                        waiter.awaitReady(SelectionKey.OP_WRITE, 0);
+                    }
+                    sent += transferred;
+                }
+            } catch (ClosedChannelException e) {
+                throw new SocketException("Socket is closed");
+            } finally {
+                writeLock.unlock();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            UnixDomainSocket.this.close();
+        }
+
+        private void closeSelector() {
+            waiter.closeSelector();
+        }
+    }
+}
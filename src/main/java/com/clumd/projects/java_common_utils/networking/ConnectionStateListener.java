@@ -0,0 +1,17 @@
+package com.clumd.projects.java_common_utils.networking;
+
+/**
+ * Told about every change in the state of a {@link ReconnectingPortableSocket}'s connection.
+ * <p>
+ * This is called from whichever thread caused the change, so should return quickly, and never block.
+ */
+@FunctionalInterface
+public interface ConnectionStateListener {
+
+    /**
+     * @param previous The state the connection was in.
+     * @param current  The state the connection is now in.
+     * @param cause    What caused the change, which is null when it was expected, such as connecting successfully, or being closed.
+     */
+    void onStateChange(ReconnectingPortableSocket.State previous, ReconnectingPortableSocket.State current, Throwable cause);
+}
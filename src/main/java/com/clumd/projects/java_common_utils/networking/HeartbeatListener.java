@@ -0,0 +1,38 @@
+package com.clumd.projects.java_common_utils.networking;
+
+import com.clumd.projects.java_common_utils.base_enhancements.PortableSocket;
+
+/**
+ * Callbacks for the connections monitored by a {@link HeartbeatScheduler}, each of which does nothing by default.
+ * <p>
+ * These are called from the scheduler's single ticker thread, so should return quickly, and never block.
+ */
+public interface HeartbeatListener {
+
+    /**
+     * Called when a ping has gone unanswered for a whole interval.
+     *
+     * @param portableSocket The connection whose remote end has not answered.
+     * @param missedPongs    How many pongs in a row have now been missed.
+     */
+    default void onMissedPong(PortableSocket portableSocket, int missedPongs) {
+    }
+
+    /**
+     * Called when the remote end answers again, having previously missed at least one pong.
+     *
+     * @param portableSocket The connection whose remote end has answered.
+     */
+    default void onPeerRecovered(PortableSocket portableSocket) {
+    }
+
+    /**
+     * Called once the remote end has missed too many pongs (or a ping could not be sent at all), after the connection has been closed and
+     * stopped being monitored.
+     *
+     * @param portableSocket The connection which was closed.
+     * @param missedPongs    How many pongs in a row were missed.
+     */
+    default void onPeerDead(PortableSocket portableSocket, int missedPongs) {
+    }
+}
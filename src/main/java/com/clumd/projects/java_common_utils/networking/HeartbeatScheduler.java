@@ -0,0 +1,233 @@
+package com.clumd.projects.java_common_utils.networking;
+
+import com.clumd.projects.java_common_utils.base_enhancements.NamedThreadFactory;
+import com.clumd.projects.java_common_utils.base_enhancements.PortableSocket;
+import lombok.NonNull;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Detects remote ends which have silently gone away (such as a half-open TCP connection), for any number of long-lived {@link PortableSocket}s,
+ * without needing a thread per connection, or relying on whichever read timeout each happens to have.
+ * <p>
+ * A single ticker thread checks every registered connection once per {@link HeartbeatSchedulerConfiguration#getInterval() interval}. A connection
+ * which has heard nothing from its remote end for an interval is sent a {@link PortableSocket#sendPing() ping}, and once
+ * {@link HeartbeatSchedulerConfiguration#getMaxMissedPongs() too many} checks in a row find nothing heard back, the connection is closed and its
+ * {@link HeartbeatListener} told. Busy connections are never pinged, as any traffic from the remote end counts as it being alive.
+ * <p>
+ * The remote end answers pings from within its {@link PortableSocket#receive()}, so it must be reading through that (or a
+ * {@link MultiplexedPortableSocket}) to be seen as alive. This end does not need to be reading, as unread bytes arriving also count.
+ * <p>
+ * Pings are sent from a thread of this scheduler's own, so while a connection is registered, both ends must only send through
+ * {@link PortableSocket#send(Object)}, which keeps each message whole, and never write to {@link PortableSocket#getOutputStream()} directly, as
+ * that could interleave with a ping, or with the pong answering one. This end's is enforced, as a registered connection refuses to hand out its
+ * OutputStream.
+ * <pre>
+ * {@code
+ * try (HeartbeatScheduler heartbeats = new HeartbeatScheduler(HeartbeatSchedulerConfiguration.builder().build())) {
+ *     heartbeats.register(portableSocket, new HeartbeatListener() {
+ *         public void onPeerDead(PortableSocket socket, int missedPongs) {
+ *             reconnect();
+ *         }
+ *     });
+ * }
+ * }
+ * </pre>
+ */
+public class HeartbeatScheduler implements AutoCloseable {
+
+    private static final HeartbeatListener NO_OP_LISTENER = new HeartbeatListener() {
+    };
+
+    private final HeartbeatSchedulerConfiguration configuration;
+    private final long intervalInNanos;
+    private final Map<PortableSocket, Monitored> monitored = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService ticker;
+    private final ExecutorService pingExecutor;
+
+    /**
+     * Creates a new scheduler, and starts its ticker thread straight away.
+     *
+     * @param configuration How this should behave.
+     */
+    public HeartbeatScheduler(@NonNull final HeartbeatSchedulerConfiguration configuration) {
+        if (configuration.getInterval().isNegative() || configuration.getInterval().isZero()) {
+            throw new IllegalArgumentException("The heartbeat interval must be positive.");
+        }
+        if (configuration.getMaxMissedPongs() < 1) {
+            throw new IllegalArgumentException("At least one pong must be allowed to be missed.");
+        }
+        this.configuration = configuration;
+        this.intervalInNanos = configuration.getInterval().toNanos();
+        this.ticker = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory(configuration.getName(), "ticker", true));
+        // Pings are sent off the ticker thread, so that a connection whose send buffer is full cannot hold up the checks on every other.
+        this.pingExecutor = Executors.newThreadPerTaskExecutor(new NamedThreadFactory(configuration.getName(), "ping", true));
+        this.ticker.scheduleAtFixedRate(this::tick, intervalInNanos, intervalInNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Starts monitoring a connection, without being told what happens to it.
+     *
+     * @param portableSocket The connection to monitor, until it is closed, or {@link #unregister(PortableSocket) unregistered}.
+     */
+    public void register(@NonNull final PortableSocket portableSocket) {
+        register(portableSocket, NO_OP_LISTENER);
+    }
+
+    /**
+     * Starts monitoring a connection, replacing any listener it was already registered with.
+     *
+     * @param portableSocket The connection to monitor, until it is closed, or {@link #unregister(PortableSocket) unregistered}.
+     * @param listener       Told when pongs are missed, and when the remote end is declared dead.
+     */
+    public void register(@NonNull final PortableSocket portableSocket, @NonNull final HeartbeatListener listener) {
+        portableSocket.setHeartbeatsActive(true);
+        monitored.put(portableSocket, new Monitored(portableSocket, listener, System.nanoTime()));
+    }
+
+    /**
+     * Stops monitoring a connection, without closing it.
+     *
+     * @param portableSocket The connection to stop monitoring.
+     * @return Whether the connection was being monitored.
+     */
+    public boolean unregister(@NonNull final PortableSocket portableSocket) {
+        if (monitored.remove(portableSocket) == null) {
+            return false;
+        }
+        portableSocket.setHeartbeatsActive(false);
+        return true;
+    }
+
+    /**
+     * @return How many connections are currently being monitored.
+     */
+    public int getMonitoredCount() {
+        return monitored.size();
+    }
+
+    /**
+     * Stops monitoring every connection, without closing any of them.
+     */
+    @Override
+    public void close() {
+        ticker.shutdownNow();
+        pingExecutor.shutdownNow();
+        monitored.keySet().forEach(portableSocket -> portableSocket.setHeartbeatsActive(false));
+        monitored.clear();
+    }
+
+    private void tick() {
+        final long now = System.nanoTime();
+        for (Map.Entry<PortableSocket, Monitored> entry : monitored.entrySet()) {
+            try {
+                check(entry.getKey(), entry.getValue(), now);
+            } catch (RuntimeException e) {
+                // A misbehaving listener must not stop every other connection from being checked, or kill the ticker.
+            }
+        }
+    }
+
+    private void check(final PortableSocket portableSocket, final Monitored state, final long now) {
+        if (portableSocket.isClosed()) {
+            monitored.remove(portableSocket, state);
+            return;
+        }
+        if (state.pingFailed) {
+            declareDead(portableSocket, state);
+            return;
+        }
+
+        // Anything new from the remote end, whether read by its owner yet or not, shows it is alive.
+        final long lastReceive = portableSocket.getLastReceiveTimeNanos();
+        final long pongsReceived = portableSocket.getPongsReceived();
+        final int unreadBytes = portableSocket.getUnreadByteCount();
+        final boolean heardFrom = lastReceive != state.observedReceiveTime
+                || pongsReceived != state.observedPongs
+                || unreadBytes > state.observedUnreadBytes;
+        state.observedReceiveTime = lastReceive;
+        state.observedPongs = pongsReceived;
+        state.observedUnreadBytes = unreadBytes;
+
+        if (heardFrom) {
+            state.lastHeardFromNanos = now;
+            state.awaitingPong = false;
+            if (state.missedPongs > 0) {
+                state.missedPongs = 0;
+                state.listener.onPeerRecovered(portableSocket);
+            }
+        } else if (state.awaitingPong) {
+            state.missedPongs++;
+            if (state.missedPongs >= configuration.getMaxMissedPongs()) {
+                declareDead(portableSocket, state);
+                return;
+            }
+            state.listener.onMissedPong(portableSocket, state.missedPongs);
+        }
+
+        if (now - state.lastHeardFromNanos >= intervalInNanos) {
+            state.awaitingPong = true;
+            ping(portableSocket, state);
+        }
+    }
+
+    private void ping(final PortableSocket portableSocket, final Monitored state) {
+        // A ping still stuck behind a full send buffer is as good as a new one, so there is no need to queue up more behind it.
+        if (!state.pingInFlight.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            pingExecutor.execute(() -> {
+                try {
+                    portableSocket.sendPing();
+                } catch (IOException e) {
+                    // Left for the next tick to act on, so that listeners are only ever called from the ticker thread.
+                    state.pingFailed = true;
+                } finally {
+                    state.pingInFlight.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Closing, so nothing is being monitored any more anyway.
+            state.pingInFlight.set(false);
+        }
+    }
+
+    private void declareDead(final PortableSocket portableSocket, final Monitored state) {
+        // Only reported if still monitored, so one unregistered or re-registered in the meantime is left alone.
+        if (monitored.remove(portableSocket, state)) {
+            portableSocket.close();
+            state.listener.onPeerDead(portableSocket, state.missedPongs);
+        }
+    }
+
+    private static final class Monitored {
+        private final HeartbeatListener listener;
+        private final AtomicBoolean pingInFlight = new AtomicBoolean();
+        private volatile boolean pingFailed;
+
+        // Only ever touched by the ticker thread.
+        private long observedReceiveTime;
+        private long observedPongs;
+        private int observedUnreadBytes;
+        private long lastHeardFromNanos;
+        private boolean awaitingPong;
+        private int missedPongs;
+
+        private Monitored(final PortableSocket portableSocket, final HeartbeatListener listener, final long now) {
+            this.listener = listener;
+            this.observedReceiveTime = portableSocket.getLastReceiveTimeNanos();
+            this.observedPongs = portableSocket.getPongsReceived();
+            this.observedUnreadBytes = portableSocket.getUnreadByteCount();
+            this.lastHeardFromNanos = now;
+        }
+    }
+}
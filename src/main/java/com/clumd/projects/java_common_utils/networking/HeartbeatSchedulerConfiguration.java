@@ -0,0 +1,33 @@
+package com.clumd.projects.java_common_utils.networking;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.Duration;
+
+/**
+ * This Class represents all the configuration required to run a {@link HeartbeatScheduler}.
+ */
+@Data
+@Builder
+public class HeartbeatSchedulerConfiguration {
+
+    /**
+     * Used as the pool name for the ticker and ping threads, so that log messages can be more contextual.
+     */
+    @Builder.Default
+    private final String name = "heartbeat";
+
+    /**
+     * How often every registered connection is checked. A connection which has heard nothing from its remote end for at least this long is sent
+     * a ping, and each check which finds a ping still unanswered counts as a missed pong.
+     */
+    @Builder.Default
+    private final Duration interval = Duration.ofSeconds(5);
+
+    /**
+     * How many pongs in a row may be missed before the remote end is declared dead, and the connection closed.
+     */
+    @Builder.Default
+    private final int maxMissedPongs = 3;
+}
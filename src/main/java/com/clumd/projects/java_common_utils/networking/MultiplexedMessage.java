@@ -0,0 +1,24 @@
+package com.clumd.projects.java_common_utils.networking;
+
+import java.io.Serial;
+import java.io.Serializable;
+
+/**
+ * The envelope every object sent by a {@link MultiplexedPortableSocket} is wrapped in, so that responses can be matched back to their requests.
+ *
+ * @param correlationId Identifies the request this message starts, answers, or cancels.
+ * @param kind          What this message means.
+ * @param payload       The request or response object, the {@link RemoteRequestException} for a failed request, or null for a cancellation.
+ */
+record MultiplexedMessage(long correlationId, Kind kind, Object payload) implements Serializable {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    enum Kind {
+        REQUEST,
+        RESPONSE,
+        FAILURE,
+        CANCEL
+    }
+}
@@ -0,0 +1,265 @@
+package com.clumd.projects.java_common_utils.networking;
+
+import com.clumd.projects.java_common_utils.base_enhancements.NamedThreadFactory;
+import com.clumd.projects.java_common_utils.base_enhancements.PortableSocket;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.io.IOException;
+import java.net.SocketException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Allows many request/response exchanges to be in flight on a single {@link PortableSocket} at once, so that concurrent callers can share one
+ * connection instead of needing one each.
+ * <p>
+ * Every request is tagged with a correlation ID before it is sent, and a single reader thread reads everything the remote end sends, completing
+ * the matching request's {@link CompletableFuture} as each response arrives, in whatever order they arrive. Requests time out individually, and
+ * cancelling a request's future tells the remote end to stop handling it.
+ * <p>
+ * Both ends of the connection must be wrapped in a MultiplexedPortableSocket, and either end may make requests of the other, as long as it was
+ * configured with a {@link MultiplexedRequestHandler}. Once wrapped, the PortableSocket must not be read from or written to directly.
+ * <p>
+ * As every message goes through the same long-lived Object streams, the PortableSocket should usually be created with an
+ * {@link com.clumd.projects.java_common_utils.base_enhancements.ObjectStreamResetPolicy#perMessage()} reset policy, so that requests and
+ * responses which reuse (or mutate) the same objects are not sent as stale back references.
+ * <pre>
+ * {@code
+ * try (MultiplexedPortableSocket client = new MultiplexedPortableSocket(portableSocket, MultiplexedPortableSocketConfiguration.builder().build())) {
+ *     CompletableFuture<Object> first = client.request("first");
+ *     CompletableFuture<Object> second = client.request("second", Duration.ofSeconds(1));
+ * }
+ * }
+ * </pre>
+ */
+public class MultiplexedPortableSocket implements AutoCloseable {
+
+    @Getter
+    private final PortableSocket portableSocket;
+
+    private final MultiplexedPortableSocketConfiguration configuration;
+    private final Map<Long, CompletableFuture<Object>> pendingRequests = new ConcurrentHashMap<>();
+    private final Map<Long, Future<?>> runningHandlers = new ConcurrentHashMap<>();
+    private final AtomicLong nextCorrelationId = new AtomicLong();
+    private final ExecutorService handlerExecutor;
+    private final Thread reader;
+
+    private volatile IOException closedBecause;
+
+    /**
+     * Wraps an already connected PortableSocket, and starts reading from it straight away.
+     * <p>
+     * The socket's read timeout is removed, as the reader is expected to sit idle between responses; use the per-request timeouts instead.
+     *
+     * @param portableSocket The connection to multiplex, which this now owns, and will close when closed.
+     * @param configuration  How this should behave.
+     * @throws IOException Thrown if the socket's input stream could not be initialised.
+     */
+    public MultiplexedPortableSocket(
+            @NonNull final PortableSocket portableSocket,
+            @NonNull final MultiplexedPortableSocketConfiguration configuration
+    ) throws IOException {
+        this.portableSocket = portableSocket;
+        this.configuration = configuration;
+        portableSocket.setNoTimeout();
+        this.handlerExecutor = Executors.newThreadPerTaskExecutor(new NamedThreadFactory(configuration.getName(), "handler", true));
+        this.reader = new NamedThreadFactory(configuration.getName(), "reader", true).newThread(this::readUntilClosed);
+        this.reader.start();
+    }
+
+    /**
+     * Sends a request, waiting at most the configured default request timeout for its response.
+     *
+     * @param request The object to send to the remote end's request handler.
+     * @return A future which completes with the remote end's response, or exceptionally with a {@link RemoteRequestException} if the remote
+     * handler failed, a {@link java.util.concurrent.TimeoutException} if no response arrived in time, or an {@link IOException} if the connection
+     * failed.
+     */
+    public CompletableFuture<Object> request(final Object request) {
+        return request(request, configuration.getDefaultRequestTimeout());
+    }
+
+    /**
+     * Sends a request, waiting at most the given timeout for its response.
+     *
+     * @param request The object to send to the remote end's request handler.
+     * @param timeout How long to wait for the response before failing the request.
+     * @return A future which completes with the remote end's response, as per {@link #request(Object)}. Cancelling it sends a cancellation to the
+     * remote end.
+     */
+    public CompletableFuture<Object> request(final Object request, @NonNull final Duration timeout) {
+        final long correlationId = nextCorrelationId.incrementAndGet();
+        final CompletableFuture<Object> response = new CompletableFuture<>();
+        pendingRequests.put(correlationId, response);
+
+        // Checked after registering, so that a concurrent close can never miss failing this request.
+        if (closedBecause != null) {
+            pendingRequests.remove(correlationId);
+            response.completeExceptionally(closedBecause);
+            return response;
+        }
+
+        response.orTimeout(timeout.toNanos(), TimeUnit.NANOSECONDS).whenComplete((value, failure) -> {
+            // Only a response removes its own entry, so anything still pending here has timed out or been cancelled.
+            if (pendingRequests.remove(correlationId) != null && closedBecause == null) {
+                sendQuietly(new MultiplexedMessage(correlationId, MultiplexedMessage.Kind.CANCEL, null));
+            }
+        });
+
+        try {
+            portableSocket.send(new MultiplexedMessage(correlationId, MultiplexedMessage.Kind.REQUEST, request));
+        } catch (IOException e) {
+            pendingRequests.remove(correlationId);
+            response.completeExceptionally(e);
+        }
+        return response;
+    }
+
+    /**
+     * @return How many requests are waiting on responses from the remote end.
+     */
+    public int getPendingRequestCount() {
+        return pendingRequests.size();
+    }
+
+    /**
+     * @return Whether this is still able to send requests and receive responses.
+     */
+    public boolean isOpen() {
+        return closedBecause == null;
+    }
+
+    /**
+     * Closes the underlying connection, fails every pending request, and interrupts any request handlers still running.
+     */
+    @Override
+    public void close() {
+        closeBecause(new SocketException("The MultiplexedPortableSocket was closed."));
+        if (Thread.currentThread() != reader) {
+            try {
+                reader.join(TimeUnit.SECONDS.toMillis(1));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Blocks until this is closed, from either end, which is useful for serving requests from within a
+     * {@link com.clumd.projects.java_common_utils.base_enhancements.PortableSocketHandler}.
+     *
+     * @throws InterruptedException Thrown if interrupted while waiting.
+     */
+    public void awaitClose() throws InterruptedException {
+        reader.join();
+    }
+
+    private void readUntilClosed() {
+        try {
+            while (closedBecause == null) {
+                if (!(portableSocket.receive() instanceof MultiplexedMessage message)) {
+                    throw new IOException("Received something other than a multiplexed message, "
+                            + "so the remote end is not using a MultiplexedPortableSocket.");
+                }
+                dispatch(message);
+            }
+        } catch (IOException | ClassNotFoundException | RuntimeException e) {
+            closeBecause(e instanceof IOException ioException
+                    ? ioException
+                    : new IOException("The MultiplexedPortableSocket's reader failed, so the connection can no longer be used.", e));
+        }
+    }
+
+    private void dispatch(final MultiplexedMessage message) {
+        switch (message.kind()) {
+            case REQUEST -> handle(message);
+            case RESPONSE -> {
+                CompletableFuture<Object> response = pendingRequests.remove(message.correlationId());
+                if (response != null) {
+                    response.complete(message.payload());
+                }
+            }
+            case FAILURE -> {
+                CompletableFuture<Object> response = pendingRequests.remove(message.correlationId());
+                if (response != null) {
+                    response.completeExceptionally((Throwable) message.payload());
+                }
+            }
+            case CANCEL -> {
+                Future<?> running = runningHandlers.remove(message.correlationId());
+                if (running != null) {
+                    running.cancel(true);
+                }
+            }
+        }
+    }
+
+    private void handle(final MultiplexedMessage request) {
+        final long correlationId = request.correlationId();
+        final FutureTask<Void> handler = new FutureTask<>(() -> {
+            MultiplexedMessage reply;
+            try {
+                if (configuration.getRequestHandler() == null) {
+                    throw new UnsupportedOperationException("This end of the connection does not accept requests.");
+                }
+                reply = new MultiplexedMessage(
+                        correlationId, MultiplexedMessage.Kind.RESPONSE, configuration.getRequestHandler().handle(request.payload())
+                );
+            } catch (Exception e) {
+                reply = new MultiplexedMessage(
+                        correlationId,
+                        MultiplexedMessage.Kind.FAILURE,
+                        new RemoteRequestException(e.getClass().getName(), e.getMessage())
+                );
+            }
+            if (runningHandlers.remove(correlationId) != null) {
+                // Otherwise it was cancelled by the requester, who is no longer waiting on the reply.
+                sendQuietly(reply);
+            }
+        }, null);
+
+        // Registered before the handler can start, so that it can always remove itself once done.
+        runningHandlers.put(correlationId, handler);
+        try {
+            handlerExecutor.execute(handler);
+        } catch (RejectedExecutionException e) {
+            // Closing, so the requester is about to find out anyway.
+            runningHandlers.remove(correlationId);
+        }
+    }
+
+    private void sendQuietly(final MultiplexedMessage message) {
+        try {
+            portableSocket.send(message);
+        } catch (IOException e) {
+            closeBecause(e);
+        }
+    }
+
+    private void closeBecause(final IOException cause) {
+        synchronized (this) {
+            if (closedBecause != null) {
+                return;
+            }
+            closedBecause = cause;
+        }
+        portableSocket.close();
+        handlerExecutor.shutdownNow();
+        for (Long correlationId : pendingRequests.keySet()) {
+            CompletableFuture<Object> response = pendingRequests.remove(correlationId);
+            if (response != null) {
+                response.completeExceptionally(cause);
+            }
+        }
+    }
+}
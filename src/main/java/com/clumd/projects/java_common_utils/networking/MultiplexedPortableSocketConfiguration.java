@@ -0,0 +1,33 @@
+package com.clumd.projects.java_common_utils.networking;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.Duration;
+
+/**
+ * This Class represents all the configuration required to run a {@link MultiplexedPortableSocket}.
+ */
+@Data
+@Builder
+public class MultiplexedPortableSocketConfiguration {
+
+    /**
+     * Used as the pool name for the reader and handler threads, so that log messages can be more contextual.
+     */
+    @Builder.Default
+    private final String name = "multiplexed-socket";
+
+    /**
+     * How long a request waits for its response when no timeout is given to {@link MultiplexedPortableSocket#request(Object)}.
+     */
+    @Builder.Default
+    private final Duration defaultRequestTimeout = Duration.ofSeconds(30);
+
+    /**
+     * Handles the requests the remote end sends to us. Leaving this as null will fail every incoming request, which is fine for a connection
+     * which only ever makes requests.
+     */
+    @Builder.Default
+    private final MultiplexedRequestHandler requestHandler = null;
+}
@@ -0,0 +1,20 @@
+package com.clumd.projects.java_common_utils.networking;
+
+/**
+ * The work to carry out for a single request received by a {@link MultiplexedPortableSocket}.
+ * <p>
+ * Each request is handled on its own virtual thread, so handlers may block, and will be interrupted if the requester cancels the request.
+ */
+@FunctionalInterface
+public interface MultiplexedRequestHandler {
+
+    /**
+     * Handles a single request, which may throw an unchecked or checked exception to fail the request.
+     *
+     * @param request The object the remote end sent as its request.
+     * @return The object to send back as the response, which may be null.
+     * @throws Exception Any problem which occurred while handling the request, which will be reported to the requester as a
+     *                   {@link RemoteRequestException}.
+     */
+    Object handle(Object request) throws Exception;
+}
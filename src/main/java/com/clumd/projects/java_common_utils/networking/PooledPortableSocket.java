@@ -0,0 +1,48 @@
+package com.clumd.projects.java_common_utils.networking;
+
+import com.clumd.projects.java_common_utils.base_enhancements.PortableSocket;
+import lombok.Getter;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A single connection borrowed from a {@link PortableSocketPool}. Closing this will hand the connection back to the pool for reuse, rather than
+ * closing the underlying {@link PortableSocket}.
+ * <p>
+ * If the borrower has left the connection in a state the next borrower could not use (such as part way through an exchange, or after a read
+ * timed out), it should call {@link #invalidate()} instead, so that the connection is discarded.
+ */
+public class PooledPortableSocket implements AutoCloseable {
+
+    @Getter
+    private final PortableSocket portableSocket;
+
+    private final PortableSocketPool pool;
+    private final PortableSocketPool.PoolKey key;
+    private final AtomicBoolean released = new AtomicBoolean(false);
+
+    PooledPortableSocket(final PortableSocketPool pool, final PortableSocketPool.PoolKey key, final PortableSocket portableSocket) {
+        this.pool = pool;
+        this.key = key;
+        this.portableSocket = portableSocket;
+    }
+
+    /**
+     * Closes the underlying connection and gives this borrower's slot back to the pool, rather than offering the connection to the next borrower.
+     */
+    public void invalidate() {
+        if (released.compareAndSet(false, true)) {
+            pool.release(key, portableSocket, false);
+        }
+    }
+
+    /**
+     * Hands the connection back to the pool for reuse. Calling this more than once, or after {@link #invalidate()}, has no effect.
+     */
+    @Override
+    public void close() {
+        if (released.compareAndSet(false, true)) {
+            pool.release(key, portableSocket, !portableSocket.isClosed());
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package com.clumd.projects.java_common_utils.networking;
+
+import com.clumd.projects.java_common_utils.base_enhancements.NamedThreadFactory;
+import com.clumd.projects.java_common_utils.base_enhancements.PortableSocket;
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Serializable;
+import java.net.SocketTimeoutException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A pool of open {@link PortableSocket} connections, keyed by the hostname, port and required stream header content they were created with, so
+ * that repeated exchanges with the same peer do not each pay for a new TCP connection and stream header handshake.
+ * <p>
+ * Borrowers wait in arrival order for a free slot once a key is at its maximum size, and give up once the configured borrow timeout passes.
+ * Idle connections are validated before being handed out, closed once they have been idle for too long, and topped back up to the configured
+ * minimum in the background.
+ * <p>
+ * Typical usage:
+ * <pre>
+ * {@code
+ * try (PooledPortableSocket pooled = pool.borrow("my-peer", 8080)) {
+ *     pooled.getPortableSocket().getOutputStream().writeObject(request);
+ *     pooled.getPortableSocket().getOutputStream().flush();
+ *     Object response = pooled.getPortableSocket().getInputStream().readObject();
+ * }
+ * }
+ * </pre>
+ */
+public class PortableSocketPool implements AutoCloseable {
+
+    private final PortableSocketPoolConfiguration configuration;
+    private final Map<PoolKey, KeyedConnections> connections = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService evictor;
+
+    @Getter
+    private final PortableSocketPoolMetrics metrics = new PortableSocketPoolMetrics();
+
+    private volatile boolean closed;
+
+    /**
+     * Creates an empty pool, and starts the background eviction of idle connections.
+     *
+     * @param configuration The sizes and timeouts this pool should use.
+     */
+    public PortableSocketPool(@NonNull final PortableSocketPoolConfiguration configuration) {
+        if (configuration.getMaxPerKey() < 1) {
+            throw new IllegalArgumentException("A PortableSocketPool must allow at least one connection per key.");
+        }
+        if (configuration.getMinIdlePerKey() < 0 || configuration.getMinIdlePerKey() > configuration.getMaxPerKey()) {
+            throw new IllegalArgumentException("A PortableSocketPool's minimum idle connections must be between 0 and the maximum per key.");
+        }
+        this.configuration = configuration;
+        this.evictor = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory(configuration.getName(), "evictor", true));
+        long evictionIntervalInMs = configuration.getEvictionInterval().toMillis();
+        this.evictor.scheduleWithFixedDelay(this::evictAndReplenish, evictionIntervalInMs, evictionIntervalInMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrows a connection to the given peer, preferring an idle connection which passes validation, and otherwise opening a new one.
+     *
+     * @param hostname                          The network hostname or IP of the peer.
+     * @param port                              The port of the peer.
+     * @param requiredSocketStreamHeaderContent The stream header content the connection must have been created with. This behaves exactly as
+     *                                          the same parameter to {@link PortableSocket#PortableSocket(String, int, Serializable...)}, and
+     *                                          connections with different header content are never shared.
+     * @return The borrowed connection, which must be closed (or invalidated) to hand it back to the pool.
+     * @throws IOException Thrown if the pool is closed, no slot became free before the borrow timeout, or a new connection could not be opened.
+     */
+    public PooledPortableSocket borrow(
+            @NonNull final String hostname,
+            final int port,
+            final Serializable... requiredSocketStreamHeaderContent
+    ) throws IOException {
+        ensureOpen();
+        final long startedAt = System.nanoTime();
+        final PoolKey key = PoolKey.of(hostname, port, requiredSocketStreamHeaderContent);
+        final KeyedConnections keyedConnections = connectionsFor(key);
+
+        try {
+            if (!keyedConnections.borrowPermits.tryAcquire(configuration.getBorrowTimeout().toMillis(), TimeUnit.MILLISECONDS)) {
+                metrics.recordBorrowTimeout();
+                throw new SocketTimeoutException("Timed out waiting for a pooled connection to {" + hostname + ":" + port + "}");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a pooled connection to {" + hostname + ":" + port + "}");
+        }
+
+        try {
+            IdleConnection idle;
+            while ((idle = keyedConnections.idle.pollFirst()) != null) {
+                if (isValid(idle.portableSocket())) {
+                    metrics.recordBorrow(System.nanoTime() - startedAt, true);
+                    return new PooledPortableSocket(this, key, idle.portableSocket());
+                }
+                metrics.recordValidationFailure();
+                idle.portableSocket().close();
+            }
+
+            PortableSocket created = create(key);
+            metrics.recordBorrow(System.nanoTime() - startedAt, false);
+            return new PooledPortableSocket(this, key, created);
+        } catch (IOException | RuntimeException e) {
+            keyedConnections.borrowPermits.release();
+            throw e;
+        }
+    }
+
+    void release(final PoolKey key, final PortableSocket portableSocket, final boolean reusable) {
+        KeyedConnections keyedConnections = connections.get(key);
+        if (reusable && !closed && keyedConnections != null) {
+            // Most recently used first, so that the connections left at the back are the ones which should be evicted.
+            keyedConnections.idle.offerFirst(new IdleConnection(portableSocket, System.nanoTime()));
+        } else {
+            portableSocket.close();
+        }
+        if (keyedConnections != null) {
+            keyedConnections.borrowPermits.release();
+        }
+    }
+
+    /**
+     * @return How many connections are currently sitting idle in the pool, across all keys.
+     */
+    public int getIdleConnectionCount() {
+        return connections.values().stream().mapToInt(keyedConnections -> keyedConnections.idle.size()).sum();
+    }
+
+    /**
+     * @return How many connections are currently borrowed from the pool, across all keys.
+     */
+    public int getBorrowedConnectionCount() {
+        return connections.values().stream()
+                .mapToInt(keyedConnections -> configuration.getMaxPerKey() - keyedConnections.borrowPermits.availablePermits())
+                .sum();
+    }
+
+    /**
+     * Closes every idle connection, and stops the background eviction. Connections which are currently borrowed will be closed as they are handed
+     * back, and any further attempt to borrow will fail.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        evictor.shutdownNow();
+        for (KeyedConnections keyedConnections : connections.values()) {
+            IdleConnection idle;
+            while ((idle = keyedConnections.idle.pollFirst()) != null) {
+                idle.portableSocket().close();
+            }
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Cannot borrow from a PortableSocketPool which has been closed.");
+        }
+    }
+
+    private KeyedConnections connectionsFor(final PoolKey key) {
+        return connections.computeIfAbsent(key, k -> new KeyedConnections(configuration.getMaxPerKey()));
+    }
+
+    private boolean isValid(final PortableSocket portableSocket) {
+        try {
+            return configuration.getValidationOnBorrow().test(portableSocket);
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    private PortableSocket create(final PoolKey key) throws IOException {
+        PortableSocket created = new PortableSocket(
+                configuration.getPortableSocketOptions(), key.hostname(), key.port(), key.headerContentAsArray()
+        );
+        metrics.recordCreation();
+        return created;
+    }
+
+    private void evictAndReplenish() {
+        final long idleTimeoutInNanos = configuration.getIdleTimeout().toNanos();
+        for (Map.Entry<PoolKey, KeyedConnections> entry : connections.entrySet()) {
+            Deque<IdleConnection> idle = entry.getValue().idle;
+
+            IdleConnection oldest;
+            while (idle.size() > configuration.getMinIdlePerKey()
+                    && (oldest = idle.peekLast()) != null
+                    && (System.nanoTime() - oldest.idleSince() > idleTimeoutInNanos || oldest.portableSocket().isClosed())) {
+                if (idle.removeLastOccurrence(oldest)) {
+                    oldest.portableSocket().close();
+                    metrics.recordEviction();
+                }
+            }
+
+            replenish(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private void replenish(final PoolKey key, final KeyedConnections keyedConnections) {
+        while (!closed && keyedConnections.idle.size() < configuration.getMinIdlePerKey()
+                && keyedConnections.borrowPermits.tryAcquire()) {
+            try {
+                // Idle connections hold no permit, so only top up while there is room for one more besides those borrowed and idle.
+                if (keyedConnections.idle.size() > keyedConnections.borrowPermits.availablePermits()) {
+                    return;
+                }
+                keyedConnections.idle.offerLast(new IdleConnection(create(key), System.nanoTime()));
+            } catch (IOException e) {
+                // The peer is not currently reachable, so try again on the next eviction run instead.
+                return;
+            } finally {
+                keyedConnections.borrowPermits.release();
+            }
+        }
+    }
+
+    /**
+     * Identifies which connections are interchangeable with each other.
+     */
+    record PoolKey(String hostname, int port, List<Serializable> requiredSocketStreamHeaderContent) {
+
+        static PoolKey of(final String hostname, final int port, final Serializable[] requiredSocketStreamHeaderContent) {
+            // A null header (no header at all) must stay distinct from an empty one (the default header), and header content may contain nulls.
+            return new PoolKey(
+                    hostname,
+                    port,
+                    requiredSocketStreamHeaderContent == null
+                            ? null
+                            : Collections.unmodifiableList(Arrays.asList(requiredSocketStreamHeaderContent.clone()))
+            );
+        }
+
+        Serializable[] headerContentAsArray() {
+            return requiredSocketStreamHeaderContent == null ? null : requiredSocketStreamHeaderContent.toArray(new Serializable[0]);
+        }
+    }
+
+    private record IdleConnection(PortableSocket portableSocket, long idleSince) {
+    }
+
+    private static final class KeyedConnections {
+
+        private final Semaphore borrowPermits;
+        private final Deque<IdleConnection> idle = new ConcurrentLinkedDeque<>();
+
+        private KeyedConnections(final int maxPerKey) {
+            this.borrowPermits = new Semaphore(maxPerKey, true);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.clumd.projects.java_common_utils.networking;
+
+import com.clumd.projects.java_common_utils.base_enhancements.PortableSocket;
+import com.clumd.projects.java_common_utils.base_enhancements.PortableSocketOptions;
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.Duration;
+import java.util.function.Predicate;
+
+/**
+ * This Class represents all the configuration required to run a {@link PortableSocketPool}.
+ * <p></p>
+ * All sizes are per key, where a key is the combination of hostname, port and required stream header content that a connection was created with.
+ */
+@Data
+@Builder
+public class PortableSocketPoolConfiguration {
+
+    /**
+     * Used as the pool name for the eviction thread, so that log messages can be more contextual.
+     */
+    @Builder.Default
+    private final String name = "portable-socket-pool";
+
+    /**
+     * How many idle connections the pool should try to keep open for every key it has seen, so that a burst of borrowers does not all have to
+     * pay for a new connection.
+     */
+    @Builder.Default
+    private final int minIdlePerKey = 0;
+
+    /**
+     * The most connections, borrowed or idle, which may be open for a single key at once.
+     */
+    @Builder.Default
+    private final int maxPerKey = 8;
+
+    /**
+     * How long a connection may sit idle in the pool before it is closed, as long as doing so does not drop the key below
+     * {@link #minIdlePerKey}.
+     */
+    @Builder.Default
+    private final Duration idleTimeout = Duration.ofMinutes(1);
+
+    /**
+     * How long a borrower is prepared to wait for a connection when the key is already at {@link #maxPerKey}.
+     */
+    @Builder.Default
+    private final Duration borrowTimeout = Duration.ofSeconds(5);
+
+    /**
+     * How often idle connections are checked against the {@link #idleTimeout}, and topped back up to {@link #minIdlePerKey}.
+     */
+    @Builder.Default
+    private final Duration evictionInterval = Duration.ofSeconds(30);
+
+    /**
+     * The optional behaviour every connection opened by the pool should be created with.
+     */
+    @Builder.Default
+    private final PortableSocketOptions portableSocketOptions = PortableSocketOptions.defaults();
+
+    /**
+     * Run against every idle connection before it is handed out. Connections which fail validation are closed, and the borrower moves on to the
+     * next idle connection, or a new one.
+     * <p>
+     * By default this is only {@link PortableSocket#isClosed()}, as anything more (such as a round-trip ping) requires the peer to understand it.
+     */
+    @Builder.Default
+    private final Predicate<PortableSocket> validationOnBorrow = portableSocket -> !portableSocket.isClosed();
+}
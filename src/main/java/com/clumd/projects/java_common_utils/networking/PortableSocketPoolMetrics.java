@@ -0,0 +1,110 @@
+package com.clumd.projects.java_common_utils.networking;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live counters describing how well a {@link PortableSocketPool} is being utilised. All values are cumulative since the pool was created.
+ */
+public class PortableSocketPoolMetrics {
+
+    private final LongAdder borrows = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder creations = new LongAdder();
+    private final LongAdder validationFailures = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder borrowTimeouts = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    void recordBorrow(final long waitNanos, final boolean reusedIdleConnection) {
+        borrows.increment();
+        if (reusedIdleConnection) {
+            hits.increment();
+        }
+        totalWaitNanos.add(waitNanos);
+        maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+    }
+
+    void recordCreation() {
+        creations.increment();
+    }
+
+    void recordValidationFailure() {
+        validationFailures.increment();
+    }
+
+    void recordEviction() {
+        evictions.increment();
+    }
+
+    void recordBorrowTimeout() {
+        borrowTimeouts.increment();
+    }
+
+    /**
+     * @return How many connections have successfully been handed out.
+     */
+    public long getBorrows() {
+        return borrows.sum();
+    }
+
+    /**
+     * @return How many borrows were served by an already open, idle connection.
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return How many new connections the pool has had to open.
+     */
+    public long getCreations() {
+        return creations.sum();
+    }
+
+    /**
+     * @return How many idle connections were discarded because they failed validation on borrow.
+     */
+    public long getValidationFailures() {
+        return validationFailures.sum();
+    }
+
+    /**
+     * @return How many idle connections were closed for exceeding the idle timeout.
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return How many borrowers gave up waiting for a connection.
+     */
+    public long getBorrowTimeouts() {
+        return borrowTimeouts.sum();
+    }
+
+    /**
+     * @return The proportion of borrows which were served by an idle connection, between 0 and 1.
+     */
+    public double getHitRatio() {
+        long borrowCount = getBorrows();
+        return borrowCount == 0 ? 0 : (double) getHits() / borrowCount;
+    }
+
+    /**
+     * @return The average time a successful borrower spent waiting for, validating or creating its connection, in milliseconds.
+     */
+    public double getAverageWaitTimeInMs() {
+        long borrowCount = getBorrows();
+        return borrowCount == 0 ? 0 : (double) totalWaitNanos.sum() / borrowCount / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * @return The longest time a successful borrower spent waiting for, validating or creating its connection, in milliseconds.
+     */
+    public double getMaxWaitTimeInMs() {
+        return (double) maxWaitNanos.get() / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
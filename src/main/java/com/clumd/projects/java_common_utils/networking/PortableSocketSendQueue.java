@@ -0,0 +1,420 @@
+package com.clumd.projects.java_common_utils.networking;
+
+import com.clumd.projects.java_common_utils.base_enhancements.NamedThreadFactory;
+import com.clumd.projects.java_common_utils.base_enhancements.PortableSocket;
+import lombok.NonNull;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Array;
+import java.net.SocketException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Decouples producers from a {@link PortableSocket} whose remote end may be slow to read, by queueing messages to be sent by a single writer
+ * thread, without letting the queue grow without bound.
+ * <p>
+ * The queue is measured in bytes, against a high and low watermark. Once the high watermark is reached, the queue stops being writable, and
+ * anything else enqueued is handled per the {@link SendQueueConfiguration.OverflowPolicy}, until it drains back down to the low watermark.
+ * Producers which would rather adapt their rate than be blocked or rejected can watch {@link #isWritable()}, or be told through a
+ * {@link WritabilityListener}.
+ * <p>
+ * A single message larger than the high watermark is still accepted when the queue is empty, as it could otherwise never be sent.
+ * <pre>
+ * {@code
+ * try (PortableSocketSendQueue queue = new PortableSocketSendQueue(portableSocket, SendQueueConfiguration.builder()
+ *         .overflowPolicy(SendQueueConfiguration.OverflowPolicy.FAIL_FAST)
+ *         .build())) {
+ *     queue.enqueue("message");
+ * }
+ * }
+ * </pre>
+ */
+public class PortableSocketSendQueue implements AutoCloseable {
+
+    // Roughly what Java serialisation spends on describing a value, on top of its content.
+    private static final int ESTIMATED_OVERHEAD_IN_BYTES = 32;
+    // Counted for anything whose size cannot be told from its type alone.
+    private static final int ESTIMATED_OBJECT_SIZE_IN_BYTES = 256;
+
+    private record Queued(Object value, int sizeInBytes) {
+    }
+
+    private final PortableSocket portableSocket;
+    private final SendQueueConfiguration configuration;
+    private final Thread writer;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition writableAgain = lock.newCondition();
+    private final Condition drained = lock.newCondition();
+
+    // Guarded by the lock.
+    private final Deque<Queued> queue = new ArrayDeque<>();
+    private long queuedBytes;
+    private boolean writable = true;
+    private boolean sending;
+    private boolean closed;
+    private IOException failedBecause;
+
+    private final AtomicLong sentCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    /**
+     * Starts the writer thread straight away.
+     *
+     * @param portableSocket The connection to send the queued messages on, which should not be sent on directly while this is open. This does not
+     *                       take ownership of it, so it is left open when this is closed.
+     * @param configuration  How this should behave.
+     */
+    public PortableSocketSendQueue(@NonNull final PortableSocket portableSocket, @NonNull final SendQueueConfiguration configuration) {
+        if (configuration.getLowWatermarkInBytes() < 0 || configuration.getLowWatermarkInBytes() > configuration.getHighWatermarkInBytes()) {
+            throw new IllegalArgumentException("The low watermark must be between zero and the high watermark.");
+        }
+        this.portableSocket = portableSocket;
+        this.configuration = configuration;
+        this.writer = new NamedThreadFactory(configuration.getName(), "writer", true).newThread(this::writeUntilClosed);
+        this.writer.start();
+    }
+
+    /**
+     * Queues a message to be sent, applying the {@link SendQueueConfiguration.OverflowPolicy} if the queue is not currently writable.
+     *
+     * @param value The value to send, which may be null.
+     * @throws SendQueueFullException Thrown if the queue is not writable, and configured to fail fast.
+     * @throws InterruptedIOException Thrown if interrupted while blocked waiting for the queue to become writable.
+     * @throws IOException            Thrown if the queue is closed, or an earlier send failed, in which case the cause is that failure.
+     */
+    public void enqueue(final Object value) throws IOException {
+        final int sizeInBytes = configuration.getSizeEstimator().applyAsInt(value);
+        lock.lock();
+        try {
+            throwIfUnusable();
+            if (!writable && !queue.isEmpty()) {
+                switch (configuration.getOverflowPolicy()) {
+                    case BLOCK -> {
+                        while (!writable && !queue.isEmpty()) {
+                            writableAgain.await();
+                            throwIfUnusable();
+                        }
+                    }
+                    case FAIL_FAST -> {
+                        rejectedCount.incrementAndGet();
+                        throw new SendQueueFullException("The send queue is holding {" + queuedBytes + "} bytes, which is over its high watermark of {"
+                                + configuration.getHighWatermarkInBytes() + "} bytes.");
+                    }
+                    case DROP_OLDEST -> {
+                        while (!queue.isEmpty() && queuedBytes + sizeInBytes > configuration.getHighWatermarkInBytes()) {
+                            queuedBytes -= queue.removeFirst().sizeInBytes();
+                            droppedCount.incrementAndGet();
+                        }
+                        // Dropping can drain the queue as far as the writer sending would have, so it becomes writable again the same way.
+                        if (queuedBytes <= configuration.getLowWatermarkInBytes()) {
+                            setWritable(true);
+                        }
+                    }
+                }
+            }
+
+            queue.addLast(new Queued(value, sizeInBytes));
+            queuedBytes += sizeInBytes;
+            if (writable && queuedBytes >= configuration.getHighWatermarkInBytes()) {
+                setWritable(false);
+            }
+            notEmpty.signal();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the send queue to become writable.");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return Whether the queue is below its high watermark, or has since drained back to its low watermark.
+     */
+    public boolean isWritable() {
+        lock.lock();
+        try {
+            return writable;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return How many bytes are queued, including the message currently being sent, which still counts against the watermarks.
+     */
+    public long getQueuedBytes() {
+        lock.lock();
+        try {
+            return queuedBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return How many messages are queued, and not yet handed to the PortableSocket.
+     */
+    public int getQueuedCount() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return How many messages have been sent on the PortableSocket.
+     */
+    public long getSentCount() {
+        return sentCount.get();
+    }
+
+    /**
+     * @return How many queued messages were discarded to make room for newer ones.
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * @return How many messages were rejected for being enqueued while the queue was not writable.
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    /**
+     * Waits for everything queued so far to have been sent.
+     *
+     * @param timeout The longest to wait.
+     * @return True if everything was sent, or false if the timeout passed first.
+     * @throws IOException Thrown if interrupted while waiting, or if a send failed, in which case the cause is that failure.
+     */
+    public boolean awaitDrained(@NonNull final Duration timeout) throws IOException {
+        long remainingNanos = timeout.toNanos();
+        lock.lock();
+        try {
+            while (failedBecause == null && (!queue.isEmpty() || sending)) {
+                if (remainingNanos <= 0) {
+                    return false;
+                }
+                remainingNanos = drained.awaitNanos(remainingNanos);
+            }
+            if (failedBecause != null) {
+                throw new IOException("A queued message could not be sent.", failedBecause);
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the send queue to drain.");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops accepting messages, discards anything not yet sent, and stops the writer once it has finished whatever it is currently sending. Use
+     * {@link #awaitDrained(Duration)} first to close gracefully.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            queue.clear();
+            queuedBytes = 0;
+            signalEveryone();
+        } finally {
+            lock.unlock();
+        }
+        if (Thread.currentThread() != writer) {
+            try {
+                writer.join(TimeUnit.SECONDS.toMillis(1));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * The default {@link SendQueueConfiguration#getSizeEstimator()}, which estimates the value's size from its type, without serialising it.
+     * Byte arrays, Strings, boxed primitives and arrays of primitives are counted close to their serialised size. Collections, Maps and other
+     * arrays count their first element's estimate for every element, and anything else counts for a fixed amount.
+     *
+     * @param value The value to estimate.
+     * @return Roughly how many bytes the value takes up when sent.
+     */
+    public static int estimatedSizeOf(final Object value) {
+        if (value == null) {
+            return 1;
+        }
+        if (value instanceof byte[] bytes) {
+            return ESTIMATED_OVERHEAD_IN_BYTES + bytes.length;
+        }
+        if (value instanceof CharSequence text) {
+            return ESTIMATED_OVERHEAD_IN_BYTES + text.length();
+        }
+        if (value instanceof Number || value instanceof Boolean || value instanceof Character || value instanceof Enum<?>) {
+            return ESTIMATED_OVERHEAD_IN_BYTES;
+        }
+        if (value instanceof Collection<?> collection) {
+            return collection.isEmpty()
+                    ? ESTIMATED_OVERHEAD_IN_BYTES
+                    : estimatedSizeOf(collection.size(), estimatedSizeOf(collection.iterator().next()));
+        }
+        if (value instanceof Map<?, ?> map) {
+            if (map.isEmpty()) {
+                return ESTIMATED_OVERHEAD_IN_BYTES;
+            }
+            Map.Entry<?, ?> first = map.entrySet().iterator().next();
+            return estimatedSizeOf(map.size(), (long) estimatedSizeOf(first.getKey()) + estimatedSizeOf(first.getValue()));
+        }
+        if (value.getClass().isArray()) {
+            final int length = Array.getLength(value);
+            final Class<?> componentType = value.getClass().getComponentType();
+            if (componentType.isPrimitive()) {
+                return estimatedSizeOf(length, primitiveSizeOf(componentType));
+            }
+            return length == 0 ? ESTIMATED_OVERHEAD_IN_BYTES : estimatedSizeOf(length, estimatedSizeOf(Array.get(value, 0)));
+        }
+        return ESTIMATED_OBJECT_SIZE_IN_BYTES;
+    }
+
+    private static int estimatedSizeOf(final int elements, final long elementSizeInBytes) {
+        return (int) Math.min(Integer.MAX_VALUE, ESTIMATED_OVERHEAD_IN_BYTES + elements * elementSizeInBytes);
+    }
+
+    private static int primitiveSizeOf(final Class<?> primitiveType) {
+        if (primitiveType == long.class || primitiveType == double.class) {
+            return Long.BYTES;
+        }
+        if (primitiveType == int.class || primitiveType == float.class) {
+            return Integer.BYTES;
+        }
+        if (primitiveType == short.class || primitiveType == char.class) {
+            return Short.BYTES;
+        }
+        return Byte.BYTES;
+    }
+
+    /**
+     * A {@link SendQueueConfiguration#getSizeEstimator()} which serialises the value to count its bytes, without keeping them. This is exact for
+     * a value sent on its own, but costs a serialisation pass of its own on every enqueue.
+     *
+     * @param value The value to measure.
+     * @return How many bytes the value takes up when Java serialised on its own.
+     */
+    public static int serialisedSizeOf(final Object value) {
+        final int[] count = new int[1];
+        OutputStream counter = new OutputStream() {
+            @Override
+            public void write(final int b) {
+                count[0]++;
+            }
+
+            @Override
+            public void write(final byte[] b, final int off, final int len) {
+                count[0] += len;
+            }
+        };
+        try (ObjectOutputStream objectOutputStream = new ObjectOutputStream(counter)) {
+            objectOutputStream.writeObject(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not measure the serialised size of a queued message.", e);
+        }
+        return count[0];
+    }
+
+    private void writeUntilClosed() {
+        while (true) {
+            Queued next;
+            lock.lock();
+            try {
+                while (queue.isEmpty() && !closed) {
+                    notEmpty.awaitUninterruptibly();
+                }
+                if (closed) {
+                    return;
+                }
+                next = queue.removeFirst();
+                sending = true;
+            } finally {
+                lock.unlock();
+            }
+
+            // Sent outside the lock, so that producers are never held up by the slow remote end, only by the watermarks.
+            IOException failure = null;
+            try {
+                portableSocket.send(next.value());
+                sentCount.incrementAndGet();
+            } catch (IOException e) {
+                failure = e;
+            }
+
+            lock.lock();
+            try {
+                sending = false;
+                queuedBytes -= next.sizeInBytes();
+                if (failure != null) {
+                    failedBecause = failure;
+                    queue.clear();
+                    queuedBytes = 0;
+                    signalEveryone();
+                    return;
+                }
+                if (!writable && queuedBytes <= configuration.getLowWatermarkInBytes()) {
+                    setWritable(true);
+                }
+                if (queue.isEmpty()) {
+                    drained.signalAll();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void throwIfUnusable() throws IOException {
+        if (failedBecause != null) {
+            throw new IOException("A queued message could not be sent, so the send queue can no longer be used.", failedBecause);
+        }
+        if (closed) {
+            throw new SocketException("The send queue is closed.");
+        }
+    }
+
+    private void setWritable(final boolean nowWritable) {
+        writable = nowWritable;
+        if (nowWritable) {
+            writableAgain.signalAll();
+        }
+        if (configuration.getWritabilityListener() != null) {
+            configuration.getWritabilityListener().onWritabilityChanged(nowWritable);
+        }
+    }
+
+    private void signalEveryone() {
+        notEmpty.signalAll();
+        writableAgain.signalAll();
+        drained.signalAll();
+    }
+}
@@ -0,0 +1,324 @@
+package com.clumd.projects.java_common_utils.networking;
+
+import com.clumd.projects.java_common_utils.base_enhancements.HostnameResolver;
+import com.clumd.projects.java_common_utils.base_enhancements.NamedThreadFactory;
+import com.clumd.projects.java_common_utils.base_enhancements.PortableSocket;
+import lombok.NonNull;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A concurrent, caching alternative to {@link PortableSocket#portableIsReachable(String, int)}, for when many peers need checking at once.
+ * <p>
+ * Every target is probed on its own virtual thread, and within each probe, all the checks are raced against each other rather than run one after
+ * another: an {@link InetAddress#isReachable(int)} check, and a TCP connection attempt to each resolved address. Connection attempts are started
+ * in the style of <a href="https://www.rfc-editor.org/rfc/rfc8305">Happy Eyeballs</a>, alternating between IPv6 and IPv4 addresses, with the next
+ * attempt starting as soon as the previous fails or after a short delay, whichever comes first. The first check to succeed decides the result,
+ * and a target is only unreachable once every check has failed or the probe timeout passes, so a dead host costs one probe timeout at most.
+ * <p>
+ * Results are cached, with separate TTLs for reachable and unreachable targets, and concurrent probes of the same target share a single probe.
+ * <pre>
+ * {@code
+ * try (ReachabilityProber prober = new ReachabilityProber(ReachabilityProberConfiguration.builder().build())) {
+ *     Map<ReachabilityProber.Target, ReachabilityResult> results = prober.probeAll(peers);
+ * }
+ * }
+ * </pre>
+ */
+public class ReachabilityProber implements AutoCloseable {
+
+    private final ReachabilityProberConfiguration configuration;
+    private final ExecutorService probeExecutor;
+    private final Map<Target, CachedResult> cache = new ConcurrentHashMap<>();
+    private final Map<Target, CompletableFuture<ReachabilityResult>> inFlight = new ConcurrentHashMap<>();
+
+    private volatile boolean closed;
+
+    /**
+     * A single host and port to probe.
+     *
+     * @param hostname The network hostname or IP of the peer.
+     * @param port     The port on that peer which should accept TCP connections.
+     */
+    public record Target(@NonNull String hostname, int port) {
+    }
+
+    private record CachedResult(ReachabilityResult result, long expiresAt) {
+    }
+
+    /**
+     * Creates a prober with an empty cache.
+     *
+     * @param configuration The timeouts and TTLs this prober should use.
+     */
+    public ReachabilityProber(@NonNull final ReachabilityProberConfiguration configuration) {
+        this.configuration = configuration;
+        this.probeExecutor = Executors.newThreadPerTaskExecutor(new NamedThreadFactory(configuration.getName(), "probe", true));
+    }
+
+    /**
+     * Probes a single target, unless a result for it is already cached, or it is already being probed.
+     *
+     * @param hostname The network hostname or IP of the peer.
+     * @param port     The port on that peer which should accept TCP connections.
+     * @return A future which completes with the result, no later than the probe timeout after the probe started.
+     */
+    public CompletableFuture<ReachabilityResult> probe(@NonNull final String hostname, final int port) {
+        final Target target = new Target(hostname, port);
+        final Optional<ReachabilityResult> cached = getCachedResult(hostname, port);
+        if (cached.isPresent()) {
+            return CompletableFuture.completedFuture(cached.get());
+        }
+        if (closed) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Cannot probe with a ReachabilityProber which has been closed."));
+        }
+
+        final CompletableFuture<ReachabilityResult> created = new CompletableFuture<>();
+        final CompletableFuture<ReachabilityResult> existing = inFlight.putIfAbsent(target, created);
+        if (existing != null) {
+            // A copy, so that one caller cancelling their future does not cancel everyone else's.
+            return existing.copy();
+        }
+        try {
+            probeExecutor.execute(() -> {
+                try {
+                    ReachabilityResult result = runProbe(target);
+                    cache(target, result);
+                    inFlight.remove(target, created);
+                    created.complete(result);
+                } catch (RuntimeException e) {
+                    // Never left in flight, or every later probe of the target would wait on it forever.
+                    inFlight.remove(target, created);
+                    created.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(target, created);
+            created.completeExceptionally(new IllegalStateException("Cannot probe with a ReachabilityProber which has been closed.", e));
+        }
+        return created.copy();
+    }
+
+    /**
+     * Probes every given target concurrently, and waits for all of them to finish.
+     *
+     * @param targets The targets to probe.
+     * @return Every target's result, in the order the targets were given.
+     */
+    public Map<Target, ReachabilityResult> probeAll(@NonNull final Collection<Target> targets) {
+        Map<Target, CompletableFuture<ReachabilityResult>> probes = new LinkedHashMap<>();
+        for (Target target : targets) {
+            probes.put(target, probe(target.hostname(), target.port()));
+        }
+        Map<Target, ReachabilityResult> results = new LinkedHashMap<>();
+        probes.forEach((target, probe) -> results.put(target, probe.join()));
+        return results;
+    }
+
+    /**
+     * Blocking convenience around {@link #probe(String, int)}.
+     *
+     * @param hostname The network hostname or IP of the peer.
+     * @param port     The port on that peer which should accept TCP connections.
+     * @return True if the target is reachable, False otherwise.
+     */
+    public boolean isReachable(@NonNull final String hostname, final int port) {
+        return probe(hostname, port).join().reachable();
+    }
+
+    /**
+     * @param hostname The network hostname or IP of the peer.
+     * @param port     The port on that peer.
+     * @return The cached result for the target, if there is one which has not expired.
+     */
+    public Optional<ReachabilityResult> getCachedResult(@NonNull final String hostname, final int port) {
+        CachedResult cached = cache.get(new Target(hostname, port));
+        if (cached == null || System.nanoTime() - cached.expiresAt() >= 0) {
+            return Optional.empty();
+        }
+        return Optional.of(cached.result());
+    }
+
+    /**
+     * Forgets any cached result for the given target, so that the next probe of it checks the network again.
+     *
+     * @param hostname The network hostname or IP of the peer.
+     * @param port     The port on that peer.
+     */
+    public void invalidate(@NonNull final String hostname, final int port) {
+        cache.remove(new Target(hostname, port));
+    }
+
+    /**
+     * Forgets every cached result.
+     */
+    public void clearCache() {
+        cache.clear();
+    }
+
+    /**
+     * Stops any probes in progress, which will complete as unreachable, and fails any further probes which are not already cached.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        probeExecutor.shutdownNow();
+    }
+
+    private ReachabilityResult runProbe(final Target target) {
+        final long startedAt = System.nanoTime();
+        try {
+            if (configuration.isLocalHostnamesReachable() && PortableSocket.isLocalHostname(target.hostname())) {
+                return result(target, ReachabilityResult.Method.LOCAL, null, startedAt, null);
+            }
+            return race(target, interleaveAddressFamilies(HostnameResolver.getDefault().resolve(target.hostname())), startedAt);
+        } catch (IOException e) {
+            return result(target, ReachabilityResult.Method.NONE, null, startedAt, e);
+        }
+    }
+
+    private ReachabilityResult race(final Target target, final List<InetAddress> addresses, final long startedAt) {
+        final long deadline = startedAt + configuration.getProbeTimeout().toNanos();
+        final CompletableFuture<ReachabilityResult> winner = new CompletableFuture<>();
+        final Semaphore attemptsFinished = new Semaphore(0);
+        final AtomicInteger attemptsRemaining = new AtomicInteger(addresses.size() + (configuration.isIcmpEnabled() ? 1 : 0));
+        final List<Future<?>> attempts = new ArrayList<>();
+        final Runnable attemptFailed = () -> {
+            attemptsFinished.release();
+            if (attemptsRemaining.decrementAndGet() == 0) {
+                winner.complete(result(target, ReachabilityResult.Method.NONE, null, startedAt, null));
+            }
+        };
+
+        try {
+            if (configuration.isIcmpEnabled()) {
+                final InetAddress address = addresses.get(0);
+                attempts.add(probeExecutor.submit(() -> {
+                    try {
+                        if (address.isReachable(remainingMillis(deadline))) {
+                            winner.complete(result(target, ReachabilityResult.Method.ICMP, address, startedAt, null));
+                            return;
+                        }
+                    } catch (IOException e) {
+                        // Treated the same as not reachable, as the TCP attempts may still succeed.
+                    }
+                    attemptFailed.run();
+                }));
+            }
+
+            for (InetAddress address : addresses) {
+                if (winner.isDone() || System.nanoTime() - deadline >= 0) {
+                    break;
+                }
+                attempts.add(probeExecutor.submit(() -> {
+                    try (Socket socket = new Socket()) {
+                        socket.connect(new InetSocketAddress(address, target.port()), remainingMillis(deadline));
+                        winner.complete(result(target, ReachabilityResult.Method.TCP, address, startedAt, null));
+                    } catch (IOException e) {
+                        attemptFailed.run();
+                    }
+                }));
+                // Start the next attempt as soon as any attempt fails, or once the delay passes without an answer.
+                attemptsFinished.tryAcquire(
+                        Math.min(configuration.getConnectionAttemptDelay().toNanos(), Math.max(0, deadline - System.nanoTime())),
+                        TimeUnit.NANOSECONDS
+                );
+            }
+
+            return winner.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException | ExecutionException | RejectedExecutionException e) {
+            return result(target, ReachabilityResult.Method.NONE, null, startedAt, null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return result(target, ReachabilityResult.Method.NONE, null, startedAt, e);
+        } finally {
+            // Virtual threads blocked on a connect are interruptible, so this also closes any attempt still in progress.
+            attempts.forEach(attempt -> attempt.cancel(true));
+        }
+    }
+
+    private void cache(final Target target, final ReachabilityResult result) {
+        Duration ttl = result.reachable() ? configuration.getPositiveTtl() : configuration.getNegativeTtl();
+        if (ttl.isZero() || ttl.isNegative()) {
+            return;
+        }
+        if (cache.size() >= configuration.getMaxCachedResults()) {
+            long now = System.nanoTime();
+            cache.values().removeIf(cached -> now - cached.expiresAt() >= 0);
+            if (cache.size() >= configuration.getMaxCachedResults()) {
+                cache.clear();
+            }
+        }
+        cache.put(target, new CachedResult(result, System.nanoTime() + ttl.toNanos()));
+    }
+
+    private static int remainingMillis(final long deadline) {
+        return (int) Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
+    }
+
+    private static ReachabilityResult result(
+            final Target target,
+            final ReachabilityResult.Method method,
+            final InetAddress address,
+            final long startedAt,
+            final Exception failure
+    ) {
+        return new ReachabilityResult(
+                target.hostname(),
+                target.port(),
+                method != ReachabilityResult.Method.NONE,
+                method,
+                address,
+                Duration.ofNanos(System.nanoTime() - startedAt),
+                Instant.now(),
+                failure
+        );
+    }
+
+    /**
+     * Orders resolved addresses as per the Happy Eyeballs recommendation, keeping the resolver's preferred family first, then alternating
+     * between families, so that a broken network path for one family does not hold up every attempt.
+     *
+     * @param addresses The addresses as returned by the resolver.
+     * @return The same addresses in the order they should be attempted.
+     */
+    static List<InetAddress> interleaveAddressFamilies(final InetAddress[] addresses) {
+        List<InetAddress> preferred = new ArrayList<>();
+        List<InetAddress> other = new ArrayList<>();
+        for (InetAddress address : addresses) {
+            (address.getClass() == addresses[0].getClass() ? preferred : other).add(address);
+        }
+        List<InetAddress> interleaved = new ArrayList<>(addresses.length);
+        for (int i = 0; i < Math.max(preferred.size(), other.size()); i++) {
+            if (i < preferred.size()) {
+                interleaved.add(preferred.get(i));
+            }
+            if (i < other.size()) {
+                interleaved.add(other.get(i));
+            }
+        }
+        return interleaved;
+    }
+}
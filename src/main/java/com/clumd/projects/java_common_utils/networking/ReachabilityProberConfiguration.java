@@ -0,0 +1,65 @@
+package com.clumd.projects.java_common_utils.networking;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.Duration;
+
+/**
+ * This Class represents all the configuration required to run a {@link ReachabilityProber}.
+ */
+@Data
+@Builder
+public class ReachabilityProberConfiguration {
+
+    /**
+     * Used as the pool name for the probing threads, so that log messages can be more contextual.
+     */
+    @Builder.Default
+    private final String name = "reachability-prober";
+
+    /**
+     * The longest a single target may be probed for in total, across every check and address, before it is reported as unreachable.
+     */
+    @Builder.Default
+    private final Duration probeTimeout = Duration.ofSeconds(3);
+
+    /**
+     * How long to wait for a connection attempt to one resolved address before also starting an attempt to the next, as per the
+     * <a href="https://www.rfc-editor.org/rfc/rfc8305">Happy Eyeballs</a> connection attempt delay.
+     */
+    @Builder.Default
+    private final Duration connectionAttemptDelay = Duration.ofMillis(250);
+
+    /**
+     * Whether hostnames which refer to this machine are reported as reachable straight away, without any network check, as per
+     * {@link com.clumd.projects.java_common_utils.base_enhancements.PortableSocket#portableIsReachable(String, int)}.
+     */
+    @Builder.Default
+    private final boolean localHostnamesReachable = true;
+
+    /**
+     * Whether to race an {@link java.net.InetAddress#isReachable(int)} check against the TCP connection attempts.
+     */
+    @Builder.Default
+    private final boolean icmpEnabled = true;
+
+    /**
+     * How long a reachable result is reused for before the target is probed again.
+     */
+    @Builder.Default
+    private final Duration positiveTtl = Duration.ofSeconds(30);
+
+    /**
+     * How long an unreachable result is reused for before the target is probed again. This is usually shorter than {@link #positiveTtl}, so that
+     * a peer coming back up is noticed quickly.
+     */
+    @Builder.Default
+    private final Duration negativeTtl = Duration.ofSeconds(5);
+
+    /**
+     * The most results to hold on to. Expired results are purged first, then the whole cache if it is still too large.
+     */
+    @Builder.Default
+    private final int maxCachedResults = 10_000;
+}
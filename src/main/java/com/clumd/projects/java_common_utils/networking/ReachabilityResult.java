@@ -0,0 +1,51 @@
+package com.clumd.projects.java_common_utils.networking;
+
+import java.net.InetAddress;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * The outcome of a {@link ReachabilityProber} probing a single target.
+ *
+ * @param hostname The hostname which was probed.
+ * @param port     The port which was probed.
+ * @param reachable Whether any check succeeded.
+ * @param method   The check which succeeded first, or {@link Method#NONE} if the target was unreachable.
+ * @param address  The resolved address which the successful check reached, or null if unreachable or local.
+ * @param probeTime How long the probe took to reach its answer.
+ * @param probedAt When the probe finished, which is how old a cached result is.
+ * @param failure  Why the target was unreachable, if it was down to something more specific than every check timing out, otherwise null.
+ */
+public record ReachabilityResult(
+        String hostname,
+        int port,
+        boolean reachable,
+        Method method,
+        InetAddress address,
+        Duration probeTime,
+        Instant probedAt,
+        Exception failure
+) {
+
+    /**
+     * The ways a target can be found to be reachable.
+     */
+    public enum Method {
+        /**
+         * The hostname refers to this machine, so no network check was needed.
+         */
+        LOCAL,
+        /**
+         * {@link InetAddress#isReachable(int)} succeeded.
+         */
+        ICMP,
+        /**
+         * A TCP connection to the target's port succeeded.
+         */
+        TCP,
+        /**
+         * Nothing succeeded.
+         */
+        NONE
+    }
+}
@@ -0,0 +1,412 @@
+package com.clumd.projects.java_common_utils.networking;
+
+import com.clumd.projects.java_common_utils.base_enhancements.NamedThreadFactory;
+import com.clumd.projects.java_common_utils.base_enhancements.PortableSocket;
+import lombok.NonNull;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Serializable;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A {@link PortableSocket} to a single remote end, which survives that connection dropping, by transparently reconnecting in the background.
+ * <p>
+ * Reconnection attempts back off exponentially, with full jitter (each delay is picked at random between zero and the current upper bound), so
+ * that many clients losing the same peer spread their reconnections out, rather than all arriving at once when it restarts. Every new connection
+ * goes through the full stream header handshake before it is used.
+ * <p>
+ * Optionally, sent messages can be held in a bounded replay buffer until {@link #acknowledge(long) acknowledged}, and are sent again, in order, on
+ * every new connection. This gives at-least-once delivery, so the remote end must be able to cope with seeing a message more than once.
+ * <pre>
+ * {@code
+ * try (ReconnectingPortableSocket socket = new ReconnectingPortableSocket(
+ *         ReconnectingPortableSocketConfiguration.builder().replayBufferSize(100).build(), "localhost", 1234
+ * )) {
+ *     long sequence = socket.send("request");
+ *     Object response = socket.receive();
+ *     socket.acknowledge(sequence);
+ * }
+ * }
+ * </pre>
+ */
+public class ReconnectingPortableSocket implements AutoCloseable {
+
+    /**
+     * The states a ReconnectingPortableSocket's connection moves through.
+     */
+    public enum State {
+        /**
+         * Making the very first connection.
+         */
+        CONNECTING,
+        /**
+         * Connected, and usable.
+         */
+        CONNECTED,
+        /**
+         * The connection was lost, and a new one is being made in the background.
+         */
+        RECONNECTING,
+        /**
+         * Closed, either by the caller or by giving up reconnecting, and never usable again.
+         */
+        CLOSED
+    }
+
+    private record Buffered(long sequence, Object value) {
+    }
+
+    private final ReconnectingPortableSocketConfiguration configuration;
+    private final String hostname;
+    private final int port;
+    private final Serializable[] requiredSocketStreamHeaderContent;
+    private final NamedThreadFactory reconnectThreadFactory;
+
+    // Always taken before the connectionLock, when both are needed.
+    private final ReentrantLock sendLock = new ReentrantLock();
+    private final ReentrantLock connectionLock = new ReentrantLock();
+    private final Condition connectionChanged = connectionLock.newCondition();
+
+    // Guarded by the sendLock.
+    private final Deque<Buffered> replayBuffer = new ArrayDeque<>();
+    private long lastSequence;
+
+    // Guarded by the connectionLock.
+    private PortableSocket current;
+    private State state = State.CONNECTING;
+    private IOException closedBecause;
+    private Thread reconnector;
+
+    private final AtomicLong reconnectCount = new AtomicLong();
+    private final AtomicLong replayDroppedCount = new AtomicLong();
+
+    /**
+     * Makes the first connection straight away, only reconnecting in the background once that has succeeded.
+     *
+     * @param configuration                     How this should behave.
+     * @param hostname                          The network hostname or IP of the peer to connect to.
+     * @param port                              The port to connect to.
+     * @param requiredSocketStreamHeaderContent What to write, and expect to read, as the stream header of every connection, as per
+     *                                          {@link PortableSocket#PortableSocket(String, int, Serializable...)}.
+     * @throws IOException Thrown if the first connection could not be made.
+     */
+    public ReconnectingPortableSocket(
+            @NonNull final ReconnectingPortableSocketConfiguration configuration,
+            @NonNull final String hostname,
+            final int port,
+            final Serializable... requiredSocketStreamHeaderContent
+    ) throws IOException {
+        this.configuration = configuration;
+        this.hostname = hostname;
+        this.port = port;
+        this.requiredSocketStreamHeaderContent = requiredSocketStreamHeaderContent;
+        this.reconnectThreadFactory = new NamedThreadFactory(configuration.getName(), "reconnect", true);
+
+        try {
+            current = connect();
+        } catch (IOException e) {
+            state = State.CLOSED;
+            closedBecause = e;
+            notifyListener(State.CONNECTING, State.CLOSED, e);
+            throw e;
+        }
+        state = State.CONNECTED;
+        notifyListener(State.CONNECTING, State.CONNECTED, null);
+    }
+
+    /**
+     * Sends a single value to the remote end, as per {@link PortableSocket#send(Object)}, waiting for a connection first if currently
+     * reconnecting.
+     * <p>
+     * With a replay buffer, a send which fails because the connection dropped does not throw, as the value will be sent again on the next
+     * connection.
+     *
+     * @param value The value to send, which may be null.
+     * @return The sequence number of the value, which can be given to {@link #acknowledge(long)}.
+     * @throws IOException Thrown if this is closed, or if the send failed and there is no replay buffer to send it again from.
+     */
+    public long send(final Object value) throws IOException {
+        while (true) {
+            PortableSocket connection = awaitConnection();
+            sendLock.lock();
+            try {
+                if (connection != currentConnection()) {
+                    // Reconnected while waiting for the lock, so anything buffered has been replayed onto the new connection first.
+                    continue;
+                }
+                long sequence = ++lastSequence;
+                if (configuration.getReplayBufferSize() > 0) {
+                    if (replayBuffer.size() >= configuration.getReplayBufferSize()) {
+                        replayBuffer.removeFirst();
+                        replayDroppedCount.incrementAndGet();
+                    }
+                    replayBuffer.addLast(new Buffered(sequence, value));
+                }
+                try {
+                    connection.send(value);
+                } catch (IOException e) {
+                    connectionLost(connection, e);
+                    if (configuration.getReplayBufferSize() <= 0) {
+                        throw e;
+                    }
+                }
+                return sequence;
+            } finally {
+                sendLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Receives a single value from the remote end, as per {@link PortableSocket#receive()}. If the connection drops while waiting, this carries on
+     * waiting on the next connection.
+     *
+     * @return The value received, which may be null.
+     * @throws IOException            Thrown if this is closed, or if the read timed out.
+     * @throws ClassNotFoundException Thrown if the value referenced a class which could not be found.
+     */
+    public Object receive() throws IOException, ClassNotFoundException {
+        while (true) {
+            PortableSocket connection = awaitConnection();
+            try {
+                return connection.receive();
+            } catch (SocketTimeoutException e) {
+                // The connection may well be fine, and the remote end simply had nothing to say.
+                throw e;
+            } catch (IOException e) {
+                connectionLost(connection, e);
+            }
+        }
+    }
+
+    /**
+     * Drops every message up to and including the given sequence number from the replay buffer, as the remote end is known to have handled
+     * them, so they never need sending again.
+     *
+     * @param sequence The sequence number returned by {@link #send(Object)} for the latest message to drop.
+     */
+    public void acknowledge(final long sequence) {
+        sendLock.lock();
+        try {
+            while (!replayBuffer.isEmpty() && replayBuffer.peekFirst().sequence() <= sequence) {
+                replayBuffer.removeFirst();
+            }
+        } finally {
+            sendLock.unlock();
+        }
+    }
+
+    /**
+     * @return How many sent messages are waiting to be acknowledged.
+     */
+    public int getReplayBufferedCount() {
+        sendLock.lock();
+        try {
+            return replayBuffer.size();
+        } finally {
+            sendLock.unlock();
+        }
+    }
+
+    /**
+     * @return How many unacknowledged messages have been dropped from a full replay buffer, and so would not be sent again.
+     */
+    public long getReplayDroppedCount() {
+        return replayDroppedCount.get();
+    }
+
+    /**
+     * @return How many times a dropped connection has been successfully replaced.
+     */
+    public long getReconnectCount() {
+        return reconnectCount.get();
+    }
+
+    /**
+     * @return The state the connection is currently in.
+     */
+    public State getState() {
+        connectionLock.lock();
+        try {
+            return state;
+        } finally {
+            connectionLock.unlock();
+        }
+    }
+
+    /**
+     * Closes the current connection, stops any reconnection in progress, and fails anything waiting on a connection.
+     */
+    @Override
+    public void close() {
+        closeBecause(new SocketException("The ReconnectingPortableSocket was closed."), null);
+    }
+
+    /**
+     * Picks how long to wait before a reconnection attempt, at random between zero and the current upper bound, which grows exponentially with
+     * each attempt up to the configured maximum.
+     *
+     * @param attempt How many attempts have already failed since the connection was lost.
+     * @return How long to wait, in nanoseconds.
+     */
+    long computeBackoffNanos(final int attempt) {
+        double upperBound = configuration.getInitialBackoff().toNanos() * Math.pow(configuration.getBackoffMultiplier(), attempt);
+        long cappedUpperBound = (long) Math.min(upperBound, configuration.getMaxBackoff().toNanos());
+        return cappedUpperBound <= 0 ? 0 : ThreadLocalRandom.current().nextLong(cappedUpperBound + 1);
+    }
+
+    private PortableSocket connect() throws IOException {
+        PortableSocket connection = new PortableSocket(
+                configuration.getPortableSocketOptions(), hostname, port, requiredSocketStreamHeaderContent
+        );
+        try {
+            // Reads and checks the remote stream header now, so that a connection is only ever handed out once the handshake has succeeded.
+            connection.getInputStream();
+        } catch (IOException e) {
+            connection.close();
+            throw e;
+        }
+        return connection;
+    }
+
+    private PortableSocket currentConnection() {
+        connectionLock.lock();
+        try {
+            return current;
+        } finally {
+            connectionLock.unlock();
+        }
+    }
+
+    private PortableSocket awaitConnection() throws IOException {
+        connectionLock.lock();
+        try {
+            while (current == null && state != State.CLOSED) {
+                connectionChanged.await();
+            }
+            if (state == State.CLOSED) {
+                throw new SocketException("The ReconnectingPortableSocket is closed: " + closedBecause.getMessage());
+            }
+            return current;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to reconnect.");
+        } finally {
+            connectionLock.unlock();
+        }
+    }
+
+    private void connectionLost(final PortableSocket connection, final IOException cause) {
+        connectionLock.lock();
+        try {
+            // Only the first to notice gets to start reconnecting, and only if nothing else has replaced the connection already.
+            if (current != connection || state == State.CLOSED) {
+                return;
+            }
+            current = null;
+            state = State.RECONNECTING;
+            reconnector = reconnectThreadFactory.newThread(this::reconnectUntilConnectedOrClosed);
+            reconnector.start();
+        } finally {
+            connectionLock.unlock();
+        }
+        connection.close();
+        notifyListener(State.CONNECTED, State.RECONNECTING, cause);
+    }
+
+    private void reconnectUntilConnectedOrClosed() {
+        IOException lastFailure = null;
+        for (int attempt = 0; configuration.getMaxReconnectAttempts() <= 0 || attempt < configuration.getMaxReconnectAttempts(); attempt++) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(computeBackoffNanos(attempt));
+            } catch (InterruptedException e) {
+                // Only ever interrupted by being closed.
+                return;
+            }
+            if (getState() == State.CLOSED) {
+                return;
+            }
+
+            PortableSocket connection;
+            try {
+                connection = connect();
+            } catch (IOException e) {
+                lastFailure = e;
+                continue;
+            }
+
+            sendLock.lock();
+            try {
+                for (Buffered buffered : replayBuffer) {
+                    connection.send(buffered.value());
+                }
+                connectionLock.lock();
+                try {
+                    if (state == State.CLOSED) {
+                        connection.close();
+                        return;
+                    }
+                    current = connection;
+                    state = State.CONNECTED;
+                    connectionChanged.signalAll();
+                } finally {
+                    connectionLock.unlock();
+                }
+            } catch (IOException e) {
+                connection.close();
+                lastFailure = e;
+                continue;
+            } finally {
+                sendLock.unlock();
+            }
+            reconnectCount.incrementAndGet();
+            notifyListener(State.RECONNECTING, State.CONNECTED, null);
+            return;
+        }
+
+        SocketException gaveUp = new SocketException("Gave up reconnecting after {" + configuration.getMaxReconnectAttempts() + "} attempts.");
+        gaveUp.initCause(lastFailure);
+        closeBecause(gaveUp, gaveUp);
+    }
+
+    private void closeBecause(final IOException reason, final Throwable reportedCause) {
+        PortableSocket connection;
+        State previous;
+        connectionLock.lock();
+        try {
+            if (state == State.CLOSED) {
+                return;
+            }
+            previous = state;
+            state = State.CLOSED;
+            closedBecause = reason;
+            connection = current;
+            current = null;
+            if (reconnector != null && reconnector != Thread.currentThread()) {
+                reconnector.interrupt();
+            }
+            connectionChanged.signalAll();
+        } finally {
+            connectionLock.unlock();
+        }
+        if (connection != null) {
+            connection.close();
+        }
+        notifyListener(previous, State.CLOSED, reportedCause);
+    }
+
+    private void notifyListener(final State previous, final State next, final Throwable cause) {
+        if (configuration.getConnectionStateListener() != null) {
+            configuration.getConnectionStateListener().onStateChange(previous, next, cause);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.clumd.projects.java_common_utils.networking;
+
+import com.clumd.projects.java_common_utils.base_enhancements.PortableSocketOptions;
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.Duration;
+
+/**
+ * This Class represents all the configuration required to run a {@link ReconnectingPortableSocket}.
+ */
+@Data
+@Builder
+public class ReconnectingPortableSocketConfiguration {
+
+    /**
+     * Used as the pool name for the reconnection thread, so that log messages can be more contextual.
+     */
+    @Builder.Default
+    private final String name = "reconnecting-socket";
+
+    /**
+     * The optional behaviour every connection should be created with.
+     */
+    @Builder.Default
+    private final PortableSocketOptions portableSocketOptions = PortableSocketOptions.defaults();
+
+    /**
+     * The upper bound of the delay before the first reconnection attempt. The actual delay is picked at random between zero and this, so that
+     * many clients losing the same peer do not all reconnect at once.
+     */
+    @Builder.Default
+    private final Duration initialBackoff = Duration.ofMillis(100);
+
+    /**
+     * The most the upper bound of the delay between reconnection attempts may grow to.
+     */
+    @Builder.Default
+    private final Duration maxBackoff = Duration.ofSeconds(30);
+
+    /**
+     * How much the upper bound of the delay grows by after each failed reconnection attempt.
+     */
+    @Builder.Default
+    private final double backoffMultiplier = 2.0;
+
+    /**
+     * How many reconnection attempts in a row may fail before giving up and closing for good. Zero or less will keep trying until closed.
+     */
+    @Builder.Default
+    private final int maxReconnectAttempts = 0;
+
+    /**
+     * How many sent messages to hold on to until they are {@link ReconnectingPortableSocket#acknowledge(long) acknowledged}, so that they can be
+     * sent again on the next connection. Once full, the oldest message is dropped to make room. Zero disables replaying altogether.
+     */
+    @Builder.Default
+    private final int replayBufferSize = 0;
+
+    /**
+     * Told about every change in the connection's state. Leaving this as null will not report them anywhere.
+     */
+    @Builder.Default
+    private final ConnectionStateListener connectionStateListener = null;
+}
@@ -0,0 +1,33 @@
+package com.clumd.projects.java_common_utils.networking;
+
+import lombok.Getter;
+
+import java.io.IOException;
+import java.io.Serial;
+
+/**
+ * Reports that the remote end of a {@link MultiplexedPortableSocket} failed to handle a request.
+ * <p>
+ * Only the remote exception's class name and message are carried across, as the remote exception itself may not be serialisable, or may not
+ * exist on this end's classpath.
+ */
+@Getter
+public class RemoteRequestException extends IOException {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The fully qualified class name of the exception thrown by the remote request handler.
+     */
+    private final String remoteExceptionClassName;
+
+    /**
+     * @param remoteExceptionClassName The fully qualified class name of the exception thrown by the remote request handler.
+     * @param message                  The message of the exception thrown by the remote request handler.
+     */
+    public RemoteRequestException(final String remoteExceptionClassName, final String message) {
+        super("The remote request handler failed with {" + remoteExceptionClassName + "}: " + message);
+        this.remoteExceptionClassName = remoteExceptionClassName;
+    }
+}
@@ -0,0 +1,71 @@
+package com.clumd.projects.java_common_utils.networking;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.function.ToIntFunction;
+
+/**
+ * This Class represents all the configuration required to run a {@link PortableSocketSendQueue}.
+ */
+@Data
+@Builder
+public class SendQueueConfiguration {
+
+    /**
+     * What happens to a message enqueued while the queue is at its {@link #highWatermarkInBytes}.
+     */
+    public enum OverflowPolicy {
+        /**
+         * The producer waits until the queue has drained below its {@link #lowWatermarkInBytes}.
+         */
+        BLOCK,
+        /**
+         * The message is rejected with a {@link SendQueueFullException}.
+         */
+        FAIL_FAST,
+        /**
+         * The oldest queued messages are discarded to make room.
+         */
+        DROP_OLDEST
+    }
+
+    /**
+     * Used as the pool name for the writer thread, so that log messages can be more contextual.
+     */
+    @Builder.Default
+    private final String name = "send-queue";
+
+    /**
+     * Once this many bytes are queued, the queue stops being writable, and the {@link #overflowPolicy} applies to anything else enqueued.
+     */
+    @Builder.Default
+    private final long highWatermarkInBytes = 1024 * 1024;
+
+    /**
+     * Once an unwritable queue drains to this many bytes or fewer, it becomes writable again. Keeping this well below the
+     * {@link #highWatermarkInBytes} stops producers flapping between the two.
+     */
+    @Builder.Default
+    private final long lowWatermarkInBytes = 512 * 1024;
+
+    /**
+     * What happens to a message enqueued while the queue is not writable.
+     */
+    @Builder.Default
+    private final OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+
+    /**
+     * How many bytes each message counts for against the watermarks. By default, this is {@link PortableSocketSendQueue#estimatedSizeOf(Object)},
+     * a rough estimate from the message's type. {@link PortableSocketSendQueue#serialisedSizeOf(Object)} is exact, at the cost of serialising
+     * every message an extra time, so a cheaper estimate of your own should be preferred where the messages are known.
+     */
+    @Builder.Default
+    private final ToIntFunction<Object> sizeEstimator = PortableSocketSendQueue::estimatedSizeOf;
+
+    /**
+     * Told whenever the queue stops or starts being writable. Leaving this as null will not report it anywhere.
+     */
+    @Builder.Default
+    private final WritabilityListener writabilityListener = null;
+}
@@ -0,0 +1,21 @@
+package com.clumd.projects.java_common_utils.networking;
+
+import java.io.IOException;
+import java.io.Serial;
+
+/**
+ * Reports that a message could not be enqueued onto a {@link PortableSocketSendQueue}, as it was not writable, and configured to
+ * {@link SendQueueConfiguration.OverflowPolicy#FAIL_FAST fail fast}.
+ */
+public class SendQueueFullException extends IOException {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * @param message Why the message could not be enqueued.
+     */
+    public SendQueueFullException(final String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,16 @@
+package com.clumd.projects.java_common_utils.networking;
+
+/**
+ * Told whenever a {@link PortableSocketSendQueue} crosses one of its watermarks, so that producers can slow down for a slow consumer, rather than
+ * only finding out by being blocked or rejected.
+ * <p>
+ * This is called while the queue is locked, so should return quickly, and never block.
+ */
+@FunctionalInterface
+public interface WritabilityListener {
+
+    /**
+     * @param writable False once the queue reaches its high watermark, and true once it has drained back to its low watermark.
+     */
+    void onWritabilityChanged(boolean writable);
+}
@@ -0,0 +1,166 @@
+package com.clumd.projects.java_common_utils.base_enhancements;
+
+import com.clumd.projects.java_common_utils.models.ImmutablePair;
+import com.clumd.projects.java_common_utils.models.Pair;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.NotSerializableException;
+import java.io.ObjectOutputStream;
+import java.io.StreamCorruptedException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.clumd.projects.java_common_utils.base_enhancements.PortableSocketTestUtils.inJvmPair;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BinaryPortableSocketCodecTest {
+
+    private final BinaryPortableSocketCodec codec = new BinaryPortableSocketCodec();
+
+    private byte[] encode(final Object value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        codec.encode(value, out);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private Object decode(final byte[] frame) throws IOException, ClassNotFoundException {
+        return codec.decode(new DataInputStream(new ByteArrayInputStream(frame)), new URLClassLoader(new URL[]{}));
+    }
+
+    private Object roundTrip(final Object value) throws IOException, ClassNotFoundException {
+        return decode(encode(value));
+    }
+
+    private static byte[] javaSerialise(final Object value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(value);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Test
+    void test_round_trip_of_primitives_and_strings() throws Exception {
+        assertNull(roundTrip(null));
+        assertEquals(true, roundTrip(true));
+        assertEquals(false, roundTrip(false));
+        assertEquals((byte) 7, roundTrip((byte) 7));
+        assertEquals((short) -300, roundTrip((short) -300));
+        assertEquals('x', roundTrip('x'));
+        assertEquals(Integer.MIN_VALUE, roundTrip(Integer.MIN_VALUE));
+        assertEquals(Long.MAX_VALUE, roundTrip(Long.MAX_VALUE));
+        assertEquals(1.5f, roundTrip(1.5f));
+        assertEquals(Math.PI, roundTrip(Math.PI));
+        assertEquals("", roundTrip(""));
+        assertEquals("multi-byte é中😀", roundTrip("multi-byte é中😀"));
+    }
+
+    @Test
+    void test_round_trip_of_arrays() throws Exception {
+        assertArrayEquals(new boolean[]{true, false}, (boolean[]) roundTrip(new boolean[]{true, false}));
+        assertArrayEquals(new byte[]{1, 2, 3}, (byte[]) roundTrip(new byte[]{1, 2, 3}));
+        assertArrayEquals(new short[]{1, -2}, (short[]) roundTrip(new short[]{1, -2}));
+        assertArrayEquals(new char[]{'a', 'b'}, (char[]) roundTrip(new char[]{'a', 'b'}));
+        assertArrayEquals(new int[]{1, 2, 3}, (int[]) roundTrip(new int[]{1, 2, 3}));
+        assertArrayEquals(new long[]{4L, 5L}, (long[]) roundTrip(new long[]{4L, 5L}));
+        assertArrayEquals(new float[]{1.1f}, (float[]) roundTrip(new float[]{1.1f}));
+        assertArrayEquals(new double[]{2.2, 3.3}, (double[]) roundTrip(new double[]{2.2, 3.3}));
+        assertArrayEquals(new String[]{"a", null, "c"}, (String[]) roundTrip(new String[]{"a", null, "c"}));
+        Object[] mixed = (Object[]) roundTrip(new Object[]{1, "two", null, Duration.ofSeconds(3)});
+        assertEquals(1, mixed[0]);
+        assertEquals("two", mixed[1]);
+        assertNull(mixed[2]);
+        assertEquals(Duration.ofSeconds(3), mixed[3]);
+    }
+
+    @Test
+    void test_round_trip_of_pairs_keeps_their_type() throws Exception {
+        Object pair = roundTrip(Pair.of("left", 2));
+        assertEquals(Pair.class, pair.getClass());
+        assertEquals(Pair.of("left", 2), pair);
+
+        Object immutablePair = roundTrip(ImmutablePair.of(Duration.ofMillis(5), "right"));
+        assertEquals(ImmutablePair.class, immutablePair.getClass());
+        assertEquals(Duration.ofMillis(5), ((Pair<?, ?>) immutablePair).getLeft());
+        assertEquals("right", ((Pair<?, ?>) immutablePair).getRight());
+    }
+
+    @Test
+    void test_unknown_types_fall_back_to_java_serialisation() throws Exception {
+        ArrayList<String> list = new ArrayList<>(List.of("a", "b"));
+        assertEquals(list, roundTrip(list));
+        assertEquals(Duration.ofHours(1), roundTrip(Duration.ofHours(1)));
+        assertInstanceOf(ArrayList.class, roundTrip(list));
+    }
+
+    @Test
+    void test_non_serialisable_types_are_rejected() {
+        assertThrows(NotSerializableException.class, () -> encode(new Object()));
+    }
+
+    @Test
+    void test_corrupt_frames_are_rejected() {
+        assertThrows(StreamCorruptedException.class, () -> decode(new byte[]{99}));
+        // An int array claiming far more elements than the frame could possibly hold.
+        assertThrows(StreamCorruptedException.class, () -> decode(new byte[]{15, 0x7f, 0, 0, 0, 1, 2, 3, 4}));
+    }
+
+    @Test
+    void test_deeply_nested_values_are_rejected_as_corrupt() throws Exception {
+        Object[] nested = new Object[]{"innermost"};
+        for (int i = 0; i < 1_000; i++) {
+            nested = new Object[]{nested};
+        }
+        byte[] frame = encode(nested);
+        assertThrows(StreamCorruptedException.class, () -> decode(frame));
+
+        DeserialisationLimits shallow = DeserialisationLimits.builder().maxDepth(3).build();
+        byte[] withinLimit = encode(new Object[]{new Object[]{"ok"}});
+        byte[] overLimit = encode(new Object[]{new Object[]{Pair.of("too", "deep")}});
+        URLClassLoader loader = new URLClassLoader(new URL[]{});
+        assertInstanceOf(Object[].class,
+                codec.decode(new DataInputStream(new ByteArrayInputStream(withinLimit)), loader, ResolvedClassCache.shared(), shallow));
+        assertThrows(StreamCorruptedException.class,
+                () -> codec.decode(new DataInputStream(new ByteArrayInputStream(overLimit)), loader, ResolvedClassCache.shared(), shallow));
+    }
+
+    @Test
+    void test_java_serialised_values_honour_the_receiving_sockets_limits() throws Exception {
+        DeserialisationLimits limits = DeserialisationLimits.builder().allowlist(ClassAllowlist.of("java.lang.*", "java.time.*")).build();
+        PortableSocketOptions options = PortableSocketOptions.builder().codec(codec).copyInJvmObjects(true).deserialisationLimits(limits).build();
+        PortableSocket[] pair = inJvmPair(options, "codec-limits");
+        try (PortableSocket client = pair[0]; PortableSocket server = pair[1]) {
+            client.send(new Object[]{"allowed", Duration.ofHours(1)});
+            client.send(new ArrayList<>(List.of("not", "allowed")));
+
+            assertArrayEquals(new Object[]{"allowed", Duration.ofHours(1)}, (Object[]) server.receive());
+            assertThrows(InvalidClassException.class, server::receive);
+        }
+    }
+
+    @Test
+    void test_encoding_is_smaller_than_java_serialisation() throws Exception {
+        Object[] payload = new Object[]{42, 123456789L, "some message text", new int[]{1, 2, 3, 4, 5}, Pair.of("key", 3.5)};
+        for (Object value : payload) {
+            assertTrue(encode(value).length < javaSerialise(value).length,
+                    "Expected the binary encoding of {" + value.getClass().getSimpleName() + "} to be smaller than Java serialisation.");
+        }
+        assertTrue(encode(payload).length < javaSerialise(payload).length);
+    }
+}
@@ -0,0 +1,50 @@
+package com.clumd.projects.java_common_utils.base_enhancements;
+
+import com.clumd.projects.java_common_utils.models.ImmutablePair;
+import com.clumd.projects.java_common_utils.models.Pair;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClassAllowlistTest {
+
+    @Test
+    void test_exact_class_names() {
+        ClassAllowlist allowlist = ClassAllowlist.of(Pair.class.getName());
+
+        assertTrue(allowlist.allows(Pair.class));
+        assertTrue(allowlist.allows(Pair[][].class));
+        assertFalse(allowlist.allows(ImmutablePair.class));
+    }
+
+    @Test
+    void test_single_packages_and_package_trees() {
+        ClassAllowlist allowlist = ClassAllowlist.of("java.util.*", "com.clumd.**");
+
+        assertTrue(allowlist.allows(ArrayList.class));
+        assertFalse(allowlist.allows(ConcurrentHashMap.class));
+        assertTrue(allowlist.allows(Pair.class));
+        assertTrue(allowlist.allows(ClassAllowlist.class));
+        assertFalse(allowlist.allows(String.class));
+    }
+
+    @Test
+    void test_primitives_are_always_allowed() {
+        ClassAllowlist allowlist = ClassAllowlist.of();
+
+        assertTrue(allowlist.allows(int.class));
+        assertTrue(allowlist.allows(byte[].class));
+        assertFalse(allowlist.allows(Integer.class));
+    }
+
+    @Test
+    void test_rejects_entries_which_are_not_understood() {
+        assertThrows(IllegalArgumentException.class, () -> ClassAllowlist.of("java.*.List"));
+        assertThrows(IllegalArgumentException.class, () -> ClassAllowlist.of(" "));
+    }
+}
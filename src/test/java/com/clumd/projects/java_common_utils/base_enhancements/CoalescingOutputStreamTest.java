@@ -0,0 +1,149 @@
+package com.clumd.projects.java_common_utils.base_enhancements;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CoalescingOutputStreamTest {
+
+    private static class RecordingOutputStream extends ByteArrayOutputStream {
+        private int writes;
+        private int flushes;
+
+        @Override
+        public synchronized void write(final byte[] b, final int off, final int len) {
+            writes++;
+            super.write(b, off, len);
+        }
+
+        @Override
+        public void flush() {
+            flushes++;
+        }
+    }
+
+    @Test
+    void test_immediate_policy_writes_every_flush() throws IOException {
+        RecordingOutputStream socket = new RecordingOutputStream();
+        CoalescingOutputStream out = new CoalescingOutputStream(socket, FlushPolicy.immediate());
+
+        out.write(new byte[]{1, 2});
+        assertEquals(0, socket.size());
+        out.flush();
+        assertArrayEquals(new byte[]{1, 2}, socket.toByteArray());
+        assertEquals(1, socket.flushes);
+    }
+
+    @Test
+    void test_batch_policy_combines_flushes_into_one_write() throws IOException {
+        RecordingOutputStream socket = new RecordingOutputStream();
+        CoalescingOutputStream out = new CoalescingOutputStream(socket, FlushPolicy.onBatchSize(3));
+
+        for (int i = 0; i < 2; i++) {
+            out.write(new byte[]{(byte) i});
+            out.flush();
+        }
+        assertEquals(0, socket.size());
+
+        out.write(new byte[]{2});
+        out.flush();
+        assertArrayEquals(new byte[]{0, 1, 2}, socket.toByteArray());
+        assertEquals(1, socket.writes);
+        assertEquals(1, socket.flushes);
+    }
+
+    @Test
+    void test_time_window_policy_flushes_once_the_window_passes() throws IOException, InterruptedException {
+        RecordingOutputStream socket = new RecordingOutputStream();
+        CoalescingOutputStream out = new CoalescingOutputStream(socket, FlushPolicy.onTimeWindow(Duration.ofMillis(50)));
+
+        out.write(new byte[]{1});
+        out.flush();
+        out.write(new byte[]{2});
+        out.flush();
+        assertEquals(0, socket.size());
+
+        long deadline = System.currentTimeMillis() + 2000;
+        while (socket.size() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertArrayEquals(new byte[]{1, 2}, socket.toByteArray());
+        assertEquals(1, socket.writes);
+    }
+
+    @Test
+    void test_time_window_flush_is_not_held_up_by_another_stalled_stream() throws Exception {
+        CountDownLatch unstall = new CountDownLatch(1);
+        RecordingOutputStream stalledSocket = new RecordingOutputStream() {
+            @Override
+            public void write(final byte[] b, final int off, final int len) {
+                try {
+                    unstall.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.write(b, off, len);
+            }
+        };
+        RecordingOutputStream socket = new RecordingOutputStream();
+        CoalescingOutputStream stalled = new CoalescingOutputStream(stalledSocket, FlushPolicy.onTimeWindow(Duration.ofMillis(10)));
+        CoalescingOutputStream out = new CoalescingOutputStream(socket, FlushPolicy.onTimeWindow(Duration.ofMillis(50)));
+
+        try {
+            stalled.write(new byte[]{1});
+            stalled.flush();
+            out.write(new byte[]{2});
+            out.flush();
+
+            long deadline = System.currentTimeMillis() + 2000;
+            while (socket.size() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertArrayEquals(new byte[]{2}, socket.toByteArray());
+            assertEquals(0, stalledSocket.size());
+        } finally {
+            unstall.countDown();
+        }
+    }
+
+    @Test
+    void test_full_buffer_is_written_regardless_of_policy() throws IOException {
+        RecordingOutputStream socket = new RecordingOutputStream();
+        CoalescingOutputStream out = new CoalescingOutputStream(
+                socket,
+                FlushPolicy.builder().mode(FlushPolicy.Mode.ON_BATCH_SIZE).batchSize(100).bufferSizeInBytes(4).build()
+        );
+
+        out.write(new byte[]{1, 2, 3});
+        out.write(new byte[]{4, 5});
+        assertArrayEquals(new byte[]{1, 2, 3}, socket.toByteArray());
+
+        // Anything at least as large as the buffer skips it entirely, but still lands after what was already buffered.
+        out.write(new byte[]{6, 7, 8, 9});
+        assertArrayEquals(new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9}, socket.toByteArray());
+        assertEquals(0, socket.flushes);
+    }
+
+    @Test
+    void test_force_flush_and_close_ignore_the_policy() throws IOException {
+        RecordingOutputStream socket = new RecordingOutputStream();
+        CoalescingOutputStream out = new CoalescingOutputStream(socket, FlushPolicy.onBatchSize(100));
+
+        out.write(1);
+        out.flush();
+        out.forceFlush();
+        assertArrayEquals(new byte[]{1}, socket.toByteArray());
+
+        out.write(2);
+        out.close();
+        assertArrayEquals(new byte[]{1, 2}, socket.toByteArray());
+        assertTrue(socket.flushes >= 2);
+    }
+}
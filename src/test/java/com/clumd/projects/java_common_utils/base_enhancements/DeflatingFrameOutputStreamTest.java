@@ -0,0 +1,131 @@
+package com.clumd.projects.java_common_utils.base_enhancements;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DeflatingFrameOutputStreamTest {
+
+    private static final byte[] REPETITIVE = "the same old object graph, ".repeat(200).getBytes(StandardCharsets.UTF_8);
+
+    private static byte[] readAll(final InflatingFrameInputStream in, final int length) throws IOException {
+        byte[] read = new byte[length];
+        int total = 0;
+        while (total < length) {
+            int n = in.read(read, total, length - total);
+            if (n == -1) {
+                break;
+            }
+            total += n;
+        }
+        assertEquals(length, total);
+        return read;
+    }
+
+    @Test
+    void test_round_trip_of_raw_and_deflated_frames_after_the_header() throws IOException {
+        StreamCompressionMetrics writeMetrics = new StreamCompressionMetrics();
+        ByteArrayOutputStream wire = new ByteArrayOutputStream();
+        DeflatingFrameOutputStream out = new DeflatingFrameOutputStream(wire, StreamCompression.defaults(), writeMetrics);
+
+        out.write(new byte[]{9, 9});
+        out.startCompressing();
+        out.write(new byte[]{1, 2, 3});
+        out.flush();
+        out.write(REPETITIVE);
+        out.flush();
+        out.write(REPETITIVE);
+        out.flush();
+
+        assertEquals(1, writeMetrics.getFramesSkipped());
+        assertEquals(2, writeMetrics.getFramesCompressed());
+        assertEquals(3 + 2L * REPETITIVE.length, writeMetrics.getUncompressedBytesWritten());
+        assertTrue(writeMetrics.getCompressionRatio() > 10, "Expected repetitive content to compress well, but the ratio was only "
+                + writeMetrics.getCompressionRatio());
+        assertTrue(wire.size() < REPETITIVE.length);
+
+        StreamCompressionMetrics readMetrics = new StreamCompressionMetrics();
+        InflatingFrameInputStream in = new InflatingFrameInputStream(new ByteArrayInputStream(wire.toByteArray()), readMetrics, 1024 * 1024);
+        assertArrayEquals(new byte[]{9, 9}, readAll(in, 2));
+        in.startDecompressing();
+        assertArrayEquals(new byte[]{1, 2, 3}, readAll(in, 3));
+        assertArrayEquals(REPETITIVE, readAll(in, REPETITIVE.length));
+        assertArrayEquals(REPETITIVE, readAll(in, REPETITIVE.length));
+        assertEquals(-1, in.read());
+        assertEquals(writeMetrics.getUncompressedBytesWritten(), readMetrics.getDecompressedBytesRead());
+        assertEquals(writeMetrics.getCompressedBytesWritten(), readMetrics.getCompressedBytesRead());
+    }
+
+    @Test
+    void test_output_larger_than_the_buffer_is_split_into_frames() throws IOException {
+        byte[] random = new byte[10_000];
+        new Random(1).nextBytes(random);
+        StreamCompressionMetrics metrics = new StreamCompressionMetrics();
+        ByteArrayOutputStream wire = new ByteArrayOutputStream();
+        DeflatingFrameOutputStream out = new DeflatingFrameOutputStream(
+                wire, StreamCompression.builder().bufferSizeInBytes(4096).build(), metrics
+        );
+        out.startCompressing();
+        out.write(random);
+        out.flush();
+        assertEquals(3, metrics.getFramesCompressed());
+
+        InflatingFrameInputStream in = new InflatingFrameInputStream(new ByteArrayInputStream(wire.toByteArray()), metrics, 1024 * 1024);
+        in.startDecompressing();
+        assertArrayEquals(random, readAll(in, random.length));
+    }
+
+    @Test
+    void test_frames_inflating_beyond_the_maximum_are_rejected() throws IOException {
+        ByteArrayOutputStream wire = new ByteArrayOutputStream();
+        DeflatingFrameOutputStream out = new DeflatingFrameOutputStream(wire, StreamCompression.defaults(), new StreamCompressionMetrics());
+        out.startCompressing();
+        out.write(new byte[60_000]);
+        out.flush();
+
+        InflatingFrameInputStream in = new InflatingFrameInputStream(
+                new ByteArrayInputStream(wire.toByteArray()), new StreamCompressionMetrics(), 16 * 1024
+        );
+        in.startDecompressing();
+        assertThrows(StreamCorruptedException.class, in::read);
+    }
+
+    @Test
+    void test_streams_refuse_to_be_used_once_ended() throws IOException {
+        ByteArrayOutputStream wire = new ByteArrayOutputStream();
+        DeflatingFrameOutputStream out = new DeflatingFrameOutputStream(wire, StreamCompression.defaults(), new StreamCompressionMetrics());
+        out.startCompressing();
+        out.write(REPETITIVE);
+        out.flush();
+
+        InflatingFrameInputStream in = new InflatingFrameInputStream(
+                new ByteArrayInputStream(wire.toByteArray()), new StreamCompressionMetrics(), 1024 * 1024
+        );
+        in.startDecompressing();
+
+        out.end();
+        in.end();
+        out.write(REPETITIVE);
+        assertThrows(IOException.class, out::flush);
+        assertThrows(IOException.class, in::read);
+    }
+
+    @Test
+    void test_unknown_frame_types_are_rejected() {
+        InflatingFrameInputStream in = new InflatingFrameInputStream(
+                new ByteArrayInputStream(new byte[]{7, 0, 0, 0, 1, 0}), new StreamCompressionMetrics(), 1024
+        );
+        in.startDecompressing();
+        assertThrows(StreamCorruptedException.class, in::read);
+    }
+}
@@ -0,0 +1,147 @@
+package com.clumd.projects.java_common_utils.base_enhancements;
+
+import com.clumd.projects.java_common_utils.models.Pair;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.InvalidObjectException;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamException;
+import java.io.Serial;
+import java.io.Serializable;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class DeserialisationFilterTest {
+
+    private final URLClassLoader urlClassLoader = new URLClassLoader(new URL[]{});
+
+    private static byte[] serialise(final Object... values) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream outputStream = new ObjectOutputStream(bytes)) {
+            for (Object value : values) {
+                outputStream.writeObject(value);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private static final class FailsToResolve implements Serializable {
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private final String padding = "x".repeat(200);
+
+        @Serial
+        private Object readResolve() throws ObjectStreamException {
+            throw new InvalidObjectException("Refusing to be read.");
+        }
+    }
+
+    private ObjectInputStreamWithClassLoader streamOf(final byte[] bytes, final DeserialisationLimits limits) throws IOException {
+        return new ObjectInputStreamWithClassLoader(new ByteArrayInputStream(bytes), urlClassLoader, ResolvedClassCache.shared(), limits);
+    }
+
+    @Test
+    void test_no_filter_without_limits() throws IOException {
+        try (ObjectInputStreamWithClassLoader stream = new ObjectInputStreamWithClassLoader(
+                new ByteArrayInputStream(serialise("value")), urlClassLoader
+        )) {
+            assertNull(stream.getDeserialisationFilter());
+        }
+    }
+
+    @Test
+    void test_rejects_arrays_which_are_too_long() throws IOException, ClassNotFoundException {
+        DeserialisationLimits limits = DeserialisationLimits.builder().maxArrayLength(10).build();
+        try (ObjectInputStreamWithClassLoader stream = streamOf(serialise(new int[10], new int[11]), limits)) {
+            assertArrayEquals(new int[10], (int[]) stream.readObject());
+            assertThrows(InvalidClassException.class, stream::readObject);
+
+            DeserialisationFilter filter = stream.getDeserialisationFilter();
+            assertEquals(1, filter.getRejectedCount());
+            assertEquals(1, filter.getRejectedCount(DeserialisationFilter.Rejection.ARRAY_TOO_LONG));
+        }
+    }
+
+    @Test
+    void test_rejects_graphs_which_are_too_deep() throws IOException, ClassNotFoundException {
+        Object[] shallow = new Object[]{new Object[]{new Object[0]}};
+        Object[] deep = new Object[]{new Object[]{new Object[]{new Object[0]}}};
+        DeserialisationLimits limits = DeserialisationLimits.builder().maxDepth(3).build();
+        try (ObjectInputStreamWithClassLoader stream = streamOf(serialise(shallow, deep), limits)) {
+            stream.readObject();
+            assertThrows(InvalidClassException.class, stream::readObject);
+            assertEquals(1, stream.getDeserialisationFilter().getRejectedCount(DeserialisationFilter.Rejection.TOO_DEEP));
+        }
+    }
+
+    @Test
+    void test_reference_and_byte_limits_apply_to_each_top_level_object() throws IOException, ClassNotFoundException {
+        List<Object> values = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            values.add(new Pair<>("value " + i, i));
+        }
+        DeserialisationLimits limits = DeserialisationLimits.builder().maxReferencesPerObject(10).maxBytesPerObject(300).build();
+
+        // Far more than the limits in total, but well within them per object.
+        try (ObjectInputStreamWithClassLoader stream = streamOf(serialise(values.toArray()), limits)) {
+            for (int i = 0; i < 50; i++) {
+                assertEquals(new Pair<>("value " + i, i), stream.readObject());
+            }
+            assertEquals(0, stream.getDeserialisationFilter().getRejectedCount());
+        }
+
+        try (ObjectInputStreamWithClassLoader stream = streamOf(serialise(new Pair<>("small", 1), values.toArray()), limits)) {
+            stream.readObject();
+            assertThrows(InvalidClassException.class, stream::readObject);
+            assertEquals(1, stream.getDeserialisationFilter().getRejectedCount(DeserialisationFilter.Rejection.TOO_MANY_REFERENCES));
+        }
+
+        try (ObjectInputStreamWithClassLoader stream = streamOf(serialise(new Pair<>("small", 1), new Pair<>("x".repeat(500), 2)), limits)) {
+            stream.readObject();
+            assertThrows(InvalidClassException.class, stream::readObject);
+            assertEquals(1, stream.getDeserialisationFilter().getRejectedCount(DeserialisationFilter.Rejection.TOO_MANY_BYTES));
+        }
+    }
+
+    @Test
+    void test_limits_still_apply_per_object_after_a_failed_read() throws IOException, ClassNotFoundException {
+        List<Object> values = new ArrayList<>();
+        values.add(new FailsToResolve());
+        for (int i = 0; i < 50; i++) {
+            values.add(new Pair<>("value " + i, i));
+        }
+        DeserialisationLimits limits = DeserialisationLimits.builder().maxReferencesPerObject(10).maxBytesPerObject(300).build();
+
+        try (ObjectInputStreamWithClassLoader stream = streamOf(serialise(values.toArray()), limits)) {
+            assertThrows(InvalidObjectException.class, stream::readObject);
+            for (int i = 0; i < 50; i++) {
+                assertEquals(new Pair<>("value " + i, i), stream.readObject());
+            }
+            assertEquals(0, stream.getDeserialisationFilter().getRejectedCount());
+        }
+    }
+
+    @Test
+    void test_rejects_classes_outside_the_allowlist() throws IOException, ClassNotFoundException {
+        DeserialisationLimits limits = DeserialisationLimits.builder()
+                .allowlist(ClassAllowlist.of("java.lang.*", Pair.class.getName()))
+                .build();
+        try (ObjectInputStreamWithClassLoader stream = streamOf(serialise(new Pair<>("allowed", 1), new ArrayList<>(List.of(1))), limits)) {
+            assertEquals(new Pair<>("allowed", 1), stream.readObject());
+            assertThrows(InvalidClassException.class, stream::readObject);
+            assertEquals(1, stream.getDeserialisationFilter().getRejectedCount(DeserialisationFilter.Rejection.CLASS_NOT_ALLOWED));
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.clumd.projects.java_common_utils.base_enhancements;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.NetworkInterface;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HostnameResolverTest {
+
+    private static final String INVALID_HOSTNAME = "this is not a valid hostname";
+
+    @Test
+    void test_resolving_literals_and_hostnames() throws Exception {
+        try (HostnameResolver resolver = new HostnameResolver(HostnameResolverConfiguration.builder().build())) {
+            assertArrayEquals(new InetAddress[]{InetAddress.getByName("10.1.2.3")}, resolver.resolve("10.1.2.3"));
+            assertArrayEquals(InetAddress.getAllByName("localhost"), resolver.resolve("localhost"));
+            assertArrayEquals(InetAddress.getAllByName("localhost"), resolver.resolveAsync("localhost").get());
+        }
+    }
+
+    @Test
+    void test_cached_resolutions_cannot_be_modified_by_callers() throws UnknownHostException {
+        try (HostnameResolver resolver = new HostnameResolver(HostnameResolverConfiguration.builder().build())) {
+            InetAddress[] first = resolver.resolve("127.0.0.1");
+            first[0] = null;
+            assertEquals(InetAddress.getLoopbackAddress(), resolver.resolve("127.0.0.1")[0]);
+        }
+    }
+
+    @Test
+    void test_failed_resolutions_are_negatively_cached() {
+        try (HostnameResolver resolver = new HostnameResolver(HostnameResolverConfiguration.builder().build())) {
+            UnknownHostException first = assertThrows(UnknownHostException.class, () -> resolver.resolve(INVALID_HOSTNAME));
+            UnknownHostException second = assertThrows(UnknownHostException.class, () -> resolver.resolve(INVALID_HOSTNAME));
+            assertTrue(first.getMessage().contains(INVALID_HOSTNAME));
+            assertNotSame(first, second);
+            // Both callers are handed a copy of the one original lookup failure.
+            assertSame(first.getCause(), second.getCause());
+
+            resolver.invalidate(INVALID_HOSTNAME);
+            UnknownHostException third = assertThrows(UnknownHostException.class, () -> resolver.resolve(INVALID_HOSTNAME));
+            assertNotSame(first.getCause(), third.getCause());
+        }
+    }
+
+    @Test
+    void test_zero_ttl_disables_negative_caching() {
+        try (HostnameResolver resolver = new HostnameResolver(HostnameResolverConfiguration.builder().negativeTtl(Duration.ZERO).build())) {
+            UnknownHostException first = assertThrows(UnknownHostException.class, () -> resolver.resolve(INVALID_HOSTNAME));
+            UnknownHostException second = assertThrows(UnknownHostException.class, () -> resolver.resolve(INVALID_HOSTNAME));
+            assertNotSame(first.getCause(), second.getCause());
+        }
+    }
+
+    @Test
+    void test_local_addresses_include_every_interface() throws Exception {
+        try (HostnameResolver resolver = new HostnameResolver(HostnameResolverConfiguration.builder().build())) {
+            for (NetworkInterface networkInterface : Collections.list(NetworkInterface.getNetworkInterfaces())) {
+                for (InetAddress address : Collections.list(networkInterface.getInetAddresses())) {
+                    assertTrue(resolver.isLocalAddress(address), "Expected {" + address + "} to be local.");
+                }
+            }
+            assertTrue(resolver.getLocalAddresses().contains(InetAddress.getLocalHost()));
+            assertTrue(resolver.isLocalHostname(InetAddress.getLocalHost().getHostName()));
+            assertTrue(resolver.isLocalHostname("0.0.0.0"));
+            assertTrue(resolver.isLocalHostnameAsync("127.0.0.1").get());
+            assertFalse(resolver.isLocalAddress(InetAddress.getByName("192.0.2.1")));
+        }
+    }
+
+    @Test
+    void test_async_failures_complete_exceptionally() {
+        try (HostnameResolver resolver = new HostnameResolver(HostnameResolverConfiguration.builder().build())) {
+            CompletionException e = assertThrows(CompletionException.class, () -> resolver.isLocalHostnameAsync(INVALID_HOSTNAME).join());
+            assertInstanceOf(UnknownHostException.class, e.getCause());
+        }
+    }
+
+    @Test
+    void test_closed_resolver_only_serves_cached_resolutions() throws UnknownHostException {
+        HostnameResolver resolver = new HostnameResolver(HostnameResolverConfiguration.builder().build());
+        resolver.resolve("127.0.0.1");
+        resolver.close();
+        assertEquals(InetAddress.getLoopbackAddress(), resolver.resolve("127.0.0.1")[0]);
+        CompletionException e = assertThrows(CompletionException.class, () -> resolver.resolve("10.1.2.3"));
+        assertInstanceOf(IllegalStateException.class, e.getCause());
+    }
+}
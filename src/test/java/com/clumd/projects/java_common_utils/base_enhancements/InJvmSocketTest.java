@@ -0,0 +1,146 @@
+package com.clumd.projects.java_common_utils.base_enhancements;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.EOFException;
+import java.io.InputStream;
+import java.net.ConnectException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InJvmSocketTest {
+
+    @Test
+    void test_connecting_needs_a_listener_which_only_one_may_bind() throws Exception {
+        InJvmSocketAddress address = InJvmSocketAddress.of("test-listener");
+        assertThrows(ConnectException.class, () -> InJvmSocket.connect(address));
+
+        try (InJvmSocket.Listener listener = InJvmSocket.Listener.bind(address)) {
+            assertThrows(SocketException.class, () -> InJvmSocket.Listener.bind(address));
+            assertTrue(InJvmSocket.isListening(address));
+
+            InJvmSocket client = InJvmSocket.connect(address);
+            InJvmSocket server = listener.accept();
+            assertEquals(address, client.getRemoteSocketAddress());
+            assertEquals(client.getLocalSocketAddress(), server.getRemoteSocketAddress());
+        }
+        assertFalse(InJvmSocket.isListening(address));
+        assertThrows(ConnectException.class, () -> InJvmSocket.connect(address));
+    }
+
+    @Test
+    void test_objects_pass_by_reference_and_bytes_by_copy() throws Exception {
+        InJvmSocketAddress address = InJvmSocketAddress.of("test-pass");
+        try (InJvmSocket.Listener listener = InJvmSocket.Listener.bind(address);
+             InJvmSocket client = InJvmSocket.connect(address);
+             InJvmSocket server = listener.accept()
+        ) {
+            Object value = new Object();
+            client.sendObject(value);
+            client.sendObject(null);
+            assertSame(value, server.receiveObject());
+            assertNull(server.receiveObject());
+
+            byte[] written = {1, 2, 3, 4};
+            client.getOutputStream().write(written);
+            written[0] = 9;
+            InputStream in = server.getInputStream();
+            assertEquals(4, in.available());
+            byte[] read = new byte[4];
+            assertEquals(4, in.read(read));
+            assertArrayEquals(new byte[]{1, 2, 3, 4}, read);
+        }
+    }
+
+    @Test
+    void test_reads_time_out_then_see_the_end_once_the_remote_end_closes() throws Exception {
+        InJvmSocketAddress address = InJvmSocketAddress.of("test-close");
+        try (InJvmSocket.Listener listener = InJvmSocket.Listener.bind(address);
+             InJvmSocket client = InJvmSocket.connect(address);
+             InJvmSocket server = listener.accept()
+        ) {
+            server.setSoTimeout(20);
+            assertThrows(SocketTimeoutException.class, server::receiveObject);
+            assertThrows(SocketTimeoutException.class, () -> server.getInputStream().read());
+
+            client.sendObject("last");
+            client.getOutputStream().write(7);
+            client.close();
+
+            // Whatever was sent before closing still arrives first.
+            assertEquals("last", server.receiveObject());
+            assertThrows(EOFException.class, server::receiveObject);
+            assertEquals(7, server.getInputStream().read());
+            assertEquals(-1, server.getInputStream().read());
+            assertThrows(SocketException.class, () -> server.sendObject("nobody is listening"));
+            assertThrows(SocketException.class, client::receiveObject);
+        }
+    }
+
+    @Test
+    void test_senders_wait_once_the_remote_end_holds_as_many_as_it_can() throws Exception {
+        InJvmSocketAddress address = InJvmSocketAddress.of("test-capacity");
+        try (InJvmSocket.Listener listener = InJvmSocket.Listener.bind(address);
+             InJvmSocket client = InJvmSocket.connect(address, 2);
+             InJvmSocket server = listener.accept()
+        ) {
+            client.sendObject(1);
+            client.sendObject(2);
+            CompletableFuture<Void> third = CompletableFuture.runAsync(() -> {
+                try {
+                    client.sendObject(3);
+                    client.getOutputStream().write(new byte[]{1, 2, 3});
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            Thread.sleep(100);
+            assertFalse(third.isDone(), "The remote end is already holding as many values as it can.");
+
+            assertEquals(1, server.receiveObject());
+            third.get(5, TimeUnit.SECONDS);
+            assertEquals(2, server.receiveObject());
+            assertEquals(3, server.receiveObject());
+            byte[] read = new byte[3];
+            assertEquals(3, server.getInputStream().readNBytes(read, 0, 3));
+            assertArrayEquals(new byte[]{1, 2, 3}, read);
+
+            // A sender still waiting for room is woken once the remote end closes, rather than being left waiting forever.
+            client.sendObject(4);
+            client.sendObject(5);
+            CompletableFuture<Void> stuck = CompletableFuture.runAsync(() -> {
+                try {
+                    client.sendObject(6);
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            Thread.sleep(100);
+            assertFalse(stuck.isDone());
+            server.close();
+            Exception e = assertThrows(Exception.class, () -> stuck.get(5, TimeUnit.SECONDS));
+            assertTrue(e.getCause().getCause() instanceof SocketException, e.toString());
+        }
+    }
+
+    @Test
+    void test_closing_a_listener_closes_connections_it_never_accepted() throws Exception {
+        InJvmSocketAddress address = InJvmSocketAddress.of("test-unaccepted");
+        InJvmSocket client;
+        try (InJvmSocket.Listener listener = InJvmSocket.Listener.bind(address)) {
+            client = InJvmSocket.connect(address);
+        }
+        assertThrows(EOFException.class, client::receiveObject);
+        client.close();
+    }
+}
@@ -0,0 +1,53 @@
+package com.clumd.projects.java_common_utils.base_enhancements;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LatencyHistogramTest {
+
+    @Test
+    void test_empty_histogram_reports_zeroes() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMaxNanos());
+        assertEquals(0, histogram.getMeanNanos());
+        assertEquals(0, histogram.getPercentileNanos(50));
+    }
+
+    @Test
+    void test_percentiles_are_the_upper_bound_of_their_power_of_two_bucket() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 90; i++) {
+            histogram.record(100);
+        }
+        for (int i = 0; i < 10; i++) {
+            histogram.record(5_000);
+        }
+        histogram.record(-1);
+
+        assertEquals(101, histogram.getCount());
+        assertEquals(59_000, histogram.getTotalNanos());
+        assertEquals(5_000, histogram.getMaxNanos());
+        assertEquals(59_000.0 / 101, histogram.getMeanNanos());
+        // 100 falls in [64, 127].
+        assertEquals(127, histogram.getPercentileNanos(50));
+        assertEquals(127, histogram.getPercentileNanos(90));
+        // 5000 falls in [4096, 8191], which is capped at the largest value recorded.
+        assertEquals(5_000, histogram.getPercentileNanos(99));
+        assertEquals(5_000, histogram.getPercentileNanos(100));
+    }
+
+    @Test
+    void test_extreme_values_and_invalid_percentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(Long.MAX_VALUE);
+
+        assertEquals(Long.MAX_VALUE, histogram.getPercentileNanos(100));
+        assertThrows(IllegalArgumentException.class, () -> histogram.getPercentileNanos(0));
+        assertThrows(IllegalArgumentException.class, () -> histogram.getPercentileNanos(100.5));
+        assertThrows(IllegalArgumentException.class, () -> histogram.getPercentileNanos(Double.NaN));
+    }
+}
@@ -4,6 +4,8 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 
 class NamedThreadFactoryTest {
@@ -103,4 +105,31 @@ class NamedThreadFactoryTest {
 
         Thread.currentThread().setPriority(originalPriority);
     }
+
+    @Test
+    void testPlatformThreadsByDefault() {
+        Thread platform = namedThreadFactory.newThread(() -> {
+        });
+
+        assertFalse(namedThreadFactory.isCreatingVirtualThreads());
+        assertFalse(platform.isVirtual());
+    }
+
+    @Test
+    void testVirtualThreadsAreNamed() {
+        NamedThreadFactory virtualFactory = new NamedThreadFactory(POOL_NAME, PREFIX, true);
+        Thread one = virtualFactory.newThread(() -> {
+        });
+        Thread during = virtualFactory.newThread("Is now overridden", () -> {
+        });
+        Thread two = virtualFactory.newThread(() -> {
+        });
+
+        assertTrue(virtualFactory.isCreatingVirtualThreads());
+        assertTrue(one.isVirtual());
+        assertTrue(during.isVirtual());
+        assertEquals(POOL_NAME + ":" + PREFIX + "-1", one.getName());
+        assertEquals("Is now overridden", during.getName());
+        assertEquals(POOL_NAME + ":" + PREFIX + "-2", two.getName());
+    }
 }
@@ -2,9 +2,12 @@ package com.clumd.projects.java_common_utils.base_enhancements;
 
 import com.clumd.projects.java_common_utils.AsyncTestThread;
 import com.clumd.projects.java_common_utils.NetworkingTestUtils;
+import com.clumd.projects.java_common_utils.models.Pair;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.ObjectOutputStream;
 import java.net.InetAddress;
@@ -14,6 +17,7 @@ import java.net.URL;
 import java.net.URLClassLoader;
 
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
@@ -59,4 +63,24 @@ class ObjectInputStreamWithClassLoaderTest {
 
         serverThread.finalise();
     }
+
+    @Test
+    void test_resolved_classes_are_shared_between_streams_using_the_same_cache() throws IOException, ClassNotFoundException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream outputStream = new ObjectOutputStream(bytes)) {
+            outputStream.writeObject(new Pair<>("first", 1));
+        }
+        ResolvedClassCache cache = new ResolvedClassCache(ResolvedClassCache.DEFAULT_MAX_MISSING_CLASS_NAMES_PER_LOADER);
+
+        for (int i = 0; i < 2; i++) {
+            try (ObjectInputStreamWithClassLoader ois = new ObjectInputStreamWithClassLoader(
+                    new ByteArrayInputStream(bytes.toByteArray()), urlClassLoader, cache
+            )) {
+                assertEquals(new Pair<>("first", 1), ois.readObject());
+            }
+        }
+        long classesInTheGraph = cache.getMissCount();
+        assertTrue(classesInTheGraph > 0);
+        assertEquals(classesInTheGraph, cache.getHitCount());
+    }
 }
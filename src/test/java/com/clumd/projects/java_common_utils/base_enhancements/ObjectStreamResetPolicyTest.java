@@ -0,0 +1,47 @@
+package com.clumd.projects.java_common_utils.base_enhancements;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ObjectStreamResetPolicyTest {
+
+    @Test
+    void test_never_is_never_due() {
+        assertFalse(ObjectStreamResetPolicy.never().isResetDue(Long.MAX_VALUE, Long.MAX_VALUE));
+    }
+
+    @Test
+    void test_nothing_written_is_never_due() {
+        assertFalse(ObjectStreamResetPolicy.perMessage().isResetDue(0, 0));
+    }
+
+    @Test
+    void test_per_message_is_always_due_once_written() {
+        assertTrue(ObjectStreamResetPolicy.perMessage().isResetDue(1, 0));
+        assertTrue(ObjectStreamResetPolicy.perMessage().isResetDue(0, 1));
+    }
+
+    @Test
+    void test_object_threshold() {
+        ObjectStreamResetPolicy policy = ObjectStreamResetPolicy.everyObjects(10);
+        assertFalse(policy.isResetDue(9, 1_000_000));
+        assertTrue(policy.isResetDue(10, 1));
+    }
+
+    @Test
+    void test_byte_threshold() {
+        ObjectStreamResetPolicy policy = ObjectStreamResetPolicy.everyBytes(1024);
+        assertFalse(policy.isResetDue(1_000_000, 1023));
+        assertTrue(policy.isResetDue(1, 1024));
+    }
+
+    @Test
+    void test_combined_thresholds_reset_on_whichever_is_met_first() {
+        ObjectStreamResetPolicy policy = ObjectStreamResetPolicy.builder().afterObjects(10).afterBytes(1024).build();
+        assertFalse(policy.isResetDue(9, 1023));
+        assertTrue(policy.isResetDue(10, 1));
+        assertTrue(policy.isResetDue(1, 1024));
+    }
+}
@@ -0,0 +1,263 @@
+package com.clumd.projects.java_common_utils.base_enhancements;
+
+import com.clumd.projects.java_common_utils.NetworkingTestUtils;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.SocketTimeoutException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PortableServerSocketTest {
+
+    private static PortableServerSocketConfiguration.PortableServerSocketConfigurationBuilder loopbackConfiguration() {
+        return PortableServerSocketConfiguration.builder()
+                .bindAddress(InetAddress.getLoopbackAddress())
+                .port(NetworkingTestUtils.FIRST_SERVER_PORT);
+    }
+
+    private static void echoOnce(final PortableSocket portableSocket) throws Exception {
+        Object received = portableSocket.getInputStream().readObject();
+        portableSocket.getOutputStream().writeObject(received);
+        portableSocket.getOutputStream().flush();
+    }
+
+    @Test
+    void test_invalid_configuration_is_rejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new PortableServerSocket(loopbackConfiguration().acceptorThreads(0).build(), PortableServerSocketTest::echoOnce));
+        assertThrows(IllegalArgumentException.class,
+                () -> new PortableServerSocket(loopbackConfiguration().maxConcurrentConnections(0).build(), PortableServerSocketTest::echoOnce));
+    }
+
+    @Test
+    void test_accepted_connections_are_handled_on_named_virtual_threads() throws Exception {
+        List<Thread> handlerThreads = new ArrayList<>();
+        try (PortableServerSocket server = new PortableServerSocket(
+                loopbackConfiguration().name("echo").build(),
+                portableSocket -> {
+                    synchronized (handlerThreads) {
+                        handlerThreads.add(Thread.currentThread());
+                    }
+                    echoOnce(portableSocket);
+                }, 1, "custom header").start()
+        ) {
+            assertTrue(server.isRunning());
+            assertEquals(NetworkingTestUtils.FIRST_SERVER_PORT, server.getLocalPort());
+
+            try (PortableSocket client = new PortableSocket("127.0.0.1", server.getLocalPort(), 1, "custom header")) {
+                client.getOutputStream().writeObject("hello");
+                client.getOutputStream().flush();
+                assertEquals("hello", client.getInputStream().readObject());
+            }
+        }
+
+        assertEquals(1, handlerThreads.size());
+        assertTrue(handlerThreads.get(0).isVirtual());
+        assertTrue(handlerThreads.get(0).getName().startsWith("echo:connection-"));
+    }
+
+    @Test
+    void test_concurrent_connections_are_capped() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger handled = new AtomicInteger();
+        try (PortableServerSocket server = new PortableServerSocket(
+                loopbackConfiguration().maxConcurrentConnections(1).build(),
+                portableSocket -> {
+                    handled.incrementAndGet();
+                    release.await();
+                }).start();
+             PortableSocket first = new PortableSocket("127.0.0.1", NetworkingTestUtils.FIRST_SERVER_PORT);
+             PortableSocket second = new PortableSocket("127.0.0.1", NetworkingTestUtils.FIRST_SERVER_PORT)
+        ) {
+            NetworkingTestUtils.sleep();
+            assertEquals(1, handled.get());
+            assertEquals(1, server.getActiveConnectionCount());
+
+            release.countDown();
+            NetworkingTestUtils.sleep();
+            assertEquals(2, handled.get());
+        }
+    }
+
+    @Test
+    void test_shutdown_drains_running_handlers() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        PortableServerSocket server = new PortableServerSocket(
+                loopbackConfiguration().build(),
+                portableSocket -> {
+                    started.countDown();
+                    NetworkingTestUtils.sleep();
+                }).start();
+
+        try (PortableSocket client = new PortableSocket("127.0.0.1", NetworkingTestUtils.FIRST_SERVER_PORT)) {
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            assertTrue(server.shutdown(5000));
+            assertFalse(server.isRunning());
+            assertEquals(0, server.getActiveConnectionCount());
+        }
+
+        assertThrows(IOException.class, () -> new PortableSocket("127.0.0.1", NetworkingTestUtils.FIRST_SERVER_PORT));
+    }
+
+    @Test
+    void test_shutdown_forcibly_closes_handlers_which_do_not_complete() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        PortableServerSocket server = new PortableServerSocket(
+                loopbackConfiguration().build(),
+                portableSocket -> {
+                    started.countDown();
+                    portableSocket.setNoTimeout();
+                    portableSocket.getInputStream().readObject();
+                }).start();
+
+        try (PortableSocket client = new PortableSocket("127.0.0.1", NetworkingTestUtils.FIRST_SERVER_PORT)) {
+            client.getOutputStream().flush();
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            assertFalse(server.shutdown(100));
+        }
+    }
+
+    @Test
+    void test_multiple_acceptors_with_reuse_port() throws Exception {
+        AtomicInteger handled = new AtomicInteger();
+        try (PortableServerSocket server = new PortableServerSocket(
+                loopbackConfiguration().acceptorThreads(3).reusePort(true).build(),
+                portableSocket -> {
+                    handled.incrementAndGet();
+                    echoOnce(portableSocket);
+                }).start()
+        ) {
+            for (int i = 0; i < 6; i++) {
+                try (PortableSocket client = new PortableSocket("127.0.0.1", server.getLocalPort())) {
+                    client.getOutputStream().writeObject(i);
+                    client.getOutputStream().flush();
+                    assertEquals(i, client.getInputStream().readObject());
+                }
+            }
+        }
+
+        assertEquals(6, handled.get());
+    }
+
+    @Test
+    void test_unix_domain_socket_connections_behave_as_tcp_ones(@TempDir final Path directory) throws Exception {
+        Path socketPath = PortableSocket.unixDomainSocketPath(directory, NetworkingTestUtils.FIRST_SERVER_PORT);
+        PortableSocketOptions options = PortableSocketOptions.builder()
+                .compression(StreamCompression.defaults())
+                .build();
+        CountDownLatch timedOut = new CountDownLatch(1);
+        try (PortableServerSocket server = new PortableServerSocket(
+                loopbackConfiguration().unixDomainSocketPath(socketPath).portableSocketOptions(options).build(),
+                portableSocket -> {
+                    portableSocket.send(portableSocket.isUnixDomainSocket());
+                    echoOnce(portableSocket);
+                    timedOut.await(5, TimeUnit.SECONDS);
+                }, "custom header").start()
+        ) {
+            assertTrue(Files.exists(socketPath));
+
+            try (PortableSocket client = new PortableSocket(options, UnixDomainSocketAddress.of(socketPath), "custom header")) {
+                assertTrue(client.isUnixDomainSocket());
+                assertEquals(true, client.receive());
+                client.send("hello over a unix domain socket");
+                assertEquals("hello over a unix domain socket", client.receive());
+
+                client.setCustomTimeoutInMs(100);
+                assertThrows(SocketTimeoutException.class, client::receive);
+
+                // Closing has to wake a reader which is waiting with no timeout at all.
+                client.setNoTimeout();
+                CompletableFuture<Object> blockedReader = CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return client.receive();
+                    } catch (IOException | ClassNotFoundException e) {
+                        return e;
+                    }
+                });
+                Thread.sleep(100);
+                client.close();
+                assertInstanceOf(IOException.class, blockedReader.get(2, TimeUnit.SECONDS));
+                timedOut.countDown();
+            }
+
+            // Only the stream header content has to match, exactly as it would over TCP. The server may hang up before the client has even
+            // finished sending its own header, so either can fail.
+            assertThrows(IOException.class, () -> {
+                try (PortableSocket mismatched = new PortableSocket(options, UnixDomainSocketAddress.of(socketPath), "other header")) {
+                    mismatched.getInputStream();
+                }
+            });
+        }
+        assertFalse(Files.exists(socketPath), "The socket file should be removed when the server shuts down.");
+    }
+
+    @Test
+    void test_local_hostname_switches_to_unix_domain_socket_when_available(@TempDir final Path directory) throws Exception {
+        PortableSocketOptions options = PortableSocketOptions.builder()
+                .unixDomainSocketPathForLocalPort(port -> PortableSocket.unixDomainSocketPath(directory, port))
+                .build();
+        try (PortableServerSocket server = new PortableServerSocket(
+                loopbackConfiguration()
+                        .unixDomainSocketPath(PortableSocket.unixDomainSocketPath(directory, NetworkingTestUtils.FIRST_SERVER_PORT))
+                        .build(),
+                PortableServerSocketTest::echoOnce).start();
+             PortableSocket client = new PortableSocket(options, "localhost", NetworkingTestUtils.FIRST_SERVER_PORT)
+        ) {
+            assertTrue(client.isUnixDomainSocket());
+            client.send("switched");
+            assertEquals("switched", client.receive());
+        }
+
+        // Without a socket file to find, the same options fall back to TCP.
+        try (PortableServerSocket server = new PortableServerSocket(loopbackConfiguration().build(), PortableServerSocketTest::echoOnce).start();
+             PortableSocket client = new PortableSocket(options, "localhost", NetworkingTestUtils.FIRST_SERVER_PORT)
+        ) {
+            assertFalse(client.isUnixDomainSocket());
+            client.send("over tcp");
+            assertEquals("over tcp", client.receive());
+        }
+    }
+
+    @Test
+    void test_a_stale_socket_file_is_replaced_but_a_live_one_is_not(@TempDir final Path directory) throws Exception {
+        Path socketPath = directory.resolve("server.sock");
+        // Closing a bound channel leaves its socket file behind, as a server which did not shut down cleanly would.
+        try (ServerSocketChannel abandoned = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            abandoned.bind(UnixDomainSocketAddress.of(socketPath));
+        }
+        assertTrue(Files.exists(socketPath));
+
+        try (PortableServerSocket server = new PortableServerSocket(
+                loopbackConfiguration().unixDomainSocketPath(socketPath).build(), PortableServerSocketTest::echoOnce
+        ).start()) {
+            IOException refused = assertThrows(IOException.class, () -> new PortableServerSocket(
+                    loopbackConfiguration().port(NetworkingTestUtils.SECOND_SERVER_PORT).unixDomainSocketPath(socketPath).build(),
+                    PortableServerSocketTest::echoOnce
+            ));
+            assertTrue(refused.getMessage().contains("still listening"), refused.getMessage());
+
+            try (PortableSocket client = new PortableSocket(PortableSocketOptions.defaults(), UnixDomainSocketAddress.of(socketPath))) {
+                client.send("still reachable");
+                assertEquals("still reachable", client.receive());
+            }
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.clumd.projects.java_common_utils.base_enhancements;
+
+import com.clumd.projects.java_common_utils.NetworkingTestUtils;
+import com.clumd.projects.java_common_utils.base_enhancements.PortableSocketTestUtils.CountingCodec;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static com.clumd.projects.java_common_utils.base_enhancements.PortableSocketTestUtils.inJvmPair;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PortableSocketBroadcasterTest {
+
+    private static final PortableSocketOptions WITH_CODEC = PortableSocketOptions.builder().codec(new BinaryPortableSocketCodec()).build();
+
+    @Test
+    void test_values_are_encoded_once_and_shared_by_every_subscriber_which_can() throws Exception {
+        CountingCodec codec = new CountingCodec();
+        PortableSocket[] copied = inJvmPair(PortableSocketOptions.builder().codec(codec).copyInJvmObjects(true).build(), "broadcast-copied");
+        PortableSocket[] withoutCodec = inJvmPair(PortableSocketOptions.defaults(), "broadcast-without-codec");
+
+        try (ServerSocket testServerSocket = new ServerSocket(NetworkingTestUtils.FIRST_SERVER_PORT, 0, InetAddress.getLoopbackAddress());
+             PortableSocket tcpSender = new PortableSocket(WITH_CODEC, "127.0.0.1", NetworkingTestUtils.FIRST_SERVER_PORT);
+             PortableSocket tcpReceiver = new PortableSocket(WITH_CODEC, testServerSocket.accept());
+             PortableSocket copiedSender = copied[0];
+             PortableSocket copiedReceiver = copied[1];
+             PortableSocket withoutCodecSender = withoutCodec[0];
+             PortableSocket withoutCodecReceiver = withoutCodec[1];
+             PortableSocketBroadcaster broadcaster = new PortableSocketBroadcaster(codec)
+        ) {
+            broadcaster.subscribe(tcpSender);
+            broadcaster.subscribe(copiedSender);
+            broadcaster.subscribe(withoutCodecSender);
+            broadcaster.subscribe(tcpSender);
+            assertEquals(3, broadcaster.getSubscriberCount());
+
+            int[] value = {1, 2, 3};
+            BroadcastResult result = broadcaster.broadcast(value).get(5, TimeUnit.SECONDS);
+            assertEquals(3, result.delivered());
+            assertTrue(result.failures().isEmpty());
+            assertEquals(1, codec.getEncodes());
+
+            assertArrayEquals(value, (int[]) tcpReceiver.receive());
+            Object copy = copiedReceiver.receive();
+            assertArrayEquals(value, (int[]) copy);
+            assertNotSame(value, copy);
+            // Could not share the encoded bytes, so was sent the value through its own send, which in the same JVM is by reference.
+            assertSame(value, withoutCodecReceiver.receive());
+
+            // Still received in the order broadcast, even when written on different threads.
+            for (int i = 0; i < 20; i++) {
+                broadcaster.broadcast(i);
+            }
+            for (int i = 0; i < 20; i++) {
+                assertEquals(i, tcpReceiver.receive());
+                assertEquals(i, copiedReceiver.receive());
+                assertEquals(i, withoutCodecReceiver.receive());
+            }
+        }
+    }
+
+    @Test
+    void test_a_slow_subscriber_does_not_hold_up_the_others_and_is_dropped_once_too_far_behind() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        PortableSocket[] fast = inJvmPair(WITH_CODEC, "broadcast-fast");
+
+        try (InJvmSocket.Listener listener = InJvmSocket.Listener.bind(InJvmSocketAddress.of("broadcast-slow"));
+             PortableSocket slowSender = new PortableSocket(WITH_CODEC, InJvmSocket.connect(InJvmSocketAddress.of("broadcast-slow"))) {
+                 @Override
+                 void sendEncoded(final Object value, final PortableSocketCodec codec, final byte[] frame) throws IOException {
+                     writing.countDown();
+                     try {
+                         release.await();
+                     } catch (InterruptedException e) {
+                         throw new IOException(e);
+                     }
+                     super.sendEncoded(value, codec, frame);
+                 }
+             };
+             PortableSocket slowReceiver = new PortableSocket(WITH_CODEC, listener.accept());
+             PortableSocket fastSender = fast[0];
+             PortableSocket fastReceiver = fast[1];
+             PortableSocketBroadcaster broadcaster = new PortableSocketBroadcaster(new BinaryPortableSocketCodec(), 2)
+        ) {
+            broadcaster.subscribe(fastSender);
+            broadcaster.subscribe(slowSender);
+
+            CompletableFuture<BroadcastResult> first = broadcaster.broadcast("first");
+            assertTrue(writing.await(5, TimeUnit.SECONDS));
+            assertEquals("first", fastReceiver.receive());
+            CompletableFuture<BroadcastResult> second = broadcaster.broadcast("second");
+            assertEquals("second", fastReceiver.receive());
+            broadcaster.broadcast("third");
+            assertEquals("third", fastReceiver.receive());
+            BroadcastResult fourth = broadcaster.broadcast("fourth").get(5, TimeUnit.SECONDS);
+            assertEquals("fourth", fastReceiver.receive());
+
+            assertEquals(1, fourth.delivered());
+            assertTrue(fourth.failures().get(slowSender).getMessage().contains("falling more than {2} values behind"));
+            assertEquals(1, broadcaster.getSubscriberCount());
+            assertFalse(first.isDone());
+
+            release.countDown();
+            assertEquals(2, first.get(5, TimeUnit.SECONDS).delivered());
+            assertEquals("first", slowReceiver.receive());
+            // Already queued when it was dropped, so never sent.
+            assertTrue(second.get(5, TimeUnit.SECONDS).failures().containsKey(slowSender));
+        }
+    }
+
+    @Test
+    void test_subscribers_which_fail_are_unsubscribed() throws Exception {
+        PortableSocket[] closing = inJvmPair(WITH_CODEC, "broadcast-closing");
+        try (PortableSocketBroadcaster broadcaster = new PortableSocketBroadcaster(new BinaryPortableSocketCodec())) {
+            BroadcastResult nobody = broadcaster.broadcast("nobody").get(5, TimeUnit.SECONDS);
+            assertEquals(0, nobody.delivered());
+
+            broadcaster.subscribe(closing[0]);
+            closing[0].close();
+            closing[1].close();
+            BroadcastResult result = broadcaster.broadcast("closed").get(5, TimeUnit.SECONDS);
+            assertEquals(0, result.delivered());
+            assertTrue(result.failures().containsKey(closing[0]));
+            assertEquals(0, broadcaster.getSubscriberCount());
+
+            assertFalse(broadcaster.unsubscribe(closing[0]));
+        }
+    }
+}
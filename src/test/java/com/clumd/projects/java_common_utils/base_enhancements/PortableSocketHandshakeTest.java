@@ -0,0 +1,189 @@
+package com.clumd.projects.java_common_utils.base_enhancements;
+
+import com.clumd.projects.java_common_utils.NetworkingTestUtils;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.io.StreamCorruptedException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.clumd.projects.java_common_utils.base_enhancements.PortableSocketTestUtils.inJvmPair;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PortableSocketHandshakeTest {
+
+    private static final PortableSocketOptions BINARY = PortableSocketOptions.builder().binaryHandshake(true).build();
+
+    private static final Serializable[] HEADER_CONTENT = {"my-app", 3, 7L, true, null, new ArrayList<>(List.of(1, 2))};
+
+    /**
+     * Connects two PortableSockets over TCP, as a peer in the same JVM is handed values without them going through the streams.
+     *
+     * @return The connecting end, then the accepted end.
+     */
+    private static PortableSocket[] tcpPair(final PortableSocketOptions clientOptions, final PortableSocketOptions serverOptions) throws IOException {
+        try (ServerSocket serverSocket = new ServerSocket(NetworkingTestUtils.FIRST_SERVER_PORT, 50, InetAddress.getLoopbackAddress())) {
+            PortableSocket client = new PortableSocket(clientOptions, new Socket(InetAddress.getLoopbackAddress(), NetworkingTestUtils.FIRST_SERVER_PORT));
+            return new PortableSocket[]{client, new PortableSocket(serverOptions, serverSocket.accept())};
+        }
+    }
+
+    private static StreamCorruptedException handshakeFailure(final PortableSocket portableSocket) {
+        IOException thrown = assertThrows(IOException.class, portableSocket::getInputStream);
+        return assertInstanceOf(StreamCorruptedException.class, thrown.getCause());
+    }
+
+    @Test
+    void test_binary_handshake_agrees_features_and_header_content() throws Exception {
+        PortableSocketOptions options = PortableSocketOptions.builder()
+                .binaryHandshake(true)
+                .codec(new BinaryPortableSocketCodec())
+                .compression(StreamCompression.builder().build())
+                .build();
+        PortableSocket[] pair = inJvmPair("handshake-agrees", options, HEADER_CONTENT, options, HEADER_CONTENT);
+        try (PortableSocket client = pair[0]; PortableSocket server = pair[1]) {
+            client.send("hello");
+            assertEquals("hello", server.receive());
+            server.send("back");
+            assertEquals("back", client.receive());
+
+            assertEquals(PortableSocketHandshake.PROTOCOL_VERSION, client.getAgreedProtocolVersion());
+            assertEquals(PortableSocketHandshake.PROTOCOL_VERSION, server.getAgreedProtocolVersion());
+        }
+    }
+
+    @Test
+    void test_binary_handshake_is_smaller_than_the_object_header() throws Exception {
+        Serializable[] header = {"my-app", 3};
+        PortableSocketOptions objectHeader = PortableSocketOptions.builder()
+                .codec(new BinaryPortableSocketCodec())
+                .collectTransportMetrics(true)
+                .build();
+        PortableSocketOptions binaryHeader = PortableSocketOptions.builder()
+                .codec(new BinaryPortableSocketCodec())
+                .binaryHandshake(true)
+                .collectTransportMetrics(true)
+                .build();
+
+        PortableSocket[] objectPair = inJvmPair("handshake-object-size", objectHeader, header, objectHeader, header);
+        PortableSocket[] binaryPair = inJvmPair("handshake-binary-size", binaryHeader, header, binaryHeader, header);
+        try (PortableSocket objectClient = objectPair[0]; PortableSocket objectServer = objectPair[1];
+             PortableSocket binaryClient = binaryPair[0]; PortableSocket binaryServer = binaryPair[1]
+        ) {
+            long objectHeaderBytes = objectClient.getTransportMetrics().getBytesSent();
+            long binaryHeaderBytes = binaryClient.getTransportMetrics().getBytesSent();
+            assertTrue(binaryHeaderBytes * 4 < objectHeaderBytes, binaryHeaderBytes + " vs " + objectHeaderBytes);
+
+            objectServer.getInputStream();
+            binaryServer.getInputStream();
+            assertEquals(0, objectServer.getAgreedProtocolVersion());
+        }
+    }
+
+    @Test
+    void test_only_features_both_ends_asked_for_are_used() throws Exception {
+        PortableSocketTestUtils.CountingCodec codec = new PortableSocketTestUtils.CountingCodec();
+        PortableSocketOptions compressedWithCodec = PortableSocketOptions.builder()
+                .binaryHandshake(true)
+                .codec(codec)
+                .compression(StreamCompression.builder().build())
+                .build();
+        PortableSocketOptions compressed = PortableSocketOptions.builder()
+                .binaryHandshake(true)
+                .compression(StreamCompression.builder().build())
+                .build();
+
+        PortableSocket[] pair = tcpPair(compressedWithCodec, compressed);
+        try (PortableSocket client = pair[0]; PortableSocket server = pair[1]) {
+            String repetitive = "negotiated ".repeat(100);
+            client.send(repetitive);
+            assertEquals(repetitive, server.receive());
+            server.send("back");
+            assertEquals("back", client.receive());
+
+            // Compressed, as both asked for it, but through the Object stream, as only one end named a codec.
+            assertEquals(0, codec.getEncodes());
+            assertTrue(client.getCompressionMetrics().getFramesCompressed() > 0);
+            assertTrue(server.getCompressionMetrics().getDecompressedBytesRead() > repetitive.length());
+        }
+
+        PortableSocket[] uncompressed = tcpPair(compressed, BINARY);
+        try (PortableSocket client = uncompressed[0]; PortableSocket server = uncompressed[1]) {
+            client.send("plain");
+            assertEquals("plain", server.receive());
+            assertEquals(0, client.getCompressionMetrics().getFramesCompressed());
+        }
+    }
+
+    @Test
+    void test_disagreeing_on_multiplexing_is_refused_and_named() throws Exception {
+        PortableSocketOptions compressed = PortableSocketOptions.builder().binaryHandshake(true).compression(StreamCompression.builder().build()).build();
+        PortableSocketOptions multiplexed = PortableSocketOptions.builder().binaryHandshake(true).multiplexed(true).build();
+        PortableSocket[] pair = inJvmPair("handshake-features", compressed, new Serializable[0], multiplexed, new Serializable[0]);
+        try (PortableSocket client = pair[0]; PortableSocket server = pair[1]) {
+            String message = handshakeFailure(server).getMessage();
+            assertTrue(message.contains("Expected {multiplexed} but got {compression}"), message);
+        }
+    }
+
+    @Test
+    void test_disagreeing_header_content_is_refused() throws Exception {
+        PortableSocket[] differentValue = inJvmPair("handshake-value", BINARY, new Serializable[]{"my-app", 3}, BINARY, new Serializable[]{"my-app", 4});
+        try (PortableSocket client = differentValue[0]; PortableSocket server = differentValue[1]) {
+            assertTrue(handshakeFailure(server).getMessage().contains("non-matching {java.lang.Integer}"));
+        }
+
+        PortableSocket[] differentCount = inJvmPair("handshake-count", BINARY, (Serializable[]) null, BINARY, new Serializable[]{"my-app"});
+        try (PortableSocket client = differentCount[0]; PortableSocket server = differentCount[1]) {
+            assertTrue(handshakeFailure(server).getMessage().contains("Expected {1} entries in the stream header, but the remote end sent {0}"));
+        }
+    }
+
+    private static ObjectInputStream handshakeFrom(final int protocolVersion, final int features) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeInt(PortableSocketHandshake.MAGIC);
+            out.writeByte(protocolVersion);
+            out.writeInt(features);
+            out.writeShort(0);
+        }
+        return new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+    }
+
+    @Test
+    void test_a_newer_peer_is_spoken_to_in_this_ends_version_without_the_features_this_end_does_not_know() throws Exception {
+        PortableSocketHandshake handshake = PortableSocketHandshake.from(
+                PortableSocketOptions.builder().binaryHandshake(true).compression(StreamCompression.builder().build()).build());
+        int unknownFeature = 1 << 20;
+
+        try (ObjectInputStream in = handshakeFrom(PortableSocketHandshake.PROTOCOL_VERSION + 1, PortableSocketHandshake.COMPRESSION | unknownFeature)) {
+            PortableSocketHandshake.Agreement agreement = handshake.read(in, null);
+            assertEquals(PortableSocketHandshake.PROTOCOL_VERSION, agreement.protocolVersion());
+            assertEquals(PortableSocketHandshake.COMPRESSION, agreement.features());
+        }
+        try (ObjectInputStream in = handshakeFrom(0, 0)) {
+            String message = assertThrows(StreamCorruptedException.class, () -> handshake.read(in, null)).getMessage();
+            assertTrue(message.contains("invalid protocol version {0}"), message);
+        }
+    }
+
+    @Test
+    void test_a_peer_using_the_object_header_is_reported_as_such() throws Exception {
+        PortableSocket[] pair = inJvmPair("handshake-mixed", PortableSocketOptions.defaults(), new Serializable[0], BINARY, new Serializable[0]);
+        try (PortableSocket client = pair[0]; PortableSocket server = pair[1]) {
+            assertTrue(handshakeFailure(server).getMessage().contains("not using the binary handshake"));
+        }
+    }
+}
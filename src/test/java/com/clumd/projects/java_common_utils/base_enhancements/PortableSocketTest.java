@@ -2,16 +2,35 @@ package com.clumd.projects.java_common_utils.base_enhancements;
 
 import com.clumd.projects.java_common_utils.AsyncTestThread;
 import com.clumd.projects.java_common_utils.NetworkingTestUtils;
+import com.clumd.projects.java_common_utils.models.Pair;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.io.IOException;
+import java.io.InvalidClassException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.Serializable;
 import java.net.*;
-
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
@@ -427,4 +446,712 @@ class PortableSocketTest {
 
         assertTrue(cs1.isClosed());
     }
+
+    private static void assertResendingMutatedObject(final PortableSocketOptions clientOptions, final boolean expectFreshState)
+            throws IOException, InterruptedException {
+        AsyncTestThread serverThread = new AsyncTestThread(() -> {
+            try (
+                    ServerSocket testServerSocket = new ServerSocket(NetworkingTestUtils.FIRST_SERVER_PORT, 0, InetAddress.getLoopbackAddress());
+                    Socket serverSocket = testServerSocket.accept();
+                    PortableSocket pss = new PortableSocket(serverSocket)
+            ) {
+                List<?> first = (List<?>) pss.getInputStream().readObject();
+                List<?> second = (List<?>) pss.getInputStream().readObject();
+                assertEquals(1, first.size());
+                assertEquals(expectFreshState ? 2 : 1, second.size());
+                pss.getOutputStream().writeBoolean(true);
+                pss.getOutputStream().flush();
+            } catch (Exception e) {
+                fail(e);
+            }
+        });
+        serverThread.start();
+
+        try (PortableSocket cs1 = new PortableSocket(clientOptions, "127.0.0.1", NetworkingTestUtils.FIRST_SERVER_PORT)) {
+            List<String> mutable = new ArrayList<>(List.of("first"));
+            cs1.getOutputStream().writeObject(mutable);
+            cs1.getOutputStream().flush();
+            mutable.add("second");
+            cs1.getOutputStream().writeObject(mutable);
+            cs1.getOutputStream().flush();
+            assertTrue(cs1.getInputStream().readBoolean());
+        }
+
+        serverThread.finalise();
+    }
+
+    @Test
+    void test_resending_a_mutated_object_without_reset_policy_sends_stale_reference() throws IOException, InterruptedException {
+        assertResendingMutatedObject(PortableSocketOptions.defaults(), false);
+    }
+
+    @Test
+    void test_resending_a_mutated_object_with_per_message_reset_policy_sends_fresh_state() throws IOException, InterruptedException {
+        assertResendingMutatedObject(
+                PortableSocketOptions.builder().outputStreamResetPolicy(ObjectStreamResetPolicy.perMessage()).build(),
+                true
+        );
+    }
+
+    @Test
+    void test_output_stream_handle_metrics_and_reset_thresholds() throws IOException, InterruptedException {
+        AsyncTestThread serverThread = new AsyncTestThread(() -> {
+            try (
+                    ServerSocket testServerSocket = new ServerSocket(NetworkingTestUtils.FIRST_SERVER_PORT, 0, InetAddress.getLoopbackAddress());
+                    Socket serverSocket = testServerSocket.accept();
+                    PortableSocket pss = new PortableSocket(serverSocket)
+            ) {
+                for (int i = 0; i < 4; i++) {
+                    assertEquals("message " + i, pss.getInputStream().readObject());
+                }
+            } catch (Exception e) {
+                fail(e);
+            }
+        });
+        serverThread.start();
+
+        PortableSocketOptions options = PortableSocketOptions.builder().outputStreamResetPolicy(ObjectStreamResetPolicy.everyObjects(2)).build();
+        try (PortableSocket cs1 = new PortableSocket(options, "127.0.0.1", NetworkingTestUtils.FIRST_SERVER_PORT)) {
+            assertEquals(0, cs1.getOutputStreamObjectsSinceReset());
+            assertEquals(0, cs1.getOutputStreamBytesSinceReset());
+
+            cs1.getOutputStream().writeObject("message 0");
+            cs1.getOutputStream().flush();
+            assertEquals(1, cs1.getOutputStreamObjectsSinceReset());
+            assertTrue(cs1.getOutputStreamBytesSinceReset() > 0);
+            assertEquals(0, cs1.getOutputStreamResetCount());
+
+            cs1.getOutputStream().writeObject("message 1");
+            cs1.getOutputStream().flush();
+            assertEquals(0, cs1.getOutputStreamObjectsSinceReset());
+            assertEquals(0, cs1.getOutputStreamBytesSinceReset());
+            assertEquals(1, cs1.getOutputStreamResetCount());
+
+            cs1.getOutputStream().writeObject("message 2");
+            cs1.getOutputStream().writeObject("message 3");
+            cs1.getOutputStream().flush();
+            assertEquals(2, cs1.getOutputStreamResetCount());
+        }
+
+        serverThread.finalise();
+    }
+
+    @Test
+    void test_send_and_receive_without_a_codec_uses_object_streams() throws IOException, InterruptedException {
+        AsyncTestThread serverThread = new AsyncTestThread(() -> {
+            try (
+                    ServerSocket testServerSocket = new ServerSocket(NetworkingTestUtils.FIRST_SERVER_PORT, 0, InetAddress.getLoopbackAddress());
+                    Socket serverSocket = testServerSocket.accept();
+                    PortableSocket pss = new PortableSocket(serverSocket)
+            ) {
+                assertEquals("plain", pss.getInputStream().readObject());
+                pss.send(pss.receive());
+            } catch (Exception e) {
+                fail(e);
+            }
+        });
+        serverThread.start();
+
+        try (PortableSocket cs1 = new PortableSocket("127.0.0.1", NetworkingTestUtils.FIRST_SERVER_PORT)) {
+            cs1.send("plain");
+            cs1.getOutputStream().writeObject(7);
+            cs1.getOutputStream().flush();
+            assertEquals(7, cs1.receive());
+        } catch (ClassNotFoundException e) {
+            fail(e);
+        }
+
+        serverThread.finalise();
+    }
+
+    @Test
+    void test_send_and_receive_with_a_codec_uses_frames() throws IOException, InterruptedException {
+        PortableSocketOptions options = PortableSocketOptions.builder().codec(new BinaryPortableSocketCodec()).build();
+        AsyncTestThread serverThread = new AsyncTestThread(() -> {
+            try (
+                    ServerSocket testServerSocket = new ServerSocket(NetworkingTestUtils.FIRST_SERVER_PORT, 0, InetAddress.getLoopbackAddress());
+                    Socket serverSocket = testServerSocket.accept();
+                    PortableSocket pss = new PortableSocket(options, serverSocket, 1, "scooby doob o tron")
+            ) {
+                for (int i = 0; i < 3; i++) {
+                    pss.send(pss.receive());
+                }
+            } catch (Exception e) {
+                fail(e);
+            }
+        });
+        serverThread.start();
+
+        try (PortableSocket cs1 = new PortableSocket(options, "127.0.0.1", NetworkingTestUtils.FIRST_SERVER_PORT, 1, "scooby doob o tron")) {
+            cs1.send("hello");
+            assertEquals("hello", cs1.receive());
+            cs1.send(new int[]{1, 2, 3});
+            assertEquals(3, ((int[]) cs1.receive()).length);
+            cs1.send(null);
+            assertNull(cs1.receive());
+        } catch (ClassNotFoundException e) {
+            fail(e);
+        }
+
+        serverThread.finalise();
+    }
+
+    @Test
+    void test_closing_after_rejecting_the_remote_stream_header_does_not_wait_for_the_remote_end() throws IOException {
+        try (ServerSocket testServerSocket = new ServerSocket(NetworkingTestUtils.FIRST_SERVER_PORT, 0, InetAddress.getLoopbackAddress())) {
+            PortableSocket client = new PortableSocket(
+                    new Socket(InetAddress.getLoopbackAddress(), NetworkingTestUtils.FIRST_SERVER_PORT), 1, false, 7357
+            );
+            PortableSocket server = new PortableSocket(testServerSocket.accept(), null, false, 7357);
+
+            assertThrows(IOException.class, server::getInputStream);
+
+            // The client is still connected, and has not hung up, so lingering for it would otherwise hold up close().
+            long start = System.nanoTime();
+            server.close();
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 500);
+            assertTrue(server.isClosed());
+
+            // Whilst lingering, the server's own stream header can still be read, for the client to report the mismatch itself.
+            IOException clientSide = assertThrows(IOException.class, client::getInputStream);
+            assertTrue(clientSide.getCause().getMessage()
+                    .contains("Expected to read a {java.lang.Integer} from the stream header, but got a non-matching {null} instead.")
+            );
+            client.close();
+        }
+    }
+
+    @Test
+    void test_mismatched_codecs_fail_the_handshake() throws IOException, InterruptedException {
+        AsyncTestThread serverThread = new AsyncTestThread(() -> {
+            try (
+                    ServerSocket testServerSocket = new ServerSocket(NetworkingTestUtils.FIRST_SERVER_PORT, 0, InetAddress.getLoopbackAddress());
+                    Socket serverSocket = testServerSocket.accept();
+                    PortableSocket pss = new PortableSocket(serverSocket, (Serializable[]) null)
+            ) {
+                pss.getOutputStream().flush();
+                NetworkingTestUtils.sleep();
+            } catch (Exception e) {
+                fail(e);
+            }
+        });
+        serverThread.start();
+
+        PortableSocketOptions options = PortableSocketOptions.builder().codec(new BinaryPortableSocketCodec()).build();
+        try (PortableSocket cs1 = new PortableSocket(options, "127.0.0.1", NetworkingTestUtils.FIRST_SERVER_PORT, (Serializable[]) null)) {
+            cs1.setFastTimeout();
+            IOException e = assertThrows(IOException.class, cs1::getInputStream);
+            assertTrue(e.getMessage().contains("Failed to properly initialise a PortableSocket's input stream"));
+        }
+
+        serverThread.finalise();
+    }
+
+    @Test
+    void test_socket_tuning_is_applied_and_can_be_changed() throws IOException, InterruptedException {
+        AsyncTestThread serverThread = new AsyncTestThread(() -> {
+            try (
+                    ServerSocket testServerSocket = new ServerSocket(NetworkingTestUtils.FIRST_SERVER_PORT, 0, InetAddress.getLoopbackAddress());
+                    Socket serverSocket = testServerSocket.accept();
+                    PortableSocket pss = new PortableSocket(serverSocket)
+            ) {
+                pss.getInputStream().readObject();
+            } catch (Exception e) {
+                fail(e);
+            }
+        });
+        serverThread.start();
+
+        PortableSocketOptions options = PortableSocketOptions.builder()
+                .socketTuning(SocketTuning.builder().tcpNoDelay(true).keepAlive(true).lingerInSeconds(2).build())
+                .build();
+        try (PortableSocket cs1 = new PortableSocket(options, "127.0.0.1", NetworkingTestUtils.FIRST_SERVER_PORT)) {
+            assertTrue(cs1.getSocket().getTcpNoDelay());
+            assertTrue(cs1.getSocket().getKeepAlive());
+            assertEquals(2, cs1.getSocket().getSoLinger());
+
+            assertTrue(cs1.setTcpNoDelay(false));
+            assertFalse(cs1.getSocket().getTcpNoDelay());
+            assertTrue(cs1.setKeepAlive(false));
+            assertEquals(2, cs1.setLingerInSeconds(-1));
+            assertEquals(-1, cs1.getSocket().getSoLinger());
+
+            cs1.applySocketTuning(SocketTuning.lowLatency());
+            assertTrue(cs1.getSocket().getTcpNoDelay());
+
+            int previousSendBuffer = cs1.getSocket().getSendBufferSize();
+            assertEquals(previousSendBuffer, cs1.setSendBufferSize(32 * 1024));
+            int previousReceiveBuffer = cs1.getSocket().getReceiveBufferSize();
+            assertEquals(previousReceiveBuffer, cs1.setReceiveBufferSize(32 * 1024));
+
+            cs1.send("done");
+        }
+
+        serverThread.finalise();
+    }
+
+    @Test
+    void test_coalesced_flush_policy_holds_messages_until_met_or_forced() throws IOException, InterruptedException {
+        PortableSocketOptions options = PortableSocketOptions.builder().flushPolicy(FlushPolicy.onBatchSize(3)).build();
+        AsyncTestThread serverThread = new AsyncTestThread(() -> {
+            try (
+                    ServerSocket testServerSocket = new ServerSocket(NetworkingTestUtils.FIRST_SERVER_PORT, 0, InetAddress.getLoopbackAddress());
+                    Socket serverSocket = testServerSocket.accept();
+                    PortableSocket pss = new PortableSocket(options, serverSocket)
+            ) {
+                for (int i = 0; i < 4; i++) {
+                    pss.send(pss.receive());
+                }
+                pss.forceFlush();
+                // Whatever is sent last is still delivered by close.
+                pss.send(pss.receive());
+            } catch (Exception e) {
+                fail(e);
+            }
+        });
+        serverThread.start();
+
+        try (PortableSocket cs1 = new PortableSocket(options, "127.0.0.1", NetworkingTestUtils.FIRST_SERVER_PORT)) {
+            cs1.send(0);
+            cs1.send(1);
+            cs1.setOneSecondTimeout();
+            assertThrows(SocketTimeoutException.class, () -> cs1.getInputStream().readObject());
+
+            cs1.send(2);
+            cs1.send(3);
+            cs1.forceFlush();
+            cs1.setLongTimeout();
+            for (int i = 0; i < 4; i++) {
+                assertEquals(i, cs1.receive());
+            }
+
+            cs1.send("last");
+            cs1.forceFlush();
+            assertEquals("last", cs1.receive());
+        } catch (ClassNotFoundException e) {
+            fail(e);
+        }
+
+        serverThread.finalise();
+    }
+
+    @Test
+    void test_compressed_streams_round_trip_and_report_metrics() throws IOException, InterruptedException {
+        PortableSocketOptions options = PortableSocketOptions.builder().compression(StreamCompression.defaults()).build();
+        AsyncTestThread serverThread = new AsyncTestThread(() -> {
+            try (
+                    ServerSocket testServerSocket = new ServerSocket(NetworkingTestUtils.FIRST_SERVER_PORT, 0, InetAddress.getLoopbackAddress());
+                    Socket serverSocket = testServerSocket.accept();
+                    PortableSocket pss = new PortableSocket(options, serverSocket, "compressed")
+            ) {
+                for (int i = 0; i < 3; i++) {
+                    pss.send(pss.receive());
+                }
+            } catch (Exception e) {
+                fail(e);
+            }
+        });
+        serverThread.start();
+
+        ArrayList<String> repetitive = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            repetitive.add("a fairly repetitive value " + (i % 10));
+        }
+        try (PortableSocket cs1 = new PortableSocket(options, "127.0.0.1", NetworkingTestUtils.FIRST_SERVER_PORT, "compressed")) {
+            cs1.send(repetitive);
+            assertEquals(repetitive, cs1.receive());
+            cs1.send("small");
+            assertEquals("small", cs1.receive());
+            cs1.send(null);
+            assertNull(cs1.receive());
+
+            StreamCompressionMetrics metrics = cs1.getCompressionMetrics();
+            assertTrue(metrics.getFramesCompressed() >= 1);
+            assertTrue(metrics.getFramesSkipped() >= 1);
+            assertTrue(metrics.getCompressionRatio() > 2);
+            assertTrue(metrics.getDecompressionRatio() > 2);
+            assertTrue(metrics.getCompressionCpuTimeInNanos() >= 0);
+        } catch (ClassNotFoundException e) {
+            fail(e);
+        }
+
+        serverThread.finalise();
+    }
+
+    @Test
+    void test_compression_must_be_agreed_by_both_ends() throws IOException, InterruptedException {
+        AsyncTestThread serverThread = new AsyncTestThread(() -> {
+            try (
+                    ServerSocket testServerSocket = new ServerSocket(NetworkingTestUtils.FIRST_SERVER_PORT, 0, InetAddress.getLoopbackAddress());
+                    Socket serverSocket = testServerSocket.accept();
+                    PortableSocket pss = new PortableSocket(serverSocket)
+            ) {
+                pss.getOutputStream().flush();
+                NetworkingTestUtils.sleep();
+            } catch (Exception e) {
+                fail(e);
+            }
+        });
+        serverThread.start();
+
+        PortableSocketOptions options = PortableSocketOptions.builder().compression(StreamCompression.defaults()).build();
+        try (PortableSocket cs1 = new PortableSocket(options, "127.0.0.1", NetworkingTestUtils.FIRST_SERVER_PORT)) {
+            cs1.setFastTimeout();
+            IOException e = assertThrows(IOException.class, cs1::getInputStream);
+            assertTrue(e.getMessage().contains("Failed to properly initialise a PortableSocket's input stream"));
+        }
+
+        serverThread.finalise();
+    }
+
+    private static void assertFileTransfers(final PortableSocketOptions options, final boolean overUnixDomainSocket, final Path directory)
+            throws Exception {
+        Path source = directory.resolve("source.bin");
+        byte[] content = new byte[3 * 1024 * 1024 + 123];
+        new Random(42).nextBytes(content);
+        Files.write(source, content);
+        Path socketPath = directory.resolve("transfer.sock");
+
+        try (PortableServerSocket server = new PortableServerSocket(
+                PortableServerSocketConfiguration.builder()
+                        .bindAddress(InetAddress.getLoopbackAddress())
+                        .port(NetworkingTestUtils.FIRST_SERVER_PORT)
+                        .unixDomainSocketPath(overUnixDomainSocket ? socketPath : null)
+                        .portableSocketOptions(options)
+                        .build(),
+                pss -> {
+                    for (int i = 0; i < 2; i++) {
+                        pss.sendFile(source, (Long) pss.receive());
+                        pss.send("after " + i);
+                        // A no-op unless coalescing, which would otherwise hold small messages back until a batch fills.
+                        pss.forceFlush();
+                    }
+                }).start();
+             PortableSocket cs1 = overUnixDomainSocket
+                     ? new PortableSocket(options, UnixDomainSocketAddress.of(socketPath))
+                     : new PortableSocket(options, "127.0.0.1", NetworkingTestUtils.FIRST_SERVER_PORT)
+        ) {
+            assertEquals(overUnixDomainSocket, cs1.isUnixDomainSocket());
+            Path target = directory.resolve("target.bin");
+
+            cs1.send(PortableSocket.resumeOffsetFor(target));
+            cs1.forceFlush();
+            FileTransferResult whole = cs1.receiveFile(target);
+            assertEquals(new FileTransferResult("source.bin", target, content.length, 0, content.length), whole);
+            assertArrayEquals(content, Files.readAllBytes(target));
+            assertEquals("after 0", cs1.receive());
+
+            // Cut short, as if the connection dropped part way through, then resumed from wherever it got to.
+            try (FileChannel partial = FileChannel.open(target, StandardOpenOption.WRITE)) {
+                partial.truncate(content.length / 3);
+            }
+            cs1.send(PortableSocket.resumeOffsetFor(target));
+            cs1.forceFlush();
+            FileTransferResult resumed = cs1.receiveFile(target);
+            assertEquals(content.length / 3, resumed.offset());
+            assertEquals(content.length - content.length / 3, resumed.bytesTransferred());
+            assertArrayEquals(content, Files.readAllBytes(target));
+            assertEquals("after 1", cs1.receive());
+        }
+    }
+
+    @Test
+    void test_file_transfer_and_resume_over_tcp(@TempDir final Path directory) throws Exception {
+        assertFileTransfers(PortableSocketOptions.defaults(), false, directory);
+    }
+
+    @Test
+    void test_file_transfer_and_resume_over_unix_domain_socket(@TempDir final Path directory) throws Exception {
+        assertFileTransfers(PortableSocketOptions.defaults(), true, directory);
+    }
+
+    @Test
+    void test_file_transfer_over_tcp_from_socket_channels_honours_the_read_timeout(@TempDir final Path directory) throws Exception {
+        Path source = directory.resolve("source.bin");
+        byte[] content = new byte[1024 * 1024 + 7];
+        new Random(7).nextBytes(content);
+        Files.write(source, content);
+
+        try (ServerSocketChannel listening = ServerSocketChannel.open()) {
+            listening.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), NetworkingTestUtils.FIRST_SERVER_PORT));
+            try (PortableSocket cs1 = new PortableSocket(SocketChannel.open(listening.getLocalAddress()).socket());
+                 PortableSocket pss = new PortableSocket(listening.accept().socket())
+            ) {
+                CompletableFuture<Long> sent = CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return pss.sendFile(source);
+                    } catch (IOException e) {
+                        throw new IllegalStateException(e);
+                    }
+                });
+                Path target = directory.resolve("target.bin");
+                assertEquals(content.length, cs1.receiveFile(target).bytesTransferred());
+                assertEquals(content.length, sent.get(5, TimeUnit.SECONDS));
+                assertArrayEquals(content, Files.readAllBytes(target));
+
+                // The header alone, with none of the bytes it promises, should time out rather than wait forever on the channel.
+                pss.send(new FileTransferHeader("never.bin", 10, 0, 0));
+                cs1.setFastTimeout();
+                assertThrows(SocketTimeoutException.class, () -> cs1.receiveFile(directory.resolve("never.bin")));
+            }
+        }
+    }
+
+    @Test
+    void test_file_transfer_and_resume_through_compression_and_codec(@TempDir final Path directory) throws Exception {
+        assertFileTransfers(
+                PortableSocketOptions.builder()
+                        .codec(new BinaryPortableSocketCodec())
+                        .compression(StreamCompression.defaults())
+                        .flushPolicy(FlushPolicy.onBatchSize(10))
+                        .build(),
+                true,
+                directory
+        );
+    }
+
+    @Test
+    void test_file_transfer_fails_checksum_or_resume_but_keeps_the_stream_in_step(@TempDir final Path directory) throws Exception {
+        Path source = directory.resolve("source.txt");
+        Files.writeString(source, "the real content of the file being sent");
+
+        try (PortableServerSocket server = new PortableServerSocket(
+                PortableServerSocketConfiguration.builder()
+                        .bindAddress(InetAddress.getLoopbackAddress())
+                        .port(NetworkingTestUtils.FIRST_SERVER_PORT)
+                        .build(),
+                pss -> {
+                    for (int i = 0; i < 2; i++) {
+                        pss.sendFile(source, (Long) pss.receive());
+                        pss.send("still in step");
+                    }
+                }).start();
+             PortableSocket cs1 = new PortableSocket("127.0.0.1", NetworkingTestUtils.FIRST_SERVER_PORT)
+        ) {
+            // Resuming onto a target whose existing start differs from the source can only be caught by the checksum.
+            Path corrupted = directory.resolve("corrupted.txt");
+            Files.writeString(corrupted, "THE REAL");
+            cs1.send(PortableSocket.resumeOffsetFor(corrupted));
+            IOException checksum = assertThrows(IOException.class, () -> cs1.receiveFile(corrupted));
+            assertTrue(checksum.getMessage().contains("does not match the sender's checksum"), checksum.getMessage());
+            assertEquals("still in step", cs1.receive());
+
+            // Being asked to resume from further in than the target has.
+            Path empty = directory.resolve("empty.txt");
+            cs1.send(10L);
+            IOException resume = assertThrows(IOException.class, () -> cs1.receiveFile(empty));
+            assertTrue(resume.getMessage().contains("only has {0} bytes"), resume.getMessage());
+            assertEquals("still in step", cs1.receive());
+        }
+    }
+
+    @Test
+    void test_deserialisation_limits_are_enforced_from_the_stream_header_onwards() throws Exception {
+        try (PortableServerSocket server = new PortableServerSocket(
+                PortableServerSocketConfiguration.builder()
+                        .bindAddress(InetAddress.getLoopbackAddress())
+                        .port(NetworkingTestUtils.FIRST_SERVER_PORT)
+                        .build(),
+                pss -> {
+                    pss.send(new int[10]);
+                    pss.send(new int[11]);
+                    pss.receive();
+                }).start();
+             PortableSocket cs1 = new PortableSocket(
+                     PortableSocketOptions.builder()
+                             .deserialisationLimits(DeserialisationLimits.builder().maxArrayLength(10).build())
+                             .build(),
+                     "127.0.0.1",
+                     NetworkingTestUtils.FIRST_SERVER_PORT
+             )
+        ) {
+            assertNull(cs1.getDeserialisationFilter());
+            assertArrayEquals(new int[10], (int[]) cs1.receive());
+            assertThrows(InvalidClassException.class, cs1::receive);
+            assertEquals(1, cs1.getDeserialisationFilter().getRejectedCount(DeserialisationFilter.Rejection.ARRAY_TOO_LONG));
+            cs1.send("done");
+        }
+    }
+
+    @Test
+    void test_an_allowlist_of_only_user_classes_still_allows_the_protocol_itself() throws Exception {
+        PortableSocketOptions options = PortableSocketOptions.builder()
+                .codec(new BinaryPortableSocketCodec())
+                .deserialisationLimits(DeserialisationLimits.builder().allowlist(ClassAllowlist.of(Pair.class.getName())).build())
+                .build();
+        try (ServerSocket testServerSocket = new ServerSocket(NetworkingTestUtils.FIRST_SERVER_PORT, 0, InetAddress.getLoopbackAddress());
+             PortableSocket cs1 = new PortableSocket(options, "127.0.0.1", NetworkingTestUtils.FIRST_SERVER_PORT);
+             PortableSocket pss = new PortableSocket(options, testServerSocket.accept())
+        ) {
+            CompletableFuture<Object> received = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return pss.receive();
+                } catch (IOException | ClassNotFoundException e) {
+                    return e;
+                }
+            });
+            cs1.sendPing();
+            cs1.send(new Pair<>("allowed", 1));
+            assertEquals(new Pair<>("allowed", 1), received.get(5, TimeUnit.SECONDS));
+
+            pss.send("answered");
+            assertEquals("answered", cs1.receive());
+            assertEquals(1, cs1.getPongsReceived());
+            assertEquals(0, pss.getDeserialisationFilter().getRejectedCount());
+        }
+    }
+
+    @Test
+    void test_default_input_streams_share_one_class_loader_until_closed() throws Exception {
+        SharedClassLoaderRegistry registry = SharedClassLoaderRegistry.getDefault();
+        int loadersBefore = registry.getLoaderCount();
+
+        try (ServerSocket testServerSocket = new ServerSocket(NetworkingTestUtils.FIRST_SERVER_PORT, 0, InetAddress.getLoopbackAddress());
+             PortableSocket cs1 = new PortableSocket("127.0.0.1", NetworkingTestUtils.FIRST_SERVER_PORT);
+             PortableSocket pss = new PortableSocket(testServerSocket.accept())
+        ) {
+            cs1.send("first");
+            pss.send("second");
+            assertEquals("first", pss.receive());
+            assertEquals("second", cs1.receive());
+
+            // Other tests may have left the default loader held, in which case these two are using it too.
+            assertTrue(registry.getLoaderCount() - loadersBefore <= 1);
+        }
+        assertEquals(loadersBefore, registry.getLoaderCount());
+    }
+
+    @Test
+    void test_failing_to_initialise_the_input_stream_gives_back_the_shared_class_loader() throws Exception {
+        SharedClassLoaderRegistry registry = SharedClassLoaderRegistry.getDefault();
+        int loadersBefore = registry.getLoaderCount();
+        PortableSocketOptions options = PortableSocketOptions.builder().build();
+
+        PortableSocket[] pair = PortableSocketTestUtils.inJvmPair("rejected-header", options, new Serializable[]{1}, options, new Serializable[]{2});
+        try (PortableSocket client = pair[0]; PortableSocket server = pair[1]) {
+            assertThrows(IOException.class, server::getInputStream);
+            assertThrows(IOException.class, server::getInputStream);
+
+            // Still open, but neither attempt is holding on to a lease.
+            assertEquals(loadersBefore, registry.getLoaderCount());
+        }
+        assertEquals(loadersBefore, registry.getLoaderCount());
+    }
+
+    @Test
+    void test_transport_metrics_count_traffic_and_timeouts_only_when_switched_on() throws Exception {
+        try (ServerSocket testServerSocket = new ServerSocket(NetworkingTestUtils.FIRST_SERVER_PORT, 0, InetAddress.getLoopbackAddress());
+             PortableSocket cs1 = new PortableSocket(
+                     PortableSocketOptions.builder().collectTransportMetrics(true).build(), "127.0.0.1", NetworkingTestUtils.FIRST_SERVER_PORT
+             );
+             PortableSocket pss = new PortableSocket(testServerSocket.accept())
+        ) {
+            cs1.send("first");
+            cs1.send(new int[1000]);
+            assertEquals("first", pss.receive());
+            assertEquals(1000, ((int[]) pss.receive()).length);
+            pss.send("reply");
+            assertEquals("reply", cs1.receive());
+
+            cs1.setCustomTimeoutInMs(50);
+            assertThrows(SocketTimeoutException.class, cs1::receive);
+
+            TransportMetrics metrics = cs1.getTransportMetrics();
+            assertEquals(2, metrics.getObjectsSent());
+            assertEquals(1, metrics.getObjectsReceived());
+            assertTrue(metrics.getBytesSent() > 4000);
+            assertTrue(metrics.getBytesReceived() > 0);
+            assertEquals(1, metrics.getTimeouts());
+            assertEquals(0, metrics.getCorruptions());
+            assertEquals(2, metrics.getSerialisationTime().getCount());
+            assertEquals(1, metrics.getDeserialisationTime().getCount());
+            assertTrue(metrics.getWriteBlockedTime().getCount() >= 2);
+            assertTrue(TransportMetrics.aggregate().getObjectsSent() >= 2);
+
+            assertNull(pss.getTransportMetrics());
+        }
+    }
+
+    private static PortableServerSocket inJvmEchoServer(final PortableSocketOptions options, final Serializable... header) throws IOException {
+        return new PortableServerSocket(
+                PortableServerSocketConfiguration.builder()
+                        .bindAddress(InetAddress.getLoopbackAddress())
+                        .port(NetworkingTestUtils.FIRST_SERVER_PORT)
+                        .inJvmAddress(InJvmSocketAddress.forPort(NetworkingTestUtils.FIRST_SERVER_PORT))
+                        .portableSocketOptions(options)
+                        .build(),
+                pss -> {
+                    Object received;
+                    while (!"done".equals(received = pss.receive())) {
+                        pss.send(received);
+                    }
+                },
+                header).start();
+    }
+
+    @Test
+    void test_in_jvm_connections_pass_values_by_reference_after_the_usual_handshake() throws Exception {
+        PortableSocketOptions options = PortableSocketOptions.builder().collectTransportMetrics(true).build();
+        try (PortableServerSocket server = inJvmEchoServer(options, "in jvm", 1);
+             PortableSocket cs1 = new PortableSocket(options, InJvmSocketAddress.forPort(NetworkingTestUtils.FIRST_SERVER_PORT), "in jvm", 1)
+        ) {
+            assertTrue(cs1.isInJvm());
+            ArrayList<String> value = new ArrayList<>(List.of("not", "copied"));
+            cs1.send(value);
+            assertSame(value, cs1.receive());
+            cs1.send(null);
+            assertNull(cs1.receive());
+
+            cs1.sendPing();
+            cs1.send("flushed through");
+            assertEquals("flushed through", cs1.receive());
+            assertEquals(1, cs1.getPongsReceived());
+            // Including the pong, though no bytes were needed for any of them after the stream header.
+            assertEquals(4, cs1.getTransportMetrics().getObjectsReceived());
+            cs1.send("done");
+        }
+    }
+
+    @Test
+    void test_in_jvm_connections_copy_values_when_asked_to_with_or_without_a_codec() throws Exception {
+        for (PortableSocketOptions options : List.of(
+                PortableSocketOptions.builder().copyInJvmObjects(true).build(),
+                PortableSocketOptions.builder().copyInJvmObjects(true).codec(new BinaryPortableSocketCodec()).build()
+        )) {
+            try (PortableServerSocket server = inJvmEchoServer(options);
+                 PortableSocket cs1 = new PortableSocket(options, InJvmSocketAddress.forPort(NetworkingTestUtils.FIRST_SERVER_PORT))
+            ) {
+                ArrayList<String> value = new ArrayList<>(List.of("copied"));
+                cs1.send(value);
+                value.add("after sending");
+                assertEquals(List.of("copied"), cs1.receive());
+                cs1.send("done");
+            }
+        }
+    }
+
+    @Test
+    void test_in_jvm_connections_are_preferred_for_local_ports_but_still_agree_a_handshake() throws Exception {
+        PortableSocketOptions options = PortableSocketOptions.builder().inJvmForLocalPorts(true).build();
+        try (PortableServerSocket server = inJvmEchoServer(options, "expected")) {
+            try (PortableSocket cs1 = new PortableSocket(options, "localhost", NetworkingTestUtils.FIRST_SERVER_PORT, "expected")) {
+                assertTrue(cs1.isInJvm());
+                cs1.send("echo");
+                assertEquals("echo", cs1.receive());
+                cs1.send("done");
+            }
+
+            try (PortableSocket cs1 = new PortableSocket(options, "localhost", NetworkingTestUtils.FIRST_SERVER_PORT, "unexpected")) {
+                cs1.setFastTimeout();
+                IOException e = assertThrows(IOException.class, cs1::getInputStream);
+                assertTrue(e.getMessage().contains("Failed to properly initialise a PortableSocket's input stream"));
+            }
+
+            try (PortableSocket tcp = new PortableSocket("localhost", NetworkingTestUtils.FIRST_SERVER_PORT, "expected")) {
+                assertFalse(tcp.isInJvm());
+            }
+        }
+        assertThrows(ConnectException.class,
+                () -> new PortableSocket(options, InJvmSocketAddress.forPort(NetworkingTestUtils.FIRST_SERVER_PORT)));
+    }
 }
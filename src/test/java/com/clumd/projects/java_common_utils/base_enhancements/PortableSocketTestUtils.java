@@ -0,0 +1,83 @@
+package com.clumd.projects.java_common_utils.base_enhancements;
+
+import lombok.NoArgsConstructor;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.net.URLClassLoader;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shared by the tests of anything built on {@link PortableSocket}. This lives alongside them rather than with the NetworkingTestUtils, as
+ * connecting two sockets within the JVM needs the package private {@link InJvmSocket}.
+ */
+@NoArgsConstructor
+final class PortableSocketTestUtils {
+
+    /**
+     * The {@link BinaryPortableSocketCodec}, counting how many values it has been asked to encode.
+     */
+    static final class CountingCodec implements PortableSocketCodec {
+        private final PortableSocketCodec delegate = new BinaryPortableSocketCodec();
+        private final AtomicInteger encodes = new AtomicInteger();
+
+        int getEncodes() {
+            return encodes.get();
+        }
+
+        @Override
+        public String getName() {
+            return delegate.getName();
+        }
+
+        @Override
+        public void encode(final Object value, final DataOutputStream out) throws IOException {
+            encodes.incrementAndGet();
+            delegate.encode(value, out);
+        }
+
+        @Override
+        public Object decode(final DataInputStream in, final URLClassLoader classLoader) throws IOException, ClassNotFoundException {
+            return delegate.decode(in, classLoader);
+        }
+
+        @Override
+        public Object decode(
+                final DataInputStream in,
+                final URLClassLoader classLoader,
+                final ResolvedClassCache resolvedClassCache,
+                final DeserialisationLimits deserialisationLimits
+        ) throws IOException, ClassNotFoundException {
+            return delegate.decode(in, classLoader, resolvedClassCache, deserialisationLimits);
+        }
+    }
+
+    /**
+     * Connects two PortableSockets within the JVM, both with the same options and no stream header content.
+     *
+     * @return The connecting end, then the accepted end.
+     */
+    static PortableSocket[] inJvmPair(final PortableSocketOptions options, final String name) throws IOException {
+        return inJvmPair(name, options, new Serializable[0], options, new Serializable[0]);
+    }
+
+    /**
+     * Connects two PortableSockets within the JVM, each with its own options and stream header content.
+     *
+     * @return The connecting end, then the accepted end.
+     */
+    static PortableSocket[] inJvmPair(
+            final String name,
+            final PortableSocketOptions clientOptions,
+            final Serializable[] clientHeader,
+            final PortableSocketOptions serverOptions,
+            final Serializable[] serverHeader
+    ) throws IOException {
+        try (InJvmSocket.Listener listener = InJvmSocket.Listener.bind(InJvmSocketAddress.of(name))) {
+            PortableSocket client = new PortableSocket(clientOptions, InJvmSocketAddress.of(name), clientHeader);
+            return new PortableSocket[]{client, new PortableSocket(serverOptions, listener.accept(), serverHeader)};
+        }
+    }
+}
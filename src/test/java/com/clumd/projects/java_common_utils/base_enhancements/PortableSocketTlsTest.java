@@ -0,0 +1,160 @@
+package com.clumd.projects.java_common_utils.base_enhancements;
+
+import com.clumd.projects.java_common_utils.NetworkingTestUtils;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLHandshakeException;
+import javax.net.ssl.TrustManagerFactory;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyStore;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PortableSocketTlsTest {
+
+    private static final char[] PASSWORD = "changeit".toCharArray();
+
+    @TempDir
+    static Path keystores;
+
+    private static SSLContext forLoopbackAddress;
+    private static SSLContext forLocalhostOnly;
+
+    @BeforeAll
+    static void generateSelfSignedKeystores() throws Exception {
+        forLoopbackAddress = selfSigned("loopback", "ip:127.0.0.1,dns:localhost");
+        forLocalhostOnly = selfSigned("localhost", "dns:localhost");
+    }
+
+    /**
+     * Generates a keystore holding a single self-signed certificate, and builds a context which both presents it, and trusts only it.
+     */
+    private static SSLContext selfSigned(final String name, final String subjectAlternativeNames) throws Exception {
+        Path keystore = keystores.resolve(name + ".p12");
+        Process keytool = new ProcessBuilder(
+                Path.of(System.getProperty("java.home"), "bin", "keytool").toString(),
+                "-genkeypair", "-alias", name, "-keyalg", "EC", "-groupname", "secp256r1", "-validity", "1",
+                "-dname", "CN=localhost", "-ext", "SAN=" + subjectAlternativeNames,
+                "-storetype", "PKCS12", "-keystore", keystore.toString(), "-storepass", new String(PASSWORD)
+        ).redirectErrorStream(true).start();
+        keytool.getInputStream().transferTo(OutputStream.nullOutputStream());
+        assertTrue(keytool.waitFor(30, TimeUnit.SECONDS));
+        assertEquals(0, keytool.exitValue());
+
+        KeyStore loaded = KeyStore.getInstance("PKCS12");
+        try (InputStream in = Files.newInputStream(keystore)) {
+            loaded.load(in, PASSWORD);
+        }
+        KeyManagerFactory keyManagers = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagers.init(loaded, PASSWORD);
+        TrustManagerFactory trustManagers = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        trustManagers.init(loaded);
+        SSLContext context = SSLContext.getInstance("TLS");
+        context.init(keyManagers.getKeyManagers(), trustManagers.getTrustManagers(), null);
+        return context;
+    }
+
+    private static PortableServerSocket echoServer(final PortableSocketOptions options) throws Exception {
+        return new PortableServerSocket(
+                PortableServerSocketConfiguration.builder()
+                        .bindAddress(InetAddress.getLoopbackAddress())
+                        .port(NetworkingTestUtils.FIRST_SERVER_PORT)
+                        .portableSocketOptions(options)
+                        .build(),
+                portableSocket -> portableSocket.send(portableSocket.receive())
+        ).start();
+    }
+
+    @Test
+    void test_connections_are_secured_and_reconnecting_resumes_the_session() throws Exception {
+        PortableSocketOptions options = PortableSocketOptions.builder()
+                .tls(PortableSocketTls.using(forLoopbackAddress))
+                .collectTransportMetrics(true)
+                .build();
+        try (PortableServerSocket server = echoServer(options)) {
+            try (PortableSocket first = new PortableSocket(options, "127.0.0.1", server.getLocalPort())) {
+                assertTrue(first.isTls());
+                assertEquals("TLSv1.3", first.getTlsSession().getProtocol());
+                first.send("secret");
+                assertEquals("secret", first.receive());
+
+                assertEquals(1, first.getTransportMetrics().getHandshakeTime().getCount());
+                assertEquals(0, first.getTransportMetrics().getResumedHandshakes());
+            }
+
+            try (PortableSocket second = new PortableSocket(options, "127.0.0.1", server.getLocalPort())) {
+                second.send("again");
+                assertEquals("again", second.receive());
+
+                assertEquals(1, second.getTransportMetrics().getHandshakeTime().getCount());
+                assertEquals(1, second.getTransportMetrics().getResumedHandshakes());
+            }
+        }
+    }
+
+    @Test
+    void test_a_peer_which_is_not_trusted_is_refused() throws Exception {
+        PortableSocketOptions serverOptions = PortableSocketOptions.builder().tls(PortableSocketTls.using(forLoopbackAddress)).build();
+        PortableSocketOptions untrusting = PortableSocketOptions.builder().tls(PortableSocketTls.using(forLocalhostOnly)).build();
+        try (PortableServerSocket server = echoServer(serverOptions)) {
+            assertThrows(SSLHandshakeException.class, () -> new PortableSocket(untrusting, "127.0.0.1", server.getLocalPort()));
+        }
+    }
+
+    @Test
+    void test_the_peer_certificate_must_match_the_hostname_unless_told_otherwise() throws Exception {
+        PortableSocketOptions options = PortableSocketOptions.builder().tls(PortableSocketTls.using(forLocalhostOnly)).build();
+        PortableSocketOptions withoutHostnameCheck = PortableSocketOptions.builder()
+                .tls(PortableSocketTls.builder().sslContext(forLocalhostOnly).verifyHostname(false).build())
+                .build();
+        try (PortableServerSocket server = echoServer(options)) {
+            assertThrows(SSLHandshakeException.class, () -> new PortableSocket(options, "127.0.0.1", server.getLocalPort()));
+
+            try (PortableSocket unchecked = new PortableSocket(withoutHostnameCheck, "127.0.0.1", server.getLocalPort())) {
+                unchecked.send("unchecked");
+                assertEquals("unchecked", unchecked.receive());
+            }
+        }
+    }
+
+    @Test
+    void test_shutdown_closes_a_connection_still_part_way_through_its_handshake() throws Exception {
+        PortableServerSocket server = echoServer(PortableSocketOptions.builder().tls(PortableSocketTls.using(forLoopbackAddress)).build());
+        try (Socket silent = new Socket(InetAddress.getLoopbackAddress(), server.getLocalPort())) {
+            // Never starts the handshake, so the server's connection thread waits on it until its read timeout.
+            NetworkingTestUtils.sleep();
+            assertFalse(server.shutdown(100));
+
+            // Well before the server would have given up on the handshake by itself.
+            silent.setSoTimeout(1000);
+            silent.getInputStream().readAllBytes();
+        }
+    }
+
+    @Test
+    void test_plain_connections_have_no_tls_session() throws Exception {
+        try (PortableServerSocket server = echoServer(PortableSocketOptions.defaults());
+             PortableSocket plain = new PortableSocket(
+                     PortableSocketOptions.builder().collectTransportMetrics(true).build(), "127.0.0.1", NetworkingTestUtils.FIRST_SERVER_PORT
+             )
+        ) {
+            assertFalse(plain.isTls());
+            assertNull(plain.getTlsSession());
+            assertEquals(0, plain.getTransportMetrics().getHandshakeTime().getCount());
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.clumd.projects.java_common_utils.base_enhancements;
+
+import com.clumd.projects.java_common_utils.NetworkingTestUtils;
+import com.clumd.projects.java_common_utils.base_enhancements.PortableSocketTestUtils.CountingCodec;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.ServerSocket;
+
+import static com.clumd.projects.java_common_utils.base_enhancements.PortableSocketTestUtils.inJvmPair;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PreSerialisedMessageCacheTest {
+
+    @Test
+    void test_the_same_object_is_only_encoded_once() throws Exception {
+        CountingCodec codec = new CountingCodec();
+        PortableSocketOptions options = PortableSocketOptions.builder().codec(codec).build();
+        PreSerialisedMessageCache cache = new PreSerialisedMessageCache(codec);
+
+        try (ServerSocket testServerSocket = new ServerSocket(NetworkingTestUtils.FIRST_SERVER_PORT, 0, InetAddress.getLoopbackAddress());
+             PortableSocket sender = new PortableSocket(options, "127.0.0.1", NetworkingTestUtils.FIRST_SERVER_PORT);
+             PortableSocket receiver = new PortableSocket(options, testServerSocket.accept())
+        ) {
+            int[] table = {1, 2, 3};
+            for (int i = 0; i < 3; i++) {
+                cache.send(sender, table);
+            }
+            // Equal, but a different object, so remembered separately.
+            cache.send(sender, table.clone());
+            sender.send("uncached");
+
+            for (int i = 0; i < 4; i++) {
+                assertArrayEquals(table, (int[]) receiver.receive());
+            }
+            assertEquals("uncached", receiver.receive());
+            assertEquals(3, codec.getEncodes());
+            assertEquals(2, cache.getHitCount());
+            assertEquals(2, cache.getMissCount());
+            assertEquals(2, cache.getCachedCount());
+
+            cache.invalidateAll();
+            assertEquals(0, cache.getCachedCount());
+            assertEquals(0, cache.getCachedBytes());
+        }
+    }
+
+    @Test
+    void test_a_new_version_is_encoded_again_and_replaces_the_old_one() throws Exception {
+        CountingCodec codec = new CountingCodec();
+        PreSerialisedMessageCache cache = new PreSerialisedMessageCache(codec);
+        PortableSocket[] pair = inJvmPair(PortableSocketOptions.builder().codec(codec).copyInJvmObjects(true).build(), "cache-versions");
+
+        try (PortableSocket sender = pair[0]; PortableSocket receiver = pair[1]) {
+            String first = "first";
+            cache.send(sender, "config", 1, first);
+            cache.send(sender, "config", 1, first);
+            cache.send(sender, "config", 2, "second");
+            cache.send(sender, "config", 2, "second");
+            cache.invalidate("config");
+            cache.send(sender, "config", 2, "second");
+
+            Object received = receiver.receive();
+            assertEquals(first, received);
+            assertNotSame(first, received);
+            assertEquals("first", receiver.receive());
+            for (int i = 0; i < 3; i++) {
+                assertEquals("second", receiver.receive());
+            }
+            assertEquals(3, codec.getEncodes());
+            assertEquals(1, cache.getCachedCount());
+        }
+    }
+
+    @Test
+    void test_the_cache_never_holds_more_than_its_limit() throws Exception {
+        CountingCodec codec = new CountingCodec();
+        PortableSocket[] pair = inJvmPair(PortableSocketOptions.builder().codec(codec).copyInJvmObjects(true).build(), "cache-limit");
+        long frameSize = PortableSocket.encodeFrame(codec, new byte[100]).length;
+        PreSerialisedMessageCache cache = new PreSerialisedMessageCache(codec, frameSize * 2);
+
+        try (PortableSocket sender = pair[0]; PortableSocket receiver = pair[1]) {
+            for (int key = 0; key < 3; key++) {
+                cache.send(sender, key, 0, new byte[100]);
+            }
+            assertEquals(2, cache.getCachedCount());
+            assertEquals(frameSize * 2, cache.getCachedBytes());
+            assertEquals(1, cache.getEvictionCount());
+
+            // The least recently sent was evicted, so the two most recent are still there.
+            cache.send(sender, 2, 0, new byte[100]);
+            cache.send(sender, 1, 0, new byte[100]);
+            assertEquals(2, cache.getHitCount());
+
+            // Too large to ever fit, so just sent, and replaces nothing.
+            cache.send(sender, "large", 0, new byte[1000]);
+            assertEquals(2, cache.getCachedCount());
+
+            for (int i = 0; i < 5; i++) {
+                receiver.receive();
+            }
+            assertEquals(1000, ((byte[]) receiver.receive()).length);
+        }
+        assertThrows(IllegalArgumentException.class, () -> new PreSerialisedMessageCache(codec, 0));
+    }
+
+    @Test
+    void test_sockets_which_cannot_use_the_cached_bytes_are_sent_the_value_as_normal() throws Exception {
+        CountingCodec codec = new CountingCodec();
+        PreSerialisedMessageCache cache = new PreSerialisedMessageCache(codec);
+
+        try (ServerSocket testServerSocket = new ServerSocket(NetworkingTestUtils.FIRST_SERVER_PORT, 0, InetAddress.getLoopbackAddress());
+             PortableSocket sender = new PortableSocket(PortableSocketOptions.defaults(), "127.0.0.1", NetworkingTestUtils.FIRST_SERVER_PORT);
+             PortableSocket receiver = new PortableSocket(PortableSocketOptions.defaults(), testServerSocket.accept())
+        ) {
+            cache.send(sender, "table", 1, "value");
+            assertEquals("value", receiver.receive());
+            assertEquals(0, codec.getEncodes());
+            assertEquals(0, cache.getCachedCount());
+            assertEquals(0, cache.getMissCount());
+        }
+    }
+}
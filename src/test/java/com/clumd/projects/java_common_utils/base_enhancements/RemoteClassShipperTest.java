@@ -0,0 +1,268 @@
+package com.clumd.projects.java_common_utils.base_enhancements;
+
+import com.clumd.projects.java_common_utils.NetworkingTestUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.tools.ToolProvider;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.StreamCorruptedException;
+import java.lang.reflect.Array;
+import java.net.InetAddress;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RemoteClassShipperTest {
+
+    @TempDir
+    private Path directory;
+
+    private Path classes;
+    private Object greeting;
+    private Object greetings;
+    private PortableSocketOptions options;
+
+    @BeforeEach
+    void setup() throws Exception {
+        // Compiled here, so that only the sending end's class loader can load them.
+        Path sources = Files.createDirectories(directory.resolve("sources").resolve("shipped"));
+        classes = Files.createDirectories(directory.resolve("classes"));
+        Path base = Files.writeString(sources.resolve("Base.java"),
+                "package shipped; public class Base implements java.io.Serializable { protected String name = \"base\"; }");
+        Path greetingSource = Files.writeString(sources.resolve("Greeting.java"),
+                "package shipped; public class Greeting extends Base { private final String text; "
+                        + "public Greeting(String text) { this.text = text; } "
+                        + "@Override public String toString() { return name + \": \" + text; } }");
+        assertEquals(0, ToolProvider.getSystemJavaCompiler().run(null, null, null,
+                "-d", classes.toString(), base.toString(), greetingSource.toString()));
+
+        URLClassLoader senderLoader = new URLClassLoader(new URL[]{classes.toUri().toURL()}, getClass().getClassLoader());
+        Class<?> greetingClass = senderLoader.loadClass("shipped.Greeting");
+        greeting = greetingClass.getConstructor(String.class).newInstance("hello");
+        greetings = Array.newInstance(greetingClass, 1);
+        Array.set(greetings, 0, greetingClass.getConstructor(String.class).newInstance("in an array"));
+
+        options = PortableSocketOptions.builder()
+                .remoteClassShipping(RemoteClassShipping.builder().cacheDirectory(directory.resolve("cache")).build())
+                .build();
+    }
+
+    private PortableSocket receiveFromServer(final List<Object> expectedStrings) throws Exception {
+        return receiveFromServer(expectedStrings, null);
+    }
+
+    private PortableSocket receiveFromServer(final List<Object> expectedStrings, final URLClassLoader componentLoader) throws Exception {
+        PortableSocket client = new PortableSocket(options, "127.0.0.1", NetworkingTestUtils.FIRST_SERVER_PORT);
+        if (componentLoader != null) {
+            client.initialiseInputStreamWithComponentLoader(componentLoader);
+        }
+        List<?> received = (List<?>) client.receive();
+        assertEquals(expectedStrings.get(0), received.get(0).toString());
+        assertEquals(expectedStrings.get(1), received.get(1));
+        assertEquals(expectedStrings.get(2), Array.get(received.get(2), 0).toString());
+        assertEquals("shipped.Greeting", received.get(0).getClass().getName());
+        assertNotSame(greeting.getClass(), received.get(0).getClass());
+
+        // Sent while the client was waiting on class files, so held back until now.
+        assertEquals("after", client.receive());
+        client.send("done");
+        return client;
+    }
+
+    private URLClassLoader restartedApplicationLoader() throws IOException {
+        // Any loader with URLs of its own is a different application as far as sharing fetched classes goes.
+        return new URLClassLoader(new URL[]{directory.resolve("application").toUri().toURL()}, getClass().getClassLoader());
+    }
+
+    private PortableServerSocket startServer() throws IOException {
+        return new PortableServerSocket(
+                PortableServerSocketConfiguration.builder()
+                        .bindAddress(InetAddress.getLoopbackAddress())
+                        .port(NetworkingTestUtils.FIRST_SERVER_PORT)
+                        .portableSocketOptions(options)
+                        .build(),
+                pss -> {
+                    pss.send(List.of(greeting, "plain", greetings));
+                    pss.send("after");
+                    // Answers the requests for class files while waiting.
+                    pss.receive();
+                }).start();
+    }
+
+    @Test
+    void test_missing_classes_are_fetched_once_then_served_from_the_disk_cache() throws Exception {
+        List<Object> expected = List.of("base: hello", "plain", "base: in an array");
+
+        try (PortableServerSocket server = startServer(); PortableSocket client = receiveFromServer(expected)) {
+            assertEquals(2, client.getShippedClassesFetched());
+            assertEquals(0, client.getShippedClassesLoadedFromDiskCache());
+        }
+
+        // As if restarted, with nothing but the disk cache in common with the first connection.
+        try (PortableServerSocket server = startServer(); PortableSocket client = receiveFromServer(expected, restartedApplicationLoader())) {
+            assertEquals(0, client.getShippedClassesFetched());
+            assertEquals(2, client.getShippedClassesLoadedFromDiskCache());
+        }
+
+        // A corrupted class file fails its hash check, so is fetched again.
+        try (Stream<Path> cached = Files.walk(directory.resolve("cache"))) {
+            Path first = cached.filter(path -> path.toString().endsWith(".class")).findFirst().orElseThrow();
+            Files.write(first, new byte[]{1, 2, 3});
+        }
+        try (PortableServerSocket server = startServer(); PortableSocket client = receiveFromServer(expected, restartedApplicationLoader())) {
+            assertEquals(1, client.getShippedClassesFetched());
+            assertEquals(1, client.getShippedClassesLoadedFromDiskCache());
+        }
+    }
+
+    @Test
+    void test_reconnecting_gives_back_the_same_classes() throws Exception {
+        Class<?> firstReceived;
+        try (PortableServerSocket server = startServer();
+             PortableSocket client = new PortableSocket(options, "127.0.0.1", NetworkingTestUtils.FIRST_SERVER_PORT)
+        ) {
+            firstReceived = ((List<?>) client.receive()).get(0).getClass();
+        }
+
+        // Held onto by an instance received earlier, so neither fetched nor defined again, and instances from either connection are castable.
+        try (PortableServerSocket server = startServer();
+             PortableSocket client = new PortableSocket(options, "127.0.0.1", NetworkingTestUtils.FIRST_SERVER_PORT)
+        ) {
+            assertSame(firstReceived, ((List<?>) client.receive()).get(0).getClass());
+            assertEquals(0, client.getShippedClassesFetched());
+            assertEquals(0, client.getShippedClassesLoadedFromDiskCache());
+        }
+    }
+
+    @Test
+    void test_classes_are_not_fetched_without_class_shipping() throws Exception {
+        options = PortableSocketOptions.defaults();
+        try (PortableServerSocket server = startServer();
+             PortableSocket client = new PortableSocket(options, "127.0.0.1", NetworkingTestUtils.FIRST_SERVER_PORT)
+        ) {
+            assertThrows(ClassNotFoundException.class, client::receive);
+            assertEquals(0, client.getShippedClassesFetched());
+        }
+    }
+
+    private PortableServerSocket startServerWhichNeverAnswers(final CountDownLatch done, final PortableSocketHandler afterGreeting)
+            throws IOException {
+        return new PortableServerSocket(
+                PortableServerSocketConfiguration.builder()
+                        .bindAddress(InetAddress.getLoopbackAddress())
+                        .port(NetworkingTestUtils.FIRST_SERVER_PORT)
+                        .portableSocketOptions(options)
+                        .build(),
+                pss -> {
+                    pss.send(greeting);
+                    afterGreeting.handle(pss);
+                    // Never receives, so never answers the requests for class files.
+                    done.await(5, TimeUnit.SECONDS);
+                }).start();
+    }
+
+    private PortableSocketOptions clientOptions(final RemoteClassShipping.RemoteClassShippingBuilder shipping) {
+        return PortableSocketOptions.builder().remoteClassShipping(shipping.cacheDirectory(directory.resolve("cache")).build()).build();
+    }
+
+    @Test
+    void test_fetching_class_files_gives_up_after_the_fetch_timeout() throws Exception {
+        CountDownLatch done = new CountDownLatch(1);
+        try (PortableServerSocket server = startServerWhichNeverAnswers(done, pss -> {});
+             PortableSocket client = new PortableSocket(
+                     clientOptions(RemoteClassShipping.builder().fetchTimeout(Duration.ofMillis(200))), "127.0.0.1",
+                     NetworkingTestUtils.FIRST_SERVER_PORT)
+        ) {
+            client.setFiveSecondTimeout();
+            SocketTimeoutException e = assertThrows(SocketTimeoutException.class, client::receive);
+            assertTrue(e.getMessage().contains("shipped.Greeting"));
+            // The timeout set beforehand is put back.
+            assertEquals(5000, client.setNoTimeout());
+            done.countDown();
+        }
+    }
+
+    @Test
+    void test_fetching_class_files_gives_up_once_too_many_messages_are_held_back() throws Exception {
+        CountDownLatch done = new CountDownLatch(1);
+        try (PortableServerSocket server = startServerWhichNeverAnswers(done, pss -> {
+            for (int i = 0; i < 3; i++) {
+                pss.send("held back " + i);
+            }
+        });
+             PortableSocket client = new PortableSocket(
+                     clientOptions(RemoteClassShipping.builder().maxHeldBackMessages(2)), "127.0.0.1", NetworkingTestUtils.FIRST_SERVER_PORT)
+        ) {
+            IOException e = assertThrows(IOException.class, client::receive);
+            assertEquals(IOException.class, e.getClass());
+            done.countDown();
+        }
+    }
+
+    @Test
+    void test_a_file_arriving_while_fetching_class_files_fails_fast() throws Exception {
+        Path file = Files.writeString(directory.resolve("file.txt"), "raw bytes which are not a serialised object");
+        CountDownLatch done = new CountDownLatch(1);
+        try (PortableServerSocket server = startServerWhichNeverAnswers(done, pss -> pss.sendFile(file));
+             PortableSocket client = new PortableSocket(options, "127.0.0.1", NetworkingTestUtils.FIRST_SERVER_PORT)
+        ) {
+            assertThrows(StreamCorruptedException.class, client::receive);
+            done.countDown();
+        }
+    }
+
+    @Test
+    void test_answers_only_for_classes_it_has_sent_and_accepts_only_what_it_asked_for() throws Exception {
+        byte[] classBytes = Files.readAllBytes(classes.resolve("shipped").resolve("Greeting.class"));
+        String sha256 = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(classBytes));
+        RemoteClassShipper.ClassRequest request = new RemoteClassShipper.ClassRequest("shipped.Greeting", sha256);
+
+        RemoteClassShipper sender = new RemoteClassShipper(options.getRemoteClassShipping());
+        assertNull(sender.answer(request).classBytes());
+        sender.wrap(greeting);
+        assertArrayEquals(classBytes, sender.answer(request).classBytes());
+
+        RemoteClassShipper receiver = new RemoteClassShipper(options.getRemoteClassShipping());
+        RemoteClassShipper.ClassResponse response = sender.answer(request);
+        assertThrows(StreamCorruptedException.class, () -> receiver.accept(response));
+    }
+
+    @Test
+    void test_rejects_class_files_which_do_not_match_their_hash() throws Exception {
+        RemoteClassShipper receiver = new RemoteClassShipper(options.getRemoteClassShipping());
+        RemoteClassShipper sender = new RemoteClassShipper(options.getRemoteClassShipping());
+        URLClassLoader emptyLoader = new URLClassLoader(new URL[]{}, getClass().getClassLoader());
+
+        RemoteClassShipper.MissingClassesException missing = assertThrows(RemoteClassShipper.MissingClassesException.class,
+                () -> receiver.unwrap(sender.wrap(greeting), emptyLoader, options));
+        RemoteClassShipper.MissingClass greetingClass = missing.getMissingClasses().stream()
+                .filter(missingClass -> missingClass.className().equals("shipped.Greeting"))
+                .findFirst().orElseThrow();
+
+        assertThrows(InvalidClassException.class, () -> receiver.accept(
+                new RemoteClassShipper.ClassResponse("shipped.Greeting", greetingClass.sha256(), new byte[]{1, 2, 3})));
+        assertFalse(receiver.hasArrived(greetingClass));
+        assertEquals(0, receiver.getClassesFetched());
+    }
+}
@@ -0,0 +1,87 @@
+package com.clumd.projects.java_common_utils.base_enhancements;
+
+import com.clumd.projects.java_common_utils.models.Pair;
+import org.junit.jupiter.api.Test;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ResolvedClassCacheTest {
+
+    private final ClassLoader loader = ResolvedClassCacheTest.class.getClassLoader();
+
+    @Test
+    void test_only_asks_the_class_loader_once_per_class() throws ClassNotFoundException {
+        ResolvedClassCache cache = new ResolvedClassCache(ResolvedClassCache.DEFAULT_MAX_MISSING_CLASS_NAMES_PER_LOADER);
+
+        assertSame(Pair.class, cache.resolve(Pair.class.getName(), loader));
+        assertSame(Pair.class, cache.resolve(Pair.class.getName(), loader));
+        assertSame(String[].class, cache.resolve(String[].class.getName(), loader));
+
+        assertEquals(2, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getCachedLoaderCount());
+    }
+
+    @Test
+    void test_remembers_missing_classes_up_to_the_limit() {
+        ResolvedClassCache cache = new ResolvedClassCache(1);
+
+        for (int i = 0; i < 3; i++) {
+            assertThrows(ClassNotFoundException.class, () -> cache.resolve("com.example.Missing", loader));
+        }
+        assertEquals(1, cache.getMissCount());
+        assertEquals(2, cache.getHitCount());
+
+        // Over the limit, so looked up every time.
+        for (int i = 0; i < 2; i++) {
+            assertThrows(ClassNotFoundException.class, () -> cache.resolve("com.example.AlsoMissing", loader));
+        }
+        assertEquals(3, cache.getMissCount());
+    }
+
+    @Test
+    void test_invalidate_forgets_missing_classes_even_for_holders_of_the_loader_cache() throws ClassNotFoundException {
+        ResolvedClassCache cache = new ResolvedClassCache(ResolvedClassCache.DEFAULT_MAX_MISSING_CLASS_NAMES_PER_LOADER);
+        ResolvedClassCache.LoaderCache held = cache.cacheFor(loader);
+        assertThrows(ClassNotFoundException.class, () -> held.resolve("com.example.Missing", loader));
+        held.resolve(Pair.class.getName(), loader);
+
+        cache.invalidate(loader);
+        assertEquals(0, cache.getCachedLoaderCount());
+        assertThrows(ClassNotFoundException.class, () -> held.resolve("com.example.Missing", loader));
+        held.resolve(Pair.class.getName(), loader);
+        assertEquals(4, cache.getMissCount());
+        assertEquals(0, cache.getHitCount());
+    }
+
+    @Test
+    void test_does_not_stop_class_loaders_being_unloaded() throws Exception {
+        ResolvedClassCache cache = new ResolvedClassCache(ResolvedClassCache.DEFAULT_MAX_MISSING_CLASS_NAMES_PER_LOADER);
+        resolveThroughThrowawayLoader(cache);
+        assertEquals(1, cache.getCachedLoaderCount());
+
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (cache.getCachedLoaderCount() != 0 && System.nanoTime() < deadline) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        assertEquals(0, cache.getCachedLoaderCount());
+    }
+
+    private static void resolveThroughThrowawayLoader(final ResolvedClassCache cache) throws Exception {
+        // No parent, so that the class is defined by this loader, and holds on to it.
+        try (URLClassLoader throwaway = new URLClassLoader(new URL[]{Path.of("target/classes").toUri().toURL()}, null)) {
+            Class<?> resolved = cache.resolve(Pair.class.getName(), throwaway);
+            assertNotSame(Pair.class, resolved);
+            assertSame(throwaway, resolved.getClassLoader());
+            assertEquals(Pair.class.getName(), resolved.getName());
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.clumd.projects.java_common_utils.base_enhancements;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class SharedClassLoaderRegistryTest {
+
+    private final ClassLoader parent = SharedClassLoaderRegistryTest.class.getClassLoader();
+
+    @Test
+    void test_same_urls_and_parent_share_a_loader_until_the_last_lease_closes() throws Exception {
+        SharedClassLoaderRegistry registry = new SharedClassLoaderRegistry();
+        URL[] urls = {Path.of("target/classes").toUri().toURL()};
+
+        try (SharedClassLoaderRegistry.Lease first = registry.acquire(urls, parent)) {
+            try (SharedClassLoaderRegistry.Lease second = registry.acquire(urls.clone(), parent)) {
+                assertSame(first.getClassLoader(), second.getClassLoader());
+                assertEquals(1, registry.getLoaderCount());
+            }
+            assertEquals(1, registry.getLoaderCount());
+        }
+        assertEquals(0, registry.getLoaderCount());
+
+        // Nobody holds the old loader anymore, so a new one is made.
+        try (SharedClassLoaderRegistry.Lease first = registry.acquire(urls, parent);
+             SharedClassLoaderRegistry.Lease again = registry.acquire(urls, parent)) {
+            assertSame(first.getClassLoader(), again.getClassLoader());
+        }
+    }
+
+    @Test
+    void test_different_urls_or_parents_get_different_loaders() throws Exception {
+        SharedClassLoaderRegistry registry = new SharedClassLoaderRegistry();
+        URL classes = Path.of("target/classes").toUri().toURL();
+        URL testClasses = Path.of("target/test-classes").toUri().toURL();
+
+        try (SharedClassLoaderRegistry.Lease none = registry.acquire(new URL[]{}, parent);
+             SharedClassLoaderRegistry.Lease noneWithoutParent = registry.acquire(new URL[]{}, null);
+             SharedClassLoaderRegistry.Lease both = registry.acquire(new URL[]{classes, testClasses}, parent);
+             SharedClassLoaderRegistry.Lease reversed = registry.acquire(new URL[]{testClasses, classes}, parent)
+        ) {
+            assertNotSame(none.getClassLoader(), noneWithoutParent.getClassLoader());
+            assertNotSame(both.getClassLoader(), reversed.getClassLoader());
+            assertSame(parent, none.getClassLoader().getParent());
+            assertEquals(4, registry.getLoaderCount());
+        }
+        assertEquals(0, registry.getLoaderCount());
+    }
+
+    @Test
+    void test_closing_a_lease_twice_only_gives_back_one_reference() {
+        SharedClassLoaderRegistry registry = new SharedClassLoaderRegistry();
+
+        SharedClassLoaderRegistry.Lease kept = registry.acquire(new URL[]{}, parent);
+        SharedClassLoaderRegistry.Lease closedTwice = registry.acquire(new URL[]{}, parent);
+        URLClassLoader loader = kept.getClassLoader();
+        closedTwice.close();
+        closedTwice.close();
+        assertEquals(1, registry.getLoaderCount());
+
+        kept.close();
+        assertEquals(0, registry.getLoaderCount());
+        assertNotSame(loader, registry.acquire(new URL[]{}, parent).getClassLoader());
+    }
+}
@@ -0,0 +1,47 @@
+package com.clumd.projects.java_common_utils.base_enhancements;
+
+import com.clumd.projects.java_common_utils.NetworkingTestUtils;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimeoutAwareChannelReaderTest {
+
+    @Test
+    void test_reading_waits_up_to_the_read_timeout_whether_or_not_the_channel_blocks() throws Exception {
+        try (ServerSocketChannel listening = ServerSocketChannel.open()) {
+            listening.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), NetworkingTestUtils.FIRST_SERVER_PORT));
+            for (boolean blocking : new boolean[]{true, false}) {
+                try (SocketChannel writer = SocketChannel.open(listening.getLocalAddress());
+                     SocketChannel reading = listening.accept()
+                ) {
+                    reading.configureBlocking(blocking);
+                    reading.socket().setSoTimeout(100);
+                    ByteBuffer buffer = ByteBuffer.allocate(16);
+
+                    try (TimeoutAwareChannelReader reader = new TimeoutAwareChannelReader(reading.socket())) {
+                        assertTrue(reader.isOpen());
+                        assertThrows(SocketTimeoutException.class, () -> reader.read(buffer));
+
+                        writer.write(ByteBuffer.wrap(new byte[]{1, 2, 3}));
+                        assertEquals(3, reader.read(buffer));
+
+                        // Only once the remote end has gone, rather than whenever nothing has arrived yet.
+                        writer.close();
+                        assertEquals(-1, reader.read(buffer));
+                    }
+                    assertTrue(reading.isOpen(), "Closing the reader should leave the channel open.");
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.clumd.projects.java_common_utils.base_enhancements;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TransportMetricsTest {
+
+    @Test
+    void test_each_socket_counts_towards_its_aggregate() {
+        TransportMetrics aggregate = new TransportMetrics(null);
+        TransportMetrics first = new TransportMetrics(aggregate);
+        TransportMetrics second = new TransportMetrics(aggregate);
+
+        first.recordObjectSent(10);
+        first.recordBytesSent(100, 5);
+        first.recordTimeout();
+        second.recordObjectReceived(20);
+        second.recordBytesReceived(200);
+        second.recordBytesReceived(50);
+        second.recordCorruption();
+        first.recordHandshake(30, false);
+        second.recordHandshake(3, true);
+
+        assertEquals(1, first.getObjectsSent());
+        assertEquals(100, first.getBytesSent());
+        assertEquals(1, first.getTimeouts());
+        assertEquals(0, first.getObjectsReceived());
+        assertEquals(250, second.getBytesReceived());
+        assertEquals(1, second.getCorruptions());
+        assertEquals(0, first.getResumedHandshakes());
+        assertEquals(1, second.getResumedHandshakes());
+
+        assertEquals(1, aggregate.getObjectsSent());
+        assertEquals(1, aggregate.getObjectsReceived());
+        assertEquals(100, aggregate.getBytesSent());
+        assertEquals(250, aggregate.getBytesReceived());
+        assertEquals(1, aggregate.getTimeouts());
+        assertEquals(1, aggregate.getCorruptions());
+        assertEquals(10, aggregate.getSerialisationTime().getTotalNanos());
+        assertEquals(20, aggregate.getDeserialisationTime().getTotalNanos());
+        assertEquals(5, aggregate.getWriteBlockedTime().getMaxNanos());
+        assertEquals(2, aggregate.getHandshakeTime().getCount());
+        assertEquals(1, aggregate.getResumedHandshakes());
+    }
+
+    @Test
+    void test_sockets_count_towards_the_process_wide_aggregate() {
+        long sentBefore = TransportMetrics.aggregate().getObjectsSent();
+
+        TransportMetrics.forSocket().recordObjectSent(1);
+
+        // Anything else running at the same time may be adding to it too.
+        assertTrue(TransportMetrics.aggregate().getObjectsSent() >= sentBefore + 1);
+    }
+}
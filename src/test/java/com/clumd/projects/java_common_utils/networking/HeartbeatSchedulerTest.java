@@ -0,0 +1,204 @@
+package com.clumd.projects.java_common_utils.networking;
+
+import com.clumd.projects.java_common_utils.NetworkingTestUtils;
+import com.clumd.projects.java_common_utils.base_enhancements.PortableSocket;
+import com.clumd.projects.java_common_utils.base_enhancements.PortableSocketOptions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HeartbeatSchedulerTest {
+
+    private static final PortableSocketOptions OPTIONS = PortableSocketOptions.builder().build();
+
+    private ServerSocket serverSocket;
+    private HeartbeatScheduler heartbeats;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        serverSocket = new ServerSocket(NetworkingTestUtils.FIRST_SERVER_PORT, 50, InetAddress.getLoopbackAddress());
+        heartbeats = new HeartbeatScheduler(HeartbeatSchedulerConfiguration.builder()
+                .interval(Duration.ofMillis(100))
+                .maxMissedPongs(3)
+                .build());
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        heartbeats.close();
+        serverSocket.close();
+    }
+
+    private CompletableFuture<Socket> accept() {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return serverSocket.accept();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    @Test
+    void test_responsive_peer_answers_pings_and_is_kept_open() throws Exception {
+        CompletableFuture<Socket> accepted = accept();
+        try (
+                PortableSocket client = new PortableSocket(OPTIONS, "127.0.0.1", NetworkingTestUtils.FIRST_SERVER_PORT);
+                PortableSocket peer = new PortableSocket(OPTIONS, accepted.get(5, TimeUnit.SECONDS))
+        ) {
+            peer.setNoTimeout();
+            CompletableFuture<Object> peerReceived = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return peer.receive();
+                } catch (IOException | ClassNotFoundException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            AtomicInteger dead = new AtomicInteger();
+            heartbeats.register(client, new HeartbeatListener() {
+                @Override
+                public void onPeerDead(final PortableSocket portableSocket, final int missedPongs) {
+                    dead.incrementAndGet();
+                }
+            });
+
+            Thread.sleep(1000);
+            assertEquals(0, dead.get());
+            assertFalse(client.isClosed());
+            assertEquals(1, heartbeats.getMonitoredCount());
+            assertTrue(client.getUnreadByteCount() > 0, "The pongs should be waiting to be read.");
+
+            // The pings are never handed to the peer, and the pongs are never handed back to the client.
+            client.send("from client");
+            assertEquals("from client", peerReceived.get(5, TimeUnit.SECONDS));
+            peer.send("from peer");
+            assertEquals("from peer", client.receive());
+            assertTrue(client.getPongsReceived() > 0);
+        }
+    }
+
+    @Test
+    void test_unresponsive_peer_is_closed_after_max_missed_pongs() throws Exception {
+        CompletableFuture<Socket> accepted = accept();
+        try (
+                PortableSocket client = new PortableSocket(OPTIONS, "127.0.0.1", NetworkingTestUtils.FIRST_SERVER_PORT);
+                Socket silentPeer = accepted.get(5, TimeUnit.SECONDS)
+        ) {
+            CountDownLatch dead = new CountDownLatch(1);
+            AtomicInteger missed = new AtomicInteger();
+            AtomicInteger missedWhenDead = new AtomicInteger();
+            heartbeats.register(client, new HeartbeatListener() {
+                @Override
+                public void onMissedPong(final PortableSocket portableSocket, final int missedPongs) {
+                    missed.incrementAndGet();
+                }
+
+                @Override
+                public void onPeerDead(final PortableSocket portableSocket, final int missedPongs) {
+                    missedWhenDead.set(missedPongs);
+                    dead.countDown();
+                }
+            });
+
+            assertTrue(dead.await(5, TimeUnit.SECONDS));
+            assertEquals(2, missed.get());
+            assertEquals(3, missedWhenDead.get());
+            assertTrue(client.isClosed());
+            assertEquals(0, heartbeats.getMonitoredCount());
+            assertTrue(silentPeer.getInputStream().available() > 0, "The peer should have been sent pings it never answered.");
+        }
+    }
+
+    @Test
+    void test_failed_ping_is_reported_from_the_ticker_thread() throws Exception {
+        CompletableFuture<Socket> accepted = accept();
+        try (
+                PortableSocket client = new PortableSocket(OPTIONS, "127.0.0.1", NetworkingTestUtils.FIRST_SERVER_PORT) {
+                    @Override
+                    public void sendPing() throws IOException {
+                        throw new IOException("Send buffer gone.");
+                    }
+                };
+                Socket silentPeer = accepted.get(5, TimeUnit.SECONDS)
+        ) {
+            CountDownLatch dead = new CountDownLatch(1);
+            AtomicReference<String> reportedFrom = new AtomicReference<>();
+            heartbeats.register(client, new HeartbeatListener() {
+                @Override
+                public void onPeerDead(final PortableSocket portableSocket, final int missedPongs) {
+                    reportedFrom.set(Thread.currentThread().getName());
+                    dead.countDown();
+                }
+            });
+
+            assertTrue(dead.await(5, TimeUnit.SECONDS));
+            assertTrue(reportedFrom.get().contains(":ticker-"), reportedFrom.get());
+            assertTrue(client.isClosed());
+            assertEquals(0, heartbeats.getMonitoredCount());
+        }
+    }
+
+    @Test
+    void test_unregistered_and_closed_connections_stop_being_monitored() throws Exception {
+        CompletableFuture<Socket> accepted = accept();
+        try (
+                PortableSocket client = new PortableSocket(OPTIONS, "127.0.0.1", NetworkingTestUtils.FIRST_SERVER_PORT);
+                Socket silentPeer = accepted.get(5, TimeUnit.SECONDS)
+        ) {
+            AtomicInteger dead = new AtomicInteger();
+            HeartbeatListener listener = new HeartbeatListener() {
+                @Override
+                public void onPeerDead(final PortableSocket portableSocket, final int missedPongs) {
+                    dead.incrementAndGet();
+                }
+            };
+            int headerBytes = silentPeer.getInputStream().available();
+            heartbeats.register(client, listener);
+            // Anything written directly could be interleaved with a ping.
+            assertTrue(client.isHeartbeatsActive());
+            assertThrows(IllegalStateException.class, client::getOutputStream);
+            assertTrue(heartbeats.unregister(client));
+            assertFalse(heartbeats.unregister(client));
+            assertFalse(client.isHeartbeatsActive());
+            client.getOutputStream();
+
+            Thread.sleep(600);
+            assertEquals(0, dead.get());
+            assertFalse(client.isClosed());
+            assertEquals(headerBytes, silentPeer.getInputStream().available());
+
+            heartbeats.register(client, listener);
+            client.close();
+            Thread.sleep(300);
+            assertEquals(0, heartbeats.getMonitoredCount());
+            assertEquals(0, dead.get());
+        }
+    }
+
+    @Test
+    void test_invalid_configuration_is_rejected() {
+        assertThrows(IllegalArgumentException.class, () -> new HeartbeatScheduler(
+                HeartbeatSchedulerConfiguration.builder().interval(Duration.ZERO).build()
+        ));
+        assertThrows(IllegalArgumentException.class, () -> new HeartbeatScheduler(
+                HeartbeatSchedulerConfiguration.builder().maxMissedPongs(0).build()
+        ));
+    }
+}
@@ -0,0 +1,199 @@
+package com.clumd.projects.java_common_utils.networking;
+
+import com.clumd.projects.java_common_utils.NetworkingTestUtils;
+import com.clumd.projects.java_common_utils.base_enhancements.ObjectStreamResetPolicy;
+import com.clumd.projects.java_common_utils.base_enhancements.PortableServerSocket;
+import com.clumd.projects.java_common_utils.base_enhancements.PortableServerSocketConfiguration;
+import com.clumd.projects.java_common_utils.base_enhancements.PortableSocket;
+import com.clumd.projects.java_common_utils.base_enhancements.PortableSocketOptions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MultiplexedPortableSocketTest {
+
+    private static final PortableSocketOptions OPTIONS = PortableSocketOptions.builder()
+            .outputStreamResetPolicy(ObjectStreamResetPolicy.perMessage())
+            .build();
+
+    private PortableServerSocket server;
+    private CountDownLatch interruptedHandlers;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        interruptedHandlers = new CountDownLatch(1);
+        MultiplexedRequestHandler handler = request -> {
+            if (request instanceof Integer delayInMs) {
+                try {
+                    Thread.sleep(delayInMs);
+                } catch (InterruptedException e) {
+                    interruptedHandlers.countDown();
+                    throw e;
+                }
+                return delayInMs;
+            }
+            if ("fail".equals(request)) {
+                throw new IllegalArgumentException("told to fail");
+            }
+            return request;
+        };
+        server = new PortableServerSocket(
+                PortableServerSocketConfiguration.builder()
+                        .bindAddress(InetAddress.getLoopbackAddress())
+                        .port(NetworkingTestUtils.FIRST_SERVER_PORT)
+                        .portableSocketOptions(OPTIONS)
+                        .drainTimeout(Duration.ZERO)
+                        .build(),
+                portableSocket -> {
+                    try (MultiplexedPortableSocket multiplexed = new MultiplexedPortableSocket(
+                            portableSocket, MultiplexedPortableSocketConfiguration.builder().requestHandler(handler).build()
+                    )) {
+                        multiplexed.awaitClose();
+                    }
+                }
+        ).start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.close();
+    }
+
+    private static MultiplexedPortableSocket connect() throws IOException {
+        return new MultiplexedPortableSocket(
+                new PortableSocket(OPTIONS, "127.0.0.1", NetworkingTestUtils.FIRST_SERVER_PORT),
+                MultiplexedPortableSocketConfiguration.builder().build()
+        );
+    }
+
+    @Test
+    void test_pipelined_requests_are_matched_to_their_responses() throws Exception {
+        try (MultiplexedPortableSocket client = connect()) {
+            CompletableFuture<Object> slow = client.request(500);
+            CompletableFuture<Object> fast = client.request(10);
+            List<CompletableFuture<Object>> echoes = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                echoes.add(client.request("echo-" + i));
+            }
+
+            assertEquals(10, fast.get(5, TimeUnit.SECONDS));
+            assertFalse(slow.isDone(), "The fast response should not have had to wait for the slow one.");
+            for (int i = 0; i < 50; i++) {
+                assertEquals("echo-" + i, echoes.get(i).get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(500, slow.get(5, TimeUnit.SECONDS));
+            assertEquals(0, client.getPendingRequestCount());
+        }
+    }
+
+    @Test
+    void test_remote_failures_are_reported() throws Exception {
+        try (MultiplexedPortableSocket client = connect()) {
+            ExecutionException e = assertThrows(ExecutionException.class, () -> client.request("fail").get(5, TimeUnit.SECONDS));
+            RemoteRequestException remote = assertInstanceOf(RemoteRequestException.class, e.getCause());
+            assertEquals(IllegalArgumentException.class.getName(), remote.getRemoteExceptionClassName());
+            assertTrue(remote.getMessage().contains("told to fail"));
+
+            // The connection is still perfectly usable afterwards.
+            assertEquals("still here", client.request("still here").get(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    void test_timed_out_requests_are_cancelled_remotely() throws Exception {
+        try (MultiplexedPortableSocket client = connect()) {
+            CompletableFuture<Object> response = client.request(10_000, Duration.ofMillis(100));
+            ExecutionException e = assertThrows(ExecutionException.class, () -> response.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(TimeoutException.class, e.getCause());
+            assertEquals(0, client.getPendingRequestCount());
+            assertTrue(interruptedHandlers.await(5, TimeUnit.SECONDS), "The remote handler should have been interrupted.");
+        }
+    }
+
+    @Test
+    void test_cancelled_requests_are_cancelled_remotely() throws Exception {
+        try (MultiplexedPortableSocket client = connect()) {
+            CompletableFuture<Object> response = client.request(10_000);
+            NetworkingTestUtils.sleep(0.1);
+            assertTrue(response.cancel(true));
+            assertThrows(CancellationException.class, response::join);
+            assertTrue(interruptedHandlers.await(5, TimeUnit.SECONDS), "The remote handler should have been interrupted.");
+            assertEquals("after", client.request("after").get(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    void test_closing_fails_pending_and_future_requests() throws Exception {
+        MultiplexedPortableSocket client = connect();
+        CompletableFuture<Object> pending = client.request(10_000);
+        client.close();
+
+        assertFalse(client.isOpen());
+        ExecutionException e = assertThrows(ExecutionException.class, () -> pending.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IOException.class, e.getCause());
+        e = assertThrows(ExecutionException.class, () -> client.request("too late").get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IOException.class, e.getCause());
+    }
+
+    @Test
+    void test_remote_close_fails_pending_requests() throws Exception {
+        try (MultiplexedPortableSocket client = connect()) {
+            CompletableFuture<Object> pending = client.request(10_000);
+            NetworkingTestUtils.sleep(0.1);
+            server.shutdown(0);
+            ExecutionException e = assertThrows(ExecutionException.class, () -> pending.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(IOException.class, e.getCause());
+            assertFalse(client.isOpen());
+        }
+    }
+
+    @Test
+    void test_either_end_can_make_requests_but_only_if_the_other_has_a_handler() throws Exception {
+        try (ServerSocket serverSocket = new ServerSocket(NetworkingTestUtils.SECOND_SERVER_PORT, 50, InetAddress.getLoopbackAddress())) {
+            CompletableFuture<Socket> accepted = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return serverSocket.accept();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            try (
+                    MultiplexedPortableSocket withHandler = new MultiplexedPortableSocket(
+                            new PortableSocket(OPTIONS, "127.0.0.1", NetworkingTestUtils.SECOND_SERVER_PORT),
+                            MultiplexedPortableSocketConfiguration.builder().requestHandler(request -> "handled " + request).build()
+                    );
+                    MultiplexedPortableSocket withoutHandler = new MultiplexedPortableSocket(
+                            new PortableSocket(OPTIONS, accepted.get(5, TimeUnit.SECONDS)),
+                            MultiplexedPortableSocketConfiguration.builder().build()
+                    )
+            ) {
+                assertEquals("handled reverse", withoutHandler.request("reverse").get(5, TimeUnit.SECONDS));
+
+                ExecutionException e = assertThrows(ExecutionException.class, () -> withHandler.request("rejected").get(5, TimeUnit.SECONDS));
+                RemoteRequestException remote = assertInstanceOf(RemoteRequestException.class, e.getCause());
+                assertEquals(UnsupportedOperationException.class.getName(), remote.getRemoteExceptionClassName());
+            }
+        }
+    }
+}
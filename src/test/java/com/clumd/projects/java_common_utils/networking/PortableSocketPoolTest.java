@@ -0,0 +1,195 @@
+package com.clumd.projects.java_common_utils.networking;
+
+import com.clumd.projects.java_common_utils.NetworkingTestUtils;
+import com.clumd.projects.java_common_utils.base_enhancements.PortableServerSocket;
+import com.clumd.projects.java_common_utils.base_enhancements.PortableServerSocketConfiguration;
+import com.clumd.projects.java_common_utils.base_enhancements.PortableSocket;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.net.InetAddress;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PortableSocketPoolTest {
+
+    private static final String HOST = "127.0.0.1";
+    private static final int PORT = NetworkingTestUtils.FIRST_SERVER_PORT;
+
+    private PortableServerSocket echoServer;
+
+    @BeforeEach
+    void startEchoServer() throws IOException {
+        echoServer = new PortableServerSocket(
+                PortableServerSocketConfiguration.builder().bindAddress(InetAddress.getLoopbackAddress()).port(PORT).drainTimeout(Duration.ZERO).build(),
+                portableSocket -> {
+                    portableSocket.setNoTimeout();
+                    while (!portableSocket.isClosed()) {
+                        portableSocket.getOutputStream().writeObject(portableSocket.getInputStream().readObject());
+                        portableSocket.getOutputStream().flush();
+                    }
+                }
+        ).start();
+    }
+
+    @AfterEach
+    void stopEchoServer() {
+        echoServer.close();
+    }
+
+    private static void assertEchoes(final PooledPortableSocket pooled, final Object value) throws Exception {
+        PortableSocket portableSocket = pooled.getPortableSocket();
+        portableSocket.getOutputStream().writeObject(value);
+        portableSocket.getOutputStream().flush();
+        assertEquals(value, portableSocket.getInputStream().readObject());
+    }
+
+    @Test
+    void test_invalid_configuration_is_rejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new PortableSocketPool(PortableSocketPoolConfiguration.builder().maxPerKey(0).build()));
+        assertThrows(IllegalArgumentException.class,
+                () -> new PortableSocketPool(PortableSocketPoolConfiguration.builder().maxPerKey(1).minIdlePerKey(2).build()));
+    }
+
+    @Test
+    void test_released_connections_are_reused() throws Exception {
+        try (PortableSocketPool pool = new PortableSocketPool(PortableSocketPoolConfiguration.builder().build())) {
+            PortableSocket first;
+            try (PooledPortableSocket pooled = pool.borrow(HOST, PORT)) {
+                first = pooled.getPortableSocket();
+                assertEchoes(pooled, "one");
+                assertEquals(1, pool.getBorrowedConnectionCount());
+            }
+            assertEquals(1, pool.getIdleConnectionCount());
+
+            try (PooledPortableSocket pooled = pool.borrow(HOST, PORT)) {
+                assertSame(first, pooled.getPortableSocket());
+                assertEchoes(pooled, "two");
+            }
+
+            assertEquals(2, pool.getMetrics().getBorrows());
+            assertEquals(1, pool.getMetrics().getHits());
+            assertEquals(1, pool.getMetrics().getCreations());
+            assertEquals(0.5, pool.getMetrics().getHitRatio());
+        }
+    }
+
+    @Test
+    void test_connections_are_not_shared_between_header_content() throws Exception {
+        try (PortableSocketPool pool = new PortableSocketPool(PortableSocketPoolConfiguration.builder().build())) {
+            PortableSocket withDefaultHeader;
+            try (PooledPortableSocket pooled = pool.borrow(HOST, PORT)) {
+                withDefaultHeader = pooled.getPortableSocket();
+            }
+            try (PooledPortableSocket pooled = pool.borrow(HOST, PORT, (Serializable[]) null)) {
+                assertNotSame(withDefaultHeader, pooled.getPortableSocket());
+            }
+            assertEquals(2, pool.getMetrics().getCreations());
+            assertEquals(2, pool.getIdleConnectionCount());
+        }
+    }
+
+    @Test
+    void test_borrowers_time_out_when_key_is_exhausted() throws Exception {
+        try (PortableSocketPool pool = new PortableSocketPool(
+                PortableSocketPoolConfiguration.builder().maxPerKey(1).borrowTimeout(Duration.ofMillis(100)).build());
+             PooledPortableSocket held = pool.borrow(HOST, PORT)
+        ) {
+            assertThrows(SocketTimeoutException.class, () -> pool.borrow(HOST, PORT));
+            assertEquals(1, pool.getMetrics().getBorrowTimeouts());
+        }
+    }
+
+    @Test
+    void test_invalid_and_invalidated_connections_are_discarded() throws Exception {
+        try (PortableSocketPool pool = new PortableSocketPool(
+                PortableSocketPoolConfiguration.builder().validationOnBorrow(portableSocket -> false).build())) {
+            PortableSocket first;
+            try (PooledPortableSocket pooled = pool.borrow(HOST, PORT)) {
+                first = pooled.getPortableSocket();
+            }
+            try (PooledPortableSocket pooled = pool.borrow(HOST, PORT)) {
+                assertNotSame(first, pooled.getPortableSocket());
+                assertTrue(first.isClosed());
+                pooled.invalidate();
+                assertTrue(pooled.getPortableSocket().isClosed());
+            }
+
+            assertEquals(1, pool.getMetrics().getValidationFailures());
+            assertEquals(0, pool.getIdleConnectionCount());
+            assertEquals(0, pool.getBorrowedConnectionCount());
+        }
+    }
+
+    @Test
+    void test_idle_connections_are_evicted() throws Exception {
+        try (PortableSocketPool pool = new PortableSocketPool(PortableSocketPoolConfiguration.builder()
+                .idleTimeout(Duration.ofMillis(10))
+                .evictionInterval(Duration.ofMillis(20))
+                .build())
+        ) {
+            PortableSocket first;
+            try (PooledPortableSocket pooled = pool.borrow(HOST, PORT)) {
+                first = pooled.getPortableSocket();
+            }
+            NetworkingTestUtils.sleep();
+
+            assertEquals(0, pool.getIdleConnectionCount());
+            assertEquals(1, pool.getMetrics().getEvictions());
+            assertTrue(first.isClosed());
+        }
+    }
+
+    @Test
+    void test_idle_connections_are_replenished_to_minimum() throws Exception {
+        try (PortableSocketPool pool = new PortableSocketPool(PortableSocketPoolConfiguration.builder()
+                .minIdlePerKey(2)
+                .evictionInterval(Duration.ofMillis(20))
+                .build())
+        ) {
+            pool.borrow(HOST, PORT).close();
+            NetworkingTestUtils.sleep();
+
+            assertEquals(2, pool.getIdleConnectionCount());
+            assertEquals(2, pool.getMetrics().getCreations());
+        }
+    }
+
+    @Test
+    void test_replenishing_never_exceeds_the_maximum_per_key() throws Exception {
+        try (PortableSocketPool pool = new PortableSocketPool(PortableSocketPoolConfiguration.builder()
+                .maxPerKey(2)
+                .minIdlePerKey(2)
+                .evictionInterval(Duration.ofMillis(20))
+                .build());
+             PooledPortableSocket held = pool.borrow(HOST, PORT)
+        ) {
+            NetworkingTestUtils.sleep();
+
+            assertEquals(1, pool.getBorrowedConnectionCount());
+            assertEquals(1, pool.getIdleConnectionCount());
+            assertEquals(2, pool.getMetrics().getCreations());
+        }
+    }
+
+    @Test
+    void test_closed_pool_rejects_borrowers() throws Exception {
+        PortableSocketPool pool = new PortableSocketPool(PortableSocketPoolConfiguration.builder().build());
+        PooledPortableSocket outstanding = pool.borrow(HOST, PORT);
+        pool.close();
+
+        outstanding.close();
+        assertTrue(outstanding.getPortableSocket().isClosed());
+        assertThrows(IOException.class, () -> pool.borrow(HOST, PORT));
+    }
+}
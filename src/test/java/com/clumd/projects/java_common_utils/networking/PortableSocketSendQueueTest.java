@@ -0,0 +1,224 @@
+package com.clumd.projects.java_common_utils.networking;
+
+import com.clumd.projects.java_common_utils.NetworkingTestUtils;
+import com.clumd.projects.java_common_utils.base_enhancements.PortableSocket;
+import com.clumd.projects.java_common_utils.base_enhancements.PortableSocketOptions;
+import com.clumd.projects.java_common_utils.base_enhancements.SocketTuning;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.SocketException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PortableSocketSendQueueTest {
+
+    private static final int MESSAGE_SIZE = 64 * 1024;
+
+    private ServerSocket serverSocket;
+    private PortableSocket client;
+    private PortableSocket peer;
+
+    /**
+     * Connects a client to a peer which does not read until told to, over Sockets with small buffers, so that the client's writes soon block.
+     */
+    @BeforeEach
+    void connect() throws Exception {
+        serverSocket = new ServerSocket();
+        serverSocket.setReceiveBufferSize(4096);
+        serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), NetworkingTestUtils.FIRST_SERVER_PORT));
+        CompletableFuture<PortableSocket> accepted = CompletableFuture.supplyAsync(() -> {
+            try {
+                return new PortableSocket(serverSocket.accept());
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        client = new PortableSocket(
+                PortableSocketOptions.builder().socketTuning(SocketTuning.builder().sendBufferSizeInBytes(4096).build()).build(),
+                "127.0.0.1",
+                NetworkingTestUtils.FIRST_SERVER_PORT
+        );
+        peer = accepted.get(5, TimeUnit.SECONDS);
+        peer.setNoTimeout();
+    }
+
+    @AfterEach
+    void disconnect() throws IOException {
+        client.close();
+        peer.close();
+        serverSocket.close();
+    }
+
+    private static byte[] message(final int number) {
+        byte[] message = new byte[MESSAGE_SIZE];
+        message[0] = (byte) number;
+        return message;
+    }
+
+    private List<Integer> readEverythingFromPeer(final int expected) throws Exception {
+        List<Integer> received = new ArrayList<>();
+        while (received.size() < expected) {
+            received.add((int) ((byte[]) peer.receive())[0]);
+        }
+        return received;
+    }
+
+    private static SendQueueConfiguration.SendQueueConfigurationBuilder watermarks() {
+        return SendQueueConfiguration.builder()
+                .highWatermarkInBytes(4L * MESSAGE_SIZE)
+                .lowWatermarkInBytes(MESSAGE_SIZE);
+    }
+
+    @Test
+    void test_blocking_producer_waits_for_slow_consumer_and_is_told_of_writability() throws Exception {
+        List<Boolean> writability = new CopyOnWriteArrayList<>();
+        try (PortableSocketSendQueue queue = new PortableSocketSendQueue(client, watermarks().writabilityListener(writability::add).build())) {
+            CompletableFuture<Void> producer = CompletableFuture.runAsync(() -> {
+                try {
+                    for (int i = 0; i < 20; i++) {
+                        queue.enqueue(message(i));
+                    }
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+
+            Thread.sleep(500);
+            assertFalse(producer.isDone(), "The producer should be blocked by the full queue.");
+            assertFalse(queue.isWritable());
+            assertTrue(queue.getQueuedBytes() >= 4L * MESSAGE_SIZE);
+            assertEquals(List.of(false), writability);
+
+            List<Integer> expected = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                expected.add(i);
+            }
+            assertEquals(expected, readEverythingFromPeer(20));
+            producer.get(5, TimeUnit.SECONDS);
+            assertTrue(queue.awaitDrained(Duration.ofSeconds(5)));
+            assertTrue(queue.isWritable());
+            assertEquals(20, queue.getSentCount());
+            assertEquals(0, queue.getQueuedBytes());
+            assertTrue(writability.size() >= 2);
+            for (int i = 0; i < writability.size(); i++) {
+                assertEquals(i % 2 == 1, writability.get(i), "The writability events should alternate: " + writability);
+            }
+        }
+    }
+
+    @Test
+    void test_fail_fast_rejects_once_over_the_high_watermark() throws Exception {
+        try (PortableSocketSendQueue queue = new PortableSocketSendQueue(
+                client, watermarks().overflowPolicy(SendQueueConfiguration.OverflowPolicy.FAIL_FAST).build()
+        )) {
+            int accepted = 0;
+            SendQueueFullException rejection = null;
+            while (rejection == null && accepted < 1000) {
+                try {
+                    queue.enqueue(message(accepted));
+                    accepted++;
+                } catch (SendQueueFullException e) {
+                    rejection = e;
+                }
+            }
+            assertTrue(rejection != null, "The queue should have filled up.");
+            assertEquals(1, queue.getRejectedCount());
+            assertFalse(queue.isWritable());
+
+            assertEquals(accepted, readEverythingFromPeer(accepted).size());
+            assertTrue(queue.awaitDrained(Duration.ofSeconds(5)));
+            queue.enqueue(message(0));
+        }
+    }
+
+    @Test
+    void test_drop_oldest_keeps_the_queue_under_the_high_watermark() throws Exception {
+        try (PortableSocketSendQueue queue = new PortableSocketSendQueue(
+                client, watermarks().overflowPolicy(SendQueueConfiguration.OverflowPolicy.DROP_OLDEST).build()
+        )) {
+            for (int i = 0; i < 40; i++) {
+                queue.enqueue(message(i));
+                assertTrue(queue.getQueuedBytes() <= 5L * MESSAGE_SIZE, "Only the message being sent may take it over the high watermark.");
+            }
+            assertTrue(queue.getDroppedCount() > 0);
+
+            int delivered = (int) (40 - queue.getDroppedCount());
+            List<Integer> received = readEverythingFromPeer(delivered);
+            assertEquals(39, received.get(received.size() - 1), "The newest message should never be dropped.");
+            assertTrue(queue.awaitDrained(Duration.ofSeconds(5)));
+            assertEquals(delivered, queue.getSentCount());
+        }
+    }
+
+    @Test
+    void test_drop_oldest_becomes_writable_again_once_dropping_reaches_the_low_watermark() throws Exception {
+        List<Boolean> writability = new CopyOnWriteArrayList<>();
+        try (PortableSocketSendQueue queue = new PortableSocketSendQueue(client, SendQueueConfiguration.builder()
+                .highWatermarkInBytes(100)
+                .lowWatermarkInBytes(50)
+                .overflowPolicy(SendQueueConfiguration.OverflowPolicy.DROP_OLDEST)
+                .sizeEstimator(value -> value instanceof Integer size ? size : 0)
+                .writabilityListener(writability::add)
+                .build()
+        )) {
+            // Counts for nothing, but keeps the writer stuck sending it, as the peer is not reading.
+            queue.enqueue(new byte[1024 * 1024]);
+            queue.enqueue(60);
+            queue.enqueue(40);
+            assertFalse(queue.isWritable());
+
+            queue.enqueue(10);
+            assertEquals(50, queue.getQueuedBytes());
+            assertTrue(queue.isWritable(), "Dropping the oldest message took the queue down to its low watermark.");
+            assertEquals(List.of(false, true), writability);
+        }
+    }
+
+    @Test
+    void test_closed_or_failed_queue_rejects_messages() throws Exception {
+        PortableSocketSendQueue queue = new PortableSocketSendQueue(client, watermarks().build());
+        queue.close();
+        assertThrows(SocketException.class, () -> queue.enqueue("closed"));
+
+        try (PortableSocketSendQueue failing = new PortableSocketSendQueue(client, watermarks().build())) {
+            client.close();
+            failing.enqueue("fails to send");
+            IOException e = assertThrows(IOException.class, () -> failing.awaitDrained(Duration.ofSeconds(5)));
+            assertTrue(e.getMessage().contains("could not be sent"), e.getMessage());
+            assertThrows(IOException.class, () -> failing.enqueue("after failure"));
+        }
+    }
+
+    @Test
+    void test_invalid_watermarks_and_default_size_estimate() {
+        assertThrows(IllegalArgumentException.class, () -> new PortableSocketSendQueue(
+                client, SendQueueConfiguration.builder().highWatermarkInBytes(10).lowWatermarkInBytes(20).build()
+        ));
+        int size = PortableSocketSendQueue.serialisedSizeOf(new byte[1000]);
+        assertTrue(size > 1000 && size < 1100, "Was " + size);
+
+        int estimate = PortableSocketSendQueue.estimatedSizeOf(new byte[1000]);
+        assertTrue(estimate > 1000 && estimate < 1100, "Was " + estimate);
+        estimate = PortableSocketSendQueue.estimatedSizeOf(new long[1000]);
+        assertTrue(estimate > 8000 && estimate < 8100, "Was " + estimate);
+        estimate = PortableSocketSendQueue.estimatedSizeOf(List.of("a".repeat(1000), "b".repeat(1000)));
+        assertTrue(estimate > 2000 && estimate < 2200, "Was " + estimate);
+        assertTrue(PortableSocketSendQueue.estimatedSizeOf(null) > 0);
+        assertTrue(PortableSocketSendQueue.estimatedSizeOf(new Object()) > 0);
+    }
+}
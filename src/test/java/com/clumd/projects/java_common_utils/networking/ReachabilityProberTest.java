@@ -0,0 +1,153 @@
+package com.clumd.projects.java_common_utils.networking;
+
+import com.clumd.projects.java_common_utils.NetworkingTestUtils;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReachabilityProberTest {
+
+    private static final int OPEN_PORT = NetworkingTestUtils.FIRST_SERVER_PORT;
+    private static final int CLOSED_PORT = NetworkingTestUtils.SECOND_SERVER_PORT;
+
+    private static ReachabilityProberConfiguration.ReachabilityProberConfigurationBuilder networkOnly() {
+        // Loopback is always local, so skip that shortcut and the ICMP check to exercise the TCP attempts directly.
+        return ReachabilityProberConfiguration.builder().localHostnamesReachable(false).icmpEnabled(false);
+    }
+
+    @Test
+    void test_local_hostnames_are_reachable_without_probing() {
+        try (ReachabilityProber prober = new ReachabilityProber(ReachabilityProberConfiguration.builder().build())) {
+            ReachabilityResult result = prober.probe("localhost", 0).join();
+            assertTrue(result.reachable());
+            assertEquals(ReachabilityResult.Method.LOCAL, result.method());
+        }
+    }
+
+    @Test
+    void test_tcp_probe_of_open_and_closed_ports() throws IOException {
+        try (
+                ServerSocket server = new ServerSocket(OPEN_PORT, 50, InetAddress.getLoopbackAddress());
+                ReachabilityProber prober = new ReachabilityProber(networkOnly().build())
+        ) {
+            ReachabilityResult open = prober.probe("127.0.0.1", OPEN_PORT).join();
+            assertTrue(open.reachable());
+            assertEquals(ReachabilityResult.Method.TCP, open.method());
+            assertEquals(InetAddress.getLoopbackAddress(), open.address());
+
+            ReachabilityResult closed = prober.probe("127.0.0.1", CLOSED_PORT).join();
+            assertFalse(closed.reachable());
+            assertEquals(ReachabilityResult.Method.NONE, closed.method());
+            assertTrue(closed.probeTime().compareTo(Duration.ofSeconds(2)) < 0, "A refused connection should not wait for the timeout.");
+        }
+    }
+
+    @Test
+    void test_positive_and_negative_results_are_cached_until_invalidated() throws IOException {
+        try (
+                ServerSocket server = new ServerSocket(OPEN_PORT, 50, InetAddress.getLoopbackAddress());
+                ReachabilityProber prober = new ReachabilityProber(networkOnly().build())
+        ) {
+            ReachabilityResult open = prober.probe("127.0.0.1", OPEN_PORT).join();
+            ReachabilityResult closed = prober.probe("127.0.0.1", CLOSED_PORT).join();
+            assertSame(open, prober.probe("127.0.0.1", OPEN_PORT).join());
+            assertSame(closed, prober.probe("127.0.0.1", CLOSED_PORT).join());
+
+            server.close();
+            assertTrue(prober.isReachable("127.0.0.1", OPEN_PORT));
+            prober.invalidate("127.0.0.1", OPEN_PORT);
+            assertFalse(prober.isReachable("127.0.0.1", OPEN_PORT));
+        }
+    }
+
+    @Test
+    void test_zero_ttl_disables_caching() {
+        try (ReachabilityProber prober = new ReachabilityProber(networkOnly().negativeTtl(Duration.ZERO).build())) {
+            prober.probe("127.0.0.1", CLOSED_PORT).join();
+            assertTrue(prober.getCachedResult("127.0.0.1", CLOSED_PORT).isEmpty());
+        }
+    }
+
+    @Test
+    void test_unknown_hosts_are_unreachable_with_their_failure() {
+        try (ReachabilityProber prober = new ReachabilityProber(ReachabilityProberConfiguration.builder().build())) {
+            ReachabilityResult result = prober.probe("this is not a valid hostname", 0).join();
+            assertFalse(result.reachable());
+            assertInstanceOf(UnknownHostException.class, result.failure());
+        }
+    }
+
+    @Test
+    void test_probe_all_probes_targets_concurrently() throws IOException {
+        List<ReachabilityProber.Target> targets = new ArrayList<>();
+        for (int port : NetworkingTestUtils.CLIENT_PORTS) {
+            targets.add(new ReachabilityProber.Target("127.0.0.1", port));
+        }
+        targets.add(new ReachabilityProber.Target("127.0.0.1", OPEN_PORT));
+
+        try (
+                ServerSocket server = new ServerSocket(OPEN_PORT, 50, InetAddress.getLoopbackAddress());
+                ReachabilityProber prober = new ReachabilityProber(networkOnly().build())
+        ) {
+            Map<ReachabilityProber.Target, ReachabilityResult> results = prober.probeAll(targets);
+            assertEquals(targets, new ArrayList<>(results.keySet()));
+            for (ReachabilityProber.Target target : targets) {
+                assertEquals(target.port() == OPEN_PORT, results.get(target).reachable());
+            }
+        }
+    }
+
+    @Test
+    void test_a_failing_probe_is_not_left_in_flight() {
+        // A missing TTL fails when caching the result, after the probe itself has run.
+        try (ReachabilityProber prober = new ReachabilityProber(networkOnly().negativeTtl(null).build())) {
+            for (int i = 0; i < 2; i++) {
+                ExecutionException e = assertThrows(ExecutionException.class, () -> prober.probe("127.0.0.1", CLOSED_PORT).get(5, TimeUnit.SECONDS));
+                assertInstanceOf(NullPointerException.class, e.getCause());
+            }
+        }
+    }
+
+    @Test
+    void test_probing_after_close_fails() {
+        ReachabilityProber prober = new ReachabilityProber(networkOnly().build());
+        prober.close();
+        CompletionException e = assertThrows(CompletionException.class, () -> prober.probe("127.0.0.1", CLOSED_PORT).join());
+        assertInstanceOf(IllegalStateException.class, e.getCause());
+    }
+
+    @Test
+    void test_address_families_are_interleaved() throws UnknownHostException {
+        InetAddress v6First = InetAddress.getByName("::2");
+        InetAddress v6Second = InetAddress.getByName("::3");
+        InetAddress v4First = InetAddress.getByName("10.0.0.1");
+        InetAddress v4Second = InetAddress.getByName("10.0.0.2");
+        InetAddress v4Third = InetAddress.getByName("10.0.0.3");
+
+        assertEquals(
+                List.of(v6First, v4First, v6Second, v4Second, v4Third),
+                ReachabilityProber.interleaveAddressFamilies(new InetAddress[]{v6First, v6Second, v4First, v4Second, v4Third})
+        );
+        assertEquals(
+                List.of(v4First, v6First, v4Second),
+                ReachabilityProber.interleaveAddressFamilies(new InetAddress[]{v4First, v4Second, v6First})
+        );
+    }
+}
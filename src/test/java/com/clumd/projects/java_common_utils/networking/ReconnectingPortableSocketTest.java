@@ -0,0 +1,187 @@
+package com.clumd.projects.java_common_utils.networking;
+
+import com.clumd.projects.java_common_utils.NetworkingTestUtils;
+import com.clumd.projects.java_common_utils.base_enhancements.PortableSocket;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReconnectingPortableSocketTest {
+
+    private static final ReconnectingPortableSocketConfiguration.ReconnectingPortableSocketConfigurationBuilder FAST_BACKOFF =
+            ReconnectingPortableSocketConfiguration.builder()
+                    .initialBackoff(Duration.ofMillis(10))
+                    .maxBackoff(Duration.ofMillis(50));
+
+    private ServerSocket serverSocket;
+    private Thread acceptor;
+    private final AtomicInteger connections = new AtomicInteger();
+    private final List<Socket> accepted = new CopyOnWriteArrayList<>();
+
+    /**
+     * Echoes everything back, but drops the very first connection straight after echoing "drop".
+     */
+    @BeforeEach
+    void startServer() throws IOException {
+        serverSocket = new ServerSocket(NetworkingTestUtils.FIRST_SERVER_PORT, 50, InetAddress.getLoopbackAddress());
+        acceptor = Thread.ofVirtual().start(() -> {
+            while (!serverSocket.isClosed()) {
+                try {
+                    Socket socket = serverSocket.accept();
+                    accepted.add(socket);
+                    int connection = connections.incrementAndGet();
+                    Thread.ofVirtual().start(() -> echo(socket, connection));
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        });
+    }
+
+    private static void echo(final Socket socket, final int connection) {
+        try (PortableSocket portableSocket = new PortableSocket(socket)) {
+            portableSocket.setNoTimeout();
+            while (true) {
+                Object received = portableSocket.receive();
+                portableSocket.send(received);
+                if (connection == 1 && "drop".equals(received)) {
+                    return;
+                }
+            }
+        } catch (IOException | ClassNotFoundException e) {
+            // The client went away.
+        }
+    }
+
+    @AfterEach
+    void stopServer() throws Exception {
+        serverSocket.close();
+        for (Socket socket : accepted) {
+            socket.close();
+        }
+        acceptor.join();
+    }
+
+    private static void awaitSize(final List<?> events, final int size) throws InterruptedException {
+        // The listener is told after any waiters are woken, so may lag slightly behind them.
+        for (int i = 0; i < 100 && events.size() < size; i++) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    void test_backoff_is_fully_jittered_and_capped() {
+        ReconnectingPortableSocketConfiguration configuration = ReconnectingPortableSocketConfiguration.builder()
+                .initialBackoff(Duration.ofMillis(100))
+                .maxBackoff(Duration.ofSeconds(1))
+                .build();
+        try (ReconnectingPortableSocket socket = new ReconnectingPortableSocket(configuration, "127.0.0.1", NetworkingTestUtils.FIRST_SERVER_PORT)) {
+            long smallestFirst = Long.MAX_VALUE;
+            long largestLater = 0;
+            for (int i = 0; i < 1000; i++) {
+                long first = socket.computeBackoffNanos(0);
+                assertTrue(first >= 0 && first <= Duration.ofMillis(100).toNanos());
+                smallestFirst = Math.min(smallestFirst, first);
+                long later = socket.computeBackoffNanos(20);
+                assertTrue(later >= 0 && later <= Duration.ofSeconds(1).toNanos());
+                largestLater = Math.max(largestLater, later);
+            }
+            assertTrue(smallestFirst < Duration.ofMillis(50).toNanos(), "The delay should be spread from zero, not just the upper bound.");
+            assertTrue(largestLater > Duration.ofMillis(100).toNanos(), "The upper bound should have grown beyond the initial backoff.");
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    @Test
+    void test_reconnects_and_replays_unacknowledged_messages() throws Exception {
+        List<String> transitions = new CopyOnWriteArrayList<>();
+        ReconnectingPortableSocketConfiguration configuration = FAST_BACKOFF
+                .replayBufferSize(10)
+                .connectionStateListener((previous, current, cause) -> transitions.add(previous + "->" + current))
+                .build();
+        try (ReconnectingPortableSocket socket = new ReconnectingPortableSocket(configuration, "127.0.0.1", NetworkingTestUtils.FIRST_SERVER_PORT)) {
+            long first = socket.send("first");
+            assertEquals("first", socket.receive());
+            socket.acknowledge(first);
+            assertEquals(0, socket.getReplayBufferedCount());
+
+            socket.send("drop");
+            assertEquals("drop", socket.receive());
+
+            // The first connection is now gone, so this is only delivered by being replayed, along with the unacknowledged "drop".
+            socket.send("after");
+            assertEquals("drop", socket.receive());
+            assertEquals("after", socket.receive());
+
+            assertEquals(ReconnectingPortableSocket.State.CONNECTED, socket.getState());
+            assertEquals(1, socket.getReconnectCount());
+            assertEquals(2, connections.get());
+            awaitSize(transitions, 3);
+            assertEquals(List.of("CONNECTING->CONNECTED", "CONNECTED->RECONNECTING", "RECONNECTING->CONNECTED"), transitions);
+        }
+        assertEquals("RECONNECTING->CONNECTED", transitions.get(2));
+        assertEquals("CONNECTED->CLOSED", transitions.get(3));
+    }
+
+    @Test
+    void test_full_replay_buffer_drops_the_oldest_message() throws Exception {
+        try (ReconnectingPortableSocket socket = new ReconnectingPortableSocket(
+                FAST_BACKOFF.replayBufferSize(2).build(), "127.0.0.1", NetworkingTestUtils.FIRST_SERVER_PORT
+        )) {
+            socket.send("one");
+            socket.send("two");
+            long three = socket.send("three");
+            assertEquals(2, socket.getReplayBufferedCount());
+            assertEquals(1, socket.getReplayDroppedCount());
+            socket.acknowledge(three);
+            assertEquals(0, socket.getReplayBufferedCount());
+        }
+    }
+
+    @Test
+    void test_gives_up_after_max_attempts_and_closes() throws Exception {
+        List<ReconnectingPortableSocket.State> states = new CopyOnWriteArrayList<>();
+        ReconnectingPortableSocketConfiguration configuration = FAST_BACKOFF
+                .maxReconnectAttempts(3)
+                .connectionStateListener((previous, current, cause) -> states.add(current))
+                .build();
+        try (ReconnectingPortableSocket socket = new ReconnectingPortableSocket(configuration, "127.0.0.1", NetworkingTestUtils.FIRST_SERVER_PORT)) {
+            socket.send("echo");
+            assertEquals("echo", socket.receive());
+
+            stopServer();
+            SocketException e = assertThrows(SocketException.class, socket::receive);
+            assertTrue(e.getMessage().contains("Gave up reconnecting after {3} attempts."), e.getMessage());
+            assertEquals(ReconnectingPortableSocket.State.CLOSED, socket.getState());
+            awaitSize(states, 3);
+            assertEquals(List.of(
+                    ReconnectingPortableSocket.State.CONNECTED,
+                    ReconnectingPortableSocket.State.RECONNECTING,
+                    ReconnectingPortableSocket.State.CLOSED
+            ), states);
+            assertThrows(SocketException.class, () -> socket.send("closed"));
+        }
+    }
+
+    @Test
+    void test_first_connection_failure_is_thrown() {
+        assertThrows(IOException.class, () -> new ReconnectingPortableSocket(
+                FAST_BACKOFF.build(), "127.0.0.1", NetworkingTestUtils.SECOND_SERVER_PORT
+        ));
+    }
+}